@@ -0,0 +1,50 @@
+package com.task.gasstation.benchmarks;
+
+import com.task.gasstation.gasstation_fulda.FuldaGasStation;
+import com.task.gasstation.gasstation_fulda.StationEventLog;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class builds the gas stations used by the benchmarks.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+final class BenchmarkStations {
+
+	/**
+	 * The price of one Liter of gas for every gas type.
+	 */
+	static final double PRICE_PER_LITER = 1.5;
+
+	/**
+	 * The amount of gas of every pump, large enough to never run out.
+	 */
+	static final double TANK_AMOUNT = 1e15;
+
+	private BenchmarkStations() {
+	}
+
+	/**
+	 * This method builds a station with no-delay pumps and no event log.
+	 * 
+	 * @param pumpsPerType
+	 *            the number of pumps of every gas type.
+	 * @param pumpingTokens
+	 *            the CPU work emulating the pumping time of one sale.
+	 * 
+	 * @return the gas station.
+	 */
+	static FuldaGasStation newStation(int pumpsPerType, long pumpingTokens) {
+		FuldaGasStation l_station = new FuldaGasStation();
+		l_station.setEventLog(StationEventLog.DISABLED);
+		for (GasType type : GasType.values()) {
+			for (int i = 0; i < pumpsPerType; i++) {
+				l_station.addGasPump(new NoDelayGasPump(type, TANK_AMOUNT, pumpingTokens));
+			}
+			l_station.setPrice(type, PRICE_PER_LITER);
+		}
+		return l_station;
+	}
+}
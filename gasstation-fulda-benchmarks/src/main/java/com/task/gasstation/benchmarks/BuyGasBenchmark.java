@@ -0,0 +1,215 @@
+package com.task.gasstation.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.task.gasstation.gasstation_fulda.FuldaGasStation;
+import com.task.gasstation.gasstation_fulda.SaleResult;
+
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+
+/**
+ * This benchmark measures the buyGas hot path of the Fulda gas station across
+ * thread counts and contention patterns:
+ * <ul>
+ * <li>all the buyers on the same gas type, or spread across the gas
+ * types;</li>
+ * <li>success-heavy or cancellation-heavy order mixes, the cancellations being
+ * split between expensive gas and missing gas;</li>
+ * <li>the throwing buyGas, or the exception-free tryBuyGas.</li>
+ * </ul>
+ * 
+ * Run it with: java -jar target/benchmarks.jar BuyGasBenchmark
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuyGasBenchmark {
+
+	/**
+	 * The amount of gas bought by every sale.
+	 */
+	private static final double AMOUNT_IN_LITERS = 1;
+
+	/**
+	 * The shared gas station.
+	 */
+	@State(Scope.Benchmark)
+	public static class StationState {
+
+		/**
+		 * SAME_TYPE sends every buyer to DIESEL, SPREAD spreads the buyers
+		 * across the gas types.
+		 */
+		@Param({ "SAME_TYPE", "SPREAD" })
+		String contention;
+
+		/**
+		 * The percentage of cancelled orders.
+		 */
+		@Param({ "0", "90" })
+		int cancellationPercent;
+
+		/**
+		 * The number of pumps of every gas type.
+		 */
+		@Param({ "1", "4" })
+		int pumpsPerType;
+
+		/**
+		 * The gas station under benchmark.
+		 */
+		FuldaGasStation fGasStation;
+
+		/**
+		 * The index given to the next buyer thread.
+		 */
+		final AtomicInteger nextBuyer = new AtomicInteger();
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			fGasStation = BenchmarkStations.newStation(pumpsPerType, 0);
+		}
+	}
+
+	/**
+	 * The orders of one buyer thread.
+	 */
+	@State(Scope.Thread)
+	public static class BuyerState {
+
+		/**
+		 * The gas type bought by the buyer thread.
+		 */
+		GasType type;
+
+		/**
+		 * The pattern of the orders: amounts and expected prices, repeated.
+		 */
+		final double[] amounts = new double[100];
+
+		/**
+		 * The expected prices of the pattern of the orders.
+		 */
+		final double[] maxPrices = new double[100];
+
+		/**
+		 * The position in the pattern of the orders.
+		 */
+		int next;
+
+		/**
+		 * The result holder reused by tryBuyGas.
+		 */
+		final SaleResult result = new SaleResult();
+
+		@Setup(Level.Trial)
+		public void setUp(StationState station) {
+			int l_buyer = station.nextBuyer.getAndIncrement();
+			type = "SPREAD".equals(station.contention) ? GasType.values()[l_buyer % GasType.values().length]
+					: GasType.DIESEL;
+			for (int i = 0; i < amounts.length; i++) {
+				amounts[i] = AMOUNT_IN_LITERS;
+				maxPrices[i] = BenchmarkStations.PRICE_PER_LITER;
+				if (i < station.cancellationPercent) {
+					// Half of the cancellations for expensive gas, half for
+					// missing gas.
+					if (i % 2 == 0) {
+						maxPrices[i] = BenchmarkStations.PRICE_PER_LITER / 2;
+					} else {
+						amounts[i] = BenchmarkStations.TANK_AMOUNT * 2;
+					}
+				}
+			}
+		}
+
+		/**
+		 * @return the position of the next order in the pattern.
+		 */
+		int nextOrder() {
+			int l_order = next;
+			next = l_order == amounts.length - 1 ? 0 : l_order + 1;
+			return l_order;
+		}
+	}
+
+	/**
+	 * This method buys gas through the throwing interface method.
+	 */
+	private static double buyGas(StationState station, BuyerState buyer) {
+		int l_order = buyer.nextOrder();
+		try {
+			return station.fGasStation.buyGas(buyer.type, buyer.amounts[l_order], buyer.maxPrices[l_order]);
+		} catch (NotEnoughGasException e) {
+			return -1;
+		} catch (GasTooExpensiveException e) {
+			return -2;
+		}
+	}
+
+	/**
+	 * This method buys gas through the exception-free method.
+	 */
+	private static int tryBuyGas(StationState station, BuyerState buyer) {
+		int l_order = buyer.nextOrder();
+		return station.fGasStation.tryBuyGas(buyer.type, buyer.amounts[l_order], buyer.maxPrices[l_order],
+				buyer.result);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public double buyGas1Thread(StationState station, BuyerState buyer) {
+		return buyGas(station, buyer);
+	}
+
+	@Benchmark
+	@Threads(2)
+	public double buyGas2Threads(StationState station, BuyerState buyer) {
+		return buyGas(station, buyer);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public double buyGas4Threads(StationState station, BuyerState buyer) {
+		return buyGas(station, buyer);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public double buyGas8Threads(StationState station, BuyerState buyer) {
+		return buyGas(station, buyer);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public int tryBuyGas1Thread(StationState station, BuyerState buyer) {
+		return tryBuyGas(station, buyer);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public int tryBuyGas4Threads(StationState station, BuyerState buyer) {
+		return tryBuyGas(station, buyer);
+	}
+}
@@ -0,0 +1,46 @@
+package com.task.gasstation.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.task.gasstation.gasstation_fulda.InstantGasPump;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is a gas pump stub that does not sleep while pumping, so that the
+ * benchmarks measure the station overhead only.
+ * 
+ * The physical pumping time can be emulated by a fixed amount of CPU work
+ * instead of a sleep.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class NoDelayGasPump extends InstantGasPump {
+
+	/**
+	 * The amount of CPU work consumed by every pumping operation.
+	 */
+	private final long pumpingTokens;
+
+	/**
+	 * @param gasType
+	 *            the type of gas that the pump serves.
+	 * @param amount
+	 *            the initial amount of gas in the pump tank.
+	 * @param pumpingTokens
+	 *            the amount of CPU work consumed by every pumping operation.
+	 */
+	public NoDelayGasPump(GasType gasType, double amount, long pumpingTokens) {
+		super(gasType, amount);
+		this.pumpingTokens = pumpingTokens;
+	}
+
+	@Override
+	public void pumpGas(double amount) {
+		super.pumpGas(amount);
+		if (pumpingTokens > 0) {
+			Blackhole.consumeCPU(pumpingTokens);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package com.task.gasstation.benchmarks;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.task.gasstation.gasstation_fulda.FuldaGasStation;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This benchmark measures the gas prices list of the Fulda gas station:
+ * getPrice and setPrice alone, and getPrice readers running while a writer
+ * publishes whole prices lists like the GasPricesUpdater does.
+ * 
+ * Run it with: java -jar target/benchmarks.jar PriceTableBenchmark
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PriceTableBenchmark {
+
+	/**
+	 * The gas station under benchmark.
+	 */
+	FuldaGasStation fGasStation;
+
+	/**
+	 * The prices lists published alternately by the writer.
+	 */
+	final Map<GasType, Double> lowPrices = new EnumMap<GasType, Double>(GasType.class);
+
+	/**
+	 * The prices lists published alternately by the writer.
+	 */
+	final Map<GasType, Double> highPrices = new EnumMap<GasType, Double>(GasType.class);
+
+	/**
+	 * Whether the writer publishes the low prices next.
+	 */
+	boolean low;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		fGasStation = BenchmarkStations.newStation(1, 0);
+		for (GasType type : GasType.values()) {
+			lowPrices.put(type, BenchmarkStations.PRICE_PER_LITER - 0.1);
+			highPrices.put(type, BenchmarkStations.PRICE_PER_LITER + 0.1);
+		}
+	}
+
+	@Benchmark
+	public double getPrice() {
+		return fGasStation.getPrice(GasType.DIESEL);
+	}
+
+	@Benchmark
+	public void setPrice() {
+		low = !low;
+		fGasStation.setPrice(GasType.DIESEL, low ? 1.4 : 1.6);
+	}
+
+	@Benchmark
+	@Group("readWhileUpdating")
+	@GroupThreads(3)
+	public void reader(Blackhole blackhole) {
+		blackhole.consume(fGasStation.getPrice(GasType.DIESEL));
+		blackhole.consume(fGasStation.getPrice(GasType.SUPER));
+	}
+
+	@Benchmark
+	@Group("readWhileUpdating")
+	@GroupThreads(1)
+	public void updater() {
+		low = !low;
+		fGasStation.setPrices(low ? lowPrices : highPrices);
+	}
+}
@@ -0,0 +1,127 @@
+package com.task.gasstation.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.task.gasstation.gasstation_fulda.FuldaGasStation;
+import com.task.gasstation.gasstation_fulda.StationEventLog;
+
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+
+/**
+ * This benchmark measures the sales throughput of the Fulda gas station with
+ * three buyer threads spread over a growing number of pumps.
+ * 
+ * With one pump all the buyers share the same pump lock, with three pumps each
+ * buyer has its own one. Since the revenue and the sales counters are striped,
+ * the throughput has to grow with the number of pumps instead of flattening
+ * out on the counters.
+ * 
+ * Run it with: java -jar target/benchmarks.jar SalesThroughputBenchmark
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(3)
+public class SalesThroughputBenchmark {
+
+	/**
+	 * The amount of gas bought by every sale.
+	 */
+	private static final double AMOUNT_IN_LITERS = 1;
+
+	/**
+	 * The price of one Liter of gas for every gas type.
+	 */
+	private static final double PRICE_PER_LITER = 1.5;
+
+	/**
+	 * The shared gas station.
+	 */
+	@State(Scope.Benchmark)
+	public static class StationState {
+
+		/**
+		 * The number of pumps in service, one per gas type.
+		 */
+		@Param({ "1", "2", "3" })
+		int pumps;
+
+		/**
+		 * The CPU work emulating the pumping time of one sale.
+		 */
+		@Param({ "0", "200" })
+		long pumpingTokens;
+
+		/**
+		 * The gas station under benchmark.
+		 */
+		FuldaGasStation fGasStation;
+
+		/**
+		 * The gas types in service.
+		 */
+		GasType[] types;
+
+		/**
+		 * The index given to the next buyer thread.
+		 */
+		final AtomicInteger nextBuyer = new AtomicInteger();
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			fGasStation = new FuldaGasStation();
+			fGasStation.setEventLog(StationEventLog.DISABLED);
+			types = new GasType[pumps];
+			for (int i = 0; i < pumps; i++) {
+				types[i] = GasType.values()[i];
+				fGasStation.addGasPump(new NoDelayGasPump(types[i], Double.MAX_VALUE, pumpingTokens));
+				fGasStation.setPrice(types[i], PRICE_PER_LITER);
+			}
+		}
+	}
+
+	/**
+	 * The pump that one buyer thread uses.
+	 */
+	@State(Scope.Thread)
+	public static class BuyerState {
+
+		/**
+		 * The gas type bought by the buyer thread.
+		 */
+		GasType type;
+
+		@Setup(Level.Trial)
+		public void setUp(StationState station) {
+			type = station.types[station.nextBuyer.getAndIncrement() % station.pumps];
+		}
+	}
+
+	@Benchmark
+	public double buyGas(StationState station, BuyerState buyer)
+			throws NotEnoughGasException, GasTooExpensiveException {
+		return station.fGasStation.buyGas(buyer.type, AMOUNT_IN_LITERS, PRICE_PER_LITER);
+	}
+}
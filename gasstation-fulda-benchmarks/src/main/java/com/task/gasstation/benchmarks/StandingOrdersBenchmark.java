@@ -0,0 +1,80 @@
+package com.task.gasstation.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.task.gasstation.gasstation_fulda.FuldaGasStation;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This benchmark measures the standing orders book of the Fulda gas station
+ * holding many parked orders: the price sets that match none of them, and the
+ * parking and withdrawal of one more order. Both should not depend on the
+ * number of parked orders but logarithmically.
+ * 
+ * Run it with: java -jar target/benchmarks.jar StandingOrdersBenchmark
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StandingOrdersBenchmark {
+
+	/**
+	 * The number of orders parked in the book.
+	 */
+	@Param({ "1000", "10000", "50000" })
+	int parkedOrders;
+
+	/**
+	 * The gas station under benchmark.
+	 */
+	FuldaGasStation fGasStation;
+
+	/**
+	 * Whether the next price set publishes the low price.
+	 */
+	boolean low;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		fGasStation = BenchmarkStations.newStation(1, 0);
+		SplittableRandom l_random = new SplittableRandom(42);
+		// Parking orders that the benchmark prices never satisfy.
+		for (int i = 0; i < parkedOrders; i++) {
+			fGasStation.placeStandingOrder(GasType.DIESEL, 10, l_random.nextDouble(0.5, 1.0));
+		}
+	}
+
+	@Benchmark
+	public void setPriceWithoutMatch() {
+		low = !low;
+		fGasStation.setPrice(GasType.DIESEL, low ? 1.4 : 1.6);
+	}
+
+	@Benchmark
+	public boolean parkAndWithdraw() {
+		CompletableFuture<Double> l_order = fGasStation.placeStandingOrder(GasType.DIESEL, 10, 0.75);
+		return l_order.cancel(false);
+	}
+}
@@ -0,0 +1,113 @@
+package com.task.gasstation.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.task.gasstation.gasstation_fulda.FuldaGasStation;
+import com.task.gasstation.gasstation_fulda.SaleResult;
+import com.task.gasstation.gasstation_fulda.StationStatus;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This benchmark measures the status getters of the Fulda gas station (revenue,
+ * sales and cancellations) and its consistent status snapshot, alone and while
+ * sellers keep updating them.
+ * 
+ * Run it with: java -jar target/benchmarks.jar StatusGettersBenchmark
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatusGettersBenchmark {
+
+	/**
+	 * The gas station under benchmark.
+	 */
+	FuldaGasStation fGasStation;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		fGasStation = BenchmarkStations.newStation(1, 0);
+	}
+
+	/**
+	 * The result holder of one seller thread.
+	 */
+	@State(Scope.Thread)
+	public static class SellerState {
+
+		/**
+		 * The result holder reused by tryBuyGas.
+		 */
+		final SaleResult result = new SaleResult();
+	}
+
+	@Benchmark
+	public void getters(Blackhole blackhole) {
+		readStatus(blackhole);
+	}
+
+	@Benchmark
+	@Group("readWhileSelling")
+	@GroupThreads(1)
+	public void reader(Blackhole blackhole) {
+		readStatus(blackhole);
+	}
+
+	@Benchmark
+	@Group("readWhileSelling")
+	@GroupThreads(3)
+	public int seller(SellerState seller) {
+		return fGasStation.tryBuyGas(GasType.DIESEL, 1, BenchmarkStations.PRICE_PER_LITER, seller.result);
+	}
+
+	@Benchmark
+	public StationStatus snapshot() {
+		return fGasStation.getStatusSnapshot();
+	}
+
+	@Benchmark
+	@Group("snapshotWhileSelling")
+	@GroupThreads(1)
+	public StationStatus snapshotReader() {
+		return fGasStation.getStatusSnapshot();
+	}
+
+	@Benchmark
+	@Group("snapshotWhileSelling")
+	@GroupThreads(3)
+	public int snapshotSeller(SellerState seller) {
+		return fGasStation.tryBuyGas(GasType.DIESEL, 1, BenchmarkStations.PRICE_PER_LITER, seller.result);
+	}
+
+	/**
+	 * This method reads the four status getters.
+	 */
+	private void readStatus(Blackhole blackhole) {
+		blackhole.consume(fGasStation.getRevenue());
+		blackhole.consume(fGasStation.getNumberOfSales());
+		blackhole.consume(fGasStation.getNumberOfCancellationsNoGas());
+		blackhole.consume(fGasStation.getNumberOfCancellationsTooExpensive());
+	}
+}
@@ -0,0 +1,169 @@
+package com.task.gasstation.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.task.gasstation.gasstation_fulda.FuldaGasStation;
+import com.task.gasstation.gasstation_fulda.GasOrder;
+import com.task.gasstation.gasstation_fulda.StationClient;
+import com.task.gasstation.gasstation_fulda.StationServer;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This benchmark measures the purchases throughput of the station server over
+ * the loopback interface, with the binary protocol of StationClient and with
+ * the text protocol, one request at a time and pipelined by batches.
+ * 
+ * Run it with: java -jar target/benchmarks.jar WireProtocolBenchmark
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WireProtocolBenchmark {
+
+	/**
+	 * The number of purchases pipelined by batch.
+	 */
+	private static final int BATCH = 256;
+
+	/**
+	 * The purchase request line of the text protocol.
+	 */
+	private static final String BUY_LINE = "BUY DIESEL 1 " + BenchmarkStations.PRICE_PER_LITER + "\n";
+
+	/**
+	 * The gas station under benchmark.
+	 */
+	FuldaGasStation fGasStation;
+
+	/**
+	 * The server of the gas station.
+	 */
+	StationServer server;
+
+	/**
+	 * The binary protocol client.
+	 */
+	StationClient client;
+
+	/**
+	 * The text protocol connection.
+	 */
+	Socket textSocket;
+
+	/**
+	 * The requests stream of the text protocol connection.
+	 */
+	OutputStream textRequests;
+
+	/**
+	 * The replies of the text protocol connection.
+	 */
+	BufferedReader textReplies;
+
+	/**
+	 * One purchase request line encoded.
+	 */
+	byte[] buyLine;
+
+	/**
+	 * A batch of purchase request lines encoded.
+	 */
+	byte[] buyLines;
+
+	/**
+	 * A batch of purchase orders.
+	 */
+	List<GasOrder> orders = new ArrayList<GasOrder>();
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		fGasStation = BenchmarkStations.newStation(1, 0);
+		server = new StationServer(fGasStation, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1);
+		client = new StationClient(server.getAddress());
+		textSocket = new Socket();
+		textSocket.setTcpNoDelay(true);
+		textSocket.connect(server.getAddress());
+		textRequests = textSocket.getOutputStream();
+		textReplies = new BufferedReader(new InputStreamReader(textSocket.getInputStream(), StandardCharsets.US_ASCII));
+		buyLine = BUY_LINE.getBytes(StandardCharsets.US_ASCII);
+		StringBuilder l_lines = new StringBuilder();
+		for (int i = 0; i < BATCH; i++) {
+			l_lines.append(BUY_LINE);
+		}
+		buyLines = l_lines.toString().getBytes(StandardCharsets.US_ASCII);
+		for (int i = 0; i < BATCH; i++) {
+			orders.add(new GasOrder(GasType.DIESEL, 1, BenchmarkStations.PRICE_PER_LITER));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		client.close();
+		textSocket.close();
+		server.close();
+	}
+
+	@Benchmark
+	public double binaryRoundTrip() {
+		return client.buyGas(GasType.DIESEL, 1, BenchmarkStations.PRICE_PER_LITER).join();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public double binaryPipelined() {
+		double l_amount = 0;
+		for (CompletableFuture<Double> purchase : client.buyGasBatch(orders)) {
+			l_amount += purchase.join();
+		}
+		return l_amount;
+	}
+
+	@Benchmark
+	public String textRoundTrip() throws IOException {
+		textRequests.write(buyLine);
+		return textReplies.readLine();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public String textPipelined() throws IOException {
+		textRequests.write(buyLines);
+		String l_reply = null;
+		for (int i = 0; i < BATCH; i++) {
+			l_reply = textReplies.readLine();
+		}
+		return l_reply;
+	}
+}
@@ -1,5 +1,6 @@
 package com.task.gasstation.gasstation_fulda;
 
+import static com.task.gasstation.utils.RandomUtils.CUSTOMERS_INCOMING_STREAM;
 import static com.task.gasstation.utils.RandomUtils.CUSTOMER_INCOMING_MAX_TIME_PERIOD;
 import static com.task.gasstation.utils.RandomUtils.CUSTOMER_INCOMING_MIN_TIME_PERIOD;
 import static com.task.gasstation.utils.RandomUtils.DIESEL_AVERAGE_PRICE_PER_LITER;
@@ -8,35 +9,41 @@ import static com.task.gasstation.utils.RandomUtils.MAX_VALUE_GAS_RANGE;
 import static com.task.gasstation.utils.RandomUtils.MIN_VALUE_GAS_RANGE;
 import static com.task.gasstation.utils.RandomUtils.REGULAR_AVERAGE_PRICE_PER_LITER;
 import static com.task.gasstation.utils.RandomUtils.SUPER_AVERAGE_PRICE_PER_LITER;
-import static com.task.gasstation.utils.RandomUtils.generateAroundAverage;
-import static com.task.gasstation.utils.RandomUtils.generateFromRange;
 
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import com.task.gasstation.utils.RandomStream;
+import com.task.gasstation.utils.RandomUtils;
 
-import net.bigpoint.assessment.gasstation.GasPump;
 import net.bigpoint.assessment.gasstation.GasType;
 import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
 import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
 
 /**
- * This class represents the thread handling the customers incoming process of
+ * This class represents the task handling the customers incoming process of
  * one gas pump in question.
  * 
- * This class contains an inner thread class that handles customers gas buying
- * request.
+ * Each run of the task lets one customer come in, then schedules the next run
+ * on the shared scheduler after a random period.
+ * 
+ * This class contains an inner task class that handles customers gas buying
+ * request on the customer sessions executor.
  * 
  * @author Maher Abdelkhalek
  *
  */
-public class CustomerIncoming extends Thread {
+public class CustomerIncoming implements Runnable {
 
 	/**
-	 * Locker of the bye operation that grants access to the longest-waiting
-	 * thread (with fairness policy), so that grants ordered customer service
-	 * queue
+	 * The bounded waiting line of the bye operation, that grants the pumps to
+	 * the longest-waiting customer, so that grants ordered customer service
+	 * queue. It has one place per pump of the gas type, so that every pump
+	 * serves one customer at a time.
 	 */
-	private Lock byeServiceLocker;
+	private PumpWaitingLine waitingLine;
 
 	/**
 	 * The Fulda gas station object.
@@ -49,9 +56,29 @@ public class CustomerIncoming extends Thread {
 	private GasType type;
 
 	/**
-	 * The gas pump in question.
+	 * The execution layer running the incoming and the customer sessions.
+	 */
+	private StationExecutors executors;
+
+	/**
+	 * The random stream of the customers of the pump in question.
+	 */
+	private final RandomStream random;
+
+	/**
+	 * The order of the next customer.
 	 */
-	private GasPump gasPump;
+	private int customerIndex = 1;
+
+	/**
+	 * The session of the last customer that came in.
+	 */
+	private CompletableFuture<Void> lastCustomerSession = CompletableFuture.completedFuture(null);
+
+	/**
+	 * Released when the last customer left after the end of service.
+	 */
+	private final CountDownLatch serviceEnded = new CountDownLatch(1);
 
 	/**
 	 * 
@@ -61,100 +88,105 @@ public class CustomerIncoming extends Thread {
 	 * @param type
 	 *            the type of gas that the pump in question serves.
 	 * 
-	 * @param endService
-	 *            the status of the service of the Fulda gas station.
+	 * @param executors
+	 *            the execution layer running the incoming and the customer
+	 *            sessions.
 	 */
-	public CustomerIncoming(FuldaGasStation fGasStation, GasType type, boolean endService) {
+	public CustomerIncoming(FuldaGasStation fGasStation, GasType type, StationExecutors executors) {
 		this.fGasStation = fGasStation;
 		this.type = type;
-		// Retrieving the gas pump for the given gas type.
-		for (GasPump gp : fGasStation.getGasPumps()) {
-			if (gp.getGasType().equals(type)) {
-				gasPump = gp;
-				break;
-			}
-		}
-		// Initialization of the bye service locker with the fairness policy
-		// option.
-		byeServiceLocker = new ReentrantLock(true);
+		this.executors = executors;
+		this.random = RandomUtils.newStream(CUSTOMERS_INCOMING_STREAM + type.ordinal());
+		// Initialization of the waiting line with one place per pump of the
+		// given gas type.
+		waitingLine = PumpWaitingLine.fromSystemProperties(fGasStation.getNumberOfGasPumps(type));
+	}
+
+	/**
+	 * This method starts the customers incoming process after one second.
+	 */
+	public void start() {
+		executors.getScheduler().schedule(this, 1000, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * This method waits until the last customer left after the end of service.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void awaitEnd() throws InterruptedException {
+		serviceEnded.await();
 	}
 
 	@Override
-	// The run() method of the main thread class that generates customers
-	// periodically.
+	// The run() method of the main task class that lets one customer come in
+	// and schedules the next incoming.
 	public void run() {
 
 		// The amount of gas that the customer requests.
 		double l_customerGasAmount = 0;
 		// The price of gas Liter that the customer expects.
 		double l_customerMaxPricePerLiter = 0;
-		// The customer order.
-		int l_customerIndex = 1;
-		// The sale gas operations thread.
-		SaleGasOperation customerResquest = null;
-		try {
-			Thread.sleep(1000);
-		} catch (InterruptedException e1) {
+		if (customerIndex == 1) {
+			fGasStation.getEventLog().publish(StationEvent.PUMP_IN_SERVICE, type, 0, 0, 0, 0);
 		}
-		System.out.println();
-		System.out.println(type + " pump is in service...");
 		// the customers incoming process still working until the gas station
 		// ends the service.
-		while (!GasStationServiceSimulator.stationServiceEnd) {
-			// Generating customer gas amount randomly.
-			l_customerGasAmount = generateFromRange(MIN_VALUE_GAS_RANGE, MAX_VALUE_GAS_RANGE);
-			// Generating customer expected gas price randomly depending on the
-			// gas type.
-			switch (gasPump.getGasType()) {
-			case DIESEL:
-				l_customerMaxPricePerLiter = generateAroundAverage(DIESEL_AVERAGE_PRICE_PER_LITER,
-						GAS_PRICE_STANDARD_DEVIATION);
-				break;
-			case REGULAR:
-				l_customerMaxPricePerLiter = generateAroundAverage(REGULAR_AVERAGE_PRICE_PER_LITER,
-						GAS_PRICE_STANDARD_DEVIATION);
-				break;
-			case SUPER:
-				l_customerMaxPricePerLiter = generateAroundAverage(SUPER_AVERAGE_PRICE_PER_LITER,
-						GAS_PRICE_STANDARD_DEVIATION);
-				break;
-			default:
-				l_customerMaxPricePerLiter = generateAroundAverage(REGULAR_AVERAGE_PRICE_PER_LITER,
-						GAS_PRICE_STANDARD_DEVIATION);
-				break;
-			}
-			// Creating new customer request thread with the specific
-			// requirements.
-			customerResquest = new SaleGasOperation(l_customerGasAmount, l_customerMaxPricePerLiter, l_customerIndex);
-			// Starting the customer request thread.
-			customerResquest.start();
-			// waiting for the next customer incoming until the sleep time is
-			// reached.
-			try {
-				Thread.sleep(generateFromRange(CUSTOMER_INCOMING_MIN_TIME_PERIOD, CUSTOMER_INCOMING_MAX_TIME_PERIOD));
-			} catch (InterruptedException e) {
-			}
-			// Passing to the next customer.
-			l_customerIndex++;
+		if (fGasStation.isServiceEnded()) {
+			// Waiting for the last "request customer" task, representing the
+			// last customer in the pump in question, to end the "incoming
+			// customers" task.
+			lastCustomerSession.whenComplete(new BiConsumer<Void, Throwable>() {
+				public void accept(Void result, Throwable failure) {
+					fGasStation.getEventLog().publish(StationEvent.PUMP_END_OF_SERVICE, type, 0, 0, 0, 0);
+					serviceEnded.countDown();
+				}
+			});
+			return;
 		}
-		try {
-			// Waiting for the last "request customer" thread, representing the
-			// last customer in
-			// the pump in question, to end the "incoming customers" thread.
-			customerResquest.join();
-			System.out.println("End of service in " + type + " pump.");
-		} catch (InterruptedException e) {
+		// Generating customer gas amount randomly.
+		l_customerGasAmount = random.generateFromRange(MIN_VALUE_GAS_RANGE, MAX_VALUE_GAS_RANGE);
+		// Generating customer expected gas price randomly depending on the
+		// gas type.
+		switch (type) {
+		case DIESEL:
+			l_customerMaxPricePerLiter = random.generateAroundAverage(DIESEL_AVERAGE_PRICE_PER_LITER,
+					GAS_PRICE_STANDARD_DEVIATION);
+			break;
+		case REGULAR:
+			l_customerMaxPricePerLiter = random.generateAroundAverage(REGULAR_AVERAGE_PRICE_PER_LITER,
+					GAS_PRICE_STANDARD_DEVIATION);
+			break;
+		case SUPER:
+			l_customerMaxPricePerLiter = random.generateAroundAverage(SUPER_AVERAGE_PRICE_PER_LITER,
+					GAS_PRICE_STANDARD_DEVIATION);
+			break;
+		default:
+			l_customerMaxPricePerLiter = random.generateAroundAverage(REGULAR_AVERAGE_PRICE_PER_LITER,
+					GAS_PRICE_STANDARD_DEVIATION);
+			break;
 		}
+		// Submitting the new customer request with the specific requirements
+		// to the customer sessions executor.
+		lastCustomerSession = CompletableFuture.runAsync(
+				new SaleGasOperation(l_customerGasAmount, l_customerMaxPricePerLiter, customerIndex),
+				executors.getCustomerSessions());
+		// Passing to the next customer.
+		customerIndex++;
+		// Scheduling the next customer incoming after a random period.
+		executors.getScheduler().schedule(this,
+				random.generateFromRange(CUSTOMER_INCOMING_MIN_TIME_PERIOD, CUSTOMER_INCOMING_MAX_TIME_PERIOD),
+				TimeUnit.MILLISECONDS);
 	}
 
 	/**
-	 * This class represents the thread handling the customers requests process
-	 * of one gas pump in question.
+	 * This class represents the task handling the request of one customer of
+	 * the gas pump in question.
 	 * 
 	 * @author Maher Abdelkhalek
 	 *
 	 */
-	class SaleGasOperation extends Thread {
+	class SaleGasOperation implements Runnable {
 
 		/**
 		 * The amount of gas that the customer requested.
@@ -183,47 +215,62 @@ public class CustomerIncoming extends Thread {
 		}
 
 		@Override
-		// The run() method of the inner thread class that handles the customers
-		// requests.
+		// The run() method of the inner task class that handles the customer
+		// request.
 		public void run() {
+			StationEventLog l_eventLog = fGasStation.getEventLog();
 			try {
 				Thread.sleep(1000);
 			} catch (InterruptedException e2) {
 			}
-			System.out.println();
-			System.out.println("Customer n°" + customerIndex + " comes requesting " + customerGasAmount + "L of " + type
-					+ " gas for up to " + customerMaxPricePerLiter + " €/L.");
-			// The customer tries to acquire the lock of the "bye service" to
+			l_eventLog.publish(StationEvent.CUSTOMER_ARRIVED, type, customerIndex, customerGasAmount,
+					customerMaxPricePerLiter, 0);
+			// The customer tries to take a free pump of the "bye service" to
 			// bye gas.
-			if (!byeServiceLocker.tryLock()) {
+			StationMetrics l_metrics = fGasStation.getMetrics();
+			long l_queueStart = l_metrics.start();
+			if (!waitingLine.tryEnter()) {
 				try {
 					Thread.sleep(500);
 				} catch (InterruptedException e2) {
 				}
-				System.out.println(
-						"Customer " + customerIndex + " in " + type + " pump is waiting the previous customer...");
-				// The customer still waiting until acquiring the lock.
-				byeServiceLocker.lock();
+				// The customer balks if the waiting line is full.
+				if (!waitingLine.join()) {
+					fGasStation.recordBalking(type, customerGasAmount);
+					l_eventLog.publish(StationEvent.CUSTOMER_BALKED, type, customerIndex, 0, 0,
+							waitingLine.getCapacity());
+					l_eventLog.publish(StationEvent.MENU_REMINDER, type, customerIndex, 0, 0, 0);
+					return;
+				}
+				l_eventLog.publish(StationEvent.CUSTOMER_WAITING, type, customerIndex, 0, 0, 0);
+				// The customer waits for a pump until the patience runs out.
+				if (!waitingLine.await()) {
+					fGasStation.recordReneging(type, customerGasAmount);
+					l_eventLog.publish(StationEvent.CUSTOMER_RENEGED, type, customerIndex, 0, 0,
+							waitingLine.getPatience());
+					l_eventLog.publish(StationEvent.MENU_REMINDER, type, customerIndex, 0, 0, 0);
+					return;
+				}
 			}
+			l_metrics.record(type, StationMetrics.QUEUE_WAIT, l_queueStart);
 			try {
 				// The customer acquires the lock.
 				try {
 					Thread.sleep(500);
 				} catch (InterruptedException e2) {
 				}
-				System.out.println("Cheaking operation for customer n°" + customerIndex + " in " + type + " pump...");
+				l_eventLog.publish(StationEvent.CUSTOMER_CHECKED, type, customerIndex, 0, 0, 0);
 				// Checking operation with the customer request.
-				fGasStation.buyGas(type, customerGasAmount, customerMaxPricePerLiter);
-				System.out.println();
-				System.out.println(type + " pump: Customer " + customerIndex + " is served.");
+				GasSale l_sale = fGasStation.sellGas(type, customerGasAmount, customerMaxPricePerLiter);
+				l_eventLog.publish(StationEvent.CUSTOMER_SERVED, type, customerIndex, 0, l_sale.getUnitPrice(),
+						l_sale.getPriceVersion());
 				// Sale operation succeeded with the customer.
 				try {
 					Thread.sleep(500);
 				} catch (InterruptedException e2) {
 				}
-				System.out
-						.println(type + " pump: After serving cutomer " + customerIndex + ", The Remaining quantity of "
-								+ type + " gas is " + String.format("%.2f", gasPump.getRemainingAmount()) + " L");
+				l_eventLog.publish(StationEvent.GAS_REMAINING, type, customerIndex,
+						fGasStation.getRemainingAmount(type), 0, 0);
 			}
 			// Sale operation failed with the customer.
 			catch (NotEnoughGasException e) {
@@ -231,14 +278,13 @@ public class CustomerIncoming extends Thread {
 					Thread.sleep(1000);
 				} catch (InterruptedException e1) {
 				}
-				System.out.println("The available " + type + " gas quantity does not cover the customer "
-						+ customerIndex + " request (Available:" + String.format("%.2f", gasPump.getRemainingAmount())
-						+ "L - Expected:" + customerGasAmount + "L).");
+				l_eventLog.publish(StationEvent.NOT_ENOUGH_GAS, type, customerIndex,
+						fGasStation.getRemainingAmount(type), customerGasAmount, 0);
 				try {
 					Thread.sleep(1000);
 				} catch (InterruptedException e2) {
 				}
-				System.out.println(type + " pump: Customer " + customerIndex + " left without being served.");
+				l_eventLog.publish(StationEvent.CUSTOMER_LEFT, type, customerIndex, 0, 0, 0);
 			}
 			// Sale operation failed with the customer.
 			catch (GasTooExpensiveException e) {
@@ -246,20 +292,17 @@ public class CustomerIncoming extends Thread {
 					Thread.sleep(1000);
 				} catch (InterruptedException e1) {
 				}
-				System.out.println("The price of " + type + " is actually more than the customer " + customerIndex
-						+ " expected (Available:" + fGasStation.getPrice(type) + "€/L - Expected:"
-						+ customerMaxPricePerLiter + "€/L).");
+				l_eventLog.publish(StationEvent.GAS_TOO_EXPENSIVE, type, customerIndex, fGasStation.getPrice(type),
+						customerMaxPricePerLiter, 0);
 				try {
 					Thread.sleep(1000);
 				} catch (InterruptedException e2) {
 				}
-				System.out.println(type + " pump: Customer " + customerIndex + " left without being served.");
+				l_eventLog.publish(StationEvent.CUSTOMER_LEFT, type, customerIndex, 0, 0, 0);
 			} finally {
-				System.out.println(
-						"[Options: 2 End Station service | 3 Operations Status | 4 Tanks Status | 5 Prices List Status]:");
-				System.out.println();
-				// The customer release the lock.
-				byeServiceLocker.unlock();
+				l_eventLog.publish(StationEvent.MENU_REMINDER, type, customerIndex, 0, 0, 0);
+				// The customer frees the pump.
+				waitingLine.leave();
 			}
 		}
 	}
@@ -0,0 +1,629 @@
+package com.task.gasstation.gasstation_fulda;
+
+import static com.task.gasstation.utils.RandomUtils.CUSTOMER_INCOMING_MAX_TIME_PERIOD;
+import static com.task.gasstation.utils.RandomUtils.CUSTOMER_INCOMING_MIN_TIME_PERIOD;
+import static com.task.gasstation.utils.RandomUtils.DIESEL_AVERAGE_PRICE_PER_LITER;
+import static com.task.gasstation.utils.RandomUtils.DIESEL_GAS_AMOUNT;
+import static com.task.gasstation.utils.RandomUtils.GAS_PRICE_STANDARD_DEVIATION;
+import static com.task.gasstation.utils.RandomUtils.MAX_VALUE_GAS_RANGE;
+import static com.task.gasstation.utils.RandomUtils.MIN_VALUE_GAS_RANGE;
+import static com.task.gasstation.utils.RandomUtils.REGULAR_AVERAGE_PRICE_PER_LITER;
+import static com.task.gasstation.utils.RandomUtils.REGULAR_GAS_AMOUNT;
+import static com.task.gasstation.utils.RandomUtils.SUPER_AVERAGE_PRICE_PER_LITER;
+import static com.task.gasstation.utils.RandomUtils.SUPER_GAS_AMOUNT;
+import static com.task.gasstation.utils.RandomUtils.UPDATE_GAS_PRICE_MAX_TIME_PERIOD;
+import static com.task.gasstation.utils.RandomUtils.UPDATE_GAS_PRICE_MIN_TIME_PERIOD;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.LongSupplier;
+
+import com.task.gasstation.utils.RandomStream;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is a discrete-event simulation of the Fulda gas station service.
+ * 
+ * Instead of sleeping, the customers arrivals, their service at the pumps, the
+ * gas prices updates and the end of service are events of a calendar ordered
+ * by a virtual clock. The simulation jumps from one event to the next, so that
+ * a whole day of service takes a fraction of a second, while the sales still
+ * go through the same FuldaGasStation.
+ * 
+ * The station pumps should pump instantly (see InstantGasPump), since the
+ * pumping time is simulated by the virtual clock, which also times the live
+ * rates of the station.
+ * 
+ * The line of each gas type holds at most the capacity of the waiting lines
+ * of the threaded simulator (PumpWaitingLine.CAPACITY_PROPERTY): a customer
+ * coming to a full line balks, and is recorded by the station like there.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class DiscreteEventSimulator {
+
+	/**
+	 * The time in milliseconds between acquiring a pump and checking the
+	 * customer request.
+	 */
+	public static final long CHECKING_TIME = 500;
+
+	/**
+	 * The time in milliseconds to pump one Liter of gas.
+	 */
+	public static final long PUMPING_TIME_PER_LITER = 100;
+
+	/**
+	 * The time in milliseconds between the end of pumping and the release of
+	 * the pump.
+	 */
+	public static final long AFTER_SALE_TIME = 500;
+
+	/**
+	 * The time in milliseconds that a cancelled customer needs to leave the
+	 * pump.
+	 */
+	public static final long CANCELLATION_TIME = 2000;
+
+	/**
+	 * The event of a customer coming to the pumps of a gas type.
+	 */
+	private static final int ARRIVAL = 0;
+
+	/**
+	 * The event of a customer leaving a pump.
+	 */
+	private static final int SERVICE_END = 1;
+
+	/**
+	 * The event of a gas prices update.
+	 */
+	private static final int PRICES_UPDATE = 2;
+
+	/**
+	 * The event of the end of service of the station.
+	 */
+	private static final int END_OF_SERVICE = 3;
+
+	/**
+	 * The simulated gas station.
+	 */
+	private final FuldaGasStation fGasStation;
+
+	/**
+	 * The calendar of the pending events ordered by time.
+	 */
+	private final PriorityQueue<SimulationEvent> calendar;
+
+	/**
+	 * The random generator of the simulation.
+	 */
+	private final RandomStream random;
+
+	/**
+	 * The customers lanes indexed by gas type ordinal.
+	 */
+	private final PumpLane[] lanes;
+
+	/**
+	 * The pending gas prices update.
+	 */
+	private final SimulationEvent pricesUpdate = new SimulationEvent(PRICES_UPDATE, null);
+
+	/**
+	 * The pending end of service.
+	 */
+	private final SimulationEvent endOfService = new SimulationEvent(END_OF_SERVICE, null);
+
+	/**
+	 * The result holder reused by every sale.
+	 */
+	private final SaleResult saleResult = new SaleResult();
+
+	/**
+	 * The min time period in milliseconds separating two customers of the same
+	 * gas type.
+	 */
+	private long arrivalMinPeriod = CUSTOMER_INCOMING_MIN_TIME_PERIOD;
+
+	/**
+	 * The max time period in milliseconds separating two customers of the same
+	 * gas type.
+	 */
+	private long arrivalMaxPeriod = CUSTOMER_INCOMING_MAX_TIME_PERIOD;
+
+	/**
+	 * The virtual clock in milliseconds since the start of the simulation.
+	 */
+	private long clock;
+
+	/**
+	 * The sequence number given to the next scheduled event.
+	 */
+	private long nextSequence;
+
+	/**
+	 * Whether the station ended its service.
+	 */
+	private boolean serviceEnded;
+
+	/**
+	 * The number of processed events.
+	 */
+	private long processedEvents;
+
+	/**
+	 * The number of customers that came to the station.
+	 */
+	private long customers;
+
+	/**
+	 * The number of customers who left because the waiting line was full.
+	 */
+	private long balkedCustomers;
+
+	/**
+	 * The total time in milliseconds that the customers waited for a pump.
+	 */
+	private long totalWaitingTime;
+
+	/**
+	 * @param fGasStation
+	 *            the simulated gas station.
+	 * @param seed
+	 *            the seed of the random generator, so that a simulation can
+	 *            be reproduced.
+	 */
+	public DiscreteEventSimulator(FuldaGasStation fGasStation, long seed) {
+		this.fGasStation = fGasStation;
+		// Counting the live rates by the virtual clock, from its start.
+		fGasStation.setRates(new SalesRates(new LongSupplier() {
+			public long getAsLong() {
+				return clock;
+			}
+		}));
+		this.random = new RandomStream(seed);
+		this.calendar = new PriorityQueue<SimulationEvent>(16, new Comparator<SimulationEvent>() {
+			public int compare(SimulationEvent e1, SimulationEvent e2) {
+				if (e1.time != e2.time) {
+					return e1.time < e2.time ? -1 : 1;
+				}
+				return Long.compare(e1.sequence, e2.sequence);
+			}
+		});
+		this.lanes = new PumpLane[GasType.values().length];
+		int l_capacity = Integer.getInteger(PumpWaitingLine.CAPACITY_PROPERTY, PumpWaitingLine.DEFAULT_CAPACITY);
+		for (GasType type : GasType.values()) {
+			lanes[type.ordinal()] = new PumpLane(type, fGasStation.getNumberOfGasPumps(type), l_capacity);
+		}
+	}
+
+	/**
+	 * This method sets the random time period separating two customers of the
+	 * same gas type.
+	 * 
+	 * @param minPeriod
+	 *            the min period in milliseconds.
+	 * @param maxPeriod
+	 *            the max period in milliseconds.
+	 */
+	public void setArrivalPeriod(long minPeriod, long maxPeriod) {
+		this.arrivalMinPeriod = minPeriod;
+		this.arrivalMaxPeriod = maxPeriod;
+	}
+
+	/**
+	 * This method runs the simulation until the last customer left after the
+	 * end of service.
+	 * 
+	 * @param serviceDuration
+	 *            the virtual duration of the service in milliseconds.
+	 */
+	public void run(long serviceDuration) {
+		for (PumpLane lane : lanes) {
+			if (lane.pumps > 0) {
+				schedule(lane.arrival, 0);
+			}
+		}
+		schedule(pricesUpdate,
+				random.generateFromRange(UPDATE_GAS_PRICE_MIN_TIME_PERIOD, UPDATE_GAS_PRICE_MAX_TIME_PERIOD));
+		schedule(endOfService, serviceDuration);
+		SimulationEvent l_event;
+		while ((l_event = calendar.poll()) != null) {
+			clock = l_event.time;
+			processedEvents++;
+			switch (l_event.kind) {
+			case ARRIVAL:
+				onArrival(l_event.lane);
+				break;
+			case SERVICE_END:
+				onServiceEnd(l_event);
+				break;
+			case PRICES_UPDATE:
+				onPricesUpdate();
+				break;
+			default:
+				serviceEnded = true;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * This method lets one customer come, and schedules the next one.
+	 * 
+	 * @param lane
+	 *            the lane of the gas type of the customer.
+	 */
+	private void onArrival(PumpLane lane) {
+		if (serviceEnded) {
+			return;
+		}
+		customers++;
+		double l_amount = random.generateFromRange(MIN_VALUE_GAS_RANGE, MAX_VALUE_GAS_RANGE);
+		double l_maxPrice = random.generateAroundAverage(averagePrice(lane.type), GAS_PRICE_STANDARD_DEVIATION);
+		if (lane.busy < lane.pumps) {
+			startService(lane, l_amount, l_maxPrice, clock);
+		} else if (!lane.enqueue(l_amount, l_maxPrice, clock)) {
+			// The customer balks if the waiting line is full.
+			balkedCustomers++;
+			fGasStation.recordBalking(lane.type, l_amount);
+		}
+		schedule(lane.arrival, clock + random.generateFromRange(arrivalMinPeriod, arrivalMaxPeriod));
+	}
+
+	/**
+	 * This method frees the pump of a leaving customer, and serves the next
+	 * waiting customer if any.
+	 * 
+	 * @param event
+	 *            the service end event of the pump.
+	 */
+	private void onServiceEnd(SimulationEvent event) {
+		PumpLane l_lane = event.lane;
+		l_lane.busy--;
+		l_lane.release(event);
+		if (l_lane.waiting > 0) {
+			int l_head = l_lane.head;
+			l_lane.dequeue();
+			startService(l_lane, l_lane.amounts[l_head], l_lane.maxPrices[l_head], l_lane.arrivals[l_head]);
+		}
+	}
+
+	/**
+	 * This method updates the gas prices, and schedules the next update.
+	 */
+	private void onPricesUpdate() {
+		if (serviceEnded) {
+			return;
+		}
+		Map<GasType, Double> l_prices = new EnumMap<GasType, Double>(GasType.class);
+		for (GasType type : GasType.values()) {
+			l_prices.put(type, random.generateAroundAverage(averagePrice(type), GAS_PRICE_STANDARD_DEVIATION));
+		}
+		fGasStation.setPrices(l_prices);
+		schedule(pricesUpdate,
+				clock + random.generateFromRange(UPDATE_GAS_PRICE_MIN_TIME_PERIOD, UPDATE_GAS_PRICE_MAX_TIME_PERIOD));
+	}
+
+	/**
+	 * This method serves a customer with a free pump, and schedules the end of
+	 * the service.
+	 * 
+	 * @param lane
+	 *            the lane of the gas type of the customer.
+	 * @param amountInLiters
+	 *            the amount of gas that the customer requests.
+	 * @param maxPricePerLiter
+	 *            the price of gas Liter that the customer expects.
+	 * @param arrivalTime
+	 *            the time the customer came.
+	 */
+	private void startService(PumpLane lane, double amountInLiters, double maxPricePerLiter, long arrivalTime) {
+		long l_duration = CHECKING_TIME;
+		lane.busy++;
+		totalWaitingTime += clock - arrivalTime;
+		if (fGasStation.tryBuyGas(lane.type, amountInLiters, maxPricePerLiter, saleResult) == SaleResult.SOLD) {
+			l_duration += (long) (amountInLiters * PUMPING_TIME_PER_LITER) + AFTER_SALE_TIME;
+		} else {
+			l_duration += CANCELLATION_TIME;
+		}
+		schedule(lane.acquire(), clock + l_duration);
+	}
+
+	/**
+	 * This method adds an event to the calendar.
+	 * 
+	 * @param event
+	 *            the event.
+	 * @param time
+	 *            the virtual time of the event.
+	 */
+	private void schedule(SimulationEvent event, long time) {
+		event.time = time;
+		event.sequence = nextSequence++;
+		calendar.add(event);
+	}
+
+	/**
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the average price of one Liter of the gas type.
+	 */
+	private static double averagePrice(GasType type) {
+		switch (type) {
+		case DIESEL:
+			return DIESEL_AVERAGE_PRICE_PER_LITER;
+		case SUPER:
+			return SUPER_AVERAGE_PRICE_PER_LITER;
+		default:
+			return REGULAR_AVERAGE_PRICE_PER_LITER;
+		}
+	}
+
+	/**
+	 * @return the virtual clock in milliseconds since the start of the
+	 *         simulation.
+	 */
+	public long getClock() {
+		return clock;
+	}
+
+	/**
+	 * @return the number of processed events.
+	 */
+	public long getProcessedEvents() {
+		return processedEvents;
+	}
+
+	/**
+	 * @return the number of customers that came to the station.
+	 */
+	public long getCustomers() {
+		return customers;
+	}
+
+	/**
+	 * @return the number of customers who left because the waiting line was
+	 *         full.
+	 */
+	public long getBalkedCustomers() {
+		return balkedCustomers;
+	}
+
+	/**
+	 * @return the average time in milliseconds that a served customer waited
+	 *         for a pump.
+	 */
+	public double getAverageWaitingTime() {
+		long l_served = customers - balkedCustomers;
+		return l_served == 0 ? 0 : (double) totalWaitingTime / l_served;
+	}
+
+	/**
+	 * This method simulates the Fulda gas station for a number of days.
+	 * 
+	 * @param args
+	 *            the number of days (default 1), the random seed (default 0),
+	 *            and the min and max time periods in milliseconds separating
+	 *            two customers of the same gas type.
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		double l_days = args.length > 0 ? Double.parseDouble(args[0]) : 1;
+		long l_seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+
+		// Setting up the gas station with instant pumps.
+		FuldaGasStation fGasStation = new FuldaGasStation();
+		fGasStation.setEventLog(StationEventLog.DISABLED);
+		fGasStation.addGasPump(new InstantGasPump(GasType.DIESEL, DIESEL_GAS_AMOUNT));
+		fGasStation.addGasPump(new InstantGasPump(GasType.REGULAR, REGULAR_GAS_AMOUNT));
+		fGasStation.addGasPump(new InstantGasPump(GasType.SUPER, SUPER_GAS_AMOUNT));
+		fGasStation.setPrice(GasType.DIESEL, DIESEL_AVERAGE_PRICE_PER_LITER);
+		fGasStation.setPrice(GasType.REGULAR, REGULAR_AVERAGE_PRICE_PER_LITER);
+		fGasStation.setPrice(GasType.SUPER, SUPER_AVERAGE_PRICE_PER_LITER);
+
+		DiscreteEventSimulator l_simulator = new DiscreteEventSimulator(fGasStation, l_seed);
+		if (args.length > 3) {
+			l_simulator.setArrivalPeriod(Long.parseLong(args[2]), Long.parseLong(args[3]));
+		}
+		long l_start = System.nanoTime();
+		l_simulator.run((long) (l_days * 24 * 3600 * 1000));
+		long l_elapsed = Math.max(1, System.nanoTime() - l_start);
+
+		System.out.println("Simulated " + l_simulator.getCustomers() + " customers (" + l_simulator.getProcessedEvents()
+				+ " events) over " + String.format("%.2f", l_simulator.getClock() / 3600000.0) + " hours in "
+				+ String.format("%.1f", l_elapsed / 1e6) + " ms ("
+				+ String.format("%.0f", l_simulator.getCustomers() * 1e9 / l_elapsed) + " customers/s).");
+		System.out.println("Average waiting time: " + String.format("%.1f", l_simulator.getAverageWaitingTime() / 1000)
+				+ " s, " + l_simulator.getBalkedCustomers() + " customers balked.");
+		GasStationServiceSimulator.displayGasStationOperationsStatus(fGasStation);
+	}
+
+	/**
+	 * This class is an event of the simulation calendar. The events are reused
+	 * from one schedule to the next.
+	 * 
+	 * @author Maher Abdelkhalek
+	 *
+	 */
+	static final class SimulationEvent {
+
+		/**
+		 * The kind of the event.
+		 */
+		final int kind;
+
+		/**
+		 * The lane concerned by the event, null if none.
+		 */
+		final PumpLane lane;
+
+		/**
+		 * The virtual time of the event.
+		 */
+		long time;
+
+		/**
+		 * The scheduling order of the event, breaking time ties.
+		 */
+		long sequence;
+
+		/**
+		 * @param kind
+		 *            the kind of the event.
+		 * @param lane
+		 *            the lane concerned by the event.
+		 */
+		SimulationEvent(int kind, PumpLane lane) {
+			this.kind = kind;
+			this.lane = lane;
+		}
+	}
+
+	/**
+	 * This class represents the pumps of one gas type and the line of the
+	 * customers waiting for them.
+	 * 
+	 * @author Maher Abdelkhalek
+	 *
+	 */
+	static final class PumpLane {
+
+		/**
+		 * The gas type of the lane.
+		 */
+		final GasType type;
+
+		/**
+		 * The number of pumps of the lane.
+		 */
+		final int pumps;
+
+		/**
+		 * The pending arrival of the lane.
+		 */
+		final SimulationEvent arrival;
+
+		/**
+		 * The service end events of the free pumps.
+		 */
+		private final SimulationEvent[] freeServiceEnds;
+
+		/**
+		 * The number of free service end events.
+		 */
+		private int freeCount;
+
+		/**
+		 * The number of busy pumps.
+		 */
+		int busy;
+
+		/**
+		 * The maximum number of waiting customers.
+		 */
+		final int capacity;
+
+		/**
+		 * The requested amounts of the waiting customers, as a ring.
+		 */
+		final double[] amounts;
+
+		/**
+		 * The expected prices of the waiting customers, as a ring.
+		 */
+		final double[] maxPrices;
+
+		/**
+		 * The arrival times of the waiting customers, as a ring.
+		 */
+		final long[] arrivals;
+
+		/**
+		 * The ring index of the first waiting customer.
+		 */
+		int head;
+
+		/**
+		 * The number of waiting customers.
+		 */
+		int waiting;
+
+		/**
+		 * @param type
+		 *            the gas type of the lane.
+		 * @param pumps
+		 *            the number of pumps of the lane.
+		 * @param capacity
+		 *            the maximum number of waiting customers.
+		 */
+		PumpLane(GasType type, int pumps, int capacity) {
+			this.type = type;
+			this.pumps = pumps;
+			this.capacity = Math.max(0, capacity);
+			// The ring never grows: it holds the whole line from the start.
+			this.amounts = new double[Math.max(1, capacity)];
+			this.maxPrices = new double[amounts.length];
+			this.arrivals = new long[amounts.length];
+			this.arrival = new SimulationEvent(ARRIVAL, this);
+			this.freeServiceEnds = new SimulationEvent[pumps];
+			for (int i = 0; i < pumps; i++) {
+				freeServiceEnds[freeCount++] = new SimulationEvent(SERVICE_END, this);
+			}
+		}
+
+		/**
+		 * @return the service end event of a pump starting a service.
+		 */
+		SimulationEvent acquire() {
+			return freeServiceEnds[--freeCount];
+		}
+
+		/**
+		 * @param event
+		 *            the service end event of a pump ending a service.
+		 */
+		void release(SimulationEvent event) {
+			freeServiceEnds[freeCount++] = event;
+		}
+
+		/**
+		 * This method adds a customer at the end of the line, unless the line
+		 * is full.
+		 * 
+		 * @param amountInLiters
+		 *            the amount of gas that the customer requests.
+		 * @param maxPricePerLiter
+		 *            the price of gas Liter that the customer expects.
+		 * @param arrivalTime
+		 *            the time the customer came.
+		 * 
+		 * @return true if the customer joined the line, false if it was full.
+		 */
+		boolean enqueue(double amountInLiters, double maxPricePerLiter, long arrivalTime) {
+			if (waiting >= capacity) {
+				return false;
+			}
+			int l_tail = (head + waiting) % amounts.length;
+			amounts[l_tail] = amountInLiters;
+			maxPrices[l_tail] = maxPricePerLiter;
+			arrivals[l_tail] = arrivalTime;
+			waiting++;
+			return true;
+		}
+
+		/**
+		 * This method removes the first customer of the line.
+		 */
+		void dequeue() {
+			head = (head + 1) % amounts.length;
+			waiting--;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package com.task.gasstation.gasstation_fulda;
+
+/**
+ * This class converts the Liters and the Euros of the GasStation interface to
+ * the fixed-point values of the Fulda gas station: the amounts of gas in
+ * milliliters and the money in Euro cents, both as longs.
+ * 
+ * The tanks, the prices and the revenue of the station are kept as longs, so
+ * that they stay exact whatever the number of sales and are updated with plain
+ * atomic adds and compare-and-sets. The doubles of the interface are rounded
+ * once when they enter the station, and computed back when they leave it.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+final class FixedPoint {
+
+	/**
+	 * The number of milliliters in one Liter.
+	 */
+	static final long MILLILITERS_PER_LITER = 1000;
+
+	/**
+	 * The number of cents in one Euro.
+	 */
+	static final long CENTS_PER_EURO = 100;
+
+	private FixedPoint() {
+	}
+
+	/**
+	 * @param liters
+	 *            the amount of gas in Liters.
+	 * 
+	 * @return the amount of gas in milliliters, rounded.
+	 */
+	static long toMilliliters(double liters) {
+		return Math.round(liters * MILLILITERS_PER_LITER);
+	}
+
+	/**
+	 * This method converts the amount of gas of a purchase, which must be at
+	 * least one milliliter once rounded.
+	 * 
+	 * @param liters
+	 *            the amount of gas requested in Liters.
+	 * 
+	 * @return the amount of gas in milliliters, rounded.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the amount is not positive, or rounds to 0 milliliter.
+	 */
+	static long toOrderMilliliters(double liters) {
+		long l_milliliters = toMilliliters(liters);
+		if (l_milliliters <= 0) {
+			throw new IllegalArgumentException("Not a positive amount of gas: " + liters + " L");
+		}
+		return l_milliliters;
+	}
+
+	/**
+	 * @param milliliters
+	 *            the amount of gas in milliliters.
+	 * 
+	 * @return the amount of gas in Liters.
+	 */
+	static double toLiters(long milliliters) {
+		return milliliters / (double) MILLILITERS_PER_LITER;
+	}
+
+	/**
+	 * @param euros
+	 *            the amount of money in Euro.
+	 * 
+	 * @return the amount of money in cents, rounded.
+	 */
+	static long toCents(double euros) {
+		return Math.round(euros * CENTS_PER_EURO);
+	}
+
+	/**
+	 * @param cents
+	 *            the amount of money in cents.
+	 * 
+	 * @return the amount of money in Euro.
+	 */
+	static double toEuros(long cents) {
+		return cents / (double) CENTS_PER_EURO;
+	}
+
+	/**
+	 * This method calculates the amount charged for some gas, rounded half up
+	 * to the cent.
+	 * 
+	 * @param milliliters
+	 *            the amount of gas in milliliters.
+	 * @param centsPerLiter
+	 *            the price of one Liter in cents.
+	 * 
+	 * @return the amount charged in cents.
+	 */
+	static long charge(long milliliters, long centsPerLiter) {
+		return Math.floorDiv(milliliters * centsPerLiter + MILLILITERS_PER_LITER / 2, MILLILITERS_PER_LITER);
+	}
+}
@@ -0,0 +1,377 @@
+package com.task.gasstation.gasstation_fulda;
+
+import static com.task.gasstation.utils.RandomUtils.DIESEL_AVERAGE_PRICE_PER_LITER;
+import static com.task.gasstation.utils.RandomUtils.FLEET_STATIONS_STREAM;
+import static com.task.gasstation.utils.RandomUtils.GAS_PRICE_STANDARD_DEVIATION;
+import static com.task.gasstation.utils.RandomUtils.MAX_VALUE_GAS_RANGE;
+import static com.task.gasstation.utils.RandomUtils.MIN_VALUE_GAS_RANGE;
+import static com.task.gasstation.utils.RandomUtils.REGULAR_AVERAGE_PRICE_PER_LITER;
+import static com.task.gasstation.utils.RandomUtils.SUPER_AVERAGE_PRICE_PER_LITER;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.task.gasstation.utils.RandomStream;
+import com.task.gasstation.utils.RandomUtils;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class hosts a fleet of independent gas stations in one JVM.
+ * 
+ * The stations are partitioned across a fixed set of single-thread workers:
+ * all the operations of a station run on its worker, so that two workers never
+ * contend for the same station, and the pump locks of a station are never
+ * contended.
+ * 
+ * The fleet statistics are a fork-join reduction of the statistics of the
+ * stations, and each station has its own service status.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class FleetRuntime {
+
+	/**
+	 * The number of stations below which the statistics reduction is not
+	 * split anymore.
+	 */
+	private static final int REDUCTION_THRESHOLD = 32;
+
+	/**
+	 * The number of customers a simulated station serves before letting the
+	 * other stations of its worker run.
+	 */
+	private static final int CUSTOMERS_PER_TURN = 64;
+
+	/**
+	 * The amount of gas of the pumps of the simulated stations, large enough
+	 * to never run out.
+	 */
+	private static final double FLEET_GAS_AMOUNT = 1e12;
+
+	/**
+	 * The single-thread workers running the stations.
+	 */
+	private final ExecutorService[] workers;
+
+	/**
+	 * The stations of the fleet indexed by their id, copied on write.
+	 */
+	private volatile FuldaGasStation[] stations = new FuldaGasStation[0];
+
+	/**
+	 * @param workers
+	 *            the number of workers running the stations.
+	 */
+	public FleetRuntime(int workers) {
+		this.workers = new ExecutorService[workers];
+		StationExecutors.NamedThreadFactory l_threads = new StationExecutors.NamedThreadFactory("fleet-worker", true);
+		for (int i = 0; i < workers; i++) {
+			this.workers[i] = Executors.newSingleThreadExecutor(l_threads);
+		}
+	}
+
+	/**
+	 * This method adds a station to the fleet.
+	 * 
+	 * @param fGasStation
+	 *            the gas station.
+	 * 
+	 * @return the id of the station in the fleet.
+	 */
+	public synchronized int addStation(FuldaGasStation fGasStation) {
+		FuldaGasStation[] l_stations = Arrays.copyOf(stations, stations.length + 1);
+		l_stations[l_stations.length - 1] = fGasStation;
+		stations = l_stations;
+		return l_stations.length - 1;
+	}
+
+	/**
+	 * @param stationId
+	 *            the id of the station in the fleet.
+	 * @return the gas station.
+	 */
+	public FuldaGasStation getStation(int stationId) {
+		return stations[stationId];
+	}
+
+	/**
+	 * @return the number of stations of the fleet.
+	 */
+	public int getNumberOfStations() {
+		return stations.length;
+	}
+
+	/**
+	 * @return the number of workers running the stations.
+	 */
+	public int getNumberOfWorkers() {
+		return workers.length;
+	}
+
+	/**
+	 * This method runs a task on the worker of a station.
+	 * 
+	 * @param stationId
+	 *            the id of the station in the fleet.
+	 * @param task
+	 *            the task, working on the station only.
+	 * 
+	 * @return the future result of the task.
+	 */
+	public <T> CompletableFuture<T> submit(int stationId, Supplier<T> task) {
+		return CompletableFuture.supplyAsync(task, workers[stationId % workers.length]);
+	}
+
+	/**
+	 * This method buys gas at a station of the fleet, on the worker of the
+	 * station.
+	 * 
+	 * @param stationId
+	 *            the id of the station in the fleet.
+	 * @param type
+	 *            the type of gas that the customer requests.
+	 * @param amountInLiters
+	 *            the amount of gas that the customer requests.
+	 * @param maxPricePerLiter
+	 *            the price of gas Liter that the customer expects.
+	 * 
+	 * @return the future outcome of the purchase.
+	 */
+	public CompletableFuture<SaleResult> buyGas(int stationId, final GasType type, final double amountInLiters,
+			final double maxPricePerLiter) {
+		final FuldaGasStation l_station = getStation(stationId);
+		return submit(stationId, new Supplier<SaleResult>() {
+			public SaleResult get() {
+				SaleResult l_result = new SaleResult();
+				l_station.tryBuyGas(type, amountInLiters, maxPricePerLiter, l_result);
+				return l_result;
+			}
+		});
+	}
+
+	/**
+	 * This method computes the statistics of the whole fleet, reducing the
+	 * statistics of the stations in parallel.
+	 * 
+	 * @return the fleet statistics.
+	 */
+	public FleetStatistics getFleetStatistics() {
+		FuldaGasStation[] l_stations = stations;
+		return ForkJoinPool.commonPool().invoke(new StatisticsTask(l_stations, 0, l_stations.length));
+	}
+
+	/**
+	 * This method ends the service of every station of the fleet.
+	 */
+	public void endService() {
+		for (FuldaGasStation station : stations) {
+			station.endService();
+		}
+	}
+
+	/**
+	 * This method stops the workers once their pending tasks are done.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void shutdown() throws InterruptedException {
+		for (ExecutorService worker : workers) {
+			worker.shutdown();
+		}
+		for (ExecutorService worker : workers) {
+			worker.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * This class is the fork-join reduction of the statistics of a range of
+	 * stations.
+	 * 
+	 * @author Maher Abdelkhalek
+	 *
+	 */
+	private static final class StatisticsTask extends RecursiveTask<FleetStatistics> {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The stations of the fleet.
+		 */
+		private final FuldaGasStation[] stations;
+
+		/**
+		 * The first station of the range.
+		 */
+		private final int from;
+
+		/**
+		 * The end of the range, excluded.
+		 */
+		private final int to;
+
+		/**
+		 * @param stations
+		 *            the stations of the fleet.
+		 * @param from
+		 *            the first station of the range.
+		 * @param to
+		 *            the end of the range, excluded.
+		 */
+		StatisticsTask(FuldaGasStation[] stations, int from, int to) {
+			this.stations = stations;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected FleetStatistics compute() {
+			if (to - from <= REDUCTION_THRESHOLD) {
+				FleetStatistics l_statistics = FleetStatistics.EMPTY;
+				for (int i = from; i < to; i++) {
+					l_statistics = l_statistics.combine(FleetStatistics.of(stations[i]));
+				}
+				return l_statistics;
+			}
+			int l_middle = (from + to) >>> 1;
+			StatisticsTask l_left = new StatisticsTask(stations, from, l_middle);
+			l_left.fork();
+			FleetStatistics l_right = new StatisticsTask(stations, l_middle, to).compute();
+			return l_left.join().combine(l_right);
+		}
+	}
+
+	/**
+	 * This class is the simulated customers of one station: each turn serves
+	 * a few customers, then lets the other stations of the worker run, until
+	 * the end of service of the station.
+	 * 
+	 * @author Maher Abdelkhalek
+	 *
+	 */
+	private final class StationCustomers implements Runnable {
+
+		/**
+		 * The id of the station in the fleet.
+		 */
+		private final int stationId;
+
+		/**
+		 * The random stream of the customers of the station.
+		 */
+		private final RandomStream random;
+
+		/**
+		 * The result holder reused by the purchases.
+		 */
+		private final SaleResult result = new SaleResult();
+
+		/**
+		 * Released when the station ended its service.
+		 */
+		private final CountDownLatch stationsEnded;
+
+		/**
+		 * @param stationId
+		 *            the id of the station in the fleet.
+		 * @param stationsEnded
+		 *            released when the station ended its service.
+		 */
+		StationCustomers(int stationId, CountDownLatch stationsEnded) {
+			this.stationId = stationId;
+			this.random = RandomUtils.newStream(FLEET_STATIONS_STREAM + stationId);
+			this.stationsEnded = stationsEnded;
+		}
+
+		public void run() {
+			FuldaGasStation l_station = getStation(stationId);
+			if (l_station.isServiceEnded()) {
+				stationsEnded.countDown();
+				return;
+			}
+			GasType[] l_types = GasType.values();
+			for (int i = 0; i < CUSTOMERS_PER_TURN; i++) {
+				GasType l_type = l_types[random.generateFromRange(0, l_types.length)];
+				l_station.tryBuyGas(l_type, random.generateFromRange(MIN_VALUE_GAS_RANGE, MAX_VALUE_GAS_RANGE),
+						random.generateAroundAverage(averagePrice(l_type), GAS_PRICE_STANDARD_DEVIATION), result);
+			}
+			workers[stationId % workers.length].execute(this);
+		}
+	}
+
+	/**
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the average price of one Liter of the gas type.
+	 */
+	private static double averagePrice(GasType type) {
+		switch (type) {
+		case DIESEL:
+			return DIESEL_AVERAGE_PRICE_PER_LITER;
+		case SUPER:
+			return SUPER_AVERAGE_PRICE_PER_LITER;
+		default:
+			return REGULAR_AVERAGE_PRICE_PER_LITER;
+		}
+	}
+
+	/**
+	 * This method simulates a fleet of stations serving customers as fast as
+	 * they can.
+	 * 
+	 * @param args
+	 *            the number of stations (default 200), the number of workers
+	 *            (default the number of processors) and the duration in
+	 *            seconds (default 10).
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int l_stationsCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int l_workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		double l_seconds = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+
+		FleetRuntime l_fleet = new FleetRuntime(l_workers);
+		for (int i = 0; i < l_stationsCount; i++) {
+			// Setting up each station with instant pumps.
+			FuldaGasStation fGasStation = new FuldaGasStation();
+			fGasStation.setEventLog(StationEventLog.DISABLED);
+			for (GasType type : GasType.values()) {
+				fGasStation.addGasPump(new InstantGasPump(type, FLEET_GAS_AMOUNT));
+				fGasStation.setPrice(type, averagePrice(type));
+			}
+			l_fleet.addStation(fGasStation);
+		}
+
+		System.out.println("Fleet of " + l_stationsCount + " stations on " + l_workers + " workers for " + l_seconds
+				+ " s (random seed " + RandomUtils.getMasterSeed() + ").");
+		CountDownLatch l_stationsEnded = new CountDownLatch(l_stationsCount);
+		long l_start = System.nanoTime();
+		for (int i = 0; i < l_stationsCount; i++) {
+			l_fleet.workers[i % l_workers].execute(l_fleet.new StationCustomers(i, l_stationsEnded));
+		}
+		Thread.sleep((long) (l_seconds * 1000));
+		l_fleet.endService();
+		l_stationsEnded.await();
+		long l_elapsed = System.nanoTime() - l_start;
+		l_fleet.shutdown();
+
+		long l_reductionStart = System.nanoTime();
+		FleetStatistics l_statistics = l_fleet.getFleetStatistics();
+		long l_reduction = System.nanoTime() - l_reductionStart;
+		System.out.println("Sales: " + l_statistics.getSales() + " ("
+				+ String.format("%.0f", l_statistics.getSales() * 1e9 / l_elapsed) + " sales/s), revenue: "
+				+ String.format("%.2f", l_statistics.getRevenue()) + " Euro.");
+		System.out.println("Cancellations: " + l_statistics.getCancellationsNoGas() + " (no gas), "
+				+ l_statistics.getCancellationsTooExpensive() + " (too expensive).");
+		System.out.println("Fleet statistics reduced in " + String.format("%.2f", l_reduction / 1e6) + " ms.");
+	}
+}
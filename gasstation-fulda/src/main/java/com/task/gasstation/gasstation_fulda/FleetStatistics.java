@@ -0,0 +1,131 @@
+package com.task.gasstation.gasstation_fulda;
+
+/**
+ * This class holds the totals of the sales statistics of a fleet of gas
+ * stations.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public final class FleetStatistics {
+
+	/**
+	 * The totals of no station.
+	 */
+	static final FleetStatistics EMPTY = new FleetStatistics(0, 0, 0, 0, 0);
+
+	/**
+	 * The number of stations.
+	 */
+	private final int stations;
+
+	/**
+	 * The total revenue of the stations in cents.
+	 */
+	private final long revenue;
+
+	/**
+	 * The total number of sales of the stations.
+	 */
+	private final long sales;
+
+	/**
+	 * The purchases cancelled for lack of gas.
+	 */
+	private final long cancellationsNoGas;
+
+	/**
+	 * The purchases cancelled for expensive gas.
+	 */
+	private final long cancellationsTooExpensive;
+
+	/**
+	 * @param stations
+	 *            the number of stations.
+	 * @param revenue
+	 *            the total revenue of the stations in cents.
+	 * @param sales
+	 *            the total number of sales of the stations.
+	 * @param cancellationsNoGas
+	 *            the purchases cancelled for lack of gas.
+	 * @param cancellationsTooExpensive
+	 *            the purchases cancelled for expensive gas.
+	 */
+	FleetStatistics(int stations, long revenue, long sales, long cancellationsNoGas,
+			long cancellationsTooExpensive) {
+		this.stations = stations;
+		this.revenue = revenue;
+		this.sales = sales;
+		this.cancellationsNoGas = cancellationsNoGas;
+		this.cancellationsTooExpensive = cancellationsTooExpensive;
+	}
+
+	/**
+	 * This method reads the statistics of one station.
+	 * 
+	 * @param fGasStation
+	 *            the gas station.
+	 * 
+	 * @return the statistics of the station.
+	 */
+	static FleetStatistics of(FuldaGasStation fGasStation) {
+		return new FleetStatistics(1, FixedPoint.toCents(fGasStation.getRevenue()), fGasStation.getNumberOfSales(),
+				fGasStation.getNumberOfCancellationsNoGas(), fGasStation.getNumberOfCancellationsTooExpensive());
+	}
+
+	/**
+	 * This method adds the statistics of two groups of stations.
+	 * 
+	 * @param other
+	 *            the statistics of the other group.
+	 * 
+	 * @return the statistics of both groups.
+	 */
+	FleetStatistics combine(FleetStatistics other) {
+		return new FleetStatistics(stations + other.stations, revenue + other.revenue, sales + other.sales,
+				cancellationsNoGas + other.cancellationsNoGas,
+				cancellationsTooExpensive + other.cancellationsTooExpensive);
+	}
+
+	/**
+	 * @return the number of stations.
+	 */
+	public int getStations() {
+		return stations;
+	}
+
+	/**
+	 * @return the total revenue of the stations in Euro.
+	 */
+	public double getRevenue() {
+		return FixedPoint.toEuros(revenue);
+	}
+
+	/**
+	 * @return the total number of sales of the stations.
+	 */
+	public long getSales() {
+		return sales;
+	}
+
+	/**
+	 * @return the purchases cancelled for lack of gas.
+	 */
+	public long getCancellationsNoGas() {
+		return cancellationsNoGas;
+	}
+
+	/**
+	 * @return the purchases cancelled for expensive gas.
+	 */
+	public long getCancellationsTooExpensive() {
+		return cancellationsTooExpensive;
+	}
+
+	@Override
+	public String toString() {
+		return "FleetStatistics [stations=" + stations + ", revenue=" + getRevenue() + ", sales=" + sales
+				+ ", cancellationsNoGas=" + cancellationsNoGas + ", cancellationsTooExpensive="
+				+ cancellationsTooExpensive + "]";
+	}
+}
@@ -3,10 +3,17 @@ package com.task.gasstation.gasstation_fulda;
 import static com.task.gasstation.utils.RandomUtils.GAS_PUMPS_NUMBER;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Hashtable;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import net.bigpoint.assessment.gasstation.GasPump;
 import net.bigpoint.assessment.gasstation.GasStation;
@@ -18,7 +25,41 @@ import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
  * This class is an implementation of a the gas station interface.
  * 
  * This class is thread-safe by using several locker objects to optimize
- * performance.
+ * performance. The revenue and the sales counters are striped adders so that
+ * they never serialize the pumps against each other. The amounts of gas and
+ * the money are fixed-point longs inside the station, milliliters and cents
+ * (see FixedPoint), converted from and to the doubles of the interface at its
+ * methods, so that the revenue stays exact and the tanks are updated with
+ * plain atomic operations.
+ * 
+ * Several pumps may serve the same gas type: each sale is sent to the least
+ * busy pump of its gas type. The gas of a sale is reserved in the tank of the
+ * pump with a compare-and-set, so that the checks and the cancellations never
+ * lock; only the pumping itself holds the nozzle lock of the pump, and a failed
+ * pumping gives the reservation back.
+ * 
+ * The gas prices list is an immutable versioned snapshot published atomically,
+ * so that reading a price costs one volatile load.
+ * 
+ * The asynchronous purchases are posted to a mailbox owned by each pump, and
+ * drained by one task at a time per pump, so that the callers never park. An
+ * asynchronous purchase balks when the pump already has too many waiting
+ * orders, so that an overloaded station pushes back on its callers.
+ * 
+ * The customers may also park standing orders with a maximum price, indexed by
+ * gas type and price (see StandingOrderBook). Every price set matches the
+ * parked orders that the new price satisfies, and serves them asynchronously at
+ * that price.
+ * 
+ * The pumps, the purchases outcomes and the prices may be recorded to a sales
+ * journal, after the nozzle lock is released, so that the station can be
+ * rebuilt after a crash (see SalesJournal.recover). They may also be appended
+ * to an off-heap columnar ledger answering aggregate queries (see SalesLedger).
+ * The live rates of the last hour are counted per minute (see SalesRates).
+ * 
+ * The waits in line, the waits for the nozzle, the pumping and the price
+ * lookups may be timed per gas type into station metrics, exported to JMX by
+ * FuldaGasStationMonitor.
  * 
  * @author Maher Abdelkhalek
  * 
@@ -26,71 +67,150 @@ import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
 public class FuldaGasStation implements GasStation {
 
 	/**
-	 * The object locker of the gasPumpList objects.
+	 * The message of the rejection of an asynchronous order balking at a full
+	 * waiting line.
 	 */
-	private Map<GasType, Object> gasPumpLocksList = new HashMap<GasType, Object>(3);
+	private static final String LINE_FULL_MESSAGE = "The waiting line of the pump is full";
 
 	/**
-	 * The object locker of the revenue field.
+	 * The number of double collects of a status snapshot before it falls back
+	 * to the last consistent snapshot.
 	 */
-	private Object revenueLock = new Object();
+	private static final int MAX_COLLECTS = 16;
 
 	/**
-	 * The object locker of the numberOfSales field.
+	 * The index of the gas pumps by gas type, each pump being its own locker.
 	 */
-	private Object numberOfSalesLock = new Object();
+	private final GasPumpRegistry gasPumpRegistry = new GasPumpRegistry();
 
 	/**
-	 * The object locker of the numberOfCancellationsNoGas field.
+	 * List of gas pumps of the Fulda station.
 	 */
-	private Object numberOfCancellationsNoGasLock = new Object();
+	private List<GasPump> gasPumpsList;
 
 	/**
-	 * The object locker of the numberOfCancellationsTooExpensive field.
+	 * The total revenue of the Fulda gas station in cents.
 	 */
-	private Object numberOfCancellationsTooExpensiveLock = new Object();
+	private final LongAdder revenue = new LongAdder();
 
 	/**
-	 * The object locker of the gasPricesList objects.
+	 * The total number of sales of the Fulda gas station.
 	 */
-	private Object gasPricesListLock = new Object();
+	private final LongAdder numberOfSales = new LongAdder();
 
 	/**
-	 * List of gas pumps of the Fulda station.
+	 * The cancelled bye gas operations due to lack of gas availability.
 	 */
-	private List<GasPump> gasPumpsList;
+	private final LongAdder numberOfCancellationsNoGas = new LongAdder();
 
 	/**
-	 * The total revenue of the Fulda gas station in Euro.
+	 * The cancelled bye gas operations due to expensive gas price.
 	 */
-	private volatile double revenue;
+	private final LongAdder numberOfCancellationsTooExpensive = new LongAdder();
 
 	/**
-	 * The total number of sales of the Fulda gas station.
+	 * The cancelled bye gas operations because no pump serves the gas type,
+	 * whose increments give the ordinals of their journal records.
 	 */
-	private volatile int numberOfSales;
+	private final AtomicLong numberOfCancellationsNoPump = new AtomicLong();
 
 	/**
-	 * The cancelled bye gas operations due to lack of gas availability.
+	 * The customers who left because the waiting line was full, whose
+	 * increments give the ordinals of their journal records.
 	 */
-	private volatile int numberOfCancellationsNoGas;
+	private final AtomicLong numberOfCancellationsBalked = new AtomicLong();
 
 	/**
-	 * The cancelled bye gas operations due to expensive gas price.
+	 * The customers who left the waiting line after waiting too long, whose
+	 * increments give the ordinals of their journal records.
+	 */
+	private final AtomicLong numberOfCancellationsReneged = new AtomicLong();
+
+	/**
+	 * The last consistent status snapshot, null before the first one.
+	 */
+	private volatile StationStatus lastStatus;
+
+	/**
+	 * The number of asynchronous orders that may wait for one pump.
+	 */
+	private volatile int maxWaitingOrders = Integer.MAX_VALUE;
+
+	/**
+	 * The current snapshot of the gas prices list of one Liter in Euro for
+	 * each kind of gas.
 	 */
-	private volatile int numberOfCancellationsTooExpensive;
+	private final AtomicReference<GasPriceTable> gasPriceTable = new AtomicReference<GasPriceTable>(
+			GasPriceTable.EMPTY);
 
 	/**
-	 * The gas prices list of one Liter in Euro for each kind of gas.
+	 * The asynchronous log of the station events.
 	 */
-	private volatile Map<GasType, Double> gasPricesList;
+	private volatile StationEventLog eventLog = StationEventLog.console();
+
+	/**
+	 * The journal recording the pumps, the purchases and the prices.
+	 */
+	private volatile SalesJournal journal = SalesJournal.DISABLED;
+
+	/**
+	 * The columnar ledger of the purchases outcomes.
+	 */
+	private volatile SalesLedger ledger = SalesLedger.DISABLED;
+
+	/**
+	 * The live rates of the purchases outcomes over the last hour.
+	 */
+	private volatile SalesRates rates = new SalesRates();
+
+	/**
+	 * The latency histograms of the phases of the purchases.
+	 */
+	private volatile StationMetrics metrics = StationMetrics.DISABLED;
+
+	/**
+	 * The status of the service of the station, ended once for all.
+	 */
+	private volatile boolean serviceEnded;
+
+	/**
+	 * The result holder reused by the buyGas calls of each thread.
+	 */
+	private final ThreadLocal<SaleResult> buyGasResult = new ThreadLocal<SaleResult>() {
+		@Override
+		protected SaleResult initialValue() {
+			return new SaleResult();
+		}
+	};
+
+	/**
+	 * The standing orders waiting for a price drop.
+	 */
+	private final StandingOrderBook standingOrders = new StandingOrderBook();
+
+	/**
+	 * The executor running the drainers of the pumps mailboxes, created on the
+	 * first asynchronous purchase if none is given.
+	 */
+	private volatile Executor asyncExecutor;
 
 	/**
 	 * Constructor of the class.
 	 */
 	public FuldaGasStation() {
 		gasPumpsList = new ArrayList<GasPump>(GAS_PUMPS_NUMBER);
-		gasPricesList = new Hashtable<GasType, Double>(GAS_PUMPS_NUMBER);
+	}
+
+	/**
+	 * Constructor of the class.
+	 * 
+	 * @param asyncExecutor
+	 *            the executor running the drainers of the pumps mailboxes. At
+	 *            most one drainer per pump runs at a time.
+	 */
+	public FuldaGasStation(Executor asyncExecutor) {
+		this();
+		this.asyncExecutor = asyncExecutor;
 	}
 
 	/*
@@ -102,7 +222,8 @@ public class FuldaGasStation implements GasStation {
 	 */
 	public synchronized void addGasPump(GasPump pump) {
 		gasPumpsList.add(pump);
-		gasPumpLocksList.put(pump.getGasType(), new Object());
+		GasPumpSlot l_slot = gasPumpRegistry.add(pump);
+		journal.appendPumpAdded(pump.getGasType(), l_slot.getIndex(), pump.getRemainingAmount());
 	}
 
 	/*
@@ -122,60 +243,771 @@ public class FuldaGasStation implements GasStation {
 	 */
 	public double buyGas(GasType type, double amountInLiters, double maxPricePerLiter)
 			throws NotEnoughGasException, GasTooExpensiveException {
+		SaleResult l_result = buyGasResult.get();
+		if (tryBuyGas(type, amountInLiters, maxPricePerLiter, l_result) != SaleResult.SOLD) {
+			throwCancellation(l_result.getStatus());
+		}
+		return l_result.getPrice();
+	}
 
-		GasPump l_gasPump = null;
-		double l_priceToPayByCustomer = 0;
-		double l_unitPrice;
-		// Retrieving the gas pump for the given gas type.
-		for (GasPump gp : gasPumpsList) {
-			if (gp.getGasType().equals(type)) {
-				l_gasPump = gp;
-				break;
+	/**
+	 * This method sells gas like the buyGas method, and returns the record of
+	 * the sale with the prices list version the customer was charged at.
+	 * 
+	 * @param type
+	 *            the type of gas that the customer requests.
+	 * @param amountInLiters
+	 *            the amount of gas that the customer requests.
+	 * @param maxPricePerLiter
+	 *            the price of gas Liter that the customer expects.
+	 * 
+	 * @return the record of the sale.
+	 * 
+	 * @throws NotEnoughGasException
+	 *             if no pump of the gas type has the requested amount of gas.
+	 * @throws GasTooExpensiveException
+	 *             if the gas price is more than the customer expected.
+	 * @throws IllegalArgumentException
+	 *             if the amount is not positive, or less than half a
+	 *             milliliter.
+	 */
+	public GasSale sellGas(GasType type, double amountInLiters, double maxPricePerLiter)
+			throws NotEnoughGasException, GasTooExpensiveException {
+		SaleResult l_result = new SaleResult();
+		if (tryBuyGas(type, amountInLiters, maxPricePerLiter, l_result) != SaleResult.SOLD) {
+			throwCancellation(l_result.getStatus());
+		}
+		return new GasSale(type, amountInLiters, l_result.getUnitPrice(), l_result.getPrice(),
+				l_result.getPriceVersion());
+	}
+
+	/**
+	 * This method buys gas without throwing any exception on cancellation. The
+	 * outcome is written into a result holder that the caller may reuse from
+	 * one purchase to the next.
+	 * 
+	 * @param type
+	 *            the type of gas that the customer requests.
+	 * @param amountInLiters
+	 *            the amount of gas that the customer requests.
+	 * @param maxPricePerLiter
+	 *            the price of gas Liter that the customer expects.
+	 * @param result
+	 *            the holder of the outcome of the purchase.
+	 * 
+	 * @return the status of the purchase: SaleResult.SOLD, SaleResult.NO_GAS
+	 *         or SaleResult.TOO_EXPENSIVE.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the amount is not positive, or less than half a
+	 *             milliliter.
+	 */
+	public int tryBuyGas(GasType type, double amountInLiters, double maxPricePerLiter, SaleResult result) {
+		long l_milliliters = FixedPoint.toOrderMilliliters(amountInLiters);
+		// Retrieving the least busy gas pump for the given gas type.
+		GasPumpSlot l_slot = gasPumpRegistry.leastLoaded(type, l_milliliters);
+		if (l_slot == null) {
+			result.set(SaleResult.NO_GAS, 0, GasPriceTable.NO_PRICE, -1);
+			result.setOrdinal(numberOfCancellationsNoPump.incrementAndGet());
+		} else {
+			l_slot.enter();
+			try {
+				// Reserving the gas without locking, then locking the nozzle
+				// of the pump only to pump the reserved gas.
+				if (reserveOrder(l_slot, gasPriceTable.get(), type, l_milliliters, maxPricePerLiter,
+						result) == SaleResult.SOLD) {
+					publishPumping(type, l_milliliters);
+					StationMetrics l_metrics = metrics;
+					long l_lockStart = l_metrics.start();
+					synchronized (l_slot) {
+						l_metrics.record(type, StationMetrics.LOCK_WAIT, l_lockStart);
+						pumpOrder(l_slot, type, l_milliliters, result);
+					}
+				}
+			} finally {
+				l_slot.leave();
 			}
 		}
-		// Locking the access of each thread wanting to acquire the pump object
-		// in question.
-		synchronized (gasPumpLocksList.get(type)) {
-			// Check of gas amount availability
-			if (l_gasPump.getRemainingAmount() >= amountInLiters) {
-				// Locking the access to the gasPricesList
-				synchronized (gasPricesListLock) {
-					l_unitPrice = getPrice(l_gasPump.getGasType());
+		journal.appendOutcome(type, l_slot == null ? -1 : l_slot.getIndex(), amountInLiters, result);
+		ledger.appendOutcome(type, amountInLiters, result);
+		rates.recordOutcome(type, result);
+		return countOutcome(result);
+	}
+
+	/**
+	 * This method updates the striped sales counters without any lock with the
+	 * outcome of one purchase.
+	 * 
+	 * @param result
+	 *            the outcome of the purchase.
+	 * 
+	 * @return the status of the purchase.
+	 */
+	private int countOutcome(SaleResult result) {
+		switch (result.getStatus()) {
+		case SaleResult.SOLD:
+			numberOfSales.increment();
+			revenue.add(result.getPriceInCents());
+			break;
+		case SaleResult.TOO_EXPENSIVE:
+			numberOfCancellationsTooExpensive.increment();
+			break;
+		default:
+			numberOfCancellationsNoGas.increment();
+			break;
+		}
+		return result.getStatus();
+	}
+
+	/**
+	 * This method throws the exception of the interface contract matching a
+	 * cancellation status. The exceptions do not fill in their stack trace.
+	 * 
+	 * @param status
+	 *            the status of the cancelled purchase.
+	 * 
+	 * @throws NotEnoughGasException
+	 *             if the status is SaleResult.NO_GAS.
+	 * @throws GasTooExpensiveException
+	 *             if the status is SaleResult.TOO_EXPENSIVE.
+	 */
+	private static void throwCancellation(int status) throws NotEnoughGasException, GasTooExpensiveException {
+		if (status == SaleResult.TOO_EXPENSIVE) {
+			throw new StacklessGasTooExpensiveException();
+		}
+		throw new StacklessNotEnoughGasException();
+	}
+
+	/**
+	 * This method buys gas without blocking the caller. The order is posted to
+	 * the mailbox of the least busy pump of the gas type, and served by the
+	 * drainer of that pump.
+	 * 
+	 * @param type
+	 *            the type of gas that the customer requests.
+	 * @param amountInLiters
+	 *            the amount of gas that the customer requests.
+	 * @param maxPricePerLiter
+	 *            the price of gas Liter that the customer expects.
+	 * 
+	 * @return the future amount in Euro charged to the customer, completed
+	 *         exceptionally with NotEnoughGasException or
+	 *         GasTooExpensiveException if the sale is cancelled, or with
+	 *         RejectedExecutionException if the customer balks because the
+	 *         pump has too many waiting orders.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the amount is not positive, or less than half a
+	 *             milliliter.
+	 */
+	public CompletableFuture<Double> buyGasAsync(GasType type, double amountInLiters, double maxPricePerLiter) {
+		long l_milliliters = FixedPoint.toOrderMilliliters(amountInLiters);
+		PendingGasOrder l_order = new PendingGasOrder(type, amountInLiters, maxPricePerLiter, metrics.start());
+		// Retrieving the least busy gas pump for the given gas type.
+		GasPumpSlot l_slot = gasPumpRegistry.leastLoaded(type, l_milliliters);
+		if (l_slot != null && !l_slot.tryEnter(maxWaitingOrders)) {
+			// Even the least busy pump has a full waiting line.
+			recordBalking(type, amountInLiters);
+			l_order.completeExceptionally(new StacklessRejectedExecutionException(LINE_FULL_MESSAGE));
+			return l_order;
+		}
+		dispatch(l_order, l_slot);
+		return l_order;
+	}
+
+	/**
+	 * This method posts an asynchronous order to the mailbox of a pump, and
+	 * starts the drainer of the pump if it is not running yet.
+	 * 
+	 * @param order
+	 *            the order.
+	 * @param slot
+	 *            the pump, null if no pump serves the gas type of the order.
+	 */
+	private void post(PendingGasOrder order, GasPumpSlot slot) {
+		if (slot != null) {
+			slot.enter();
+		}
+		dispatch(order, slot);
+	}
+
+	/**
+	 * This method hands an asynchronous order over to the mailbox of a pump
+	 * that the order has entered, and starts the drainer of the pump if it is
+	 * not running yet.
+	 * 
+	 * @param order
+	 *            the order.
+	 * @param slot
+	 *            the pump, null if no pump serves the gas type of the order.
+	 */
+	private void dispatch(PendingGasOrder order, final GasPumpSlot slot) {
+		if (slot == null) {
+			journal.appendNoGas(order.type, order.amountInLiters, numberOfCancellationsNoPump.incrementAndGet());
+			ledger.appendCancellation(order.type, SaleResult.NO_GAS, order.amountInLiters);
+			rates.recordCancellation(order.type);
+			numberOfCancellationsNoGas.increment();
+			order.completeExceptionally(new StacklessNotEnoughGasException());
+			return;
+		}
+		if (slot.post(order)) {
+			try {
+				getAsyncExecutor().execute(new Runnable() {
+					public void run() {
+						drainMailbox(slot);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				rejectMailbox(slot, e);
+			}
+		}
+	}
+
+	/**
+	 * This method fails the asynchronous orders of a pump whose drainer could
+	 * not be started, until its mailbox is empty. The caller takes the place
+	 * of the drainer, so that the next post starts a drainer again.
+	 * 
+	 * @param slot
+	 *            the pump.
+	 * @param rejection
+	 *            the rejection of the drainer by the executor.
+	 */
+	private static void rejectMailbox(GasPumpSlot slot, RejectedExecutionException rejection) {
+		int l_missed = 1;
+		do {
+			PendingGasOrder l_order;
+			while ((l_order = slot.poll()) != null) {
+				slot.leave();
+				l_order.completeExceptionally(rejection);
+			}
+			l_missed = slot.acknowledge(l_missed);
+		} while (l_missed != 0);
+	}
+
+	/**
+	 * This method parks a standing order until the price of the gas type
+	 * drops to the maximum price of the customer, then buys gas like the
+	 * buyGasAsync method, at the price that matched the order. An order that
+	 * the current price already satisfies is served at once.
+	 * 
+	 * @param type
+	 *            the type of gas that the customer requests.
+	 * @param amountInLiters
+	 *            the amount of gas that the customer requests.
+	 * @param maxPricePerLiter
+	 *            the price of gas Liter that the customer expects.
+	 * 
+	 * @return the future amount in Euro charged to the customer, completed
+	 *         exceptionally with NotEnoughGasException if the sale is
+	 *         cancelled once matched. Cancelling the future withdraws the
+	 *         order if it is still parked.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the amount is not positive, or less than half a
+	 *             milliliter, or if the maximum price is NaN.
+	 */
+	public CompletableFuture<Double> placeStandingOrder(GasType type, double amountInLiters,
+			double maxPricePerLiter) {
+		// Rejecting an amount that cannot be pumped before parking the order.
+		FixedPoint.toOrderMilliliters(amountInLiters);
+		// A NaN maximum price would sort before every order and match any
+		// price.
+		if (Double.isNaN(maxPricePerLiter)) {
+			throw new IllegalArgumentException("Not a maximum price: " + maxPricePerLiter);
+		}
+		StandingGasOrder l_order = standingOrders.park(type, amountInLiters, maxPricePerLiter);
+		// The price may satisfy the order already, or have dropped while the
+		// order was parked.
+		matchStandingOrders(type);
+		return l_order;
+	}
+
+	/**
+	 * This method serves the parked orders of a gas type that its current
+	 * price satisfies, from the highest maximum price down.
+	 * 
+	 * @param type
+	 *            the gas type.
+	 */
+	private void matchStandingOrders(GasType type) {
+		GasPriceTable l_prices = gasPriceTable.get();
+		double l_price = l_prices.getPriceOrNaN(type);
+		if (Double.isNaN(l_price)) {
+			return;
+		}
+		StandingGasOrder l_order;
+		while ((l_order = standingOrders.pollAtOrAbove(type, l_price)) != null) {
+			// Charging the order at the prices list that matched it.
+			l_order.prices = l_prices;
+			l_order.postedAt = metrics.start();
+			post(l_order, gasPumpRegistry.leastLoaded(type, FixedPoint.toMilliliters(l_order.amountInLiters)));
+		}
+	}
+
+	/**
+	 * This method returns the number of standing orders parked for a gas
+	 * type. It walks the parked orders.
+	 * 
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the number of parked orders of the gas type.
+	 */
+	public int getNumberOfStandingOrders(GasType type) {
+		return standingOrders.size(type);
+	}
+
+	/**
+	 * This method serves the asynchronous orders of a pump until its mailbox
+	 * is empty. Only one drainer per pump runs at a time.
+	 * 
+	 * @param slot
+	 *            the pump to drain.
+	 */
+	private void drainMailbox(GasPumpSlot slot) {
+		SaleResult l_result = new SaleResult();
+		int l_missed = 1;
+		do {
+			PendingGasOrder l_order;
+			while ((l_order = slot.poll()) != null) {
+				StationMetrics l_metrics = metrics;
+				l_metrics.record(l_order.type, StationMetrics.QUEUE_WAIT, l_order.postedAt);
+				try {
+					// The nozzle lock is uncontended unless synchronous buyers
+					// use the same pump.
+					GasPriceTable l_prices = l_order.prices != null ? l_order.prices : gasPriceTable.get();
+					long l_milliliters = FixedPoint.toMilliliters(l_order.amountInLiters);
+					if (reserveOrder(slot, l_prices, l_order.type, l_milliliters, l_order.maxPricePerLiter,
+							l_result) == SaleResult.SOLD) {
+						publishPumping(l_order.type, l_milliliters);
+						long l_lockStart = l_metrics.start();
+						synchronized (slot) {
+							l_metrics.record(l_order.type, StationMetrics.LOCK_WAIT, l_lockStart);
+							pumpOrder(slot, l_order.type, l_milliliters, l_result);
+						}
+					}
+				} catch (RuntimeException e) {
+					slot.leave();
+					l_order.completeExceptionally(e);
+					continue;
 				}
-				// Check of customer gas pricing expectation.
-				if (l_unitPrice <= maxPricePerLiter) {
-					System.out
-							.println(l_gasPump.getGasType() + " pump: Pumping " + amountInLiters + "L in progress...");
-					// Launch gas pumping operation.
-					l_gasPump.pumpGas(amountInLiters);
-					// Calculating the amount that the current customer has to
-					// pay.
-					l_priceToPayByCustomer = l_unitPrice * amountInLiters;
-					// Locking the access to numberOfSales variable.
-					synchronized (numberOfSalesLock) {
-						numberOfSales++;
+				slot.leave();
+				journal.appendOutcome(l_order.type, slot.getIndex(), l_order.amountInLiters, l_result);
+				ledger.appendOutcome(l_order.type, l_order.amountInLiters, l_result);
+				rates.recordOutcome(l_order.type, l_result);
+				switch (countOutcome(l_result)) {
+				case SaleResult.SOLD:
+					l_order.complete(l_result.getPrice());
+					break;
+				case SaleResult.TOO_EXPENSIVE:
+					l_order.completeExceptionally(new StacklessGasTooExpensiveException());
+					break;
+				default:
+					l_order.completeExceptionally(new StacklessNotEnoughGasException());
+					break;
+				}
+			}
+			l_missed = slot.acknowledge(l_missed);
+		} while (l_missed != 0);
+	}
+
+	/**
+	 * @return the executor running the drainers of the pumps mailboxes.
+	 */
+	private Executor getAsyncExecutor() {
+		Executor l_executor = asyncExecutor;
+		if (l_executor == null) {
+			synchronized (this) {
+				l_executor = asyncExecutor;
+				if (l_executor == null) {
+					// One thread at most per pump, since a pump has one
+					// drainer at a time.
+					l_executor = Executors.newCachedThreadPool(new StationExecutors.NamedThreadFactory("pump", true));
+					asyncExecutor = l_executor;
+				}
+			}
+		}
+		return l_executor;
+	}
+
+	/**
+	 * This method buys gas for a burst of orders. The orders are grouped by gas
+	 * type, and each group is reserved in the tank of one pump, then pumped
+	 * under one acquisition of its nozzle lock, at the prices of one prices
+	 * list version. An order that the tank of the group pump cannot serve
+	 * falls back to another pump of its gas type. The counters and the revenue
+	 * are updated once per batch, with the orders served even if a pumping
+	 * fails.
+	 * 
+	 * @param orders
+	 *            the orders of the customers.
+	 * 
+	 * @return the outcome of each order, in the order of the given orders.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the amount of an order is not positive, or less than half
+	 *             a milliliter. No order of the batch is served then.
+	 */
+	public List<SaleResult> buyGasBatch(List<GasOrder> orders) {
+		GasType[] l_types = GasType.values();
+		SaleResult[] l_results = new SaleResult[orders.size()];
+		// The pump of each order, and whether its outcome is final.
+		GasPumpSlot[] l_slots = new GasPumpSlot[l_results.length];
+		boolean[] l_finished = new boolean[l_results.length];
+		int[][] l_groups = new int[l_types.length][];
+		int[] l_groupSizes = new int[l_types.length];
+		long[] l_groupAmounts = new long[l_types.length];
+		// Reading the prices list snapshot shared by the whole batch.
+		GasPriceTable l_prices = gasPriceTable.get();
+		// Grouping the orders by gas type.
+		for (GasOrder order : orders) {
+			l_groupSizes[order.getType().ordinal()]++;
+		}
+		for (int t = 0; t < l_types.length; t++) {
+			l_groups[t] = new int[l_groupSizes[t]];
+			l_groupSizes[t] = 0;
+		}
+		for (int i = 0; i < l_results.length; i++) {
+			GasOrder l_order = orders.get(i);
+			int l_type = l_order.getType().ordinal();
+			l_groups[l_type][l_groupSizes[l_type]++] = i;
+			l_groupAmounts[l_type] += FixedPoint.toOrderMilliliters(l_order.getAmountInLiters());
+			l_results[i] = new SaleResult();
+		}
+		try {
+			// Serving each group with one pump.
+			for (int t = 0; t < l_types.length; t++) {
+				if (l_groupSizes[t] == 0) {
+					continue;
+				}
+				GasPumpSlot l_slot = gasPumpRegistry.leastLoaded(l_types[t], l_groupAmounts[t]);
+				if (l_slot == null) {
+					for (int i : l_groups[t]) {
+						l_finished[i] = true;
 					}
-					// Locking the access to revenue variable.
-					synchronized (revenueLock) {
-						revenue += l_priceToPayByCustomer;
+					continue;
+				}
+				l_slot.enter();
+				try {
+					boolean l_reserved = false;
+					try {
+						for (int i : l_groups[t]) {
+							GasOrder l_order = orders.get(i);
+							long l_milliliters = FixedPoint.toMilliliters(l_order.getAmountInLiters());
+							if (l_slot.getAvailableAmount() >= l_milliliters) {
+								l_slots[i] = l_slot;
+								l_reserved |= reserveOrder(l_slot, l_prices, l_types[t], l_milliliters,
+										l_order.getMaxPricePerLiter(), l_results[i]) == SaleResult.SOLD;
+							} else {
+								// Falling back to another pump that has the gas.
+								l_slots[i] = gasPumpRegistry.leastLoaded(l_types[t], l_milliliters);
+								buyFromPump(l_slots[i], l_prices, l_types[t], l_milliliters,
+										l_order.getMaxPricePerLiter(), l_results[i]);
+							}
+							l_finished[i] = l_results[i].getStatus() != SaleResult.SOLD || l_slots[i] != l_slot;
+						}
+					} catch (RuntimeException e) {
+						// Giving back the gas reserved in the group pump.
+						for (int i : l_groups[t]) {
+							if (!l_finished[i] && l_slots[i] == l_slot) {
+								l_slot.release(FixedPoint.toMilliliters(orders.get(i).getAmountInLiters()));
+							}
+						}
+						throw e;
 					}
-				} else {
-					// Locking the access to numberOfCancellationsTooExpensive
-					// variable.
-					synchronized (numberOfCancellationsTooExpensiveLock) {
-						numberOfCancellationsTooExpensive++;
+					if (l_reserved) {
+						pumpGroup(l_slot, l_types[t], orders, l_groups[t], l_slots, l_results, l_finished);
 					}
-					throw new GasTooExpensiveException();
+				} finally {
+					l_slot.leave();
 				}
-			} else {
-				// Locking the access to numberOfCancellationsNoGas variable.
-				synchronized (numberOfCancellationsNoGasLock) {
-					numberOfCancellationsNoGas++;
+			}
+		} finally {
+			countBatchOutcomes(orders, l_slots, l_finished, l_results);
+		}
+		return Arrays.asList(l_results);
+	}
+
+	/**
+	 * This method reserves and pumps one order at a given pump, like tryBuyGas
+	 * without the journal and the counters.
+	 * 
+	 * @param slot
+	 *            the pump.
+	 * @param prices
+	 *            the prices list snapshot to charge the order at.
+	 * @param type
+	 *            the type of gas that the customer requests.
+	 * @param milliliters
+	 *            the amount of gas that the customer requests in milliliters.
+	 * @param maxPricePerLiter
+	 *            the price of gas Liter that the customer expects.
+	 * @param result
+	 *            the holder of the outcome of the order.
+	 */
+	private void buyFromPump(GasPumpSlot slot, GasPriceTable prices, GasType type, long milliliters,
+			double maxPricePerLiter, SaleResult result) {
+		slot.enter();
+		try {
+			if (reserveOrder(slot, prices, type, milliliters, maxPricePerLiter, result) == SaleResult.SOLD) {
+				publishPumping(type, milliliters);
+				StationMetrics l_metrics = metrics;
+				long l_lockStart = l_metrics.start();
+				synchronized (slot) {
+					l_metrics.record(type, StationMetrics.LOCK_WAIT, l_lockStart);
+					pumpOrder(slot, type, milliliters, result);
 				}
-				throw new NotEnoughGasException();
 			}
+		} finally {
+			slot.leave();
+		}
+	}
+
+	/**
+	 * This method records the final outcomes of a batch in the journal, the
+	 * ledger and the rates, and updates the striped sales counters once for the
+	 * whole batch. The orders left unfinished by a failed pumping are not
+	 * counted, like a failed tryBuyGas.
+	 * 
+	 * @param orders
+	 *            the orders of the batch.
+	 * @param slots
+	 *            the pump of each order, null if no pump served its gas type.
+	 * @param finished
+	 *            whether the outcome of each order is final.
+	 * @param results
+	 *            the outcomes of the orders.
+	 */
+	private void countBatchOutcomes(List<GasOrder> orders, GasPumpSlot[] slots, boolean[] finished,
+			SaleResult[] results) {
+		int l_sales = 0;
+		int l_cancellationsNoGas = 0;
+		int l_cancellationsTooExpensive = 0;
+		long l_revenue = 0;
+		for (int i = 0; i < results.length; i++) {
+			if (!finished[i]) {
+				continue;
+			}
+			GasType l_type = orders.get(i).getType();
+			double l_amountInLiters = orders.get(i).getAmountInLiters();
+			if (slots[i] == null) {
+				results[i].setOrdinal(numberOfCancellationsNoPump.incrementAndGet());
+			}
+			journal.appendOutcome(l_type, slots[i] == null ? -1 : slots[i].getIndex(), l_amountInLiters, results[i]);
+			ledger.appendOutcome(l_type, l_amountInLiters, results[i]);
+			rates.recordOutcome(l_type, results[i]);
+			switch (results[i].getStatus()) {
+			case SaleResult.SOLD:
+				l_sales++;
+				l_revenue += results[i].getPriceInCents();
+				break;
+			case SaleResult.TOO_EXPENSIVE:
+				l_cancellationsTooExpensive++;
+				break;
+			default:
+				l_cancellationsNoGas++;
+				break;
+			}
+		}
+		if (l_sales > 0) {
+			numberOfSales.add(l_sales);
+			revenue.add(l_revenue);
+		}
+		if (l_cancellationsNoGas > 0) {
+			numberOfCancellationsNoGas.add(l_cancellationsNoGas);
+		}
+		if (l_cancellationsTooExpensive > 0) {
+			numberOfCancellationsTooExpensive.add(l_cancellationsTooExpensive);
 		}
-		return l_priceToPayByCustomer;
+	}
+
+	/**
+	 * This method checks one order against a pump and reserves its gas in the
+	 * tank of the pump, without any lock. A reserved order is SOLD in the
+	 * result, and has to be pumped by pumpOrder. The caller updates the
+	 * counters.
+	 * 
+	 * @param slot
+	 *            the pump.
+	 * @param prices
+	 *            the prices list snapshot to charge the order at.
+	 * @param type
+	 *            the type of gas that the customer requests.
+	 * @param milliliters
+	 *            the amount of gas that the customer requests in milliliters.
+	 * @param maxPricePerLiter
+	 *            the price of gas Liter that the customer expects.
+	 * @param result
+	 *            the holder of the outcome of the order.
+	 * 
+	 * @return the status of the order.
+	 */
+	private int reserveOrder(GasPumpSlot slot, GasPriceTable prices, GasType type, long milliliters,
+			double maxPricePerLiter, SaleResult result) {
+		// Check of gas amount availability, before looking at the price.
+		if (slot.getAvailableAmount() < milliliters) {
+			result.set(SaleResult.NO_GAS, 0, GasPriceTable.NO_PRICE, prices.getVersion());
+			result.setOrdinal(slot.getStatistics().recordNoGas());
+			return SaleResult.NO_GAS;
+		}
+		StationMetrics l_metrics = metrics;
+		long l_lookupStart = l_metrics.start();
+		long l_unitPrice = prices.getPriceInCents(type);
+		l_metrics.record(type, StationMetrics.PRICE_LOOKUP, l_lookupStart);
+		// Check of customer gas pricing expectation, a NaN maximum price
+		// accepting no price.
+		if (!(FixedPoint.toEuros(l_unitPrice) <= maxPricePerLiter)) {
+			result.set(SaleResult.TOO_EXPENSIVE, 0, l_unitPrice, prices.getVersion());
+			result.setOrdinal(slot.getStatistics().recordTooExpensive());
+			return SaleResult.TOO_EXPENSIVE;
+		}
+		// Reserving the gas, which fails if another customer took it meanwhile.
+		if (!slot.reserve(milliliters)) {
+			result.set(SaleResult.NO_GAS, 0, GasPriceTable.NO_PRICE, prices.getVersion());
+			result.setOrdinal(slot.getStatistics().recordNoGas());
+			return SaleResult.NO_GAS;
+		}
+		// Calculating the amount that the current customer has to pay.
+		return result.set(SaleResult.SOLD, FixedPoint.charge(milliliters, l_unitPrice), l_unitPrice,
+				prices.getVersion());
+	}
+
+	/**
+	 * This method publishes the pumping event of a reserved order. The caller
+	 * does not hold the nozzle lock yet, so that a full event log never stalls
+	 * the buyers of the pump.
+	 * 
+	 * @param type
+	 *            the type of gas that the customer requests.
+	 * @param milliliters
+	 *            the reserved amount of gas in milliliters.
+	 */
+	private void publishPumping(GasType type, long milliliters) {
+		eventLog.publish(StationEvent.PUMPING, type, 0, FixedPoint.toLiters(milliliters), 0, 0);
+	}
+
+	/**
+	 * This method pumps the gas of a reserved order, and commits the sale in
+	 * the statistics of the pump. The caller holds the nozzle lock of the pump,
+	 * and published the pumping event before taking it. If the pumping fails,
+	 * the reservation is given back to the tank.
+	 * 
+	 * @param slot
+	 *            the locked pump.
+	 * @param type
+	 *            the type of gas that the customer requests.
+	 * @param milliliters
+	 *            the reserved amount of gas in milliliters.
+	 * @param result
+	 *            the outcome of the reservation of the order.
+	 */
+	private void pumpOrder(GasPumpSlot slot, GasType type, long milliliters, SaleResult result) {
+		GasPump l_gasPump = slot.getGasPump();
+		StationMetrics l_metrics = metrics;
+		slot.setPumping(true);
+		long l_pumpStart = l_metrics.start();
+		try {
+			// Launch gas pumping operation.
+			l_gasPump.pumpGas(FixedPoint.toLiters(milliliters));
+		} catch (RuntimeException e) {
+			slot.release(milliliters);
+			throw e;
+		} finally {
+			slot.setPumping(false);
+		}
+		l_metrics.record(type, StationMetrics.PUMPING, l_pumpStart);
+		result.setOrdinal(slot.getStatistics().recordSale(result.getPriceInCents(), milliliters));
+	}
+
+	/**
+	 * This method pumps the reserved orders of a group under one acquisition
+	 * of the nozzle lock of the pump. If a pumping fails, the reservations of
+	 * the orders not pumped yet are given back to the tank.
+	 * 
+	 * @param slot
+	 *            the pump.
+	 * @param type
+	 *            the gas type of the group.
+	 * @param orders
+	 *            the orders of the batch.
+	 * @param group
+	 *            the indexes of the orders of the group.
+	 * @param slots
+	 *            the pump of each order of the batch.
+	 * @param results
+	 *            the outcomes of the reservations of the orders.
+	 * @param finished
+	 *            whether the outcome of each order is final, set for the
+	 *            pumped orders.
+	 */
+	private void pumpGroup(GasPumpSlot slot, GasType type, List<GasOrder> orders, int[] group, GasPumpSlot[] slots,
+			SaleResult[] results, boolean[] finished) {
+		for (int i : group) {
+			if (!finished[i] && slots[i] == slot) {
+				publishPumping(type, FixedPoint.toMilliliters(orders.get(i).getAmountInLiters()));
+			}
+		}
+		int l_pumped = 0;
+		StationMetrics l_metrics = metrics;
+		long l_lockStart = l_metrics.start();
+		try {
+			synchronized (slot) {
+				l_metrics.record(type, StationMetrics.LOCK_WAIT, l_lockStart);
+				for (; l_pumped < group.length; l_pumped++) {
+					int i = group[l_pumped];
+					if (!finished[i] && slots[i] == slot) {
+						pumpOrder(slot, type, FixedPoint.toMilliliters(orders.get(i).getAmountInLiters()), results[i]);
+						finished[i] = true;
+					}
+				}
+			}
+		} catch (RuntimeException e) {
+			// The failed order gave its reservation back already.
+			for (int k = l_pumped + 1; k < group.length; k++) {
+				int i = group[k];
+				if (!finished[i] && slots[i] == slot) {
+					slot.release(FixedPoint.toMilliliters(orders.get(i).getAmountInLiters()));
+				}
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * This method returns the number of pumps serving a given gas type.
+	 * 
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the number of pumps of the gas type.
+	 */
+	public int getNumberOfGasPumps(GasType type) {
+		return gasPumpRegistry.getSlots(type).length;
+	}
+
+	/**
+	 * This method returns the pumps serving a given gas type.
+	 * 
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the pumps of the gas type, never null.
+	 */
+	GasPumpSlot[] getSlots(GasType type) {
+		return gasPumpRegistry.getSlots(type);
+	}
+
+	/**
+	 * This method returns the remaining amount of gas of a given gas type.
+	 * 
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the sum of the remaining amounts of the pumps of the gas type.
+	 */
+	public double getRemainingAmount(GasType type) {
+		return gasPumpRegistry.getRemainingAmount(type);
 	}
 
 	/*
@@ -184,9 +1016,7 @@ public class FuldaGasStation implements GasStation {
 	 * @see net.bigpoint.assessment.gasstation.GasStation#getRevenue()
 	 */
 	public double getRevenue() {
-		synchronized (revenueLock) {
-			return revenue;
-		}
+		return FixedPoint.toEuros(revenue.sum());
 	}
 
 	/*
@@ -195,9 +1025,7 @@ public class FuldaGasStation implements GasStation {
 	 * @see net.bigpoint.assessment.gasstation.GasStation#getNumberOfSales()
 	 */
 	public int getNumberOfSales() {
-		synchronized (numberOfSalesLock) {
-			return numberOfSales;
-		}
+		return numberOfSales.intValue();
 	}
 
 	/*
@@ -207,9 +1035,7 @@ public class FuldaGasStation implements GasStation {
 	 * getNumberOfCancellationsNoGas()
 	 */
 	public int getNumberOfCancellationsNoGas() {
-		synchronized (numberOfCancellationsNoGasLock) {
-			return numberOfCancellationsNoGas;
-		}
+		return numberOfCancellationsNoGas.intValue();
 	}
 
 	/*
@@ -219,9 +1045,7 @@ public class FuldaGasStation implements GasStation {
 	 * getNumberOfCancellationsTooExpensive()
 	 */
 	public int getNumberOfCancellationsTooExpensive() {
-		synchronized (numberOfCancellationsTooExpensiveLock) {
-			return numberOfCancellationsTooExpensive;
-		}
+		return numberOfCancellationsTooExpensive.intValue();
 	}
 
 	/*
@@ -231,9 +1055,7 @@ public class FuldaGasStation implements GasStation {
 	 * assessment.gasstation.GasType)
 	 */
 	public double getPrice(GasType type) {
-		synchronized (gasPricesListLock) {
-			return gasPricesList.get(type);
-		}
+		return gasPriceTable.get().getPrice(type);
 	}
 
 	/*
@@ -243,42 +1065,379 @@ public class FuldaGasStation implements GasStation {
 	 * assessment.gasstation.GasType, double)
 	 */
 	public void setPrice(GasType type, double price) {
-		synchronized (gasPricesListLock) {
-			gasPricesList.put(type, price);
+		GasPriceTable l_current;
+		GasPriceTable l_next;
+		do {
+			l_current = gasPriceTable.get();
+			l_next = l_current.withPrice(type, price);
+		} while (!gasPriceTable.compareAndSet(l_current, l_next));
+		journal.appendPrice(type, l_next);
+		// Serving the standing orders if the price dropped.
+		matchStandingOrders(type);
+	}
+
+	/**
+	 * This method sets several gas prices at once, publishing them in one new
+	 * version of the prices list.
+	 * 
+	 * @param prices
+	 *            the new prices of one Liter in Euro by gas type.
+	 */
+	public void setPrices(Map<GasType, Double> prices) {
+		GasPriceTable l_current;
+		GasPriceTable l_next;
+		do {
+			l_current = gasPriceTable.get();
+			l_next = l_current.withPrices(prices);
+		} while (!gasPriceTable.compareAndSet(l_current, l_next));
+		for (GasType type : prices.keySet()) {
+			journal.appendPrice(type, l_next);
+		}
+		// Serving the standing orders of the prices that dropped.
+		for (GasType type : prices.keySet()) {
+			matchStandingOrders(type);
+		}
+	}
+
+	/**
+	 * This method adds a pump to a station rebuilt after a restart, with the
+	 * statistics the pump had before the restart.
+	 * 
+	 * @param pump
+	 *            the pump, with its remaining amount of gas.
+	 * @param sales
+	 *            the number of sales of the pump.
+	 * @param revenue
+	 *            the revenue of the pump in cents.
+	 * @param cancellationsNoGas
+	 *            the purchases cancelled by the pump for lack of gas.
+	 * @param cancellationsTooExpensive
+	 *            the purchases cancelled by the pump for expensive gas.
+	 */
+	synchronized void restorePump(GasPump pump, long sales, long revenue, long cancellationsNoGas,
+			long cancellationsTooExpensive) {
+		gasPumpsList.add(pump);
+		GasPumpSlot l_slot = gasPumpRegistry.add(pump);
+		synchronized (l_slot) {
+			l_slot.getStatistics().restore(sales, revenue, cancellationsNoGas, cancellationsTooExpensive);
+		}
+		this.revenue.add(revenue);
+		numberOfSales.add(sales);
+		numberOfCancellationsNoGas.add(cancellationsNoGas);
+		numberOfCancellationsTooExpensive.add(cancellationsTooExpensive);
+	}
+
+	/**
+	 * This method restores the prices list and the purchases cancelled
+	 * before reaching a pump, of a station rebuilt after a restart.
+	 * 
+	 * @param cancellationsNoPump
+	 *            the purchases cancelled because no pump served their gas
+	 *            type.
+	 * @param cancellationsBalked
+	 *            the customers who left because the waiting line was full.
+	 * @param cancellationsReneged
+	 *            the customers who left the waiting line after waiting too
+	 *            long.
+	 * @param prices
+	 *            the prices list.
+	 */
+	void restore(long cancellationsNoPump, long cancellationsBalked, long cancellationsReneged,
+			GasPriceTable prices) {
+		numberOfCancellationsNoPump.addAndGet(cancellationsNoPump);
+		numberOfCancellationsNoGas.add(cancellationsNoPump);
+		numberOfCancellationsBalked.addAndGet(cancellationsBalked);
+		numberOfCancellationsReneged.addAndGet(cancellationsReneged);
+		gasPriceTable.set(prices);
+	}
+
+	/**
+	 * This method reads the state of every pump without stopping the sales.
+	 * Each pump state is read between two sales of the pump.
+	 * 
+	 * @return the states of the pumps, ordered by gas type and position.
+	 */
+	public List<PumpState> getPumpStates() {
+		List<PumpState> l_states = new ArrayList<PumpState>();
+		for (GasType type : GasType.values()) {
+			for (GasPumpSlot slot : gasPumpRegistry.getSlots(type)) {
+				l_states.add(slot.getStatistics().read(type, slot.getIndex()));
+			}
+		}
+		return l_states;
+	}
+
+	/**
+	 * This method takes a snapshot of the whole station without stopping the
+	 * sales.
+	 * 
+	 * The states of the pumps are read by a double collect over their sequence
+	 * locks: the sequences and the states of all the pumps are read, then the
+	 * sequences again, and the collect is repeated until no pump recorded a
+	 * sale in between. The pumps are then all seen as they were at one same
+	 * instant, so that the sales, the revenue and the tank levels of the
+	 * snapshot always agree, while a sale never waits for a snapshot. After
+	 * MAX_COLLECTS failed collects, the last consistent snapshot is returned
+	 * instead, marked as stale, or the collects go on if there is none yet. The
+	 * cancellations never change the tank nor the revenue: they are counted
+	 * apart, without any lock, and read with the pump states. The prices are
+	 * one immutable table.
+	 * 
+	 * @return the status of the station, with its prices and pump states.
+	 */
+	public StationStatus getStatusSnapshot() {
+		GasPriceTable l_prices = gasPriceTable.get();
+		List<GasPumpSlot> l_slots = new ArrayList<GasPumpSlot>();
+		for (GasType type : GasType.values()) {
+			l_slots.addAll(Arrays.asList(gasPumpRegistry.getSlots(type)));
+		}
+		long[] l_sequences = new long[l_slots.size()];
+		PumpState[] l_states = new PumpState[l_slots.size()];
+		int l_collects = 1;
+		while (!collectPumpStates(l_slots, l_sequences, l_states)) {
+			StationStatus l_lastStatus = lastStatus;
+			if (l_collects++ >= MAX_COLLECTS && l_lastStatus != null) {
+				// The sales keep overlapping the collects.
+				return l_lastStatus.asStale();
+			}
+			Thread.yield();
+		}
+		long l_revenue = 0;
+		long l_sales = 0;
+		long l_noGas = numberOfCancellationsNoPump.get();
+		long l_tooExpensive = 0;
+		for (PumpState state : l_states) {
+			l_revenue += FixedPoint.toCents(state.getRevenue());
+			l_sales += state.getSales();
+			l_noGas += state.getCancellationsNoGas();
+			l_tooExpensive += state.getCancellationsTooExpensive();
+		}
+		StationStatus l_status = new StationStatus(FixedPoint.toEuros(l_revenue), (int) l_sales, (int) l_noGas,
+				(int) l_tooExpensive, getNumberOfCancellationsBalked(), getNumberOfCancellationsReneged(), l_prices,
+				Collections.unmodifiableList(Arrays.asList(l_states)), false);
+		lastStatus = l_status;
+		return l_status;
+	}
+
+	/**
+	 * This method makes one double collect of the pump states.
+	 * 
+	 * @param slots
+	 *            the pumps.
+	 * @param sequences
+	 *            the sequences of the pumps, filled by the first collect.
+	 * @param states
+	 *            the states of the pumps, filled by the first collect.
+	 * 
+	 * @return true if no pump recorded a sale during the collect.
+	 */
+	private static boolean collectPumpStates(List<GasPumpSlot> slots, long[] sequences, PumpState[] states) {
+		for (int i = 0; i < states.length; i++) {
+			GasPumpSlot l_slot = slots.get(i);
+			sequences[i] = l_slot.getStatistics().getSequence();
+			if ((sequences[i] & 1) != 0) {
+				return false;
+			}
+			states[i] = l_slot.getStatistics().readUnchecked(l_slot.getGasPump().getGasType(), l_slot.getIndex());
+		}
+		for (int i = 0; i < states.length; i++) {
+			if (slots.get(i).getStatistics().getSequence() != sequences[i]) {
+				return false;
+			}
 		}
+		return true;
+	}
+
+	/**
+	 * @return the purchases cancelled because no pump served their gas type.
+	 */
+	public int getNumberOfCancellationsNoPump() {
+		return numberOfCancellationsNoPump.intValue();
+	}
+
+	/**
+	 * This method records a customer who left because the waiting line of the
+	 * gas type was full.
+	 * 
+	 * @param type
+	 *            the type of gas that the customer requested.
+	 * @param amountInLiters
+	 *            the amount of gas that the customer requested.
+	 */
+	public void recordBalking(GasType type, double amountInLiters) {
+		journal.appendLeft(SalesJournal.BALKED, type, amountInLiters, numberOfCancellationsBalked.incrementAndGet());
+		ledger.appendCancellation(type, SalesLedger.BALKED, amountInLiters);
+		rates.recordCancellation(type);
+	}
+
+	/**
+	 * This method records a customer who left the waiting line of the gas type
+	 * after waiting too long.
+	 * 
+	 * @param type
+	 *            the type of gas that the customer requested.
+	 * @param amountInLiters
+	 *            the amount of gas that the customer requested.
+	 */
+	public void recordReneging(GasType type, double amountInLiters) {
+		journal.appendLeft(SalesJournal.RENEGED, type, amountInLiters, numberOfCancellationsReneged.incrementAndGet());
+		ledger.appendCancellation(type, SalesLedger.RENEGED, amountInLiters);
+		rates.recordCancellation(type);
+	}
+
+	/**
+	 * @return the customers who left because the waiting line was full.
+	 */
+	public int getNumberOfCancellationsBalked() {
+		return numberOfCancellationsBalked.intValue();
+	}
+
+	/**
+	 * @return the customers who left the waiting line after waiting too long.
+	 */
+	public int getNumberOfCancellationsReneged() {
+		return numberOfCancellationsReneged.intValue();
+	}
+
+	/**
+	 * @return the number of asynchronous orders that may wait for one pump.
+	 */
+	public int getMaxWaitingOrders() {
+		return maxWaitingOrders;
+	}
+
+	/**
+	 * @param maxWaitingOrders
+	 *            the number of asynchronous orders that may wait for one
+	 *            pump, beyond which the new orders balk.
+	 */
+	public void setMaxWaitingOrders(int maxWaitingOrders) {
+		this.maxWaitingOrders = maxWaitingOrders;
+	}
+
+	/**
+	 * This method ends the service of the station: its customers incoming and
+	 * its prices updates stop, once the customers being served left.
+	 */
+	public void endService() {
+		serviceEnded = true;
+	}
+
+	/**
+	 * @return true if the service of the station has ended.
+	 */
+	public boolean isServiceEnded() {
+		return serviceEnded;
+	}
+
+	/**
+	 * @return the asynchronous log of the station events.
+	 */
+	public StationEventLog getEventLog() {
+		return eventLog;
+	}
+
+	/**
+	 * @param eventLog
+	 *            the asynchronous log of the station events,
+	 *            StationEventLog.DISABLED to log nothing.
+	 */
+	public void setEventLog(StationEventLog eventLog) {
+		this.eventLog = eventLog;
+	}
+
+	/**
+	 * @return the journal recording the pumps, the purchases and the prices.
+	 */
+	public SalesJournal getJournal() {
+		return journal;
+	}
+
+	/**
+	 * @param journal
+	 *            the journal recording the pumps, the purchases and the
+	 *            prices, SalesJournal.DISABLED to record nothing.
+	 */
+	public void setJournal(SalesJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * @return the columnar ledger of the purchases outcomes.
+	 */
+	public SalesLedger getLedger() {
+		return ledger;
+	}
+
+	/**
+	 * @param ledger
+	 *            the columnar ledger of the purchases outcomes,
+	 *            SalesLedger.DISABLED to record nothing.
+	 */
+	public void setLedger(SalesLedger ledger) {
+		this.ledger = ledger;
+	}
+
+	/**
+	 * @return the live rates of the purchases outcomes over the last hour.
+	 */
+	public SalesRates getRates() {
+		return rates;
+	}
+
+	/**
+	 * @param rates
+	 *            the live rates of the purchases outcomes over the last hour,
+	 *            counted by their own clock.
+	 */
+	public void setRates(SalesRates rates) {
+		this.rates = rates;
+	}
+
+	/**
+	 * @return the latency histograms of the phases of the purchases.
+	 */
+	public StationMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @param metrics
+	 *            the latency histograms of the phases of the purchases,
+	 *            StationMetrics.DISABLED to time nothing.
+	 */
+	public void setMetrics(StationMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return the current snapshot of the gas prices list.
+	 */
+	public GasPriceTable getPriceTable() {
+		return gasPriceTable.get();
 	}
 
 	@Override
 	public String toString() {
-		return "FuldaGasStation [gasPumpLocksList=" + gasPumpLocksList + ", revenueLock=" + revenueLock
-				+ ", numberOfSalesLock=" + numberOfSalesLock + ", numberOfCancellationsNoGasLock="
-				+ numberOfCancellationsNoGasLock + ", numberOfCancellationsTooExpensiveLock="
-				+ numberOfCancellationsTooExpensiveLock + ", gasPricesListLock=" + gasPricesListLock + ", gasPumpsList="
-				+ gasPumpsList + ", revenue=" + revenue + ", numberOfSales=" + numberOfSales
-				+ ", numberOfCancellationsNoGas=" + numberOfCancellationsNoGas + ", numberOfCancellationsTooExpensive="
-				+ numberOfCancellationsTooExpensive + ", gasPricesList=" + gasPricesList + "]";
+		return "FuldaGasStation [gasPumpRegistry=" + gasPumpRegistry + ", gasPumpsList=" + gasPumpsList
+				+ ", revenue=" + getRevenue() + ", numberOfSales=" + numberOfSales + ", numberOfCancellationsNoGas="
+				+ numberOfCancellationsNoGas + ", numberOfCancellationsTooExpensive="
+				+ numberOfCancellationsTooExpensive + ", gasPriceTable=" + gasPriceTable + "]";
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((gasPricesList == null) ? 0 : gasPricesList.hashCode());
-		result = prime * result + ((gasPricesListLock == null) ? 0 : gasPricesListLock.hashCode());
-		result = prime * result + ((gasPumpLocksList == null) ? 0 : gasPumpLocksList.hashCode());
+		result = prime * result + getPriceTable().hashCode();
+		result = prime * result + ((gasPumpRegistry == null) ? 0 : gasPumpRegistry.hashCode());
 		result = prime * result + ((gasPumpsList == null) ? 0 : gasPumpsList.hashCode());
-		result = prime * result + numberOfCancellationsNoGas;
-		result = prime * result
-				+ ((numberOfCancellationsNoGasLock == null) ? 0 : numberOfCancellationsNoGasLock.hashCode());
-		result = prime * result + numberOfCancellationsTooExpensive;
-		result = prime * result + ((numberOfCancellationsTooExpensiveLock == null) ? 0
-				: numberOfCancellationsTooExpensiveLock.hashCode());
-		result = prime * result + numberOfSales;
-		result = prime * result + ((numberOfSalesLock == null) ? 0 : numberOfSalesLock.hashCode());
+		result = prime * result + getNumberOfCancellationsNoGas();
+		result = prime * result + getNumberOfCancellationsTooExpensive();
+		result = prime * result + getNumberOfSales();
 		long temp;
-		temp = Double.doubleToLongBits(revenue);
+		temp = Double.doubleToLongBits(getRevenue());
 		result = prime * result + (int) (temp ^ (temp >>> 32));
-		result = prime * result + ((revenueLock == null) ? 0 : revenueLock.hashCode());
 		return result;
 	}
 
@@ -291,54 +1450,26 @@ public class FuldaGasStation implements GasStation {
 		if (getClass() != obj.getClass())
 			return false;
 		FuldaGasStation other = (FuldaGasStation) obj;
-		if (gasPricesList == null) {
-			if (other.gasPricesList != null)
-				return false;
-		} else if (!gasPricesList.equals(other.gasPricesList))
-			return false;
-		if (gasPricesListLock == null) {
-			if (other.gasPricesListLock != null)
-				return false;
-		} else if (!gasPricesListLock.equals(other.gasPricesListLock))
+		if (!getPriceTable().equals(other.getPriceTable()))
 			return false;
-		if (gasPumpLocksList == null) {
-			if (other.gasPumpLocksList != null)
+		if (gasPumpRegistry == null) {
+			if (other.gasPumpRegistry != null)
 				return false;
-		} else if (!gasPumpLocksList.equals(other.gasPumpLocksList))
+		} else if (!gasPumpRegistry.equals(other.gasPumpRegistry))
 			return false;
 		if (gasPumpsList == null) {
 			if (other.gasPumpsList != null)
 				return false;
 		} else if (!gasPumpsList.equals(other.gasPumpsList))
 			return false;
-		if (numberOfCancellationsNoGas != other.numberOfCancellationsNoGas)
-			return false;
-		if (numberOfCancellationsNoGasLock == null) {
-			if (other.numberOfCancellationsNoGasLock != null)
-				return false;
-		} else if (!numberOfCancellationsNoGasLock.equals(other.numberOfCancellationsNoGasLock))
-			return false;
-		if (numberOfCancellationsTooExpensive != other.numberOfCancellationsTooExpensive)
-			return false;
-		if (numberOfCancellationsTooExpensiveLock == null) {
-			if (other.numberOfCancellationsTooExpensiveLock != null)
-				return false;
-		} else if (!numberOfCancellationsTooExpensiveLock.equals(other.numberOfCancellationsTooExpensiveLock))
-			return false;
-		if (numberOfSales != other.numberOfSales)
+		if (getNumberOfCancellationsNoGas() != other.getNumberOfCancellationsNoGas())
 			return false;
-		if (numberOfSalesLock == null) {
-			if (other.numberOfSalesLock != null)
-				return false;
-		} else if (!numberOfSalesLock.equals(other.numberOfSalesLock))
+		if (getNumberOfCancellationsTooExpensive() != other.getNumberOfCancellationsTooExpensive())
 			return false;
-		if (Double.doubleToLongBits(revenue) != Double.doubleToLongBits(other.revenue))
+		if (getNumberOfSales() != other.getNumberOfSales())
 			return false;
-		if (revenueLock == null) {
-			if (other.revenueLock != null)
-				return false;
-		} else if (!revenueLock.equals(other.revenueLock))
+		if (Double.doubleToLongBits(getRevenue()) != Double.doubleToLongBits(other.getRevenue()))
 			return false;
 		return true;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,106 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.util.Map;
+
+/**
+ * This interface is the management view of a Fulda gas station: its sales
+ * counters, the latencies of the phases of its purchases, and the load of its
+ * pumps.
+ * 
+ * The pumps are named by their gas type and position, like "DIESEL#0", and the
+ * latencies by their gas type, phase and percentile, like
+ * "DIESEL.LOCK_WAIT.p99", in nanoseconds.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public interface FuldaGasStationMXBean {
+
+	/**
+	 * @return the total revenue of the station in Euro.
+	 */
+	double getRevenue();
+
+	/**
+	 * @return the total number of sales of the station.
+	 */
+	int getNumberOfSales();
+
+	/**
+	 * @return the purchases cancelled for lack of gas.
+	 */
+	int getNumberOfCancellationsNoGas();
+
+	/**
+	 * @return the purchases cancelled for expensive gas.
+	 */
+	int getNumberOfCancellationsTooExpensive();
+
+	/**
+	 * @return the customers who left because the waiting line was full.
+	 */
+	int getNumberOfCancellationsBalked();
+
+	/**
+	 * @return the customers who left the waiting line after waiting too long.
+	 */
+	int getNumberOfCancellationsReneged();
+
+	/**
+	 * @return true if the station records the latencies of the phases.
+	 */
+	boolean isMetricsEnabled();
+
+	/**
+	 * @return the count, p50, p99, p99.9 and max latencies of every phase of
+	 *         every gas type.
+	 */
+	Map<String, Long> getPhaseLatencies();
+
+	/**
+	 * This method computes one percentile of the latencies of a phase.
+	 * 
+	 * @param type
+	 *            the name of the gas type.
+	 * @param phase
+	 *            the name of the phase: QUEUE_WAIT, LOCK_WAIT, PUMPING or
+	 *            PRICE_LOOKUP.
+	 * @param percentile
+	 *            the percentage, between 0 and 100.
+	 * 
+	 * @return the latency in nanoseconds.
+	 */
+	long getLatencyAtPercentile(String type, String phase, double percentile);
+
+	/**
+	 * @return the number of customers waiting for every pump, without the
+	 *         customer being pumped.
+	 */
+	Map<String, Integer> getQueueDepths();
+
+	/**
+	 * @return the number of customers being served or waiting for every pump.
+	 */
+	Map<String, Integer> getInFlightCustomers();
+
+	/**
+	 * @return the number of standing orders parked for every gas type.
+	 */
+	Map<String, Integer> getStandingOrders();
+
+	/**
+	 * @return the sales per minute over the last 5, 15 and 60 minutes.
+	 */
+	Map<String, Double> getSalesPerMinute();
+
+	/**
+	 * @return the share of the purchases cancelled over the last 15 minutes
+	 *         for every gas type.
+	 */
+	Map<String, Double> getCancellationRatios();
+
+	/**
+	 * This method forgets all the recorded latencies.
+	 */
+	void resetLatencies();
+}
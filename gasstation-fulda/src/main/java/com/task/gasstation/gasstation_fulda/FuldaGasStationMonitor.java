@@ -0,0 +1,264 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class exposes a Fulda gas station to JMX as a platform MXBean.
+ * 
+ * Every attribute is computed on demand from the lock-free counters of the
+ * station and of its pumps, so that a JMX client never slows the sales down.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public final class FuldaGasStationMonitor implements FuldaGasStationMXBean {
+
+	/**
+	 * The domain of the object names of the stations.
+	 */
+	public static final String DOMAIN = "com.task.gasstation";
+
+	/**
+	 * The percentiles exported for every phase.
+	 */
+	private static final double[] PERCENTILES = { 50, 99, 99.9 };
+
+	/**
+	 * The suffixes of the exported percentiles.
+	 */
+	private static final String[] PERCENTILE_SUFFIXES = { "p50", "p99", "p999" };
+
+	/**
+	 * The monitored station.
+	 */
+	private final FuldaGasStation fGasStation;
+
+	/**
+	 * @param fGasStation
+	 *            the monitored station.
+	 */
+	public FuldaGasStationMonitor(FuldaGasStation fGasStation) {
+		this.fGasStation = fGasStation;
+	}
+
+	/**
+	 * This method registers the monitor of a station in the platform MBean
+	 * server.
+	 * 
+	 * @param fGasStation
+	 *            the station to monitor.
+	 * @param name
+	 *            the name of the station, unique in the JVM.
+	 * 
+	 * @return the object name of the monitor.
+	 * 
+	 * @throws JMException
+	 *             if the name is malformed or already registered.
+	 */
+	public static ObjectName register(FuldaGasStation fGasStation, String name) throws JMException {
+		ObjectName l_name = new ObjectName(DOMAIN + ":type=FuldaGasStation,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(new FuldaGasStationMonitor(fGasStation), l_name);
+		return l_name;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.task.gasstation.gasstation_fulda.FuldaGasStationMXBean#getRevenue()
+	 */
+	public double getRevenue() {
+		return fGasStation.getRevenue();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.task.gasstation.gasstation_fulda.FuldaGasStationMXBean#
+	 * getNumberOfSales()
+	 */
+	public int getNumberOfSales() {
+		return fGasStation.getNumberOfSales();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.task.gasstation.gasstation_fulda.FuldaGasStationMXBean#
+	 * getNumberOfCancellationsNoGas()
+	 */
+	public int getNumberOfCancellationsNoGas() {
+		return fGasStation.getNumberOfCancellationsNoGas();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.task.gasstation.gasstation_fulda.FuldaGasStationMXBean#
+	 * getNumberOfCancellationsTooExpensive()
+	 */
+	public int getNumberOfCancellationsTooExpensive() {
+		return fGasStation.getNumberOfCancellationsTooExpensive();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.task.gasstation.gasstation_fulda.FuldaGasStationMXBean#
+	 * getNumberOfCancellationsBalked()
+	 */
+	public int getNumberOfCancellationsBalked() {
+		return fGasStation.getNumberOfCancellationsBalked();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.task.gasstation.gasstation_fulda.FuldaGasStationMXBean#
+	 * getNumberOfCancellationsReneged()
+	 */
+	public int getNumberOfCancellationsReneged() {
+		return fGasStation.getNumberOfCancellationsReneged();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.task.gasstation.gasstation_fulda.FuldaGasStationMXBean#
+	 * isMetricsEnabled()
+	 */
+	public boolean isMetricsEnabled() {
+		return fGasStation.getMetrics().isEnabled();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.task.gasstation.gasstation_fulda.FuldaGasStationMXBean#
+	 * getPhaseLatencies()
+	 */
+	public Map<String, Long> getPhaseLatencies() {
+		StationMetrics l_metrics = fGasStation.getMetrics();
+		Map<String, Long> l_latencies = new LinkedHashMap<String, Long>();
+		for (GasType type : GasType.values()) {
+			for (int p = 0; p < StationMetrics.getPhaseCount(); p++) {
+				LatencyHistogram l_histogram = l_metrics.getHistogram(type, p);
+				String l_prefix = type + "." + StationMetrics.getPhaseName(p) + ".";
+				l_latencies.put(l_prefix + "count", l_histogram.getCount());
+				for (int i = 0; i < PERCENTILES.length; i++) {
+					l_latencies.put(l_prefix + PERCENTILE_SUFFIXES[i],
+							l_histogram.getValueAtPercentile(PERCENTILES[i]));
+				}
+				l_latencies.put(l_prefix + "max", l_histogram.getMax());
+			}
+		}
+		return l_latencies;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.task.gasstation.gasstation_fulda.FuldaGasStationMXBean#
+	 * getLatencyAtPercentile(java.lang.String, java.lang.String, double)
+	 */
+	public long getLatencyAtPercentile(String type, String phase, double percentile) {
+		return fGasStation.getMetrics().getHistogram(GasType.valueOf(type.toUpperCase()),
+				StationMetrics.getPhase(phase)).getValueAtPercentile(percentile);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.task.gasstation.gasstation_fulda.FuldaGasStationMXBean#
+	 * getQueueDepths()
+	 */
+	public Map<String, Integer> getQueueDepths() {
+		Map<String, Integer> l_depths = new LinkedHashMap<String, Integer>();
+		for (GasType type : GasType.values()) {
+			for (GasPumpSlot slot : fGasStation.getSlots(type)) {
+				l_depths.put(type + "#" + slot.getIndex(), slot.getQueueDepth());
+			}
+		}
+		return l_depths;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.task.gasstation.gasstation_fulda.FuldaGasStationMXBean#
+	 * getInFlightCustomers()
+	 */
+	public Map<String, Integer> getInFlightCustomers() {
+		Map<String, Integer> l_inFlight = new LinkedHashMap<String, Integer>();
+		for (GasType type : GasType.values()) {
+			for (GasPumpSlot slot : fGasStation.getSlots(type)) {
+				l_inFlight.put(type + "#" + slot.getIndex(), slot.getInFlight());
+			}
+		}
+		return l_inFlight;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.task.gasstation.gasstation_fulda.FuldaGasStationMXBean#
+	 * getStandingOrders()
+	 */
+	public Map<String, Integer> getStandingOrders() {
+		Map<String, Integer> l_standingOrders = new LinkedHashMap<String, Integer>();
+		for (GasType type : GasType.values()) {
+			l_standingOrders.put(type.toString(), fGasStation.getNumberOfStandingOrders(type));
+		}
+		return l_standingOrders;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.task.gasstation.gasstation_fulda.FuldaGasStationMXBean#
+	 * getSalesPerMinute()
+	 */
+	public Map<String, Double> getSalesPerMinute() {
+		Map<String, Double> l_salesPerMinute = new LinkedHashMap<String, Double>();
+		for (int minutes : new int[] { 5, 15, 60 }) {
+			l_salesPerMinute.put(minutes + "min", fGasStation.getRates().getSalesPerMinute(minutes));
+		}
+		return l_salesPerMinute;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.task.gasstation.gasstation_fulda.FuldaGasStationMXBean#
+	 * getCancellationRatios()
+	 */
+	public Map<String, Double> getCancellationRatios() {
+		Map<String, Double> l_ratios = new LinkedHashMap<String, Double>();
+		for (GasType type : GasType.values()) {
+			l_ratios.put(type.toString(), fGasStation.getRates().getCancellationRatio(type, 15));
+		}
+		return l_ratios;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.task.gasstation.gasstation_fulda.FuldaGasStationMXBean#
+	 * resetLatencies()
+	 */
+	public void resetLatencies() {
+		fGasStation.getMetrics().reset();
+	}
+
+	@Override
+	public String toString() {
+		return "FuldaGasStationMonitor [fGasStation=" + fGasStation + "]";
+	}
+}
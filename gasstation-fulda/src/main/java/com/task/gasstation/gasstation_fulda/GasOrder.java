@@ -0,0 +1,68 @@
+package com.task.gasstation.gasstation_fulda;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is the immutable request of one customer to buy gas.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public final class GasOrder {
+
+	/**
+	 * The type of gas that the customer requests.
+	 */
+	private final GasType type;
+
+	/**
+	 * The amount of gas in Liter that the customer requests.
+	 */
+	private final double amountInLiters;
+
+	/**
+	 * The price of gas Liter in Euro that the customer expects.
+	 */
+	private final double maxPricePerLiter;
+
+	/**
+	 * @param type
+	 *            the type of gas that the customer requests.
+	 * @param amountInLiters
+	 *            the amount of gas in Liter that the customer requests.
+	 * @param maxPricePerLiter
+	 *            the price of gas Liter in Euro that the customer expects.
+	 */
+	public GasOrder(GasType type, double amountInLiters, double maxPricePerLiter) {
+		this.type = type;
+		this.amountInLiters = amountInLiters;
+		this.maxPricePerLiter = maxPricePerLiter;
+	}
+
+	/**
+	 * @return the type of gas that the customer requests.
+	 */
+	public GasType getType() {
+		return type;
+	}
+
+	/**
+	 * @return the amount of gas in Liter that the customer requests.
+	 */
+	public double getAmountInLiters() {
+		return amountInLiters;
+	}
+
+	/**
+	 * @return the price of gas Liter in Euro that the customer expects.
+	 */
+	public double getMaxPricePerLiter() {
+		return maxPricePerLiter;
+	}
+
+	@Override
+	public String toString() {
+		return "GasOrder [type=" + type + ", amountInLiters=" + amountInLiters + ", maxPricePerLiter="
+				+ maxPricePerLiter + "]";
+	}
+}
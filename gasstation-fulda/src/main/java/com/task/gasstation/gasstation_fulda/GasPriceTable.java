@@ -0,0 +1,204 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is an immutable snapshot of the gas prices list of the Fulda gas
+ * station.
+ * 
+ * The prices are kept in cents, as primitive values indexed by the gas type
+ * ordinal, and every new snapshot carries the next version number, so that a
+ * sale can tell which prices list it was charged at. The prices in Euro are
+ * rounded to the cent when they are set.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public final class GasPriceTable {
+
+	/**
+	 * The empty prices list, before any price is set.
+	 */
+	static final GasPriceTable EMPTY;
+
+	/**
+	 * The price in cents of a gas type whose price is not set.
+	 */
+	static final long NO_PRICE = Long.MIN_VALUE;
+
+	static {
+		long[] l_prices = new long[GasType.values().length];
+		Arrays.fill(l_prices, NO_PRICE);
+		EMPTY = new GasPriceTable(l_prices, 0);
+	}
+
+	/**
+	 * The price of one Liter in cents indexed by the gas type ordinal,
+	 * NO_PRICE when the price is not set.
+	 */
+	private final long[] prices;
+
+	/**
+	 * The version number of the prices list.
+	 */
+	private final long version;
+
+	/**
+	 * @param prices
+	 *            the prices in cents indexed by the gas type ordinal, owned by
+	 *            the new snapshot.
+	 * @param version
+	 *            the version number of the prices list.
+	 */
+	private GasPriceTable(long[] prices, long version) {
+		this.prices = prices;
+		this.version = version;
+	}
+
+	/**
+	 * @param prices
+	 *            the prices in Euro indexed by the gas type ordinal, NaN when
+	 *            the price is not set.
+	 * @param version
+	 *            the version number of the prices list.
+	 */
+	GasPriceTable(double[] prices, long version) {
+		this(new long[prices.length], version);
+		for (int i = 0; i < prices.length; i++) {
+			this.prices[i] = Double.isNaN(prices[i]) ? NO_PRICE : FixedPoint.toCents(prices[i]);
+		}
+	}
+
+	/**
+	 * This method returns the price of one Liter of a given gas type.
+	 * 
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the price of one Liter in Euro.
+	 * 
+	 * @throws IllegalStateException
+	 *             if no price is set for the gas type.
+	 */
+	public double getPrice(GasType type) {
+		return FixedPoint.toEuros(getPriceInCents(type));
+	}
+
+	/**
+	 * This method returns the price of one Liter of a given gas type in cents.
+	 * 
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the price of one Liter in cents.
+	 * 
+	 * @throws IllegalStateException
+	 *             if no price is set for the gas type.
+	 */
+	long getPriceInCents(GasType type) {
+		long l_price = prices[type.ordinal()];
+		if (l_price == NO_PRICE) {
+			throw new IllegalStateException("No price is set for " + type + " gas.");
+		}
+		return l_price;
+	}
+
+	/**
+	 * This method returns the price of one Liter of a given gas type, or NaN
+	 * if no price is set.
+	 * 
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the price of one Liter in Euro, or NaN.
+	 */
+	double getPriceOrNaN(GasType type) {
+		long l_price = prices[type.ordinal()];
+		return l_price == NO_PRICE ? Double.NaN : FixedPoint.toEuros(l_price);
+	}
+
+	/**
+	 * This method returns the price of one Liter of a given gas type in cents,
+	 * or NO_PRICE if no price is set.
+	 * 
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the price of one Liter in cents, or NO_PRICE.
+	 */
+	long getPriceInCentsOrNone(GasType type) {
+		return prices[type.ordinal()];
+	}
+
+	/**
+	 * @return the version number of the prices list.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * This method creates the next snapshot with one new price.
+	 * 
+	 * @param type
+	 *            the gas type.
+	 * @param price
+	 *            the new price of one Liter in Euro.
+	 * 
+	 * @return the next version of the prices list.
+	 */
+	GasPriceTable withPrice(GasType type, double price) {
+		long[] l_prices = prices.clone();
+		l_prices[type.ordinal()] = FixedPoint.toCents(price);
+		return new GasPriceTable(l_prices, version + 1);
+	}
+
+	/**
+	 * This method creates the next snapshot with several new prices.
+	 * 
+	 * @param newPrices
+	 *            the new prices of one Liter in Euro by gas type.
+	 * 
+	 * @return the next version of the prices list.
+	 */
+	GasPriceTable withPrices(Map<GasType, Double> newPrices) {
+		long[] l_prices = prices.clone();
+		for (Map.Entry<GasType, Double> entry : newPrices.entrySet()) {
+			l_prices[entry.getKey().ordinal()] = FixedPoint.toCents(entry.getValue());
+		}
+		return new GasPriceTable(l_prices, version + 1);
+	}
+
+	@Override
+	public String toString() {
+		return "GasPriceTable [prices=" + Arrays.toString(prices) + ", version=" + version + "]";
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Arrays.hashCode(prices);
+		result = prime * result + (int) (version ^ (version >>> 32));
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		GasPriceTable other = (GasPriceTable) obj;
+		if (!Arrays.equals(prices, other.prices))
+			return false;
+		if (version != other.version)
+			return false;
+		return true;
+	}
+}
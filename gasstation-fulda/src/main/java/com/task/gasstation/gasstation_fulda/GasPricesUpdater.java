@@ -2,54 +2,109 @@ package com.task.gasstation.gasstation_fulda;
 
 import static com.task.gasstation.utils.RandomUtils.DIESEL_AVERAGE_PRICE_PER_LITER;
 import static com.task.gasstation.utils.RandomUtils.GAS_PRICE_STANDARD_DEVIATION;
+import static com.task.gasstation.utils.RandomUtils.PRICES_UPDATES_STREAM;
 import static com.task.gasstation.utils.RandomUtils.REGULAR_AVERAGE_PRICE_PER_LITER;
 import static com.task.gasstation.utils.RandomUtils.SUPER_AVERAGE_PRICE_PER_LITER;
 import static com.task.gasstation.utils.RandomUtils.UPDATE_GAS_PRICE_MAX_TIME_PERIOD;
 import static com.task.gasstation.utils.RandomUtils.UPDATE_GAS_PRICE_MIN_TIME_PERIOD;
-import static com.task.gasstation.utils.RandomUtils.generateAroundAverage;
-import static com.task.gasstation.utils.RandomUtils.generateFromRange;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.task.gasstation.utils.RandomStream;
+import com.task.gasstation.utils.RandomUtils;
+
+import net.bigpoint.assessment.gasstation.GasType;
 
 /**
- * This class represents the thread handling the gas pricing updates.
+ * This class represents the task handling the gas pricing updates.
+ * 
+ * Each run of the task updates the gas prices, then schedules the next run on
+ * the shared scheduler after a random period.
  * 
  * @author Maher Abdelkhalek
  *
  */
-public class GasPricesUpdater extends Thread {
+public class GasPricesUpdater implements Runnable {
 
 	/**
 	 * The Fulda gas station object.
 	 */
 	private FuldaGasStation fGasStation;
 
+	/**
+	 * The execution layer running the prices updates.
+	 */
+	private StationExecutors executors;
+
+	/**
+	 * The random stream of the gas prices updates.
+	 */
+	private final RandomStream random = RandomUtils.newStream(PRICES_UPDATES_STREAM);
+
+	/**
+	 * Released when the prices updates stopped after the end of service.
+	 */
+	private final CountDownLatch serviceEnded = new CountDownLatch(1);
+
 	/**
 	 * @param fGasStation
+	 * @param executors
 	 */
-	public GasPricesUpdater(FuldaGasStation fGasStation) {
+	public GasPricesUpdater(FuldaGasStation fGasStation, StationExecutors executors) {
 		this.fGasStation = fGasStation;
+		this.executors = executors;
+	}
+
+	/**
+	 * This method starts the gas prices updates.
+	 */
+	public void start() {
+		scheduleNextUpdate();
+	}
+
+	/**
+	 * This method waits until the prices updates stopped after the end of
+	 * service.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void awaitEnd() throws InterruptedException {
+		serviceEnded.await();
+	}
+
+	/**
+	 * This method schedules the next gas prices update operation after a
+	 * random period.
+	 */
+	private void scheduleNextUpdate() {
+		executors.getScheduler().schedule(this,
+				random.generateFromRange(UPDATE_GAS_PRICE_MIN_TIME_PERIOD, UPDATE_GAS_PRICE_MAX_TIME_PERIOD),
+				TimeUnit.MILLISECONDS);
 	}
 
 	@Override
 	public void run() {
-		//the prices updating process still working until the gas station ends the service.
-		while (!GasStationServiceSimulator.stationServiceEnd) {
-			try {
-				// waiting for the next gas prices update operation until the
-				// sleep time is reached.
-				Thread.sleep(generateFromRange(UPDATE_GAS_PRICE_MIN_TIME_PERIOD, UPDATE_GAS_PRICE_MAX_TIME_PERIOD));
-			} catch (InterruptedException e) {
-			}
-			// generating new price values with random way.
-			fGasStation.setPrice(fGasStation.getGasPumps().get(0).getGasType(),
-					generateAroundAverage(DIESEL_AVERAGE_PRICE_PER_LITER, GAS_PRICE_STANDARD_DEVIATION));
-			fGasStation.setPrice(fGasStation.getGasPumps().get(1).getGasType(),
-					generateAroundAverage(REGULAR_AVERAGE_PRICE_PER_LITER, GAS_PRICE_STANDARD_DEVIATION));
-			fGasStation.setPrice(fGasStation.getGasPumps().get(2).getGasType(),
-					generateAroundAverage(SUPER_AVERAGE_PRICE_PER_LITER, GAS_PRICE_STANDARD_DEVIATION));
-
-			System.out.println();
-			System.out.println("The gas prices had new values as follows:");
-			GasStationServiceSimulator.displayGasPricesList(fGasStation);
+		// the prices updating process still working until the gas station ends
+		// the service.
+		if (fGasStation.isServiceEnded()) {
+			serviceEnded.countDown();
+			return;
 		}
+		// generating new price values with random way.
+		Map<GasType, Double> l_prices = new EnumMap<GasType, Double>(GasType.class);
+		l_prices.put(GasType.DIESEL,
+				random.generateAroundAverage(DIESEL_AVERAGE_PRICE_PER_LITER, GAS_PRICE_STANDARD_DEVIATION));
+		l_prices.put(GasType.REGULAR,
+				random.generateAroundAverage(REGULAR_AVERAGE_PRICE_PER_LITER, GAS_PRICE_STANDARD_DEVIATION));
+		l_prices.put(GasType.SUPER,
+				random.generateAroundAverage(SUPER_AVERAGE_PRICE_PER_LITER, GAS_PRICE_STANDARD_DEVIATION));
+		// publishing the new prices all at once.
+		fGasStation.setPrices(l_prices);
+
+		fGasStation.getEventLog().publishPrices(fGasStation.getPriceTable());
+		scheduleNextUpdate();
 	}
 }
\ No newline at end of file
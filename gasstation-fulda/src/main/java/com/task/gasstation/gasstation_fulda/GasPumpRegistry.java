@@ -0,0 +1,110 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.util.EnumMap;
+
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is the index of the gas pumps of the Fulda gas station by gas
+ * type.
+ * 
+ * The index is copied on write: adding a pump publishes a new map, so that the
+ * lookups of the sale path are lock-free and cost one EnumMap access.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+class GasPumpRegistry {
+
+	/**
+	 * The empty pumps array returned for a gas type without any pump.
+	 */
+	private static final GasPumpSlot[] NO_SLOTS = new GasPumpSlot[0];
+
+	/**
+	 * The pumps of the station indexed by their gas type.
+	 */
+	private volatile EnumMap<GasType, GasPumpSlot[]> slotsByType = new EnumMap<GasType, GasPumpSlot[]>(GasType.class);
+
+	/**
+	 * This method registers a new gas pump.
+	 * 
+	 * @param pump
+	 *            the gas pump to register.
+	 * 
+	 * @return the registered pump.
+	 */
+	synchronized GasPumpSlot add(GasPump pump) {
+		EnumMap<GasType, GasPumpSlot[]> l_slotsByType = new EnumMap<GasType, GasPumpSlot[]>(slotsByType);
+		GasPumpSlot[] l_slots = getSlots(pump.getGasType());
+		GasPumpSlot[] l_newSlots = new GasPumpSlot[l_slots.length + 1];
+		System.arraycopy(l_slots, 0, l_newSlots, 0, l_slots.length);
+		l_newSlots[l_slots.length] = new GasPumpSlot(pump, l_slots.length);
+		l_slotsByType.put(pump.getGasType(), l_newSlots);
+		slotsByType = l_slotsByType;
+		return l_newSlots[l_slots.length];
+	}
+
+	/**
+	 * This method returns the pumps serving a given gas type.
+	 * 
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the pumps of the gas type, never null.
+	 */
+	GasPumpSlot[] getSlots(GasType type) {
+		GasPumpSlot[] l_slots = slotsByType.get(type);
+		return l_slots == null ? NO_SLOTS : l_slots;
+	}
+
+	/**
+	 * This method selects the least busy pump of a given gas type.
+	 * 
+	 * The pumps that still have the requested amount of gas are preferred, so
+	 * that a customer is not sent to an empty pump while another one of the
+	 * same type could serve him.
+	 * 
+	 * @param type
+	 *            the gas type.
+	 * @param milliliters
+	 *            the amount of gas that the customer requests in milliliters.
+	 * 
+	 * @return the selected pump, or null if no pump serves the gas type.
+	 */
+	GasPumpSlot leastLoaded(GasType type, long milliliters) {
+		GasPumpSlot l_best = null;
+		boolean l_bestHasGas = false;
+		for (GasPumpSlot slot : getSlots(type)) {
+			boolean l_hasGas = slot.getAvailableAmount() >= milliliters;
+			if (l_best == null || (l_hasGas && !l_bestHasGas)
+					|| (l_hasGas == l_bestHasGas && slot.getInFlight() < l_best.getInFlight())) {
+				l_best = slot;
+				l_bestHasGas = l_hasGas;
+			}
+		}
+		return l_best;
+	}
+
+	/**
+	 * This method computes the remaining amount of gas of a given gas type.
+	 * 
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the sum of the remaining amounts of the pumps of the gas type.
+	 */
+	double getRemainingAmount(GasType type) {
+		long l_remainingAmount = 0;
+		for (GasPumpSlot slot : getSlots(type)) {
+			l_remainingAmount += slot.getStatistics().getRemainingAmount();
+		}
+		return FixedPoint.toLiters(l_remainingAmount);
+	}
+
+	@Override
+	public String toString() {
+		return "GasPumpRegistry [slotsByType=" + slotsByType + "]";
+	}
+}
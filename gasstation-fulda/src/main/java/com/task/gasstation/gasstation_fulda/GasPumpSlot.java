@@ -0,0 +1,240 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.bigpoint.assessment.gasstation.GasPump;
+
+/**
+ * This class represents one gas pump registered in the Fulda gas station.
+ * 
+ * The gas of a purchase is first reserved in the tank with a compare-and-set
+ * against the available level in milliliters, without any lock. The slot
+ * object itself is then the nozzle locker of the pump, held during the pumping
+ * only, so that two pumps of the same gas type serve their customers in
+ * parallel.
+ * 
+ * The slot also holds the statistics of the pump, written under the nozzle lock
+ * and read without locking, and the mailbox of the asynchronous orders of the
+ * pump: any thread may post an order, and a single drainer at a time serves
+ * them.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+class GasPumpSlot {
+
+	/**
+	 * The gas pump in question.
+	 */
+	private final GasPump gasPump;
+
+	/**
+	 * The position of the pump among the pumps of the same gas type.
+	 */
+	private final int index;
+
+	/**
+	 * The number of customers being served or waiting for this pump.
+	 */
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	/**
+	 * Whether a customer is being pumped by this pump.
+	 */
+	private volatile boolean pumping;
+
+	/**
+	 * The amount of gas of the tank not reserved yet, in milliliters.
+	 */
+	private final AtomicLong availableAmount;
+
+	/**
+	 * The sales statistics and the remaining amount of gas of this pump.
+	 */
+	private final PumpStatistics statistics;
+
+	/**
+	 * The asynchronous orders waiting for this pump.
+	 */
+	private final ConcurrentLinkedQueue<PendingGasOrder> mailbox = new ConcurrentLinkedQueue<PendingGasOrder>();
+
+	/**
+	 * The number of posts not yet acknowledged by the drainer.
+	 */
+	private final AtomicInteger mailboxWork = new AtomicInteger();
+
+	/**
+	 * @param gasPump
+	 *            the gas pump in question.
+	 * @param index
+	 *            the position of the pump among the pumps of the same gas
+	 *            type.
+	 */
+	GasPumpSlot(GasPump gasPump, int index) {
+		this.gasPump = gasPump;
+		this.index = index;
+		this.availableAmount = new AtomicLong(FixedPoint.toMilliliters(gasPump.getRemainingAmount()));
+		this.statistics = new PumpStatistics(availableAmount.get());
+	}
+
+	/**
+	 * @return the gas pump in question.
+	 */
+	GasPump getGasPump() {
+		return gasPump;
+	}
+
+	/**
+	 * @return the position of the pump among the pumps of the same gas type.
+	 */
+	int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the amount of gas of the tank not reserved yet, in milliliters.
+	 */
+	long getAvailableAmount() {
+		return availableAmount.get();
+	}
+
+	/**
+	 * This method reserves an amount of gas in the tank without locking.
+	 * 
+	 * @param milliliters
+	 *            the amount to reserve in milliliters.
+	 * 
+	 * @return true if the amount is reserved, false if the tank does not have
+	 *         it anymore.
+	 */
+	boolean reserve(long milliliters) {
+		while (true) {
+			long l_available = availableAmount.get();
+			if (l_available < milliliters) {
+				return false;
+			}
+			if (availableAmount.compareAndSet(l_available, l_available - milliliters)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * This method rolls back a reservation that was not pumped.
+	 * 
+	 * @param milliliters
+	 *            the reserved amount in milliliters.
+	 */
+	void release(long milliliters) {
+		availableAmount.addAndGet(milliliters);
+	}
+
+	/**
+	 * @return the sales statistics and the remaining amount of gas of this
+	 *         pump.
+	 */
+	PumpStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * @return the number of customers being served or waiting for this pump.
+	 */
+	int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * @return the number of customers waiting for this pump, without the
+	 *         customer being pumped.
+	 */
+	int getQueueDepth() {
+		return Math.max(0, inFlight.get() - (pumping ? 1 : 0));
+	}
+
+	/**
+	 * @param pumping
+	 *            whether a customer is being pumped by this pump. The caller
+	 *            holds the nozzle lock of the pump.
+	 */
+	void setPumping(boolean pumping) {
+		this.pumping = pumping;
+	}
+
+	/**
+	 * Registers a new customer being served or waiting for this pump.
+	 */
+	void enter() {
+		inFlight.incrementAndGet();
+	}
+
+	/**
+	 * Registers a new customer waiting for this pump, unless the pump already
+	 * has the given number of waiting customers. The place in the line is
+	 * reserved atomically, so that concurrent customers never overfill it.
+	 * 
+	 * @param maxWaiting
+	 *            the maximum number of customers waiting for this pump.
+	 * 
+	 * @return true if the customer was registered, false if the customer
+	 *         balks.
+	 */
+	boolean tryEnter(int maxWaiting) {
+		int l_inFlight;
+		do {
+			l_inFlight = inFlight.get();
+			if (l_inFlight - (pumping ? 1 : 0) >= maxWaiting) {
+				return false;
+			}
+		} while (!inFlight.compareAndSet(l_inFlight, l_inFlight + 1));
+		return true;
+	}
+
+	/**
+	 * Unregisters a customer that left this pump.
+	 */
+	void leave() {
+		inFlight.decrementAndGet();
+	}
+
+	/**
+	 * This method posts an asynchronous order to the mailbox of this pump.
+	 * 
+	 * @param order
+	 *            the order to post.
+	 * 
+	 * @return true if the caller has to start the drainer of the mailbox.
+	 */
+	boolean post(PendingGasOrder order) {
+		mailbox.offer(order);
+		return mailboxWork.getAndIncrement() == 0;
+	}
+
+	/**
+	 * @return the next asynchronous order of this pump, or null if the mailbox
+	 *         is empty.
+	 */
+	PendingGasOrder poll() {
+		return mailbox.poll();
+	}
+
+	/**
+	 * This method acknowledges the posts handled by the drainer after it
+	 * emptied the mailbox.
+	 * 
+	 * @param handled
+	 *            the number of posts handled since the last acknowledgement.
+	 * 
+	 * @return the number of posts made meanwhile, 0 if the drainer may stop.
+	 */
+	int acknowledge(int handled) {
+		return mailboxWork.addAndGet(-handled);
+	}
+
+	@Override
+	public String toString() {
+		return "GasPumpSlot [gasPump=" + gasPump + ", index=" + index + ", inFlight=" + inFlight + "]";
+	}
+}
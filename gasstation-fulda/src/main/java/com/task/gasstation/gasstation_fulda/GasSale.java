@@ -0,0 +1,102 @@
+package com.task.gasstation.gasstation_fulda;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is the immutable record of one successful gas sale.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public final class GasSale {
+
+	/**
+	 * The type of the sold gas.
+	 */
+	private final GasType type;
+
+	/**
+	 * The sold amount of gas in Liter.
+	 */
+	private final double amountInLiters;
+
+	/**
+	 * The price of one Liter in Euro that the customer was charged at.
+	 */
+	private final double unitPrice;
+
+	/**
+	 * The amount in Euro that the customer paid, rounded to the cent.
+	 */
+	private final double price;
+
+	/**
+	 * The version of the prices list that the customer was charged at.
+	 */
+	private final long priceVersion;
+
+	/**
+	 * @param type
+	 *            the type of the sold gas.
+	 * @param amountInLiters
+	 *            the sold amount of gas in Liter.
+	 * @param unitPrice
+	 *            the price of one Liter in Euro that the customer was charged
+	 *            at.
+	 * @param price
+	 *            the amount in Euro that the customer paid, rounded to the
+	 *            cent.
+	 * @param priceVersion
+	 *            the version of the prices list that the customer was charged
+	 *            at.
+	 */
+	GasSale(GasType type, double amountInLiters, double unitPrice, double price, long priceVersion) {
+		this.type = type;
+		this.amountInLiters = amountInLiters;
+		this.unitPrice = unitPrice;
+		this.price = price;
+		this.priceVersion = priceVersion;
+	}
+
+	/**
+	 * @return the type of the sold gas.
+	 */
+	public GasType getType() {
+		return type;
+	}
+
+	/**
+	 * @return the sold amount of gas in Liter.
+	 */
+	public double getAmountInLiters() {
+		return amountInLiters;
+	}
+
+	/**
+	 * @return the price of one Liter in Euro that the customer was charged at.
+	 */
+	public double getUnitPrice() {
+		return unitPrice;
+	}
+
+	/**
+	 * @return the version of the prices list that the customer was charged at.
+	 */
+	public long getPriceVersion() {
+		return priceVersion;
+	}
+
+	/**
+	 * @return the amount in Euro that the customer paid, rounded to the cent
+	 *         like the revenue of the station.
+	 */
+	public double getPrice() {
+		return price;
+	}
+
+	@Override
+	public String toString() {
+		return "GasSale [type=" + type + ", amountInLiters=" + amountInLiters + ", unitPrice=" + unitPrice
+				+ ", price=" + price + ", priceVersion=" + priceVersion + "]";
+	}
+}
@@ -16,6 +16,13 @@ import static com.task.gasstation.utils.RandomUtils.UPDATE_GAS_PRICE_MIN_TIME_PE
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.management.JMException;
+
+import com.task.gasstation.utils.RandomUtils;
 
 import net.bigpoint.assessment.gasstation.GasPump;
 import net.bigpoint.assessment.gasstation.GasType;
@@ -28,17 +35,13 @@ import net.bigpoint.assessment.gasstation.GasType;
  */
 public class GasStationServiceSimulator {
 
-	/**
-	 * Define the status of the service in the gas station.
-	 */
-	static volatile boolean stationServiceEnd = false;
-
 	/**
 	 * @param args
 	 * @throws InterruptedException
 	 * @throws IOException
+	 * @throws JMException
 	 */
-	public static void main(String[] args) throws InterruptedException, IOException {
+	public static void main(String[] args) throws InterruptedException, IOException, JMException {
 
 		boolean ServiceStarted = false;
 
@@ -49,16 +52,55 @@ public class GasStationServiceSimulator {
 		Thread.sleep(1000);
 		System.out.println("Loading gas station...");
 
+		// Opening the journal of the gas station, if any.
+		String l_journalFile = System.getProperty(SalesJournal.JOURNAL_PROPERTY);
+		SalesJournal l_journal = l_journalFile == null ? SalesJournal.DISABLED
+				: SalesJournal.open(Paths.get(l_journalFile));
+
+		// The checkpoint file of the gas station, if any.
+		String l_checkpointFile = System.getProperty(StationCheckpoint.CHECKPOINT_PROPERTY);
+		Path l_checkpoint = l_checkpointFile == null ? null : Paths.get(l_checkpointFile);
+
 		// Setting up the gas station
-		FuldaGasStation fGasStation = new FuldaGasStation();
+		FuldaGasStation fGasStation;
+		if (l_checkpoint != null && Files.exists(l_checkpoint)) {
+			// Restarting the gas station from its last checkpoint and the
+			// records of the journal appended after it.
+			long l_start = System.nanoTime();
+			fGasStation = StationCheckpoint.readFrom(l_checkpoint).restore(l_journal);
+			System.out.println("The gas station is restored from its checkpoint in "
+					+ String.format("%.1f", (System.nanoTime() - l_start) / 1e6) + " ms.");
+		} else if (l_journal.getRecords() > 0) {
+			// Rebuilding the gas station from its journal.
+			fGasStation = l_journal.recover();
+			System.out.println("The gas station is recovered from its journal (" + l_journal.getRecords()
+					+ " records).");
+		} else {
+			fGasStation = new FuldaGasStation();
+			fGasStation.setJournal(l_journal);
+
+			fGasStation.addGasPump(new GasPump(GasType.DIESEL, DIESEL_GAS_AMOUNT));
+			fGasStation.addGasPump(new GasPump(GasType.REGULAR, REGULAR_GAS_AMOUNT));
+			fGasStation.addGasPump(new GasPump(GasType.SUPER, SUPER_GAS_AMOUNT));
+
+			fGasStation.setPrice(GasType.DIESEL, DIESEL_AVERAGE_PRICE_PER_LITER);
+			fGasStation.setPrice(GasType.REGULAR, REGULAR_AVERAGE_PRICE_PER_LITER);
+			fGasStation.setPrice(GasType.SUPER, SUPER_AVERAGE_PRICE_PER_LITER);
+		}
+
+		// Recording the purchases outcomes in the sales ledger.
+		fGasStation.setLedger(SalesLedger.fromSystemProperties());
 
-		fGasStation.addGasPump(new GasPump(GasType.DIESEL, DIESEL_GAS_AMOUNT));
-		fGasStation.addGasPump(new GasPump(GasType.REGULAR, REGULAR_GAS_AMOUNT));
-		fGasStation.addGasPump(new GasPump(GasType.SUPER, SUPER_GAS_AMOUNT));
+		// Timing the phases of the purchases and exporting them to JMX.
+		fGasStation.setMetrics(new StationMetrics());
+		FuldaGasStationMonitor.register(fGasStation, "fulda");
 
-		fGasStation.setPrice(GasType.DIESEL, DIESEL_AVERAGE_PRICE_PER_LITER);
-		fGasStation.setPrice(GasType.REGULAR, REGULAR_AVERAGE_PRICE_PER_LITER);
-		fGasStation.setPrice(GasType.SUPER, SUPER_AVERAGE_PRICE_PER_LITER);
+		// Serving the pump terminals over TCP if a port is given.
+		StationServer l_server = null;
+		if (System.getProperty(StationServer.PORT_PROPERTY) != null) {
+			l_server = StationServer.fromSystemProperties(fGasStation);
+			System.out.println("The pump terminals are served on " + l_server.getAddress() + ".");
+		}
 
 		// Display Fulda gas station details in the console.
 		Thread.sleep(2000);
@@ -82,14 +124,26 @@ public class GasStationServiceSimulator {
 		Thread.sleep(1000);
 		System.out.println("The incoming is periodic with random period [" + CUSTOMER_INCOMING_MIN_TIME_PERIOD / 1000
 				+ "-" + CUSTOMER_INCOMING_MAX_TIME_PERIOD / 1000 + " seconds]");
+		System.out.println("The random seed of this run is " + RandomUtils.getMasterSeed() + " (-D"
+				+ RandomUtils.MASTER_SEED_PROPERTY + " to replay it).");
 
-		// Creating a customer incoming thread of each pump.
-		CustomerIncoming dieselOperations = new CustomerIncoming(fGasStation, GasType.DIESEL, stationServiceEnd);
-		CustomerIncoming regularOperations = new CustomerIncoming(fGasStation, GasType.REGULAR, stationServiceEnd);
-		CustomerIncoming superOperations = new CustomerIncoming(fGasStation, GasType.SUPER, stationServiceEnd);
+		// Creating the execution layer shared by the pumps and the prices
+		// updater.
+		StationExecutors l_executors = StationExecutors.fromSystemProperties();
 
-		// Creating a gas price updater thread.
-		GasPricesUpdater gasPricesUpdater = new GasPricesUpdater(fGasStation);
+		// Checkpointing the gas station periodically.
+		if (l_checkpoint != null) {
+			StationCheckpoint.schedule(l_executors.getScheduler(), fGasStation, l_checkpoint,
+					Long.getLong(StationCheckpoint.PERIOD_PROPERTY, StationCheckpoint.DEFAULT_PERIOD));
+		}
+
+		// Creating a customer incoming task of each pump.
+		CustomerIncoming dieselOperations = new CustomerIncoming(fGasStation, GasType.DIESEL, l_executors);
+		CustomerIncoming regularOperations = new CustomerIncoming(fGasStation, GasType.REGULAR, l_executors);
+		CustomerIncoming superOperations = new CustomerIncoming(fGasStation, GasType.SUPER, l_executors);
+
+		// Creating a gas price updater task.
+		GasPricesUpdater gasPricesUpdater = new GasPricesUpdater(fGasStation, l_executors);
 
 		Thread.sleep(2000);
 
@@ -120,11 +174,11 @@ public class GasStationServiceSimulator {
 						ServiceStarted = true;
 						System.out.println();
 						System.out.println("Starting service...");
-						// Starting the 3 incoming customers threads.
+						// Starting the 3 incoming customers tasks.
 						dieselOperations.start();
 						regularOperations.start();
 						superOperations.start();
-						// Starting the gas price updater thread.
+						// Starting the gas price updater task.
 						gasPricesUpdater.start();
 					} else {
 						Thread.sleep(500);
@@ -135,7 +189,7 @@ public class GasStationServiceSimulator {
 				case 2:
 					if (ServiceStarted) {
 						// Ending the gas station service.
-						stationServiceEnd = true;
+						fGasStation.endService();
 					} else {
 						Thread.sleep(500);
 						System.out.println();
@@ -173,20 +227,30 @@ public class GasStationServiceSimulator {
 				System.out.println("Worng value!");
 			}
 			System.out.println();
-		} while (!stationServiceEnd);
+		} while (!fGasStation.isServiceEnded());
 
 		// end of the gas station service.
 
-		// waiting until the the launched thread end.
-		dieselOperations.join();
-		regularOperations.join();
-		superOperations.join();
-		gasPricesUpdater.join();
+		// waiting until the the launched tasks end.
+		dieselOperations.awaitEnd();
+		regularOperations.awaitEnd();
+		superOperations.awaitEnd();
+		gasPricesUpdater.awaitEnd();
+		if (l_server != null) {
+			l_server.close();
+		}
+		l_executors.shutdown();
+		fGasStation.getEventLog().flush();
+		fGasStation.getJournal().close();
+		if (l_checkpoint != null) {
+			StationCheckpoint.capture(fGasStation).writeTo(l_checkpoint);
+		}
 
 		// Display the operation status of Fulda gas station.
 		System.out.println();
 		System.out.println("End of services.");
 		displayGasStationOperationsStatus(fGasStation);
+		displayRevenueByQuarterHour(fGasStation);
 		Thread.sleep(1000);
 		System.out.println();
 		System.out.println("End of simulation.");
@@ -202,12 +266,72 @@ public class GasStationServiceSimulator {
 	static void displayGasStationOperationsStatus(FuldaGasStation fGasStation) throws InterruptedException {
 		System.out.println();
 		System.out.println("Fulda Gas station operations status:");
-		System.out.println("Revenue: " + String.format("%.2f", fGasStation.getRevenue()) + "€.");
-		System.out.println("Number of sales: " + fGasStation.getNumberOfSales() + " successful.");
+		StationStatus l_status = fGasStation.getStatusSnapshot();
+		System.out.println("Revenue: " + String.format("%.2f", l_status.getRevenue()) + "€.");
+		System.out.println("Number of sales: " + l_status.getNumberOfSales() + " successful.");
 		System.out.println("Number of cancelled sales due to gas unavailability: "
-				+ fGasStation.getNumberOfCancellationsNoGas() + " Cancellation(s).");
+				+ l_status.getNumberOfCancellationsNoGas() + " Cancellation(s).");
 		System.out.println("Number of cancelled sales due to expencive gas price: "
-				+ fGasStation.getNumberOfCancellationsTooExpensive() + " Cancellation(s).");
+				+ l_status.getNumberOfCancellationsTooExpensive() + " Cancellation(s).");
+		System.out.println("Number of customers who left because the waiting line was full: "
+				+ l_status.getNumberOfCancellationsBalked() + " Cancellation(s).");
+		System.out.println("Number of customers who left the waiting line after waiting too long: "
+				+ l_status.getNumberOfCancellationsReneged() + " Cancellation(s).");
+		System.out.print("Remaining gas: " + GasType.DIESEL + ": "
+				+ String.format("%.2f", l_status.getRemainingAmount(GasType.DIESEL)) + " L, ");
+		System.out.print(GasType.REGULAR + ": "
+				+ String.format("%.2f", l_status.getRemainingAmount(GasType.REGULAR)) + " L and ");
+		System.out.println(GasType.SUPER + ": "
+				+ String.format("%.2f", l_status.getRemainingAmount(GasType.SUPER)) + " L.");
+		SalesRates l_rates = fGasStation.getRates();
+		System.out.println("Sales per minute over the last 5/15/60 minutes: "
+				+ String.format("%.1f / %.1f / %.1f", l_rates.getSalesPerMinute(5), l_rates.getSalesPerMinute(15),
+						l_rates.getSalesPerMinute(60))
+				+ ".");
+		System.out.println("Revenue per minute over the last 5/15/60 minutes: "
+				+ String.format("%.2f€ / %.2f€ / %.2f€", l_rates.getRevenuePerMinute(5),
+						l_rates.getRevenuePerMinute(15), l_rates.getRevenuePerMinute(60))
+				+ ".");
+		StringBuilder l_ratios = new StringBuilder("Cancellation ratio over the last 15 minutes: ");
+		for (GasType type : GasType.values()) {
+			double l_ratio = l_rates.getCancellationRatio(type, 15);
+			if (type.ordinal() > 0) {
+				l_ratios.append(", ");
+			}
+			l_ratios.append(type).append(": ")
+					.append(Double.isNaN(l_ratio) ? "-" : String.format("%.1f%%", 100 * l_ratio));
+		}
+		System.out.println(l_ratios.append('.'));
+	}
+
+	/**
+	 * This method displays the revenue of every gas type per quarter of an
+	 * hour, from the sales ledger of the gas station.
+	 * 
+	 * @param fGasStation
+	 */
+	static void displayRevenueByQuarterHour(FuldaGasStation fGasStation) {
+		SalesLedger l_ledger = fGasStation.getLedger();
+		if (l_ledger.getRows() == 0) {
+			return;
+		}
+		long l_quarter = 15 * 60 * 1000;
+		long l_now = System.currentTimeMillis();
+		// Covering the last two hours, aligned on the quarters.
+		long l_from = (l_now / l_quarter - 7) * l_quarter;
+		SalesAggregate l_revenue = l_ledger.aggregate(SalesLedger.AMOUNT, SaleResult.SOLD, l_from, l_now + 1,
+				l_quarter);
+		System.out.println("Revenue per quarter of an hour:");
+		for (int b = 0; b < l_revenue.getBuckets(); b++) {
+			if (l_revenue.getCount(GasType.DIESEL, b) + l_revenue.getCount(GasType.REGULAR, b)
+					+ l_revenue.getCount(GasType.SUPER, b) == 0) {
+				continue;
+			}
+			System.out.println(String.format("%tR", l_revenue.getBucketStart(b)) + " " + GasType.DIESEL + ": "
+					+ String.format("%.2f", l_revenue.getSum(GasType.DIESEL, b)) + "€, " + GasType.REGULAR + ": "
+					+ String.format("%.2f", l_revenue.getSum(GasType.REGULAR, b)) + "€ and " + GasType.SUPER + ": "
+					+ String.format("%.2f", l_revenue.getSum(GasType.SUPER, b)) + "€.");
+		}
 	}
 
 	/**
@@ -216,12 +340,12 @@ public class GasStationServiceSimulator {
 	 * @param fGasStation
 	 */
 	static void displayGasTankStatus(FuldaGasStation fGasStation) {
-		System.out.print(fGasStation.getGasPumps().get(0).getGasType() + ": "
-				+ String.format("%.2f", fGasStation.getGasPumps().get(0).getRemainingAmount()) + " L, ");
-		System.out.print(fGasStation.getGasPumps().get(1).getGasType() + ": "
-				+ String.format("%.2f", fGasStation.getGasPumps().get(1).getRemainingAmount()) + " L and ");
-		System.out.println(fGasStation.getGasPumps().get(2).getGasType() + ": "
-				+ String.format("%.2f", fGasStation.getGasPumps().get(2).getRemainingAmount()) + " L.");
+		System.out.print(GasType.DIESEL + ": "
+				+ String.format("%.2f", fGasStation.getRemainingAmount(GasType.DIESEL)) + " L, ");
+		System.out.print(GasType.REGULAR + ": "
+				+ String.format("%.2f", fGasStation.getRemainingAmount(GasType.REGULAR)) + " L and ");
+		System.out.println(GasType.SUPER + ": "
+				+ String.format("%.2f", fGasStation.getRemainingAmount(GasType.SUPER)) + " L.");
 	}
 
 	/**
@@ -0,0 +1,41 @@
+package com.task.gasstation.gasstation_fulda;
+
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is a gas pump that pumps instantly, without sleeping for the
+ * physical pumping time. It is used when the pumping time is simulated
+ * elsewhere, or when only the station overhead matters.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class InstantGasPump extends GasPump {
+
+	/**
+	 * The remaining amount of gas in the pump tank.
+	 */
+	private double remainingAmount;
+
+	/**
+	 * @param gasType
+	 *            the type of gas that the pump serves.
+	 * @param amount
+	 *            the initial amount of gas in the pump tank.
+	 */
+	public InstantGasPump(GasType gasType, double amount) {
+		super(gasType, amount);
+		this.remainingAmount = amount;
+	}
+
+	@Override
+	public void pumpGas(double amount) {
+		remainingAmount -= amount;
+	}
+
+	@Override
+	public double getRemainingAmount() {
+		return remainingAmount;
+	}
+}
@@ -0,0 +1,203 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is a fixed-size latency histogram in nanoseconds, that many
+ * threads can record into without locking.
+ * 
+ * The values below 128 ns have their own bucket, the greater values fall into
+ * 64 buckets per power of two, so that a percentile is reported with less than
+ * 2% error whatever its magnitude. The histogram never allocates after its
+ * construction.
+ * 
+ * The buckets are striped by thread, and the count and the sum are adders, so
+ * that the threads recording at once do not contend on the same counters. A
+ * recording costs one uncontended bucket increment, two adder increments and
+ * a read of the greatest value.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public final class LatencyHistogram {
+
+	/**
+	 * The number of bits of the buckets of one power of two.
+	 */
+	private static final int SUB_BUCKET_BITS = 6;
+
+	/**
+	 * The number of buckets of one power of two.
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * The number of buckets of the histogram, covering all the positive long
+	 * values.
+	 */
+	private static final int BUCKETS = (63 - SUB_BUCKET_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+	/**
+	 * The greatest number of stripes of the buckets.
+	 */
+	private static final int MAX_STRIPES = 8;
+
+	/**
+	 * The number of values recorded in every bucket, by stripe.
+	 */
+	private final AtomicLongArray[] counts;
+
+	/**
+	 * The number of recorded values.
+	 */
+	private final LongAdder totalCount = new LongAdder();
+
+	/**
+	 * The sum of the recorded values.
+	 */
+	private final LongAdder totalValue = new LongAdder();
+
+	/**
+	 * The greatest recorded value.
+	 */
+	private final AtomicLong maxValue = new AtomicLong();
+
+	/**
+	 * Constructor of the class, striping the buckets by the number of
+	 * processors.
+	 */
+	public LatencyHistogram() {
+		this(Math.min(MAX_STRIPES, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1)));
+	}
+
+	/**
+	 * @param stripes
+	 *            the number of stripes of the buckets, a power of two.
+	 */
+	LatencyHistogram(int stripes) {
+		this.counts = new AtomicLongArray[stripes];
+		for (int i = 0; i < stripes; i++) {
+			counts[i] = new AtomicLongArray(BUCKETS);
+		}
+	}
+
+	/**
+	 * This method records one latency.
+	 * 
+	 * @param nanos
+	 *            the latency in nanoseconds, the negative values are recorded
+	 *            as zero.
+	 */
+	public void record(long nanos) {
+		long l_value = Math.max(0, nanos);
+		counts[(int) Thread.currentThread().getId() & counts.length - 1].incrementAndGet(bucketOf(l_value));
+		totalCount.increment();
+		totalValue.add(l_value);
+		long l_max;
+		while (l_value > (l_max = maxValue.get()) && !maxValue.compareAndSet(l_max, l_value)) {
+			// Retrying until the greatest value is published.
+		}
+	}
+
+	/**
+	 * This method computes the latency under which a percentage of the
+	 * recorded latencies fall.
+	 * 
+	 * @param percentile
+	 *            the percentage, between 0 and 100.
+	 * 
+	 * @return the upper bound in nanoseconds of the bucket of the percentile,
+	 *         0 if nothing was recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long l_total = totalCount.sum();
+		if (l_total == 0) {
+			return 0;
+		}
+		long l_rank = Math.max(1, (long) Math.ceil(l_total * Math.min(100, percentile) / 100));
+		long l_seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			for (AtomicLongArray stripe : counts) {
+				l_seen += stripe.get(i);
+			}
+			if (l_seen >= l_rank) {
+				return Math.min(highestValueOf(i), maxValue.get());
+			}
+		}
+		return maxValue.get();
+	}
+
+	/**
+	 * @return the number of recorded latencies.
+	 */
+	public long getCount() {
+		return totalCount.sum();
+	}
+
+	/**
+	 * @return the mean of the recorded latencies in nanoseconds.
+	 */
+	public double getMean() {
+		long l_total = totalCount.sum();
+		return l_total == 0 ? 0 : (double) totalValue.sum() / l_total;
+	}
+
+	/**
+	 * @return the greatest recorded latency in nanoseconds.
+	 */
+	public long getMax() {
+		return maxValue.get();
+	}
+
+	/**
+	 * This method forgets all the recorded latencies.
+	 */
+	public void reset() {
+		for (AtomicLongArray stripe : counts) {
+			for (int i = 0; i < BUCKETS; i++) {
+				stripe.set(i, 0);
+			}
+		}
+		totalCount.reset();
+		totalValue.reset();
+		maxValue.set(0);
+	}
+
+	/**
+	 * @return the bucket of a positive value.
+	 */
+	private static int bucketOf(long value) {
+		if (value < 2 * SUB_BUCKETS) {
+			return (int) value;
+		}
+		int l_shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (l_shift + 1) * SUB_BUCKETS + (int) (value >>> l_shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * @return the greatest value of a bucket.
+	 */
+	private static long highestValueOf(int bucket) {
+		if (bucket < 2 * SUB_BUCKETS) {
+			return bucket;
+		}
+		int l_shift = bucket / SUB_BUCKETS - 1;
+		long l_subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+		long l_highest = ((l_subBucket + 1) << l_shift) - 1;
+		return l_highest < 0 ? Long.MAX_VALUE : l_highest;
+	}
+
+	/**
+	 * This method formats the main percentiles of the histogram.
+	 * 
+	 * @return the p50, p99, p99.9 and max latencies in microseconds.
+	 */
+	@Override
+	public String toString() {
+		return String.format("p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us",
+				getValueAtPercentile(50) / 1e3, getValueAtPercentile(99) / 1e3, getValueAtPercentile(99.9) / 1e3,
+				getMax() / 1e3);
+	}
+}
@@ -0,0 +1,372 @@
+package com.task.gasstation.gasstation_fulda;
+
+import static com.task.gasstation.utils.RandomUtils.CUSTOMERS_INCOMING_STREAM;
+import static com.task.gasstation.utils.RandomUtils.DIESEL_AVERAGE_PRICE_PER_LITER;
+import static com.task.gasstation.utils.RandomUtils.GAS_PRICE_STANDARD_DEVIATION;
+import static com.task.gasstation.utils.RandomUtils.MAX_VALUE_GAS_RANGE;
+import static com.task.gasstation.utils.RandomUtils.MIN_VALUE_GAS_RANGE;
+import static com.task.gasstation.utils.RandomUtils.REGULAR_AVERAGE_PRICE_PER_LITER;
+import static com.task.gasstation.utils.RandomUtils.SUPER_AVERAGE_PRICE_PER_LITER;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+import javax.management.JMException;
+
+import com.task.gasstation.utils.RandomStream;
+import com.task.gasstation.utils.RandomUtils;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is a headless load generator for the Fulda gas station. It drives
+ * the station without the interactive menu and reports the sales and
+ * cancellations throughput and the end-to-end latency percentiles of every
+ * gas type.
+ * 
+ * Two workloads are supported:
+ * <ul>
+ * <li>open loop: the customers arrive at a target rate whatever the station
+ * state, and order through buyGasAsync. The latency is measured from the
+ * planned arrival time, so that a station falling behind is not hidden by a
+ * generator waiting for it;</li>
+ * <li>closed loop: a fixed number of customers order through tryBuyGas one
+ * after the other, each waiting for the end of its previous order.</li>
+ * </ul>
+ * 
+ * The pumps pump instantly (see InstantGasPump) and are large enough not to
+ * run out of gas, the customers ask for gas like in the interactive simulation.
+ * The orders are drawn from random streams derived from the master seed, so
+ * that a workload can be replayed. With -Dgasstation.metrics=true the phases
+ * of the purchases are timed, reported at the end of the run, and exported to
+ * JMX during the run. With -Dgasstation.line.capacity the asynchronous orders
+ * balk once a pump has that many waiting orders, so that an open-loop overload
+ * shows up as balked orders instead of a growing backlog. With
+ * -Dgasstation.ledger=true the outcomes are appended to a sales ledger, queried
+ * at the end of the run.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class LoadGenerator {
+
+	/**
+	 * The default duration of a run in seconds.
+	 */
+	public static final double DEFAULT_DURATION = 10;
+
+	/**
+	 * The default number of pumps of every gas type.
+	 */
+	public static final int DEFAULT_PUMPS_PER_TYPE = 1;
+
+	/**
+	 * The amount of gas of every pump, large enough to never run out.
+	 */
+	public static final double LOAD_GAS_AMOUNT = 1e12;
+
+	/**
+	 * The longest time in milliseconds waited for the pending open-loop orders
+	 * at the end of a run.
+	 */
+	private static final long DRAIN_TIMEOUT = 30000;
+
+	/**
+	 * The gas station under load.
+	 */
+	private final FuldaGasStation fGasStation;
+
+	/**
+	 * The end-to-end latencies of the orders of every gas type.
+	 */
+	private final Map<GasType, LatencyHistogram> latencies = new EnumMap<GasType, LatencyHistogram>(GasType.class);
+
+	/**
+	 * The number of orders placed.
+	 */
+	private final AtomicLong orders = new AtomicLong();
+
+	/**
+	 * The number of open-loop orders not completed yet.
+	 */
+	private final AtomicLong pendingOrders = new AtomicLong();
+
+	/**
+	 * The duration of the last run in nanoseconds.
+	 */
+	private long elapsed;
+
+	/**
+	 * Constructor of the class.
+	 * 
+	 * @param fGasStation
+	 *            the gas station under load.
+	 */
+	public LoadGenerator(FuldaGasStation fGasStation) {
+		this.fGasStation = fGasStation;
+		for (GasType type : GasType.values()) {
+			latencies.put(type, new LatencyHistogram());
+		}
+	}
+
+	/**
+	 * This method runs an open-loop workload: the customers arrive at a
+	 * constant rate, without waiting for the previous orders.
+	 * 
+	 * @param ordersPerSecond
+	 *            the target arrival rate.
+	 * @param seconds
+	 *            the duration of the run.
+	 * @throws InterruptedException
+	 */
+	public void runOpenLoop(double ordersPerSecond, double seconds) throws InterruptedException {
+		long l_period = (long) (1e9 / ordersPerSecond);
+		long l_start = System.nanoTime();
+		long l_end = l_start + (long) (seconds * 1e9);
+		long l_planned = l_start;
+		RandomStream l_random = RandomUtils.newStream(CUSTOMERS_INCOMING_STREAM);
+		while (l_planned < l_end) {
+			long l_wait = l_planned - System.nanoTime();
+			if (l_wait > 0) {
+				LockSupport.parkNanos(l_wait);
+				continue;
+			}
+			placeAsyncOrder(l_planned, l_random);
+			l_planned += l_period;
+		}
+		// Waiting for the orders still being served.
+		long l_deadline = System.currentTimeMillis() + DRAIN_TIMEOUT;
+		while (pendingOrders.get() > 0 && System.currentTimeMillis() < l_deadline) {
+			Thread.sleep(1);
+		}
+		elapsed = System.nanoTime() - l_start;
+	}
+
+	/**
+	 * This method places one open-loop order.
+	 * 
+	 * @param planned
+	 *            the planned arrival time of the customer.
+	 * @param random
+	 *            the random stream of the orders.
+	 */
+	private void placeAsyncOrder(final long planned, RandomStream random) {
+		final GasType l_type = nextGasType(random);
+		orders.incrementAndGet();
+		pendingOrders.incrementAndGet();
+		fGasStation.buyGasAsync(l_type, nextGasAmount(random), nextMaxPrice(l_type, random))
+				.whenComplete(new BiConsumer<Double, Throwable>() {
+					public void accept(Double price, Throwable failure) {
+						latencies.get(l_type).record(System.nanoTime() - planned);
+						pendingOrders.decrementAndGet();
+					}
+				});
+	}
+
+	/**
+	 * This method runs a closed-loop workload: every customer orders again as
+	 * soon as its previous order is over.
+	 * 
+	 * @param customers
+	 *            the number of concurrent customers.
+	 * @param seconds
+	 *            the duration of the run.
+	 * @throws InterruptedException
+	 */
+	public void runClosedLoop(int customers, double seconds) throws InterruptedException {
+		final long l_start = System.nanoTime();
+		final long l_end = l_start + (long) (seconds * 1e9);
+		StationExecutors.NamedThreadFactory l_threads = new StationExecutors.NamedThreadFactory("customer");
+		Thread[] l_customers = new Thread[customers];
+		for (int i = 0; i < customers; i++) {
+			final RandomStream l_random = RandomUtils.newStream(CUSTOMERS_INCOMING_STREAM + i);
+			l_customers[i] = l_threads.newThread(new Runnable() {
+				public void run() {
+					SaleResult l_result = new SaleResult();
+					long l_now = System.nanoTime();
+					while (l_now < l_end) {
+						GasType l_type = nextGasType(l_random);
+						fGasStation.tryBuyGas(l_type, nextGasAmount(l_random), nextMaxPrice(l_type, l_random),
+								l_result);
+						long l_done = System.nanoTime();
+						latencies.get(l_type).record(l_done - l_now);
+						orders.incrementAndGet();
+						l_now = l_done;
+					}
+				}
+			});
+			l_customers[i].start();
+		}
+		for (Thread l_customer : l_customers) {
+			l_customer.join();
+		}
+		elapsed = System.nanoTime() - l_start;
+	}
+
+	/**
+	 * @return the gas type chosen by the next customer.
+	 */
+	private static GasType nextGasType(RandomStream random) {
+		GasType[] l_types = GasType.values();
+		return l_types[random.generateFromRange(0, l_types.length)];
+	}
+
+	/**
+	 * @return the amount of gas asked by the next customer.
+	 */
+	private static double nextGasAmount(RandomStream random) {
+		return random.generateFromRange(MIN_VALUE_GAS_RANGE, MAX_VALUE_GAS_RANGE);
+	}
+
+	/**
+	 * @return the max price per Liter accepted by the next customer.
+	 */
+	private static double nextMaxPrice(GasType type, RandomStream random) {
+		double l_average;
+		switch (type) {
+		case DIESEL:
+			l_average = DIESEL_AVERAGE_PRICE_PER_LITER;
+			break;
+		case SUPER:
+			l_average = SUPER_AVERAGE_PRICE_PER_LITER;
+			break;
+		default:
+			l_average = REGULAR_AVERAGE_PRICE_PER_LITER;
+			break;
+		}
+		return random.generateAroundAverage(l_average, GAS_PRICE_STANDARD_DEVIATION);
+	}
+
+	/**
+	 * @return the number of orders placed.
+	 */
+	public long getOrders() {
+		return orders.get();
+	}
+
+	/**
+	 * @return the duration of the last run in nanoseconds.
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	/**
+	 * @param type
+	 *            the gas type.
+	 * @return the end-to-end latencies of the orders of the gas type.
+	 */
+	public LatencyHistogram getLatencies(GasType type) {
+		return latencies.get(type);
+	}
+
+	/**
+	 * This method prints the throughput and the latencies of the last run.
+	 */
+	public void printReport() {
+		double l_seconds = Math.max(1, elapsed) / 1e9;
+		int l_cancellations = fGasStation.getNumberOfCancellationsNoGas()
+				+ fGasStation.getNumberOfCancellationsTooExpensive() + fGasStation.getNumberOfCancellationsBalked();
+		System.out.println(orders.get() + " orders in " + String.format("%.2f", l_seconds) + " s ("
+				+ String.format("%.0f", orders.get() / l_seconds) + " orders/s).");
+		System.out.println("Sales: " + fGasStation.getNumberOfSales() + " ("
+				+ String.format("%.0f", fGasStation.getNumberOfSales() / l_seconds) + " sales/s), cancellations: "
+				+ l_cancellations + " (" + String.format("%.0f", l_cancellations / l_seconds)
+				+ " cancellations/s), revenue: " + String.format("%.2f", fGasStation.getRevenue()) + " Euro.");
+		if (pendingOrders.get() > 0) {
+			System.out.println(pendingOrders.get() + " orders were still pending at the end of the run.");
+		}
+		if (fGasStation.getNumberOfCancellationsBalked() > 0) {
+			System.out.println(fGasStation.getNumberOfCancellationsBalked()
+					+ " orders balked because the waiting line of their pump was full.");
+		}
+		for (GasType type : GasType.values()) {
+			LatencyHistogram l_latencies = latencies.get(type);
+			System.out.println(type + ": " + l_latencies.getCount() + " orders, " + l_latencies);
+		}
+		SalesLedger l_ledger = fGasStation.getLedger();
+		if (l_ledger.getRows() > 0) {
+			// Querying the revenue and the average liters of the sales by gas
+			// type over the whole run.
+			long l_now = System.currentTimeMillis() + 1;
+			long l_start = System.nanoTime();
+			SalesAggregate l_revenue = l_ledger.aggregate(SalesLedger.AMOUNT, SaleResult.SOLD, 0, l_now, l_now);
+			SalesAggregate l_liters = l_ledger.aggregate(SalesLedger.LITERS, SaleResult.SOLD, 0, l_now, l_now);
+			System.out.println("Ledger of " + l_ledger.getRows() + " rows (" + l_ledger.getAllocatedBytes() / 1048576
+					+ " MB off-heap) queried twice in " + String.format("%.1f", (System.nanoTime() - l_start) / 1e6)
+					+ " ms:");
+			for (GasType type : GasType.values()) {
+				System.out.println(type + ": revenue " + String.format("%.2f", l_revenue.getSum(type))
+						+ " Euro, average " + String.format("%.2f", l_liters.getAverage(type)) + " L per sale.");
+			}
+		}
+		StationMetrics l_metrics = fGasStation.getMetrics();
+		if (l_metrics.isEnabled()) {
+			for (GasType type : GasType.values()) {
+				for (int p = 0; p < StationMetrics.getPhaseCount(); p++) {
+					System.out.println(type + " " + StationMetrics.getPhaseName(p) + ": "
+							+ l_metrics.getHistogram(type, p));
+				}
+			}
+		}
+	}
+
+	/**
+	 * This method runs the load generator.
+	 * 
+	 * @param args
+	 *            the workload, "open" followed by the target rate in orders
+	 *            per second, or "closed" followed by the number of concurrent
+	 *            customers; then the duration in seconds (default 10) and the
+	 *            number of pumps of every gas type (default 1).
+	 * @throws InterruptedException
+	 * @throws JMException
+	 */
+	public static void main(String[] args) throws InterruptedException, JMException {
+		if (args.length < 2 || !("open".equals(args[0]) || "closed".equals(args[0]))) {
+			System.out.println("Usage: LoadGenerator open <orders per second> [seconds] [pumps per type]");
+			System.out.println("       LoadGenerator closed <customers> [seconds] [pumps per type]");
+			return;
+		}
+		double l_seconds = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_DURATION;
+		int l_pumpsPerType = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_PUMPS_PER_TYPE;
+
+		// Setting up the gas station with instant pumps.
+		FuldaGasStation fGasStation = new FuldaGasStation();
+		fGasStation.setEventLog(StationEventLog.DISABLED);
+		for (GasType type : GasType.values()) {
+			for (int i = 0; i < l_pumpsPerType; i++) {
+				fGasStation.addGasPump(new InstantGasPump(type, LOAD_GAS_AMOUNT));
+			}
+		}
+		fGasStation.setPrice(GasType.DIESEL, DIESEL_AVERAGE_PRICE_PER_LITER);
+		fGasStation.setPrice(GasType.REGULAR, REGULAR_AVERAGE_PRICE_PER_LITER);
+		fGasStation.setPrice(GasType.SUPER, SUPER_AVERAGE_PRICE_PER_LITER);
+		if (Boolean.getBoolean(SalesLedger.ENABLED_PROPERTY)) {
+			fGasStation.setLedger(SalesLedger.fromSystemProperties());
+		}
+		fGasStation.setMaxWaitingOrders(Integer.getInteger(PumpWaitingLine.CAPACITY_PROPERTY, Integer.MAX_VALUE));
+		if (Boolean.getBoolean(StationMetrics.ENABLED_PROPERTY)) {
+			fGasStation.setMetrics(new StationMetrics());
+			FuldaGasStationMonitor.register(fGasStation, "load");
+		}
+
+		LoadGenerator l_generator = new LoadGenerator(fGasStation);
+		System.out.println("The random seed of this run is " + RandomUtils.getMasterSeed() + ".");
+		if ("open".equals(args[0])) {
+			double l_rate = Double.parseDouble(args[1]);
+			System.out.println("Open-loop load of " + String.format("%.0f", l_rate) + " orders/s for " + l_seconds
+					+ " s on " + l_pumpsPerType + " pump(s) per gas type.");
+			l_generator.runOpenLoop(l_rate, l_seconds);
+		} else {
+			int l_customers = Integer.parseInt(args[1]);
+			System.out.println("Closed-loop load of " + l_customers + " customers for " + l_seconds + " s on "
+					+ l_pumpsPerType + " pump(s) per gas type.");
+			l_generator.runClosedLoop(l_customers, l_seconds);
+		}
+		l_generator.printReport();
+	}
+}
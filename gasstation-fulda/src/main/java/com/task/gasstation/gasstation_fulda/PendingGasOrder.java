@@ -0,0 +1,59 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.util.concurrent.CompletableFuture;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is a gas order waiting in the mailbox of a pump, which is also
+ * the future completed with the amount charged to the customer.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+class PendingGasOrder extends CompletableFuture<Double> {
+
+	/**
+	 * The type of gas that the customer requests.
+	 */
+	final GasType type;
+
+	/**
+	 * The amount of gas in Liter that the customer requests.
+	 */
+	final double amountInLiters;
+
+	/**
+	 * The price of gas Liter in Euro that the customer expects.
+	 */
+	final double maxPricePerLiter;
+
+	/**
+	 * The time the order was posted in nanoseconds, 0 without metrics.
+	 */
+	long postedAt;
+
+	/**
+	 * The prices list snapshot to charge the order at, null to charge it at
+	 * the prices list current when it is served.
+	 */
+	GasPriceTable prices;
+
+	/**
+	 * @param type
+	 *            the type of gas that the customer requests.
+	 * @param amountInLiters
+	 *            the amount of gas in Liter that the customer requests.
+	 * @param maxPricePerLiter
+	 *            the price of gas Liter in Euro that the customer expects.
+	 * @param postedAt
+	 *            the time the order was posted in nanoseconds, 0 without
+	 *            metrics.
+	 */
+	PendingGasOrder(GasType type, double amountInLiters, double maxPricePerLiter, long postedAt) {
+		this.type = type;
+		this.amountInLiters = amountInLiters;
+		this.maxPricePerLiter = maxPricePerLiter;
+		this.postedAt = postedAt;
+	}
+}
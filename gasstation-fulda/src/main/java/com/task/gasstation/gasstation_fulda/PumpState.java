@@ -0,0 +1,132 @@
+package com.task.gasstation.gasstation_fulda;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is an immutable state of one pump of the Fulda gas station: its
+ * remaining amount of gas and its sales statistics, read between two
+ * purchases.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public final class PumpState {
+
+	/**
+	 * The gas type of the pump.
+	 */
+	private final GasType type;
+
+	/**
+	 * The position of the pump among the pumps of its gas type.
+	 */
+	private final int index;
+
+	/**
+	 * The remaining amount of gas of the pump.
+	 */
+	private final double remainingAmount;
+
+	/**
+	 * The number of sales of the pump.
+	 */
+	private final long sales;
+
+	/**
+	 * The revenue of the pump in Euro.
+	 */
+	private final double revenue;
+
+	/**
+	 * The purchases cancelled by the pump for lack of gas.
+	 */
+	private final long cancellationsNoGas;
+
+	/**
+	 * The purchases cancelled by the pump for expensive gas.
+	 */
+	private final long cancellationsTooExpensive;
+
+	/**
+	 * @param type
+	 *            the gas type of the pump.
+	 * @param index
+	 *            the position of the pump among the pumps of its gas type.
+	 * @param remainingAmount
+	 *            the remaining amount of gas of the pump.
+	 * @param sales
+	 *            the number of sales of the pump.
+	 * @param revenue
+	 *            the revenue of the pump in Euro.
+	 * @param cancellationsNoGas
+	 *            the purchases cancelled by the pump for lack of gas.
+	 * @param cancellationsTooExpensive
+	 *            the purchases cancelled by the pump for expensive gas.
+	 */
+	public PumpState(GasType type, int index, double remainingAmount, long sales, double revenue,
+			long cancellationsNoGas, long cancellationsTooExpensive) {
+		this.type = type;
+		this.index = index;
+		this.remainingAmount = remainingAmount;
+		this.sales = sales;
+		this.revenue = revenue;
+		this.cancellationsNoGas = cancellationsNoGas;
+		this.cancellationsTooExpensive = cancellationsTooExpensive;
+	}
+
+	/**
+	 * @return the gas type of the pump.
+	 */
+	public GasType getType() {
+		return type;
+	}
+
+	/**
+	 * @return the position of the pump among the pumps of its gas type.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the remaining amount of gas of the pump.
+	 */
+	public double getRemainingAmount() {
+		return remainingAmount;
+	}
+
+	/**
+	 * @return the number of sales of the pump.
+	 */
+	public long getSales() {
+		return sales;
+	}
+
+	/**
+	 * @return the revenue of the pump in Euro.
+	 */
+	public double getRevenue() {
+		return revenue;
+	}
+
+	/**
+	 * @return the purchases cancelled by the pump for lack of gas.
+	 */
+	public long getCancellationsNoGas() {
+		return cancellationsNoGas;
+	}
+
+	/**
+	 * @return the purchases cancelled by the pump for expensive gas.
+	 */
+	public long getCancellationsTooExpensive() {
+		return cancellationsTooExpensive;
+	}
+
+	@Override
+	public String toString() {
+		return "PumpState [type=" + type + ", index=" + index + ", remainingAmount=" + remainingAmount + ", sales="
+				+ sales + ", revenue=" + revenue + ", cancellationsNoGas=" + cancellationsNoGas
+				+ ", cancellationsTooExpensive=" + cancellationsTooExpensive + "]";
+	}
+}
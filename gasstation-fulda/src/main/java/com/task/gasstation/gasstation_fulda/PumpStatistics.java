@@ -0,0 +1,178 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class holds the sales statistics and the remaining amount of gas of one
+ * pump, in milliliters and cents, guarded by a sequence lock.
+ * 
+ * The sales are only written by the holder of the nozzle lock of the pump,
+ * which makes the sequence odd while it writes. The readers never lock: they
+ * read the statistics between two reads of the sequence, and read again if a
+ * write overlapped, so that they always see the pump as it was between two
+ * sales, without stopping the sales.
+ * 
+ * The cancellations do not change the tank nor the revenue: they are counted
+ * apart, with one atomic increment and without any lock, so that a cancelled
+ * purchase never waits for the nozzle.
+ * 
+ * Every recorded outcome returns its ordinal, the count of its kind once it is
+ * recorded, which the journal keeps in its record so that a replay skips the
+ * outcomes already counted by a checkpoint.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+class PumpStatistics {
+
+	/**
+	 * The sequence of the writes, odd while a write is in progress.
+	 */
+	private volatile long sequence;
+
+	/**
+	 * The remaining amount of gas of the pump in milliliters.
+	 */
+	private volatile long remainingAmount;
+
+	/**
+	 * The number of sales of the pump.
+	 */
+	private volatile long sales;
+
+	/**
+	 * The revenue of the pump in cents.
+	 */
+	private volatile long revenue;
+
+	/**
+	 * The purchases cancelled by the pump for lack of gas.
+	 */
+	private final AtomicLong cancellationsNoGas = new AtomicLong();
+
+	/**
+	 * The purchases cancelled by the pump for expensive gas.
+	 */
+	private final AtomicLong cancellationsTooExpensive = new AtomicLong();
+
+	/**
+	 * @param remainingAmount
+	 *            the initial amount of gas of the pump in milliliters.
+	 */
+	PumpStatistics(long remainingAmount) {
+		this.remainingAmount = remainingAmount;
+	}
+
+	/**
+	 * This method records a sale. The caller holds the nozzle lock of the
+	 * pump.
+	 * 
+	 * @param price
+	 *            the amount in cents charged to the customer.
+	 * @param milliliters
+	 *            the amount of gas pumped in milliliters.
+	 * 
+	 * @return the ordinal of the sale among the sales of the pump.
+	 */
+	long recordSale(long price, long milliliters) {
+		long l_sequence = sequence;
+		sequence = l_sequence + 1;
+		long l_sales = sales + 1;
+		remainingAmount = remainingAmount - milliliters;
+		sales = l_sales;
+		revenue = revenue + price;
+		sequence = l_sequence + 2;
+		return l_sales;
+	}
+
+	/**
+	 * This method records a purchase cancelled for lack of gas.
+	 * 
+	 * @return the ordinal of the cancellation among the cancellations of the
+	 *         pump for lack of gas.
+	 */
+	long recordNoGas() {
+		return cancellationsNoGas.incrementAndGet();
+	}
+
+	/**
+	 * This method records a purchase cancelled for expensive gas.
+	 * 
+	 * @return the ordinal of the cancellation among the cancellations of the
+	 *         pump for expensive gas.
+	 */
+	long recordTooExpensive() {
+		return cancellationsTooExpensive.incrementAndGet();
+	}
+
+	/**
+	 * This method restores the statistics of a pump rebuilt after a restart.
+	 * The caller holds the nozzle lock of the pump. The revenue is in cents.
+	 */
+	void restore(long sales, long revenue, long cancellationsNoGas, long cancellationsTooExpensive) {
+		long l_sequence = sequence;
+		sequence = l_sequence + 1;
+		this.sales = sales;
+		this.revenue = revenue;
+		sequence = l_sequence + 2;
+		this.cancellationsNoGas.addAndGet(cancellationsNoGas);
+		this.cancellationsTooExpensive.addAndGet(cancellationsTooExpensive);
+	}
+
+	/**
+	 * This method reads a consistent state of the pump without locking.
+	 * 
+	 * @param type
+	 *            the gas type of the pump.
+	 * @param index
+	 *            the position of the pump among the pumps of its gas type.
+	 * 
+	 * @return the state of the pump between two sales.
+	 */
+	PumpState read(GasType type, int index) {
+		while (true) {
+			long l_sequence = sequence;
+			if ((l_sequence & 1) == 0) {
+				PumpState l_state = readUnchecked(type, index);
+				if (sequence == l_sequence) {
+					return l_state;
+				}
+			}
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * @return the remaining amount of gas of the pump in milliliters, as of
+	 *         the last sale.
+	 */
+	long getRemainingAmount() {
+		return remainingAmount;
+	}
+
+	/**
+	 * @return the sequence of the writes, odd while a write is in progress.
+	 */
+	long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * This method reads the state of the pump without checking the sequence.
+	 * The state is consistent only if the sequence was even before the read and
+	 * is unchanged after it.
+	 * 
+	 * @param type
+	 *            the gas type of the pump.
+	 * @param index
+	 *            the position of the pump among the pumps of its gas type.
+	 * 
+	 * @return the state of the pump, possibly torn by a sale.
+	 */
+	PumpState readUnchecked(GasType type, int index) {
+		return new PumpState(type, index, FixedPoint.toLiters(remainingAmount), sales, FixedPoint.toEuros(revenue),
+				cancellationsNoGas.get(), cancellationsTooExpensive.get());
+	}
+}
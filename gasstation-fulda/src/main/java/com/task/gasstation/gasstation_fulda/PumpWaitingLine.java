@@ -0,0 +1,167 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is the bounded waiting line of the pumps of one gas type.
+ * 
+ * A customer takes a free pump at once if there is any. Otherwise the customer
+ * joins the line, unless the line is full and the customer balks, then waits
+ * for a pump in arrival order, and reneges if no pump frees up in time. The
+ * line never holds more customers than its capacity, so that an overloaded
+ * station sends its customers away instead of piling up waiting threads.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+final class PumpWaitingLine {
+
+	/**
+	 * The system property giving the capacity of the waiting lines.
+	 */
+	static final String CAPACITY_PROPERTY = "gasstation.line.capacity";
+
+	/**
+	 * The system property giving the patience of the customers in
+	 * milliseconds.
+	 */
+	static final String PATIENCE_PROPERTY = "gasstation.line.patience";
+
+	/**
+	 * The default capacity of a waiting line.
+	 */
+	static final int DEFAULT_CAPACITY = 5;
+
+	/**
+	 * The default patience of the customers in milliseconds.
+	 */
+	static final long DEFAULT_PATIENCE = 15000;
+
+	/**
+	 * The free pumps, granted in arrival order (with fairness policy).
+	 */
+	private final Semaphore freePumps;
+
+	/**
+	 * The maximum number of waiting customers.
+	 */
+	private final int capacity;
+
+	/**
+	 * The time in milliseconds a customer waits for a pump before leaving.
+	 */
+	private final long patience;
+
+	/**
+	 * The number of waiting customers.
+	 */
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	/**
+	 * @param pumps
+	 *            the number of pumps serving the line.
+	 * @param capacity
+	 *            the maximum number of waiting customers.
+	 * @param patience
+	 *            the time in milliseconds a customer waits for a pump before
+	 *            leaving.
+	 */
+	PumpWaitingLine(int pumps, int capacity, long patience) {
+		this.freePumps = new Semaphore(Math.max(1, pumps), true);
+		this.capacity = capacity;
+		this.patience = patience;
+	}
+
+	/**
+	 * This method creates a waiting line with the capacity and the patience
+	 * given by the system properties.
+	 * 
+	 * @param pumps
+	 *            the number of pumps serving the line.
+	 * 
+	 * @return the waiting line.
+	 */
+	static PumpWaitingLine fromSystemProperties(int pumps) {
+		return new PumpWaitingLine(pumps, Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY),
+				Long.getLong(PATIENCE_PROPERTY, DEFAULT_PATIENCE));
+	}
+
+	/**
+	 * This method takes a free pump without waiting.
+	 * 
+	 * @return true if the customer got a pump.
+	 */
+	boolean tryEnter() {
+		return freePumps.tryAcquire();
+	}
+
+	/**
+	 * This method takes a place in the line.
+	 * 
+	 * @return true if the customer joined the line, false if the line is full
+	 *         and the customer balks.
+	 */
+	boolean join() {
+		int l_waiting;
+		do {
+			l_waiting = waiting.get();
+			if (l_waiting >= capacity) {
+				return false;
+			}
+		} while (!waiting.compareAndSet(l_waiting, l_waiting + 1));
+		return true;
+	}
+
+	/**
+	 * This method waits in the line for a free pump, then leaves the line.
+	 * 
+	 * @return true if the customer got a pump, false if the patience of the
+	 *         customer ran out and the customer reneges.
+	 */
+	boolean await() {
+		try {
+			return freePumps.tryAcquire(patience, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			waiting.decrementAndGet();
+		}
+	}
+
+	/**
+	 * This method frees the pump of a served customer.
+	 */
+	void leave() {
+		freePumps.release();
+	}
+
+	/**
+	 * @return the number of waiting customers.
+	 */
+	int getWaiting() {
+		return waiting.get();
+	}
+
+	/**
+	 * @return the maximum number of waiting customers.
+	 */
+	int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the time in milliseconds a customer waits for a pump before
+	 *         leaving.
+	 */
+	long getPatience() {
+		return patience;
+	}
+
+	@Override
+	public String toString() {
+		return "PumpWaitingLine [capacity=" + capacity + ", patience=" + patience + ", waiting=" + waiting + "]";
+	}
+}
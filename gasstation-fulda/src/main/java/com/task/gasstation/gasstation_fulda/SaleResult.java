@@ -0,0 +1,154 @@
+package com.task.gasstation.gasstation_fulda;
+
+/**
+ * This class holds the outcome of one gas order: the amount charged to the
+ * customer, or the reason of the cancellation.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class SaleResult {
+
+	/**
+	 * The status of a served order.
+	 */
+	public static final int SOLD = 0;
+
+	/**
+	 * The status of an order cancelled due to lack of gas availability.
+	 */
+	public static final int NO_GAS = 1;
+
+	/**
+	 * The status of an order cancelled due to expensive gas price.
+	 */
+	public static final int TOO_EXPENSIVE = 2;
+
+	/**
+	 * The status of the order.
+	 */
+	private int status;
+
+	/**
+	 * The amount in cents charged to the customer, 0 if the order is
+	 * cancelled.
+	 */
+	private long price;
+
+	/**
+	 * The price of one Liter in cents at the time of the order,
+	 * GasPriceTable.NO_PRICE if unknown.
+	 */
+	private long unitPrice;
+
+	/**
+	 * The version of the prices list at the time of the order, -1 if unknown.
+	 */
+	private long priceVersion;
+
+	/**
+	 * The ordinal of the outcome among the counted outcomes of its kind, kept
+	 * by the journal, 0 if not counted yet.
+	 */
+	private long ordinal;
+
+	/**
+	 * Constructor of the class.
+	 */
+	public SaleResult() {
+		set(NO_GAS, 0, GasPriceTable.NO_PRICE, -1);
+	}
+
+	/**
+	 * This method sets the outcome of the order.
+	 * 
+	 * @param status
+	 *            the status of the order.
+	 * @param price
+	 *            the amount in cents charged to the customer.
+	 * @param unitPrice
+	 *            the price of one Liter in cents at the time of the order,
+	 *            GasPriceTable.NO_PRICE if unknown.
+	 * @param priceVersion
+	 *            the version of the prices list at the time of the order.
+	 * 
+	 * @return the status of the order.
+	 */
+	int set(int status, long price, long unitPrice, long priceVersion) {
+		this.status = status;
+		this.price = price;
+		this.unitPrice = unitPrice;
+		this.priceVersion = priceVersion;
+		this.ordinal = 0;
+		return status;
+	}
+
+	/**
+	 * @param ordinal
+	 *            the ordinal of the outcome among the counted outcomes of its
+	 *            kind.
+	 */
+	void setOrdinal(long ordinal) {
+		this.ordinal = ordinal;
+	}
+
+	/**
+	 * @return the ordinal of the outcome among the counted outcomes of its
+	 *         kind, 0 if not counted yet.
+	 */
+	long getOrdinal() {
+		return ordinal;
+	}
+
+	/**
+	 * @return the status of the order: SOLD, NO_GAS or TOO_EXPENSIVE.
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return true if the order is served.
+	 */
+	public boolean isSold() {
+		return status == SOLD;
+	}
+
+	/**
+	 * @return the amount in Euro charged to the customer, 0 if the order is
+	 *         cancelled.
+	 */
+	public double getPrice() {
+		return FixedPoint.toEuros(price);
+	}
+
+	/**
+	 * @return the amount in cents charged to the customer, 0 if the order is
+	 *         cancelled.
+	 */
+	long getPriceInCents() {
+		return price;
+	}
+
+	/**
+	 * @return the price of one Liter in Euro at the time of the order, NaN if
+	 *         unknown.
+	 */
+	public double getUnitPrice() {
+		return unitPrice == GasPriceTable.NO_PRICE ? Double.NaN : FixedPoint.toEuros(unitPrice);
+	}
+
+	/**
+	 * @return the version of the prices list at the time of the order, -1 if
+	 *         unknown.
+	 */
+	public long getPriceVersion() {
+		return priceVersion;
+	}
+
+	@Override
+	public String toString() {
+		return "SaleResult [status=" + status + ", price=" + getPrice() + ", unitPrice=" + getUnitPrice()
+				+ ", priceVersion=" + priceVersion + "]";
+	}
+}
@@ -0,0 +1,153 @@
+package com.task.gasstation.gasstation_fulda;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is the result of an aggregate query of the sales ledger: the
+ * count and the sum of a column by gas type and time bucket.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public final class SalesAggregate {
+
+	/**
+	 * The start of the first time bucket in milliseconds.
+	 */
+	private final long fromMillis;
+
+	/**
+	 * The duration of one time bucket in milliseconds.
+	 */
+	private final long bucketMillis;
+
+	/**
+	 * The number of aggregated rows by gas type ordinal and bucket.
+	 */
+	private final long[][] counts;
+
+	/**
+	 * The sum of the aggregated column by gas type ordinal and bucket.
+	 */
+	private final double[][] sums;
+
+	/**
+	 * @param fromMillis
+	 *            the start of the first time bucket in milliseconds.
+	 * @param bucketMillis
+	 *            the duration of one time bucket in milliseconds.
+	 * @param counts
+	 *            the number of aggregated rows by gas type ordinal and bucket.
+	 * @param sums
+	 *            the sum of the aggregated column by gas type ordinal and
+	 *            bucket.
+	 */
+	SalesAggregate(long fromMillis, long bucketMillis, long[][] counts, double[][] sums) {
+		this.fromMillis = fromMillis;
+		this.bucketMillis = bucketMillis;
+		this.counts = counts;
+		this.sums = sums;
+	}
+
+	/**
+	 * @return the number of time buckets.
+	 */
+	public int getBuckets() {
+		return counts[0].length;
+	}
+
+	/**
+	 * @param bucket
+	 *            the time bucket.
+	 * 
+	 * @return the start of the time bucket in milliseconds.
+	 */
+	public long getBucketStart(int bucket) {
+		return fromMillis + bucket * bucketMillis;
+	}
+
+	/**
+	 * @param type
+	 *            the gas type.
+	 * @param bucket
+	 *            the time bucket.
+	 * 
+	 * @return the number of aggregated rows of the gas type in the bucket.
+	 */
+	public long getCount(GasType type, int bucket) {
+		return counts[type.ordinal()][bucket];
+	}
+
+	/**
+	 * @param type
+	 *            the gas type.
+	 * @param bucket
+	 *            the time bucket.
+	 * 
+	 * @return the sum of the column of the gas type in the bucket.
+	 */
+	public double getSum(GasType type, int bucket) {
+		return sums[type.ordinal()][bucket];
+	}
+
+	/**
+	 * @param type
+	 *            the gas type.
+	 * @param bucket
+	 *            the time bucket.
+	 * 
+	 * @return the average of the column of the gas type in the bucket, NaN if
+	 *         no row was aggregated.
+	 */
+	public double getAverage(GasType type, int bucket) {
+		long l_count = getCount(type, bucket);
+		return l_count == 0 ? Double.NaN : getSum(type, bucket) / l_count;
+	}
+
+	/**
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the number of aggregated rows of the gas type in all the
+	 *         buckets.
+	 */
+	public long getCount(GasType type) {
+		long l_count = 0;
+		for (long count : counts[type.ordinal()]) {
+			l_count += count;
+		}
+		return l_count;
+	}
+
+	/**
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the sum of the column of the gas type in all the buckets.
+	 */
+	public double getSum(GasType type) {
+		double l_sum = 0;
+		for (double sum : sums[type.ordinal()]) {
+			l_sum += sum;
+		}
+		return l_sum;
+	}
+
+	/**
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the average of the column of the gas type in all the buckets,
+	 *         NaN if no row was aggregated.
+	 */
+	public double getAverage(GasType type) {
+		long l_count = getCount(type);
+		return l_count == 0 ? Double.NaN : getSum(type) / l_count;
+	}
+
+	@Override
+	public String toString() {
+		return "SalesAggregate [fromMillis=" + fromMillis + ", bucketMillis=" + bucketMillis + ", buckets="
+				+ getBuckets() + "]";
+	}
+}
@@ -0,0 +1,619 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is the append-only journal of the Fulda gas station, kept in a
+ * memory-mapped file so that the station can be rebuilt after a crash.
+ * 
+ * Every pump added, every purchase outcome and every price set is written as a
+ * fixed-size binary record. The writers claim the position of their record
+ * with one atomic increment and write it straight into the mapped file,
+ * without any lock; the header of the record, holding its kind and checksum,
+ * is written last so that a torn record is detected on replay. The station
+ * appends its records after releasing the pump lock.
+ * 
+ * A background flusher forces the written records to the disk in batches,
+ * every flush interval, instead of once per record.
+ * 
+ * Every purchase outcome is counted by the station before its record is
+ * claimed, and its record keeps the ordinal of the outcome among the counted
+ * outcomes of its kind, by pump or for the whole station. A replay on top of
+ * a checkpoint skips the records whose ordinal the checkpoint counted
+ * already, so that an outcome recorded while the checkpoint was captured is
+ * counted exactly once.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class SalesJournal {
+
+	/**
+	 * The system property setting the journal file of the simulator.
+	 */
+	public static final String JOURNAL_PROPERTY = "gasstation.journal";
+
+	/**
+	 * The system property setting the flush interval in milliseconds.
+	 */
+	public static final String FLUSH_INTERVAL_PROPERTY = "gasstation.journal.flushInterval";
+
+	/**
+	 * The default flush interval in milliseconds.
+	 */
+	public static final int DEFAULT_FLUSH_INTERVAL = 10;
+
+	/**
+	 * The disabled journal, writing nothing.
+	 */
+	public static final SalesJournal DISABLED = new SalesJournal();
+
+	/**
+	 * The size of one record in bytes.
+	 */
+	static final int RECORD_SIZE = 32;
+
+	/**
+	 * The size of one mapped region of the file in bytes, a multiple of the
+	 * record size.
+	 */
+	static final int REGION_SIZE = 1 << 24;
+
+	/**
+	 * The record of a pump added to the station.
+	 */
+	static final int PUMP_ADDED = 1;
+
+	/**
+	 * The record of a sale.
+	 */
+	static final int SALE = 2;
+
+	/**
+	 * The record of a purchase cancelled for lack of gas.
+	 */
+	static final int NO_GAS = 3;
+
+	/**
+	 * The record of a purchase cancelled for expensive gas.
+	 */
+	static final int TOO_EXPENSIVE = 4;
+
+	/**
+	 * The record of a price set.
+	 */
+	static final int PRICE_SET = 5;
+
+	/**
+	 * The kind of the record of a customer leaving because the waiting line
+	 * was full.
+	 */
+	static final int BALKED = 6;
+
+	/**
+	 * The kind of the record of a customer leaving the waiting line after
+	 * waiting too long.
+	 */
+	static final int RENEGED = 7;
+
+	/**
+	 * The offset of the amount field of a record.
+	 */
+	private static final int AMOUNT_OFFSET = 8;
+
+	/**
+	 * The offset of the price field of a record.
+	 */
+	private static final int PRICE_OFFSET = 16;
+
+	/**
+	 * The offset of the version field of a record: the prices list version of
+	 * a price set, the ordinal of the outcome otherwise.
+	 */
+	private static final int VERSION_OFFSET = 24;
+
+	/**
+	 * The file channel of the journal, null for the disabled journal.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The mapped regions of the file, copied on growth.
+	 */
+	private volatile MappedByteBuffer[] regions = new MappedByteBuffer[0];
+
+	/**
+	 * The position of the next record to claim.
+	 */
+	private final AtomicLong claimed = new AtomicLong();
+
+	/**
+	 * The position from which the records are forced by the next flush.
+	 */
+	private long forced;
+
+	/**
+	 * The end position of the records at the last flush. The records claimed
+	 * before a flush may be written after it, so that they are forced once
+	 * more by the next flush.
+	 */
+	private long flushedEnd;
+
+	/**
+	 * The flush interval in nanoseconds.
+	 */
+	private final long flushIntervalNanos;
+
+	/**
+	 * The background flusher forcing the records to the disk.
+	 */
+	private final Thread flusher;
+
+	/**
+	 * The flag stopping the flusher.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Constructor of the disabled journal.
+	 */
+	private SalesJournal() {
+		this.channel = null;
+		this.flushIntervalNanos = 0;
+		this.flusher = null;
+	}
+
+	/**
+	 * This constructor opens a journal file, creating it if needed. The new
+	 * records are appended after the last valid record of the file, past the
+	 * holes left by the records claimed but not written before a crash.
+	 * 
+	 * @param file
+	 *            the journal file.
+	 * @param flushInterval
+	 *            the interval in milliseconds between two flushes to the disk.
+	 * @throws IOException
+	 */
+	public SalesJournal(Path file, long flushInterval) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.flushIntervalNanos = flushInterval * 1000000;
+		long l_end = 0;
+		long l_size = channel.size();
+		for (long l_position = 0; l_position + RECORD_SIZE <= l_size; l_position += RECORD_SIZE) {
+			if (isValid(l_position)) {
+				l_end = l_position + RECORD_SIZE;
+			}
+		}
+		claimed.set(l_end);
+		forced = l_end;
+		flushedEnd = l_end;
+		this.flusher = new Thread(new Runnable() {
+			public void run() {
+				flushLoop();
+			}
+		}, "gasstation-journal");
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+	}
+
+	/**
+	 * This method opens a journal file with the flush interval configured by
+	 * the system properties.
+	 * 
+	 * @param file
+	 *            the journal file.
+	 * 
+	 * @return the opened journal.
+	 * @throws IOException
+	 */
+	public static SalesJournal open(Path file) throws IOException {
+		return new SalesJournal(file, Integer.getInteger(FLUSH_INTERVAL_PROPERTY, DEFAULT_FLUSH_INTERVAL));
+	}
+
+	/**
+	 * This method records a pump added to the station.
+	 * 
+	 * @param type
+	 *            the gas type of the pump.
+	 * @param pump
+	 *            the index of the pump among the pumps of its gas type.
+	 * @param amount
+	 *            the amount of gas of the pump.
+	 */
+	void appendPumpAdded(GasType type, int pump, double amount) {
+		append(PUMP_ADDED, type, pump, amount, 0, 0);
+	}
+
+	/**
+	 * This method records the outcome of a purchase.
+	 * 
+	 * @param type
+	 *            the type of gas that the customer requested.
+	 * @param pump
+	 *            the index of the pump among the pumps of its gas type, -1 if
+	 *            no pump served the purchase.
+	 * @param amountInLiters
+	 *            the amount of gas that the customer requested.
+	 * @param result
+	 *            the outcome of the purchase, with its ordinal.
+	 */
+	void appendOutcome(GasType type, int pump, double amountInLiters, SaleResult result) {
+		switch (result.getStatus()) {
+		case SaleResult.SOLD:
+			append(SALE, type, pump, amountInLiters, result.getPrice(), result.getOrdinal());
+			break;
+		case SaleResult.TOO_EXPENSIVE:
+			append(TOO_EXPENSIVE, type, pump, amountInLiters, 0, result.getOrdinal());
+			break;
+		default:
+			append(NO_GAS, type, pump, amountInLiters, 0, result.getOrdinal());
+			break;
+		}
+	}
+
+	/**
+	 * This method records a purchase cancelled because no pump of the gas type
+	 * could serve it.
+	 * 
+	 * @param type
+	 *            the type of gas that the customer requested.
+	 * @param amountInLiters
+	 *            the amount of gas that the customer requested.
+	 * @param ordinal
+	 *            the ordinal of the cancellation among the purchases cancelled
+	 *            because no pump served their gas type.
+	 */
+	void appendNoGas(GasType type, double amountInLiters, long ordinal) {
+		append(NO_GAS, type, -1, amountInLiters, 0, ordinal);
+	}
+
+	/**
+	 * This method records a customer leaving the waiting line of a gas type
+	 * without being served.
+	 * 
+	 * @param kind
+	 *            BALKED or RENEGED.
+	 * @param type
+	 *            the type of gas that the customer requested.
+	 * @param amountInLiters
+	 *            the amount of gas that the customer requested.
+	 * @param ordinal
+	 *            the ordinal of the customer among the customers who left the
+	 *            same way.
+	 */
+	void appendLeft(int kind, GasType type, double amountInLiters, long ordinal) {
+		append(kind, type, -1, amountInLiters, 0, ordinal);
+	}
+
+	/**
+	 * This method records a price set.
+	 * 
+	 * @param type
+	 *            the gas type.
+	 * @param prices
+	 *            the prices list published by the price set.
+	 */
+	void appendPrice(GasType type, GasPriceTable prices) {
+		append(PRICE_SET, type, -1, 0, prices.getPriceOrNaN(type), prices.getVersion());
+	}
+
+	/**
+	 * This method writes one record at the next position of the journal.
+	 */
+	private void append(int kind, GasType type, int pump, double amount, double price, long version) {
+		if (channel == null || closed) {
+			return;
+		}
+		long l_position = claimed.getAndAdd(RECORD_SIZE);
+		MappedByteBuffer l_region = region((int) (l_position / REGION_SIZE));
+		int l_offset = (int) (l_position % REGION_SIZE);
+		l_region.putDouble(l_offset + AMOUNT_OFFSET, amount);
+		l_region.putDouble(l_offset + PRICE_OFFSET, price);
+		l_region.putLong(l_offset + VERSION_OFFSET, version);
+		// Writing the header last, in one store.
+		l_region.putLong(l_offset, header(kind, type.ordinal(), pump, amount, price, version));
+	}
+
+	/**
+	 * This method computes the header of a record: its kind, gas type, pump
+	 * and checksum.
+	 */
+	private static long header(int kind, int type, int pump, double amount, double price, long version) {
+		long l_fields = (kind & 0xFF) | (type & 0xFF) << 8 | (long) (pump & 0xFFFF) << 16;
+		long l_hash = l_fields * 0x9E3779B97F4A7C15L;
+		l_hash = (l_hash ^ Double.doubleToRawLongBits(amount)) * 0xBF58476D1CE4E5B9L;
+		l_hash = (l_hash ^ Double.doubleToRawLongBits(price)) * 0x94D049BB133111EBL;
+		l_hash = (l_hash ^ version) * 0x9E3779B97F4A7C15L;
+		return l_fields | (l_hash & 0xFFFFFFFF00000000L);
+	}
+
+	/**
+	 * This method checks the header of the record at a given position.
+	 * 
+	 * @return true if the record is complete and not corrupted.
+	 */
+	private boolean isValid(long position) {
+		MappedByteBuffer l_region = region((int) (position / REGION_SIZE));
+		int l_offset = (int) (position % REGION_SIZE);
+		long l_header = l_region.getLong(l_offset);
+		int l_kind = (int) (l_header & 0xFF);
+		int l_type = (int) (l_header >>> 8 & 0xFF);
+		if (l_kind < PUMP_ADDED || l_kind > RENEGED || l_type >= GasType.values().length) {
+			return false;
+		}
+		return l_header == header(l_kind, l_type, (short) (l_header >>> 16), l_region.getDouble(l_offset
+				+ AMOUNT_OFFSET), l_region.getDouble(l_offset + PRICE_OFFSET), l_region.getLong(l_offset
+				+ VERSION_OFFSET));
+	}
+
+	/**
+	 * This method returns a mapped region of the file, mapping it on first
+	 * use.
+	 * 
+	 * @param index
+	 *            the index of the region.
+	 * 
+	 * @return the mapped region.
+	 */
+	private MappedByteBuffer region(int index) {
+		MappedByteBuffer[] l_regions = regions;
+		if (index < l_regions.length && l_regions[index] != null) {
+			return l_regions[index];
+		}
+		synchronized (this) {
+			l_regions = regions;
+			if (index >= l_regions.length) {
+				l_regions = Arrays.copyOf(l_regions, Math.max(index + 1, l_regions.length * 2));
+			} else if (l_regions[index] != null) {
+				return l_regions[index];
+			} else {
+				l_regions = l_regions.clone();
+			}
+			try {
+				l_regions[index] = channel.map(FileChannel.MapMode.READ_WRITE, (long) index * REGION_SIZE,
+						REGION_SIZE);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			regions = l_regions;
+			return l_regions[index];
+		}
+	}
+
+	/**
+	 * This method forces the records appended before the call to the disk.
+	 */
+	public synchronized void flush() {
+		if (channel == null) {
+			return;
+		}
+		long l_end = claimed.get();
+		if (l_end == forced) {
+			return;
+		}
+		MappedByteBuffer[] l_regions = regions;
+		int l_last = (int) ((l_end - 1) / REGION_SIZE);
+		for (int i = (int) (forced / REGION_SIZE); i <= l_last && i < l_regions.length; i++) {
+			if (l_regions[i] != null) {
+				l_regions[i].force();
+			}
+		}
+		forced = flushedEnd;
+		flushedEnd = l_end;
+	}
+
+	/**
+	 * This method flushes the journal, stops the flusher and closes the file.
+	 * The station must not append records anymore.
+	 * 
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void close() throws IOException, InterruptedException {
+		if (channel == null) {
+			return;
+		}
+		closed = true;
+		flusher.join();
+		for (MappedByteBuffer region : regions) {
+			if (region != null) {
+				region.force();
+			}
+		}
+		channel.close();
+	}
+
+	/**
+	 * The loop of the background flusher.
+	 */
+	private void flushLoop() {
+		while (!closed) {
+			LockSupport.parkNanos(flushIntervalNanos);
+			flush();
+		}
+	}
+
+	/**
+	 * @return the number of records of the journal.
+	 */
+	public long getRecords() {
+		return claimed.get() / RECORD_SIZE;
+	}
+
+	/**
+	 * This method rebuilds a gas station by replaying the records of the
+	 * journal, then attaches the journal to the new station.
+	 * 
+	 * The pumps are created again with their remaining amount of gas, the
+	 * prices list is restored at its last version, and the revenue, the sales
+	 * and the cancellations counters are restored.
+	 * 
+	 * @return the rebuilt gas station.
+	 */
+	public FuldaGasStation recover() {
+		int l_typesCount = GasType.values().length;
+		List<List<long[]>> l_pumps = new ArrayList<List<long[]>>(l_typesCount);
+		for (int t = 0; t < l_typesCount; t++) {
+			l_pumps.add(new ArrayList<long[]>());
+		}
+		double[] l_prices = new double[l_typesCount];
+		long[] l_priceVersions = new long[l_typesCount];
+		Arrays.fill(l_prices, Double.NaN);
+		Arrays.fill(l_priceVersions, -1);
+		return replay(0, l_pumps, l_prices, l_priceVersions, new long[6]);
+	}
+
+	/**
+	 * This method rebuilds a gas station from a checkpoint, replays on top of
+	 * it the records appended to the journal after the checkpoint was
+	 * captured, then attaches the journal to the new station.
+	 * 
+	 * The records of the outcomes that the checkpoint counted already are
+	 * skipped by their ordinal, as well as the records of the pumps it holds
+	 * already.
+	 * 
+	 * @param checkpoint
+	 *            the last checkpoint of the station.
+	 * 
+	 * @return the rebuilt gas station.
+	 */
+	FuldaGasStation recover(StationCheckpoint checkpoint) {
+		int l_typesCount = GasType.values().length;
+		List<List<long[]>> l_pumps = new ArrayList<List<long[]>>(l_typesCount);
+		for (int t = 0; t < l_typesCount; t++) {
+			l_pumps.add(new ArrayList<long[]>());
+		}
+		for (PumpState pump : checkpoint.getPumps()) {
+			l_pumps.get(pump.getType().ordinal()).add(new long[] {
+					FixedPoint.toMilliliters(pump.getRemainingAmount()), 0, pump.getSales(),
+					FixedPoint.toCents(pump.getRevenue()), pump.getCancellationsNoGas(),
+					pump.getCancellationsTooExpensive(), pump.getSales(), pump.getCancellationsNoGas(),
+					pump.getCancellationsTooExpensive() });
+		}
+		GasPriceTable l_table = checkpoint.getPrices();
+		double[] l_prices = new double[l_typesCount];
+		long[] l_priceVersions = new long[l_typesCount];
+		for (int t = 0; t < l_typesCount; t++) {
+			l_prices[t] = l_table.getPriceOrNaN(GasType.values()[t]);
+			l_priceVersions[t] = Double.isNaN(l_prices[t]) ? -1 : l_table.getVersion();
+		}
+		long[] l_cancellations = new long[] { checkpoint.getCancellationsNoPump(),
+				checkpoint.getCancellationsBalked(), checkpoint.getCancellationsReneged(),
+				checkpoint.getCancellationsNoPump(), checkpoint.getCancellationsBalked(),
+				checkpoint.getCancellationsReneged() };
+		// A checkpoint of a station without journal replays nothing.
+		long l_from = checkpoint.getJournalRecords() < 0 ? claimed.get()
+				: Math.min(checkpoint.getJournalRecords() * RECORD_SIZE, claimed.get());
+		return replay(l_from, l_pumps, l_prices, l_priceVersions, l_cancellations);
+	}
+
+	/**
+	 * This method replays the records of the journal from a given position
+	 * on top of a state of the station, then rebuilds the station and
+	 * attaches the journal to it. A record is replayed only if its ordinal is
+	 * above the count of its kind in the state replayed on. The holes left by
+	 * a crash are skipped.
+	 * 
+	 * @param from
+	 *            the position of the first record to replay.
+	 * @param pumps
+	 *            the amount and the amount sold in milliliters, the sales,
+	 *            the revenue in cents and the cancellations of every pump,
+	 *            followed by the sales and the cancellations of the state
+	 *            replayed on, by gas type.
+	 * @param prices
+	 *            the prices by gas type, NaN if not set.
+	 * @param priceVersions
+	 *            the prices list versions of the prices, -1 if not set.
+	 * @param cancellations
+	 *            the purchases cancelled because no pump served their gas
+	 *            type, the balked and the reneged customers, followed by the
+	 *            same counts in the state replayed on.
+	 * 
+	 * @return the rebuilt gas station.
+	 */
+	private FuldaGasStation replay(long from, List<List<long[]>> pumps, double[] prices, long[] priceVersions,
+			long[] cancellations) {
+		long l_end = claimed.get();
+		for (long l_position = from; l_position < l_end; l_position += RECORD_SIZE) {
+			if (!isValid(l_position)) {
+				continue;
+			}
+			MappedByteBuffer l_region = region((int) (l_position / REGION_SIZE));
+			int l_offset = (int) (l_position % REGION_SIZE);
+			long l_header = l_region.getLong(l_offset);
+			int l_kind = (int) (l_header & 0xFF);
+			int l_type = (int) (l_header >>> 8 & 0xFF);
+			int l_pump = (short) (l_header >>> 16);
+			double l_amount = l_region.getDouble(l_offset + AMOUNT_OFFSET);
+			long l_ordinal = l_region.getLong(l_offset + VERSION_OFFSET);
+			if (l_kind == PUMP_ADDED) {
+				if (l_pump == pumps.get(l_type).size()) {
+					pumps.get(l_type).add(new long[] { FixedPoint.toMilliliters(l_amount), 0, 0, 0, 0, 0, 0, 0, 0 });
+				}
+			} else if (l_kind == PRICE_SET) {
+				// Keeping the price of the latest prices list version.
+				long l_version = l_region.getLong(l_offset + VERSION_OFFSET);
+				if (l_version > priceVersions[l_type]) {
+					priceVersions[l_type] = l_version;
+					prices[l_type] = l_region.getDouble(l_offset + PRICE_OFFSET);
+				}
+			} else if (l_kind == BALKED) {
+				if (l_ordinal > cancellations[4]) {
+					cancellations[1]++;
+				}
+			} else if (l_kind == RENEGED) {
+				if (l_ordinal > cancellations[5]) {
+					cancellations[2]++;
+				}
+			} else if (l_pump < 0) {
+				if (l_ordinal > cancellations[3]) {
+					cancellations[0]++;
+				}
+			} else {
+				long[] l_statistics = pumps.get(l_type).get(l_pump);
+				if (l_kind == SALE) {
+					if (l_ordinal > l_statistics[6]) {
+						l_statistics[1] += FixedPoint.toMilliliters(l_amount);
+						l_statistics[2]++;
+						l_statistics[3] += FixedPoint.toCents(l_region.getDouble(l_offset + PRICE_OFFSET));
+					}
+				} else if (l_kind == NO_GAS) {
+					if (l_ordinal > l_statistics[7]) {
+						l_statistics[4]++;
+					}
+				} else if (l_ordinal > l_statistics[8]) {
+					l_statistics[5]++;
+				}
+			}
+		}
+
+		FuldaGasStation l_station = new FuldaGasStation();
+		long l_version = 0;
+		for (int t = 0; t < prices.length; t++) {
+			for (long[] pump : pumps.get(t)) {
+				l_station.restorePump(new GasPump(GasType.values()[t], FixedPoint.toLiters(pump[0] - pump[1])),
+						pump[2], pump[3], pump[4], pump[5]);
+			}
+			l_version = Math.max(l_version, priceVersions[t]);
+		}
+		l_station.restore(cancellations[0], cancellations[1], cancellations[2], new GasPriceTable(prices,
+				l_version));
+		l_station.setJournal(this);
+		return l_station;
+	}
+}
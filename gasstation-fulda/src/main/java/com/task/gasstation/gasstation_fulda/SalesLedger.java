@@ -0,0 +1,407 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is the off-heap columnar ledger of the purchases of the Fulda gas
+ * station, completed and cancelled, answering grouped aggregate queries over
+ * time ranges.
+ * 
+ * The rows are stored in chunks of direct byte buffers, each chunk holding one
+ * column after the other: the timestamps, the liters, the unit prices and the
+ * amounts as 8-byte primitives, then the gas types and the outcomes as bytes.
+ * A query scans the columns it needs in a tight loop, without creating any
+ * object per row, and the rows never weigh on the garbage collector.
+ * 
+ * The writers claim their row with one atomic increment, write its columns,
+ * then mark it published in the bitmap of its chunk. The readable rows are a
+ * prefix of the ledger: the published watermark only moves over rows that are
+ * all published, so that a query never reads a row being written.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class SalesLedger {
+
+	/**
+	 * The system property enabling the ledger of the load generator.
+	 */
+	public static final String ENABLED_PROPERTY = "gasstation.ledger";
+
+	/**
+	 * The system property setting the maximum number of rows of the ledger.
+	 */
+	public static final String CAPACITY_PROPERTY = "gasstation.ledger.capacity";
+
+	/**
+	 * The default maximum number of rows of the ledger.
+	 */
+	public static final long DEFAULT_CAPACITY = 1L << 22;
+
+	/**
+	 * The outcome of a customer who left because the waiting line was full.
+	 */
+	public static final int BALKED = 3;
+
+	/**
+	 * The outcome of a customer who left the waiting line after waiting too
+	 * long.
+	 */
+	public static final int RENEGED = 4;
+
+	/**
+	 * The outcome filter matching every outcome.
+	 */
+	public static final int ANY_OUTCOME = -1;
+
+	/**
+	 * The column of the liters of a row.
+	 */
+	public static final int LITERS = 1;
+
+	/**
+	 * The column of the unit price of a row.
+	 */
+	public static final int UNIT_PRICE = 2;
+
+	/**
+	 * The column of the amount charged of a row.
+	 */
+	public static final int AMOUNT = 3;
+
+	/**
+	 * The disabled ledger, storing nothing.
+	 */
+	public static final SalesLedger DISABLED = new SalesLedger(0);
+
+	/**
+	 * The number of bits of the number of rows of a chunk.
+	 */
+	private static final int CHUNK_BITS = 16;
+
+	/**
+	 * The number of rows of a chunk.
+	 */
+	private static final int CHUNK_ROWS = 1 << CHUNK_BITS;
+
+	/**
+	 * The offset of the gas types column in a chunk, after the four 8-byte
+	 * columns.
+	 */
+	private static final int TYPES_OFFSET = 4 * 8 * CHUNK_ROWS;
+
+	/**
+	 * The offset of the outcomes column in a chunk.
+	 */
+	private static final int OUTCOMES_OFFSET = TYPES_OFFSET + CHUNK_ROWS;
+
+	/**
+	 * The size of a chunk in bytes.
+	 */
+	private static final int CHUNK_SIZE = OUTCOMES_OFFSET + CHUNK_ROWS;
+
+	/**
+	 * The maximum number of rows of the ledger.
+	 */
+	private final long capacity;
+
+	/**
+	 * The chunks of the ledger, copied on growth.
+	 */
+	private volatile Chunk[] chunks = new Chunk[0];
+
+	/**
+	 * The number of rows claimed by the writers.
+	 */
+	private final AtomicLong claimed = new AtomicLong();
+
+	/**
+	 * The number of rows readable by the queries, all published.
+	 */
+	private final AtomicLong watermark = new AtomicLong();
+
+	/**
+	 * The rows dropped because the ledger was full.
+	 */
+	private final LongAdder dropped = new LongAdder();
+
+	/**
+	 * @param capacity
+	 *            the maximum number of rows of the ledger.
+	 */
+	public SalesLedger(long capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * This method creates a ledger with the capacity given by the system
+	 * properties.
+	 * 
+	 * @return the ledger.
+	 */
+	public static SalesLedger fromSystemProperties() {
+		return new SalesLedger(Long.getLong(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+	}
+
+	/**
+	 * This method appends the outcome of a purchase.
+	 * 
+	 * @param type
+	 *            the type of gas that the customer requested.
+	 * @param amountInLiters
+	 *            the amount of gas that the customer requested.
+	 * @param result
+	 *            the outcome of the purchase.
+	 */
+	void appendOutcome(GasType type, double amountInLiters, SaleResult result) {
+		append(type, result.getStatus(), amountInLiters, result.getUnitPrice(), result.getPrice());
+	}
+
+	/**
+	 * This method appends a purchase cancelled before reaching a pump.
+	 * 
+	 * @param type
+	 *            the type of gas that the customer requested.
+	 * @param outcome
+	 *            SaleResult.NO_GAS, BALKED or RENEGED.
+	 * @param amountInLiters
+	 *            the amount of gas that the customer requested.
+	 */
+	void appendCancellation(GasType type, int outcome, double amountInLiters) {
+		append(type, outcome, amountInLiters, Double.NaN, 0);
+	}
+
+	/**
+	 * This method writes one row, then publishes it.
+	 */
+	private void append(GasType type, int outcome, double liters, double unitPrice, double amount) {
+		if (capacity == 0) {
+			return;
+		}
+		long l_row = claimed.getAndIncrement();
+		if (l_row >= capacity) {
+			dropped.increment();
+			return;
+		}
+		Chunk l_chunk = chunk((int) (l_row >>> CHUNK_BITS));
+		int l_index = (int) (l_row & (CHUNK_ROWS - 1));
+		ByteBuffer l_columns = l_chunk.columns;
+		l_columns.putLong(l_index << 3, System.currentTimeMillis());
+		l_columns.putDouble((LITERS * CHUNK_ROWS + l_index) << 3, liters);
+		l_columns.putDouble((UNIT_PRICE * CHUNK_ROWS + l_index) << 3, unitPrice);
+		l_columns.putDouble((AMOUNT * CHUNK_ROWS + l_index) << 3, amount);
+		l_columns.put(TYPES_OFFSET + l_index, (byte) type.ordinal());
+		l_columns.put(OUTCOMES_OFFSET + l_index, (byte) outcome);
+		l_chunk.publish(l_index);
+		advanceWatermark();
+	}
+
+	/**
+	 * This method moves the watermark over the rows published after it, so
+	 * that the readable rows stay a prefix of the ledger.
+	 */
+	private void advanceWatermark() {
+		while (true) {
+			long l_watermark = watermark.get();
+			if (l_watermark >= Math.min(claimed.get(), capacity)) {
+				return;
+			}
+			Chunk[] l_chunks = chunks;
+			int l_chunk = (int) (l_watermark >>> CHUNK_BITS);
+			if (l_chunk >= l_chunks.length || l_chunks[l_chunk] == null
+					|| !l_chunks[l_chunk].isPublished((int) (l_watermark & (CHUNK_ROWS - 1)))) {
+				// The writer of that row moves the watermark once it is done.
+				return;
+			}
+			watermark.compareAndSet(l_watermark, l_watermark + 1);
+		}
+	}
+
+	/**
+	 * This method returns a chunk of the ledger, allocating it on first use.
+	 */
+	private Chunk chunk(int index) {
+		Chunk[] l_chunks = chunks;
+		if (index < l_chunks.length && l_chunks[index] != null) {
+			return l_chunks[index];
+		}
+		synchronized (this) {
+			l_chunks = chunks;
+			if (index >= l_chunks.length) {
+				l_chunks = Arrays.copyOf(l_chunks, Math.max(index + 1, l_chunks.length * 2));
+			} else if (l_chunks[index] != null) {
+				return l_chunks[index];
+			} else {
+				l_chunks = l_chunks.clone();
+			}
+			l_chunks[index] = new Chunk();
+			chunks = l_chunks;
+			return l_chunks[index];
+		}
+	}
+
+	/**
+	 * This method aggregates a column of the rows of a time range, grouped by
+	 * gas type and time bucket.
+	 * 
+	 * @param column
+	 *            the aggregated column: LITERS, UNIT_PRICE or AMOUNT.
+	 * @param outcome
+	 *            the outcome of the aggregated rows, ANY_OUTCOME for all.
+	 * @param fromMillis
+	 *            the start of the time range, included.
+	 * @param toMillis
+	 *            the end of the time range, excluded.
+	 * @param bucketMillis
+	 *            the duration of one time bucket.
+	 * 
+	 * @return the count and the sum of the column by gas type and bucket.
+	 */
+	public SalesAggregate aggregate(int column, int outcome, long fromMillis, long toMillis, long bucketMillis) {
+		return aggregate(column, outcome, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, fromMillis, toMillis,
+				bucketMillis);
+	}
+
+	/**
+	 * This method aggregates a column of the rows of a time range and of a
+	 * unit price range, grouped by gas type and time bucket. The rows without
+	 * a unit price are never in a unit price range, unless the range is
+	 * unbounded.
+	 * 
+	 * @param column
+	 *            the aggregated column: LITERS, UNIT_PRICE or AMOUNT.
+	 * @param outcome
+	 *            the outcome of the aggregated rows, ANY_OUTCOME for all.
+	 * @param minUnitPrice
+	 *            the lowest unit price of the aggregated rows, included.
+	 * @param maxUnitPrice
+	 *            the highest unit price of the aggregated rows, included.
+	 * @param fromMillis
+	 *            the start of the time range, included.
+	 * @param toMillis
+	 *            the end of the time range, excluded.
+	 * @param bucketMillis
+	 *            the duration of one time bucket.
+	 * 
+	 * @return the count and the sum of the column by gas type and bucket.
+	 */
+	public SalesAggregate aggregate(int column, int outcome, double minUnitPrice, double maxUnitPrice,
+			long fromMillis, long toMillis, long bucketMillis) {
+		if (column < LITERS || column > AMOUNT) {
+			throw new IllegalArgumentException("Unknown column: " + column);
+		}
+		if (bucketMillis <= 0 || toMillis <= fromMillis) {
+			throw new IllegalArgumentException("Empty time range or bucket: [" + fromMillis + ", " + toMillis
+					+ "[ by " + bucketMillis + " ms");
+		}
+		int l_buckets = (int) ((toMillis - fromMillis + bucketMillis - 1) / bucketMillis);
+		long[][] l_counts = new long[GasType.values().length][l_buckets];
+		double[][] l_sums = new double[GasType.values().length][l_buckets];
+		boolean l_anyPrice = minUnitPrice == Double.NEGATIVE_INFINITY && maxUnitPrice == Double.POSITIVE_INFINITY;
+		long l_rows = watermark.get();
+		Chunk[] l_chunks = chunks;
+		for (int c = 0; (long) c << CHUNK_BITS < l_rows; c++) {
+			ByteBuffer l_columns = l_chunks[c].columns;
+			int l_chunkRows = (int) Math.min(CHUNK_ROWS, l_rows - ((long) c << CHUNK_BITS));
+			int l_valueBase = column * CHUNK_ROWS;
+			for (int i = 0; i < l_chunkRows; i++) {
+				long l_timestamp = l_columns.getLong(i << 3);
+				if (l_timestamp < fromMillis || l_timestamp >= toMillis) {
+					continue;
+				}
+				if (outcome != ANY_OUTCOME && l_columns.get(OUTCOMES_OFFSET + i) != outcome) {
+					continue;
+				}
+				if (!l_anyPrice) {
+					double l_unitPrice = l_columns.getDouble((UNIT_PRICE * CHUNK_ROWS + i) << 3);
+					if (!(l_unitPrice >= minUnitPrice && l_unitPrice <= maxUnitPrice)) {
+						continue;
+					}
+				}
+				int l_type = l_columns.get(TYPES_OFFSET + i);
+				int l_bucket = (int) ((l_timestamp - fromMillis) / bucketMillis);
+				l_counts[l_type][l_bucket]++;
+				l_sums[l_type][l_bucket] += l_columns.getDouble((l_valueBase + i) << 3);
+			}
+		}
+		return new SalesAggregate(fromMillis, bucketMillis, l_counts, l_sums);
+	}
+
+	/**
+	 * @return the number of rows readable by the queries.
+	 */
+	public long getRows() {
+		return watermark.get();
+	}
+
+	/**
+	 * @return the rows dropped because the ledger was full.
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * @return the off-heap memory allocated by the ledger in bytes.
+	 */
+	public long getAllocatedBytes() {
+		long l_allocated = 0;
+		for (Chunk chunk : chunks) {
+			if (chunk != null) {
+				l_allocated += CHUNK_SIZE;
+			}
+		}
+		return l_allocated;
+	}
+
+	@Override
+	public String toString() {
+		return "SalesLedger [capacity=" + capacity + ", rows=" + watermark + ", dropped=" + dropped + "]";
+	}
+
+	/**
+	 * This class is one chunk of rows of the ledger: its columns in one direct
+	 * buffer, and the bitmap of its published rows.
+	 * 
+	 * @author Maher Abdelkhalek
+	 *
+	 */
+	private static final class Chunk {
+
+		/**
+		 * The columns of the rows of the chunk.
+		 */
+		final ByteBuffer columns = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.nativeOrder());
+
+		/**
+		 * The published rows of the chunk, one bit per row.
+		 */
+		final AtomicLongArray published = new AtomicLongArray(CHUNK_ROWS / 64);
+
+		/**
+		 * This method marks a row as published, after its columns are written.
+		 */
+		void publish(int index) {
+			int l_word = index >>> 6;
+			long l_bit = 1L << (index & 63);
+			long l_bits;
+			do {
+				l_bits = published.get(l_word);
+			} while (!published.compareAndSet(l_word, l_bits, l_bits | l_bit));
+		}
+
+		/**
+		 * @return true if the row is published.
+		 */
+		boolean isPublished(int index) {
+			return (published.get(index >>> 6) & (1L << (index & 63))) != 0;
+		}
+	}
+}
@@ -0,0 +1,429 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class counts the sales, the revenue and the cancellations of a station
+ * per gas type and per minute, over the last hour, to give the live rates over
+ * sliding windows of 5, 15 or 60 minutes.
+ * 
+ * The counters of a minute live in one bucket of a ring of 61 buckets, the
+ * counters of each gas type on their own cache line. Recording an outcome adds
+ * to the bucket of the current minute without any lock or allocation; the
+ * first outcome of a minute claims the bucket with a compare-and-set, marking
+ * it as being cleared so that the other threads wait for the few writes of the
+ * clearing instead of losing their counts. Reading a window sums at most 60
+ * buckets, whatever the number of sales.
+ * 
+ * The rates are divided by the time actually elapsed in the window: the
+ * window of a station younger than the window starts when the counting
+ * started, and a span shorter than one minute counts as one minute, so that
+ * the first sales are not extrapolated to a whole minute. The time is read
+ * from a clock, the wall clock by default, or the virtual clock of a
+ * simulation.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public final class SalesRates {
+
+	/**
+	 * The length of a bucket in milliseconds.
+	 */
+	static final long MINUTE = 60000;
+
+	/**
+	 * The longest window in minutes.
+	 */
+	public static final int MAX_WINDOW = 60;
+
+	/**
+	 * The number of buckets: the longest window and the current minute.
+	 */
+	private static final int BUCKETS = MAX_WINDOW + 1;
+
+	/**
+	 * The counter of the sales of a gas type.
+	 */
+	private static final int SALES = 0;
+
+	/**
+	 * The counter of the cancellations of a gas type.
+	 */
+	private static final int CANCELLATIONS = 1;
+
+	/**
+	 * The revenue of a gas type in cents.
+	 */
+	private static final int REVENUE = 2;
+
+	/**
+	 * The distance between the counters of two gas types: one cache line.
+	 */
+	private static final int STRIDE = 8;
+
+	/**
+	 * The wall clock in milliseconds.
+	 */
+	private static final LongSupplier SYSTEM_CLOCK = new LongSupplier() {
+		public long getAsLong() {
+			return System.currentTimeMillis();
+		}
+	};
+
+	/**
+	 * The gas types, indexed by ordinal.
+	 */
+	private static final GasType[] TYPES = GasType.values();
+
+	/**
+	 * The minute counted by each bucket, the complement of the minute while
+	 * the bucket is being cleared.
+	 */
+	private final AtomicLongArray minutes = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * The counters of every bucket and gas type.
+	 */
+	private final AtomicLongArray counters = new AtomicLongArray(BUCKETS * TYPES.length * STRIDE);
+
+	/**
+	 * The clock giving the time of the outcomes and of the windows in
+	 * milliseconds.
+	 */
+	private final LongSupplier clock;
+
+	/**
+	 * The time in milliseconds the counting started, limiting the windows of
+	 * a young station.
+	 */
+	private final long startMillis;
+
+	/**
+	 * Constructor of the class, counting by the wall clock.
+	 */
+	public SalesRates() {
+		this(SYSTEM_CLOCK);
+	}
+
+	/**
+	 * @param clock
+	 *            the clock giving the time in milliseconds, such as the
+	 *            virtual clock of a simulation. The counting starts at its
+	 *            current time.
+	 */
+	public SalesRates(LongSupplier clock) {
+		this(clock, clock.getAsLong());
+	}
+
+	/**
+	 * @param startMillis
+	 *            the time in milliseconds the counting starts, by the wall
+	 *            clock.
+	 */
+	SalesRates(long startMillis) {
+		this(SYSTEM_CLOCK, startMillis);
+	}
+
+	/**
+	 * @param clock
+	 *            the clock giving the time in milliseconds.
+	 * @param startMillis
+	 *            the time in milliseconds the counting starts.
+	 */
+	private SalesRates(LongSupplier clock, long startMillis) {
+		this.clock = clock;
+		this.startMillis = startMillis;
+		// No bucket counts a minute yet.
+		for (int i = 0; i < BUCKETS; i++) {
+			minutes.set(i, Long.MIN_VALUE);
+		}
+	}
+
+	/**
+	 * This method counts the outcome of a purchase.
+	 * 
+	 * @param type
+	 *            the type of gas that the customer requested.
+	 * @param result
+	 *            the outcome of the purchase.
+	 */
+	void recordOutcome(GasType type, SaleResult result) {
+		if (result.getStatus() == SaleResult.SOLD) {
+			recordSale(type, result.getPriceInCents(), clock.getAsLong());
+		} else {
+			recordCancellation(type, clock.getAsLong());
+		}
+	}
+
+	/**
+	 * This method counts a purchase cancelled before reaching a pump.
+	 * 
+	 * @param type
+	 *            the type of gas that the customer requested.
+	 */
+	void recordCancellation(GasType type) {
+		recordCancellation(type, clock.getAsLong());
+	}
+
+	/**
+	 * This method counts a sale.
+	 * 
+	 * @param type
+	 *            the type of gas sold.
+	 * @param price
+	 *            the amount in cents charged to the customer.
+	 * @param nowMillis
+	 *            the time of the sale in milliseconds.
+	 */
+	void recordSale(GasType type, long price, long nowMillis) {
+		int l_base = claim(nowMillis / MINUTE);
+		if (l_base < 0) {
+			return;
+		}
+		l_base += type.ordinal() * STRIDE;
+		counters.incrementAndGet(l_base + SALES);
+		counters.addAndGet(l_base + REVENUE, price);
+	}
+
+	/**
+	 * This method counts a cancellation.
+	 * 
+	 * @param type
+	 *            the type of gas that the customer requested.
+	 * @param nowMillis
+	 *            the time of the cancellation in milliseconds.
+	 */
+	void recordCancellation(GasType type, long nowMillis) {
+		int l_base = claim(nowMillis / MINUTE);
+		if (l_base >= 0) {
+			counters.incrementAndGet(l_base + type.ordinal() * STRIDE + CANCELLATIONS);
+		}
+	}
+
+	/**
+	 * This method makes the bucket of a minute count that minute, clearing the
+	 * minute it counted a lap of the ring ago.
+	 * 
+	 * @param minute
+	 *            the minute since the epoch.
+	 * 
+	 * @return the index of the first counter of the bucket, or a negative
+	 *         value if the bucket already counts a later minute.
+	 */
+	private int claim(long minute) {
+		int l_bucket = (int) (minute % BUCKETS);
+		while (true) {
+			long l_minute = minutes.get(l_bucket);
+			if (l_minute == minute) {
+				return l_bucket * TYPES.length * STRIDE;
+			}
+			if (l_minute < 0 && l_minute != Long.MIN_VALUE) {
+				// Another thread is clearing the bucket.
+				Thread.yield();
+			} else if (l_minute > minute) {
+				// The outcome is late by a whole lap of the ring.
+				return -1;
+			} else if (minutes.compareAndSet(l_bucket, l_minute, ~minute)) {
+				int l_base = l_bucket * TYPES.length * STRIDE;
+				for (int i = 0; i < TYPES.length * STRIDE; i++) {
+					counters.set(l_base + i, 0);
+				}
+				minutes.set(l_bucket, minute);
+				return l_base;
+			}
+		}
+	}
+
+	/**
+	 * This method sums a counter over a window.
+	 * 
+	 * @param type
+	 *            the gas type, null for all gas types.
+	 * @param counter
+	 *            SALES, CANCELLATIONS or REVENUE.
+	 * @param minutes
+	 *            the length of the window.
+	 * @param nowMillis
+	 *            the end of the window in milliseconds.
+	 */
+	private long sum(GasType type, int counter, int minutes, long nowMillis) {
+		checkWindow(minutes);
+		long l_now = nowMillis / MINUTE;
+		long l_sum = 0;
+		// Nothing is counted before the counting started, by a virtual clock
+		// starting at 0 too.
+		for (long m = Math.max(startMillis / MINUTE, l_now - minutes + 1); m <= l_now; m++) {
+			int l_bucket = (int) (m % BUCKETS);
+			// Skipping the buckets counting another minute, or being cleared.
+			if (this.minutes.get(l_bucket) != m) {
+				continue;
+			}
+			for (GasType t : TYPES) {
+				if (type != null && t != type) {
+					continue;
+				}
+				l_sum += counters.get((l_bucket * TYPES.length + t.ordinal()) * STRIDE + counter);
+			}
+		}
+		return l_sum;
+	}
+
+	/**
+	 * This method gives the minutes actually elapsed in a window: the complete
+	 * minutes and the elapsed part of the current one, but not the time
+	 * before the counting started, and at least one minute.
+	 */
+	private double coveredMinutes(int minutes, long nowMillis) {
+		long l_from = Math.max(startMillis, (nowMillis / MINUTE - minutes + 1) * MINUTE);
+		return Math.max(MINUTE, nowMillis - l_from) / (double) MINUTE;
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the window is not between 1 and 60 minutes.
+	 */
+	private static void checkWindow(int minutes) {
+		if (minutes < 1 || minutes > MAX_WINDOW) {
+			throw new IllegalArgumentException("The window must last 1 to " + MAX_WINDOW + " minutes: " + minutes);
+		}
+	}
+
+	/**
+	 * @param minutes
+	 *            the length of the window, 1 to 60.
+	 * 
+	 * @return the sales per minute over the last minutes.
+	 */
+	public double getSalesPerMinute(int minutes) {
+		return getSalesPerMinute(null, minutes);
+	}
+
+	/**
+	 * @param type
+	 *            the gas type, null for all gas types.
+	 * @param minutes
+	 *            the length of the window, 1 to 60.
+	 * 
+	 * @return the sales of the gas type per minute over the last minutes.
+	 */
+	public double getSalesPerMinute(GasType type, int minutes) {
+		long l_now = clock.getAsLong();
+		return sum(type, SALES, minutes, l_now) / coveredMinutes(minutes, l_now);
+	}
+
+	/**
+	 * @param minutes
+	 *            the length of the window, 1 to 60.
+	 * 
+	 * @return the revenue in Euro per minute over the last minutes.
+	 */
+	public double getRevenuePerMinute(int minutes) {
+		return getRevenuePerMinute(null, minutes);
+	}
+
+	/**
+	 * @param type
+	 *            the gas type, null for all gas types.
+	 * @param minutes
+	 *            the length of the window, 1 to 60.
+	 * 
+	 * @return the revenue of the gas type in Euro per minute over the last
+	 *         minutes.
+	 */
+	public double getRevenuePerMinute(GasType type, int minutes) {
+		long l_now = clock.getAsLong();
+		return FixedPoint.toEuros(sum(type, REVENUE, minutes, l_now)) / coveredMinutes(minutes, l_now);
+	}
+
+	/**
+	 * @param minutes
+	 *            the length of the window, 1 to 60.
+	 * 
+	 * @return the cancellations per minute over the last minutes.
+	 */
+	public double getCancellationsPerMinute(int minutes) {
+		return getCancellationsPerMinute(null, minutes);
+	}
+
+	/**
+	 * @param type
+	 *            the gas type, null for all gas types.
+	 * @param minutes
+	 *            the length of the window, 1 to 60.
+	 * 
+	 * @return the cancellations of the gas type per minute over the last
+	 *         minutes.
+	 */
+	public double getCancellationsPerMinute(GasType type, int minutes) {
+		long l_now = clock.getAsLong();
+		return sum(type, CANCELLATIONS, minutes, l_now) / coveredMinutes(minutes, l_now);
+	}
+
+	/**
+	 * @param type
+	 *            the gas type, null for all gas types.
+	 * @param minutes
+	 *            the length of the window, 1 to 60.
+	 * 
+	 * @return the share of the purchases of the gas type cancelled over the
+	 *         last minutes, NaN if there was no purchase.
+	 */
+	public double getCancellationRatio(GasType type, int minutes) {
+		return getCancellationRatio(type, minutes, clock.getAsLong());
+	}
+
+	/**
+	 * @param type
+	 *            the gas type, null for all gas types.
+	 * @param minutes
+	 *            the length of the window, 1 to 60.
+	 * @param nowMillis
+	 *            the end of the window in milliseconds.
+	 * 
+	 * @return the share of the purchases of the gas type cancelled over the
+	 *         window, NaN if there was no purchase.
+	 */
+	double getCancellationRatio(GasType type, int minutes, long nowMillis) {
+		double l_cancellations = sum(type, CANCELLATIONS, minutes, nowMillis);
+		double l_purchases = l_cancellations + sum(type, SALES, minutes, nowMillis);
+		return l_purchases == 0 ? Double.NaN : l_cancellations / l_purchases;
+	}
+
+	/**
+	 * @param type
+	 *            the gas type, null for all gas types.
+	 * @param minutes
+	 *            the length of the window, 1 to 60.
+	 * @param nowMillis
+	 *            the end of the window in milliseconds.
+	 * 
+	 * @return the sales of the gas type counted over the window.
+	 */
+	long getSales(GasType type, int minutes, long nowMillis) {
+		return sum(type, SALES, minutes, nowMillis);
+	}
+
+	/**
+	 * @param type
+	 *            the gas type, null for all gas types.
+	 * @param minutes
+	 *            the length of the window, 1 to 60.
+	 * @param nowMillis
+	 *            the end of the window in milliseconds.
+	 * 
+	 * @return the revenue of the gas type counted over the window.
+	 */
+	double getRevenue(GasType type, int minutes, long nowMillis) {
+		return FixedPoint.toEuros(sum(type, REVENUE, minutes, nowMillis));
+	}
+
+	@Override
+	public String toString() {
+		return "SalesRates [startMillis=" + startMillis + ", salesPerMinute5=" + getSalesPerMinute(5)
+				+ ", salesPerMinute15=" + getSalesPerMinute(15) + ", salesPerMinute60=" + getSalesPerMinute(60) + "]";
+	}
+}
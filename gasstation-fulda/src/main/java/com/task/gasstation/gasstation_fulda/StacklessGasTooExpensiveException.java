@@ -0,0 +1,20 @@
+package com.task.gasstation.gasstation_fulda;
+
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+
+/**
+ * This class is a GasTooExpensiveException that does not fill in its stack
+ * trace, since a cancelled sale is an expected outcome and not a failure.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+final class StacklessGasTooExpensiveException extends GasTooExpensiveException {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+}
@@ -0,0 +1,20 @@
+package com.task.gasstation.gasstation_fulda;
+
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+
+/**
+ * This class is a NotEnoughGasException that does not fill in its stack
+ * trace, since a cancelled sale is an expected outcome and not a failure.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+final class StacklessNotEnoughGasException extends NotEnoughGasException {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+}
@@ -0,0 +1,29 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * This class is a RejectedExecutionException that does not fill in its stack
+ * trace, since a customer balking at a full waiting line is an expected
+ * outcome and not a failure.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+final class StacklessRejectedExecutionException extends RejectedExecutionException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param message
+	 *            the detail message.
+	 */
+	StacklessRejectedExecutionException(String message) {
+		super(message);
+	}
+
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+}
@@ -0,0 +1,59 @@
+package com.task.gasstation.gasstation_fulda;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is a standing gas order: a customer parked with a maximum price
+ * until the price of the gas type drops to it.
+ * 
+ * The order is also the future completed with the amount charged to the
+ * customer. Cancelling the future withdraws the order from the book, unless
+ * the order was already matched and is being served.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+class StandingGasOrder extends PendingGasOrder {
+
+	/**
+	 * The arrival rank of the order, breaking the ties between the orders of
+	 * the same maximum price.
+	 */
+	final long sequence;
+
+	/**
+	 * The book holding the order while it is parked.
+	 */
+	private final StandingOrderBook book;
+
+	/**
+	 * @param type
+	 *            the type of gas that the customer requests.
+	 * @param amountInLiters
+	 *            the amount of gas in Liter that the customer requests.
+	 * @param maxPricePerLiter
+	 *            the price of gas Liter in Euro that the customer expects.
+	 * @param sequence
+	 *            the arrival rank of the order.
+	 * @param book
+	 *            the book holding the order while it is parked.
+	 */
+	StandingGasOrder(GasType type, double amountInLiters, double maxPricePerLiter, long sequence,
+			StandingOrderBook book) {
+		super(type, amountInLiters, maxPricePerLiter, 0);
+		this.sequence = sequence;
+		this.book = book;
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		// A matched order is being served and cannot be withdrawn anymore.
+		return book.remove(this) && super.cancel(mayInterruptIfRunning);
+	}
+
+	@Override
+	public String toString() {
+		return "StandingGasOrder [type=" + type + ", amountInLiters=" + amountInLiters + ", maxPricePerLiter="
+				+ maxPricePerLiter + ", sequence=" + sequence + "]";
+	}
+}
@@ -0,0 +1,131 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is the book of the standing gas orders of a station, indexed by
+ * gas type and sorted by maximum price.
+ * 
+ * Each gas type has a concurrent skip list ordered from the highest maximum
+ * price down, then by arrival. A price drop only walks the head of the list,
+ * down to the first order that the new price does not satisfy, so that
+ * matching costs a logarithmic time per matched order whatever the number of
+ * parked orders. Parking and withdrawing an order never lock.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+class StandingOrderBook {
+
+	/**
+	 * The order of the book: the highest maximum price first, then the oldest
+	 * order first.
+	 */
+	private static final Comparator<StandingGasOrder> BY_PRICE = new Comparator<StandingGasOrder>() {
+		public int compare(StandingGasOrder o1, StandingGasOrder o2) {
+			int l_byPrice = Double.compare(o2.maxPricePerLiter, o1.maxPricePerLiter);
+			return l_byPrice != 0 ? l_byPrice : Long.compare(o1.sequence, o2.sequence);
+		}
+	};
+
+	/**
+	 * The parked orders by gas type, created for every gas type up front.
+	 */
+	private final EnumMap<GasType, ConcurrentSkipListSet<StandingGasOrder>> ordersByType =
+			new EnumMap<GasType, ConcurrentSkipListSet<StandingGasOrder>>(GasType.class);
+
+	/**
+	 * The arrival rank of the next order.
+	 */
+	private final AtomicLong nextSequence = new AtomicLong();
+
+	/**
+	 * Constructor of the class.
+	 */
+	StandingOrderBook() {
+		for (GasType type : GasType.values()) {
+			ordersByType.put(type, new ConcurrentSkipListSet<StandingGasOrder>(BY_PRICE));
+		}
+	}
+
+	/**
+	 * This method parks a new standing order.
+	 * 
+	 * @param type
+	 *            the type of gas that the customer requests.
+	 * @param amountInLiters
+	 *            the amount of gas that the customer requests.
+	 * @param maxPricePerLiter
+	 *            the price of gas Liter that the customer expects.
+	 * 
+	 * @return the parked order.
+	 */
+	StandingGasOrder park(GasType type, double amountInLiters, double maxPricePerLiter) {
+		StandingGasOrder l_order = new StandingGasOrder(type, amountInLiters, maxPricePerLiter,
+				nextSequence.getAndIncrement(), this);
+		ordersByType.get(type).add(l_order);
+		return l_order;
+	}
+
+	/**
+	 * This method withdraws a parked order.
+	 * 
+	 * @param order
+	 *            the order.
+	 * 
+	 * @return true if the order was parked, false if it was already matched
+	 *         or withdrawn.
+	 */
+	boolean remove(StandingGasOrder order) {
+		return ordersByType.get(order.type).remove(order);
+	}
+
+	/**
+	 * This method takes the parked order of the highest maximum price, if the
+	 * given price satisfies it.
+	 * 
+	 * @param type
+	 *            the gas type.
+	 * @param pricePerLiter
+	 *            the current price of the gas type.
+	 * 
+	 * @return the matched order, now out of the book, or null if no parked
+	 *         order accepts the price.
+	 */
+	StandingGasOrder pollAtOrAbove(GasType type, double pricePerLiter) {
+		ConcurrentSkipListSet<StandingGasOrder> l_orders = ordersByType.get(type);
+		// Walking the orders from the highest maximum price down, the first
+		// order that the price does not satisfy ends the range.
+		for (StandingGasOrder order : l_orders) {
+			if (!(order.maxPricePerLiter >= pricePerLiter)) {
+				return null;
+			}
+			// Another matcher or a withdrawal may take the order first.
+			if (l_orders.remove(order)) {
+				return order;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the number of parked orders of the gas type, counted by walking
+	 *         the book.
+	 */
+	int size(GasType type) {
+		return ordersByType.get(type).size();
+	}
+
+	@Override
+	public String toString() {
+		return "StandingOrderBook [nextSequence=" + nextSequence + "]";
+	}
+}
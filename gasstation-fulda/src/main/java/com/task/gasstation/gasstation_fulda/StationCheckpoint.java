@@ -0,0 +1,377 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is a checkpoint of the Fulda gas station: its pumps with their
+ * remaining amount of gas and sales statistics, its prices list and its
+ * counters, saved in a compact binary file so that the station restarts in
+ * milliseconds.
+ * 
+ * A checkpoint is captured without stopping the sales: each pump is read
+ * between two of its purchases through its sequence lock, and the prices list
+ * is an immutable snapshot. The pumps do not depend on each other, so that the
+ * captured state is a state the station could have been in.
+ * 
+ * The file is written next to the previous checkpoint and moved over it, so
+ * that a crash during a checkpoint keeps the previous one. A checksum detects
+ * a corrupted file.
+ * 
+ * The checkpoint keeps the number of records of the journal of the station
+ * when it was captured, so that the records appended after it are replayed on
+ * restore. The number is read before the pumps, so that no record is lost,
+ * and the replay skips the records of the outcomes that the pumps and the
+ * counters of the checkpoint hold already, by their ordinal: a purchase
+ * finishing while the checkpoint is captured is counted exactly once.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public final class StationCheckpoint {
+
+	/**
+	 * The system property setting the checkpoint file of the simulator.
+	 */
+	public static final String CHECKPOINT_PROPERTY = "gasstation.checkpoint";
+
+	/**
+	 * The system property setting the period in milliseconds between two
+	 * checkpoints of the simulator.
+	 */
+	public static final String PERIOD_PROPERTY = "gasstation.checkpoint.period";
+
+	/**
+	 * The default period in milliseconds between two checkpoints.
+	 */
+	public static final long DEFAULT_PERIOD = 5000;
+
+	/**
+	 * The first bytes of a checkpoint file.
+	 */
+	private static final int MAGIC = 0x47534350;
+
+	/**
+	 * The version of the checkpoint file format.
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * The time in milliseconds when the checkpoint was captured.
+	 */
+	private final long timestamp;
+
+	/**
+	 * The prices list of the station.
+	 */
+	private final GasPriceTable prices;
+
+	/**
+	 * The states of the pumps, ordered by gas type and position.
+	 */
+	private final List<PumpState> pumps;
+
+	/**
+	 * The purchases cancelled because no pump served their gas type.
+	 */
+	private final long cancellationsNoPump;
+
+	/**
+	 * The customers who left because the waiting line was full.
+	 */
+	private final long cancellationsBalked;
+
+	/**
+	 * The customers who left the waiting line after waiting too long.
+	 */
+	private final long cancellationsReneged;
+
+	/**
+	 * The number of records of the journal of the station when the checkpoint
+	 * was captured, -1 if unknown.
+	 */
+	private final long journalRecords;
+
+	/**
+	 * @param timestamp
+	 *            the time in milliseconds when the checkpoint was captured.
+	 * @param prices
+	 *            the prices list of the station.
+	 * @param pumps
+	 *            the states of the pumps, ordered by gas type and position.
+	 * @param cancellationsNoPump
+	 *            the purchases cancelled because no pump served their gas
+	 *            type.
+	 * @param cancellationsBalked
+	 *            the customers who left because the waiting line was full.
+	 * @param cancellationsReneged
+	 *            the customers who left the waiting line after waiting too
+	 *            long.
+	 * @param journalRecords
+	 *            the number of records of the journal of the station when the
+	 *            checkpoint was captured, -1 if unknown.
+	 */
+	private StationCheckpoint(long timestamp, GasPriceTable prices, List<PumpState> pumps,
+			long cancellationsNoPump, long cancellationsBalked, long cancellationsReneged, long journalRecords) {
+		this.timestamp = timestamp;
+		this.prices = prices;
+		this.pumps = Collections.unmodifiableList(pumps);
+		this.cancellationsNoPump = cancellationsNoPump;
+		this.cancellationsBalked = cancellationsBalked;
+		this.cancellationsReneged = cancellationsReneged;
+		this.journalRecords = journalRecords;
+	}
+
+	/**
+	 * This method captures a checkpoint of a station without stopping the
+	 * sales.
+	 * 
+	 * @param fGasStation
+	 *            the gas station.
+	 * 
+	 * @return the checkpoint of the station.
+	 */
+	public static StationCheckpoint capture(FuldaGasStation fGasStation) {
+		// Reading the journal first: its records are all in the state read
+		// after.
+		SalesJournal l_journal = fGasStation.getJournal();
+		return capture(fGasStation, l_journal == SalesJournal.DISABLED ? -1 : l_journal.getRecords());
+	}
+
+	/**
+	 * This method captures a checkpoint of a station, given the number of
+	 * records of its journal read before.
+	 * 
+	 * @param fGasStation
+	 *            the gas station.
+	 * @param journalRecords
+	 *            the number of records of the journal of the station, read
+	 *            before the capture, -1 if unknown.
+	 * 
+	 * @return the checkpoint of the station.
+	 */
+	static StationCheckpoint capture(FuldaGasStation fGasStation, long journalRecords) {
+		return new StationCheckpoint(System.currentTimeMillis(), fGasStation.getPriceTable(),
+				fGasStation.getPumpStates(), fGasStation.getNumberOfCancellationsNoPump(),
+				fGasStation.getNumberOfCancellationsBalked(), fGasStation.getNumberOfCancellationsReneged(),
+				journalRecords);
+	}
+
+	/**
+	 * This method writes the checkpoint to a file, replacing the previous
+	 * checkpoint only once the new one is complete.
+	 * 
+	 * @param file
+	 *            the checkpoint file.
+	 * @throws IOException
+	 */
+	public void writeTo(Path file) throws IOException {
+		Path l_temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		CRC32 l_checksum = new CRC32();
+		try (DataOutputStream l_out = new DataOutputStream(new CheckedOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(l_temporary)), l_checksum))) {
+			l_out.writeInt(MAGIC);
+			l_out.writeInt(FORMAT_VERSION);
+			l_out.writeLong(timestamp);
+			l_out.writeLong(prices.getVersion());
+			l_out.writeByte(GasType.values().length);
+			for (GasType type : GasType.values()) {
+				l_out.writeDouble(prices.getPriceOrNaN(type));
+			}
+			l_out.writeLong(cancellationsNoPump);
+			l_out.writeLong(cancellationsBalked);
+			l_out.writeLong(cancellationsReneged);
+			l_out.writeLong(journalRecords);
+			l_out.writeInt(pumps.size());
+			for (PumpState pump : pumps) {
+				l_out.writeByte(pump.getType().ordinal());
+				l_out.writeDouble(pump.getRemainingAmount());
+				l_out.writeLong(pump.getSales());
+				l_out.writeDouble(pump.getRevenue());
+				l_out.writeLong(pump.getCancellationsNoGas());
+				l_out.writeLong(pump.getCancellationsTooExpensive());
+			}
+			// The checksum of everything written before.
+			l_out.flush();
+			l_out.writeLong(l_checksum.getValue());
+		}
+		Files.move(l_temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * This method reads a checkpoint file.
+	 * 
+	 * @param file
+	 *            the checkpoint file.
+	 * 
+	 * @return the checkpoint.
+	 * @throws IOException
+	 *             if the file cannot be read, or is not a valid checkpoint.
+	 */
+	public static StationCheckpoint readFrom(Path file) throws IOException {
+		CRC32 l_checksum = new CRC32();
+		try (DataInputStream l_in = new DataInputStream(new CheckedInputStream(
+				new BufferedInputStream(Files.newInputStream(file)), l_checksum))) {
+			if (l_in.readInt() != MAGIC) {
+				throw new IOException("Not a gas station checkpoint: " + file);
+			}
+			int l_format = l_in.readInt();
+			if (l_format != FORMAT_VERSION) {
+				throw new IOException("Unsupported gas station checkpoint format " + l_format + ": " + file);
+			}
+			long l_timestamp = l_in.readLong();
+			long l_version = l_in.readLong();
+			int l_typesCount = l_in.readByte();
+			if (l_typesCount != GasType.values().length) {
+				throw new IOException("Unexpected number of gas types in checkpoint: " + l_typesCount);
+			}
+			double[] l_prices = new double[l_typesCount];
+			for (int t = 0; t < l_typesCount; t++) {
+				l_prices[t] = l_in.readDouble();
+			}
+			long l_cancellationsNoPump = l_in.readLong();
+			long l_cancellationsBalked = l_in.readLong();
+			long l_cancellationsReneged = l_in.readLong();
+			long l_journalRecords = l_in.readLong();
+			int l_pumpsCount = l_in.readInt();
+			List<PumpState> l_pumps = new ArrayList<PumpState>(l_pumpsCount);
+			int[] l_indexes = new int[l_typesCount];
+			for (int i = 0; i < l_pumpsCount; i++) {
+				int l_type = l_in.readByte();
+				l_pumps.add(new PumpState(GasType.values()[l_type], l_indexes[l_type]++, l_in.readDouble(),
+						l_in.readLong(), l_in.readDouble(), l_in.readLong(), l_in.readLong()));
+			}
+			long l_expected = l_checksum.getValue();
+			if (l_in.readLong() != l_expected) {
+				throw new IOException("Corrupted gas station checkpoint: " + file);
+			}
+			return new StationCheckpoint(l_timestamp, new GasPriceTable(l_prices, l_version), l_pumps,
+					l_cancellationsNoPump, l_cancellationsBalked, l_cancellationsReneged, l_journalRecords);
+		}
+	}
+
+	/**
+	 * This method rebuilds a gas station from the checkpoint.
+	 * 
+	 * @return the rebuilt gas station.
+	 */
+	public FuldaGasStation restore() {
+		FuldaGasStation l_station = new FuldaGasStation();
+		for (PumpState pump : pumps) {
+			l_station.restorePump(new GasPump(pump.getType(), pump.getRemainingAmount()), pump.getSales(),
+					FixedPoint.toCents(pump.getRevenue()), pump.getCancellationsNoGas(),
+					pump.getCancellationsTooExpensive());
+		}
+		l_station.restore(cancellationsNoPump, cancellationsBalked, cancellationsReneged, prices);
+		return l_station;
+	}
+
+	/**
+	 * This method rebuilds a gas station from the checkpoint and the records
+	 * appended to its journal after the checkpoint was captured, then attaches
+	 * the journal to the new station.
+	 * 
+	 * @param journal
+	 *            the journal of the station, SalesJournal.DISABLED if none.
+	 * 
+	 * @return the rebuilt gas station.
+	 */
+	public FuldaGasStation restore(SalesJournal journal) {
+		return journal.recover(this);
+	}
+
+	/**
+	 * This method checkpoints a station periodically.
+	 * 
+	 * @param scheduler
+	 *            the scheduler running the checkpoints.
+	 * @param fGasStation
+	 *            the gas station.
+	 * @param file
+	 *            the checkpoint file.
+	 * @param period
+	 *            the period in milliseconds between two checkpoints.
+	 * 
+	 * @return the handle cancelling the checkpoints.
+	 */
+	public static ScheduledFuture<?> schedule(ScheduledExecutorService scheduler, final FuldaGasStation fGasStation,
+			final Path file, long period) {
+		return scheduler.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					capture(fGasStation).writeTo(file);
+				} catch (IOException e) {
+					System.err.println("The gas station checkpoint failed: " + e);
+				}
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return the time in milliseconds when the checkpoint was captured.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return the prices list of the station.
+	 */
+	public GasPriceTable getPrices() {
+		return prices;
+	}
+
+	/**
+	 * @return the states of the pumps, ordered by gas type and position.
+	 */
+	public List<PumpState> getPumps() {
+		return pumps;
+	}
+
+	/**
+	 * @return the purchases cancelled because no pump served their gas type.
+	 */
+	public long getCancellationsNoPump() {
+		return cancellationsNoPump;
+	}
+
+	/**
+	 * @return the customers who left because the waiting line was full.
+	 */
+	public long getCancellationsBalked() {
+		return cancellationsBalked;
+	}
+
+	/**
+	 * @return the customers who left the waiting line after waiting too long.
+	 */
+	public long getCancellationsReneged() {
+		return cancellationsReneged;
+	}
+
+	/**
+	 * @return the number of records of the journal of the station when the
+	 *         checkpoint was captured, -1 if unknown.
+	 */
+	public long getJournalRecords() {
+		return journalRecords;
+	}
+}
@@ -0,0 +1,439 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is a client of the binary protocol of the station server (see
+ * StationProtocol), for the pump terminals.
+ * 
+ * The requests are pipelined on one connection: every call sends its request
+ * and returns a future completed by its reply, in whatever order the server
+ * answers. The correlation id of a request names the slot holding its future,
+ * so that a reply finds its request without any lookup. At most MAX_IN_FLIGHT
+ * requests wait for their replies, the next calls waiting for a free slot.
+ * 
+ * The concurrent calls share the writes: the frames are encoded into a pooled
+ * buffer, and a call finding a write in progress leaves its frame to the next
+ * write instead of writing it itself. A burst of purchases of one caller is
+ * written at once by buyGasBatch.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class StationClient implements Closeable {
+
+	/**
+	 * The number of bits of a correlation id naming the slot of the request.
+	 */
+	private static final int SLOT_BITS = 10;
+
+	/**
+	 * The maximum number of requests waiting for their replies.
+	 */
+	public static final int MAX_IN_FLIGHT = 1 << SLOT_BITS;
+
+	/**
+	 * The size of the buffer of the replies read.
+	 */
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The channel to the server, in blocking mode.
+	 */
+	private final SocketChannel channel;
+
+	/**
+	 * The futures of the requests in flight, by slot.
+	 */
+	private final AtomicReferenceArray<CompletableFuture<?>> futures =
+			new AtomicReferenceArray<CompletableFuture<?>>(MAX_IN_FLIGHT);
+
+	/**
+	 * The correlation ids of the requests in flight by slot, 0 for a free
+	 * slot.
+	 */
+	private final AtomicLongArray correlationIds = new AtomicLongArray(MAX_IN_FLIGHT);
+
+	/**
+	 * The free slots.
+	 */
+	private final Semaphore freeSlots = new Semaphore(MAX_IN_FLIGHT);
+
+	/**
+	 * The slot tried first by the next request.
+	 */
+	private final AtomicInteger nextSlot = new AtomicInteger();
+
+	/**
+	 * The number of requests sent, making the correlation ids unique.
+	 */
+	private final AtomicLong sentRequests = new AtomicLong();
+
+	/**
+	 * The lock of the buffers of the requests.
+	 */
+	private final Object writeLock = new Object();
+
+	/**
+	 * The requests encoded and not written yet, holding all the requests in
+	 * flight at most.
+	 */
+	private ByteBuffer pending = ByteBuffer.allocateDirect(MAX_IN_FLIGHT * StationProtocol.REQUEST_SIZE);
+
+	/**
+	 * The requests being written.
+	 */
+	private ByteBuffer writing = ByteBuffer.allocateDirect(MAX_IN_FLIGHT * StationProtocol.REQUEST_SIZE);
+
+	/**
+	 * Whether a call is writing the requests.
+	 */
+	private boolean flushing;
+
+	/**
+	 * Whether the connection is closed.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * This constructor connects to the server, and starts the thread reading
+	 * the replies.
+	 * 
+	 * @param address
+	 *            the address of the server.
+	 * 
+	 * @throws IOException
+	 *             if the server cannot be reached.
+	 */
+	public StationClient(InetSocketAddress address) throws IOException {
+		this.channel = SocketChannel.open(address);
+		channel.socket().setTcpNoDelay(true);
+		ByteBuffer l_magic = ByteBuffer.allocate(1);
+		l_magic.put(0, StationProtocol.MAGIC);
+		channel.write(l_magic);
+		Thread l_reader = new StationExecutors.NamedThreadFactory("client", true).newThread(new Runnable() {
+			public void run() {
+				readReplies();
+			}
+		});
+		l_reader.start();
+	}
+
+	/**
+	 * This method buys gas.
+	 * 
+	 * @param type
+	 *            the type of gas that the customer requests.
+	 * @param amountInLiters
+	 *            the amount of gas that the customer requests.
+	 * @param maxPricePerLiter
+	 *            the price of gas Liter that the customer expects.
+	 * 
+	 * @return the future amount in Euro charged to the customer, completed
+	 *         exceptionally with NotEnoughGasException or
+	 *         GasTooExpensiveException if the sale is cancelled, or with
+	 *         RejectedExecutionException if the waiting line is full.
+	 */
+	public CompletableFuture<Double> buyGas(GasType type, double amountInLiters, double maxPricePerLiter) {
+		return request(StationProtocol.BUY, type, StationProtocol.toFixedPoint(amountInLiters),
+				StationProtocol.toFixedPoint(maxPricePerLiter));
+	}
+
+	/**
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the future price of one Liter of the gas type in Euro.
+	 */
+	public CompletableFuture<Double> getPrice(GasType type) {
+		return request(StationProtocol.PRICE, type, 0, 0);
+	}
+
+	/**
+	 * This method sets the price of a gas type.
+	 * 
+	 * @param type
+	 *            the gas type.
+	 * @param price
+	 *            the new price of one Liter in Euro.
+	 * 
+	 * @return the future completed once the price is set.
+	 */
+	public CompletableFuture<Void> setPrice(GasType type, double price) {
+		return request(StationProtocol.SET_PRICE, type, StationProtocol.toFixedPoint(price), 0);
+	}
+
+	/**
+	 * @return the future revenue and sales counters of the station.
+	 */
+	public CompletableFuture<StationStatus> getStatus() {
+		return request(StationProtocol.STATUS, null, 0, 0);
+	}
+
+	/**
+	 * This method buys gas for a burst of orders, written to the server at
+	 * once.
+	 * 
+	 * @param orders
+	 *            the orders of the customers.
+	 * 
+	 * @return the future amount charged for each order, in the order of the
+	 *         given orders, completed like the futures of buyGas.
+	 */
+	public List<CompletableFuture<Double>> buyGasBatch(List<GasOrder> orders) {
+		List<CompletableFuture<Double>> l_futures = new ArrayList<CompletableFuture<Double>>(orders.size());
+		for (GasOrder order : orders) {
+			CompletableFuture<Double> l_future = enqueue(StationProtocol.BUY, order.getType(),
+					StationProtocol.toFixedPoint(order.getAmountInLiters()),
+					StationProtocol.toFixedPoint(order.getMaxPricePerLiter()));
+			l_futures.add(l_future);
+		}
+		flush();
+		return l_futures;
+	}
+
+	/**
+	 * This method sends a request.
+	 * 
+	 * @return the future of the reply.
+	 */
+	private <T> CompletableFuture<T> request(int operation, GasType type, long first, long second) {
+		CompletableFuture<T> l_future = enqueue(operation, type, first, second);
+		flush();
+		return l_future;
+	}
+
+	/**
+	 * This method encodes a request into the pending requests, without
+	 * writing it.
+	 * 
+	 * @return the future of the reply.
+	 */
+	private <T> CompletableFuture<T> enqueue(int operation, GasType type, long first, long second) {
+		CompletableFuture<T> l_future = new CompletableFuture<T>();
+		if (closed) {
+			l_future.completeExceptionally(new IOException("The connection is closed"));
+			return l_future;
+		}
+		int l_slot = acquireSlot();
+		long l_correlationId = (sentRequests.incrementAndGet() << SLOT_BITS) | l_slot;
+		futures.set(l_slot, l_future);
+		correlationIds.set(l_slot, l_correlationId);
+		synchronized (writeLock) {
+			StationProtocol.encodeRequest(pending, operation, type, l_correlationId, first, second);
+		}
+		if (closed && futures.compareAndSet(l_slot, l_future, null)) {
+			// The reader thread may have failed the futures before this one.
+			releaseSlot(l_slot);
+			l_future.completeExceptionally(new IOException("The connection is closed"));
+		}
+		return l_future;
+	}
+
+	/**
+	 * This method takes a free slot, waiting for one if needed.
+	 * 
+	 * @return the slot.
+	 */
+	private int acquireSlot() {
+		if (!freeSlots.tryAcquire()) {
+			// Sending the pending requests, whose replies free the slots.
+			flush();
+			freeSlots.acquireUninterruptibly();
+		}
+		// A free slot exists, found from a rotating start.
+		int l_slot = nextSlot.getAndIncrement() & (MAX_IN_FLIGHT - 1);
+		while (!correlationIds.compareAndSet(l_slot, 0, -1)) {
+			l_slot = (l_slot + 1) & (MAX_IN_FLIGHT - 1);
+		}
+		return l_slot;
+	}
+
+	/**
+	 * This method frees a slot.
+	 * 
+	 * @param slot
+	 *            the slot.
+	 */
+	private void releaseSlot(int slot) {
+		correlationIds.set(slot, 0);
+		freeSlots.release();
+	}
+
+	/**
+	 * This method writes the pending requests, unless another call is writing
+	 * them already. A write failure closes the connection.
+	 */
+	private void flush() {
+		synchronized (writeLock) {
+			if (flushing || pending.position() == 0) {
+				return;
+			}
+			flushing = true;
+		}
+		try {
+			while (true) {
+				ByteBuffer l_buffer;
+				synchronized (writeLock) {
+					if (pending.position() == 0) {
+						flushing = false;
+						return;
+					}
+					l_buffer = pending;
+					pending = writing;
+					writing = l_buffer;
+				}
+				l_buffer.flip();
+				while (l_buffer.hasRemaining()) {
+					channel.write(l_buffer);
+				}
+				l_buffer.clear();
+			}
+		} catch (IOException e) {
+			synchronized (writeLock) {
+				flushing = false;
+			}
+			closeQuietly();
+		}
+	}
+
+	/**
+	 * This method reads the replies and completes their futures, until the
+	 * connection closes. It runs on the reader thread.
+	 */
+	private void readReplies() {
+		ByteBuffer l_buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+		try {
+			while (channel.read(l_buffer) >= 0) {
+				l_buffer.flip();
+				int l_at = l_buffer.position();
+				while (l_buffer.limit() - l_at >= StationProtocol.REPLY_HEADER_SIZE) {
+					int l_size = StationProtocol.replySize(StationProtocol.getOperation(l_buffer, l_at));
+					if (l_buffer.limit() - l_at < l_size) {
+						break;
+					}
+					complete(l_buffer, l_at);
+					l_at += l_size;
+				}
+				l_buffer.position(l_at);
+				l_buffer.compact();
+			}
+		} catch (IOException e) {
+			// The connection is lost: failing the requests in flight.
+		} finally {
+			closeQuietly();
+			for (int i = 0; i < MAX_IN_FLIGHT; i++) {
+				CompletableFuture<?> l_future = futures.getAndSet(i, null);
+				if (l_future != null) {
+					releaseSlot(i);
+					l_future.completeExceptionally(new IOException("The connection is closed"));
+				}
+			}
+		}
+	}
+
+	/**
+	 * This method completes the future of a reply.
+	 * 
+	 * @param buffer
+	 *            the buffer of the replies.
+	 * @param at
+	 *            the index of the reply in the buffer.
+	 */
+	@SuppressWarnings("unchecked")
+	private void complete(ByteBuffer buffer, int at) {
+		long l_correlationId = StationProtocol.getCorrelationId(buffer, at);
+		int l_slot = (int) (l_correlationId & (MAX_IN_FLIGHT - 1));
+		if (correlationIds.get(l_slot) != l_correlationId) {
+			// No request waits for the reply.
+			return;
+		}
+		CompletableFuture<Object> l_future = (CompletableFuture<Object>) futures.getAndSet(l_slot, null);
+		releaseSlot(l_slot);
+		if (l_future == null) {
+			return;
+		}
+		switch (StationProtocol.getStatus(buffer, at)) {
+		case StationProtocol.OK:
+			l_future.complete(value(buffer, at));
+			break;
+		case StationProtocol.NOT_ENOUGH_GAS:
+			l_future.completeExceptionally(new StacklessNotEnoughGasException());
+			break;
+		case StationProtocol.TOO_EXPENSIVE:
+			l_future.completeExceptionally(new StacklessGasTooExpensiveException());
+			break;
+		case StationProtocol.BALKED:
+			l_future.completeExceptionally(new RejectedExecutionException("The waiting line of the pumps is full"));
+			break;
+		default:
+			l_future.completeExceptionally(new IllegalArgumentException("The station rejected the request"));
+		}
+	}
+
+	/**
+	 * @return the value of a successful reply.
+	 */
+	private static Object value(ByteBuffer buffer, int at) {
+		switch (StationProtocol.getOperation(buffer, at)) {
+		case StationProtocol.SET_PRICE:
+			return null;
+		case StationProtocol.STATUS:
+			long l_counters = StationProtocol.getValue(buffer, at, 1);
+			long l_cancellations = StationProtocol.getValue(buffer, at, 2);
+			return new StationStatus(StationProtocol.fromFixedPoint(StationProtocol.getValue(buffer, at, 0)),
+					StationProtocol.high(l_counters), StationProtocol.low(l_counters),
+					StationProtocol.high(l_cancellations), StationProtocol.low(l_cancellations),
+					StationProtocol.high(StationProtocol.getValue(buffer, at, 3)));
+		default:
+			return StationProtocol.fromFixedPoint(StationProtocol.getValue(buffer, at, 0));
+		}
+	}
+
+	/**
+	 * @return the number of requests waiting for their replies.
+	 */
+	public int getInFlight() {
+		return MAX_IN_FLIGHT - freeSlots.availablePermits();
+	}
+
+	/**
+	 * This method closes the connection. The requests in flight complete
+	 * exceptionally with an IOException.
+	 */
+	public void close() throws IOException {
+		closed = true;
+		channel.close();
+	}
+
+	/**
+	 * This method closes the connection, ignoring its failure.
+	 */
+	private void closeQuietly() {
+		try {
+			close();
+		} catch (IOException e) {
+			// Nothing more to release.
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "StationClient [channel=" + channel + ", inFlight=" + getInFlight() + ", closed=" + closed + "]";
+	}
+}
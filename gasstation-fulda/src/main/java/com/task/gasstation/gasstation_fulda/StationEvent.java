@@ -0,0 +1,130 @@
+package com.task.gasstation.gasstation_fulda;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is one preallocated record of the station event log ring. Its
+ * fields are overwritten by every event published into its slot.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+final class StationEvent {
+
+	/**
+	 * A customer comes to a pump: amount is the requested amount, price the
+	 * expected price.
+	 */
+	static final int CUSTOMER_ARRIVED = 1;
+
+	/**
+	 * A customer waits for the previous customer of the pump.
+	 */
+	static final int CUSTOMER_WAITING = 2;
+
+	/**
+	 * The station checks the request of a customer.
+	 */
+	static final int CUSTOMER_CHECKED = 3;
+
+	/**
+	 * A pump pumps gas: amount is the pumped amount.
+	 */
+	static final int PUMPING = 4;
+
+	/**
+	 * A customer is served: price is the unit price, number the prices list
+	 * version.
+	 */
+	static final int CUSTOMER_SERVED = 5;
+
+	/**
+	 * A pump has gas left after a sale: amount is the remaining amount.
+	 */
+	static final int GAS_REMAINING = 6;
+
+	/**
+	 * A customer request is cancelled for lack of gas: amount is the remaining
+	 * amount, price the requested amount.
+	 */
+	static final int NOT_ENOUGH_GAS = 7;
+
+	/**
+	 * A customer request is cancelled for its price: amount is the current
+	 * price, price the expected price.
+	 */
+	static final int GAS_TOO_EXPENSIVE = 8;
+
+	/**
+	 * A customer leaves without being served.
+	 */
+	static final int CUSTOMER_LEFT = 9;
+
+	/**
+	 * The menu options are reminded after a customer left.
+	 */
+	static final int MENU_REMINDER = 10;
+
+	/**
+	 * A pump starts its service.
+	 */
+	static final int PUMP_IN_SERVICE = 11;
+
+	/**
+	 * A pump ends its service.
+	 */
+	static final int PUMP_END_OF_SERVICE = 12;
+
+	/**
+	 * The prices list is updated: number is the version, prices are in the
+	 * prices array by gas type ordinal.
+	 */
+	static final int PRICES_UPDATED = 13;
+
+	/**
+	 * A customer leaves because the waiting line is full: number is the
+	 * capacity of the line.
+	 */
+	static final int CUSTOMER_BALKED = 14;
+
+	/**
+	 * A customer leaves the waiting line after waiting too long: number is the
+	 * patience in milliseconds.
+	 */
+	static final int CUSTOMER_RENEGED = 15;
+
+	/**
+	 * The kind of the event.
+	 */
+	int code;
+
+	/**
+	 * The gas type concerned by the event.
+	 */
+	GasType type;
+
+	/**
+	 * The customer concerned by the event.
+	 */
+	int customerIndex;
+
+	/**
+	 * The first numeric value of the event.
+	 */
+	double amount;
+
+	/**
+	 * The second numeric value of the event.
+	 */
+	double price;
+
+	/**
+	 * The integral value of the event.
+	 */
+	long number;
+
+	/**
+	 * The prices list of a prices update, by gas type ordinal.
+	 */
+	final double[] prices = new double[GasType.values().length];
+}
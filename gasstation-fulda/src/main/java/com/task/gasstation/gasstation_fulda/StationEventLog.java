@@ -0,0 +1,420 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.io.PrintStream;
+import java.util.Formatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is the asynchronous event log of the Fulda gas station.
+ * 
+ * The publishers claim a preallocated record of a ring buffer and fill it
+ * without any lock or text formatting. A single background writer formats the
+ * published records and flushes them to the console in batches, so that the
+ * pumps do not serialize on the console output.
+ * 
+ * When the ring is full, the publishers either drop their event or wait for
+ * the writer, depending on the overflow policy.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class StationEventLog {
+
+	/**
+	 * The policy applied when the ring buffer is full.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * The event is dropped and counted.
+		 */
+		DROP,
+		/**
+		 * The publisher waits until the writer frees a record.
+		 */
+		BLOCK
+	}
+
+	/**
+	 * The system property giving the capacity of the console log ring.
+	 */
+	public static final String CAPACITY_PROPERTY = "gasstation.log.capacity";
+
+	/**
+	 * The system property giving the overflow policy of the console log: DROP
+	 * or BLOCK (default).
+	 */
+	public static final String POLICY_PROPERTY = "gasstation.log.policy";
+
+	/**
+	 * The default capacity of the console log ring.
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * The log that discards every event.
+	 */
+	public static final StationEventLog DISABLED = new StationEventLog();
+
+	/**
+	 * The shared console log, created on first use.
+	 */
+	private static StationEventLog console;
+
+	/**
+	 * The pause of the writer when there is nothing to write, in nanoseconds.
+	 */
+	private static final long IDLE_PARK_NANOS = 100000;
+
+	/**
+	 * The preallocated records of the ring.
+	 */
+	private final StationEvent[] ring;
+
+	/**
+	 * The sequence published in each record of the ring, -1 if none.
+	 */
+	private final AtomicLongArray published;
+
+	/**
+	 * The mask giving the ring index of a sequence.
+	 */
+	private final int mask;
+
+	/**
+	 * The policy applied when the ring is full.
+	 */
+	private final OverflowPolicy policy;
+
+	/**
+	 * The next sequence to claim by a publisher.
+	 */
+	private final AtomicLong claimed = new AtomicLong();
+
+	/**
+	 * The next sequence to write by the writer.
+	 */
+	private final AtomicLong consumed = new AtomicLong();
+
+	/**
+	 * The number of events dropped because the ring was full.
+	 */
+	private final LongAdder dropped = new LongAdder();
+
+	/**
+	 * The output of the formatted events.
+	 */
+	private final PrintStream out;
+
+	/**
+	 * The background writer, null for the disabled log.
+	 */
+	private final Thread writer;
+
+	/**
+	 * Whether the log is closed.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Constructor of the disabled log.
+	 */
+	private StationEventLog() {
+		this.ring = null;
+		this.published = null;
+		this.mask = 0;
+		this.policy = OverflowPolicy.DROP;
+		this.out = null;
+		this.writer = null;
+	}
+
+	/**
+	 * @param out
+	 *            the output of the formatted events.
+	 * @param capacity
+	 *            the minimal number of records of the ring, rounded up to a
+	 *            power of two.
+	 * @param policy
+	 *            the policy applied when the ring is full.
+	 */
+	public StationEventLog(PrintStream out, int capacity, OverflowPolicy policy) {
+		int l_size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.ring = new StationEvent[l_size];
+		this.published = new AtomicLongArray(l_size);
+		for (int i = 0; i < l_size; i++) {
+			ring[i] = new StationEvent();
+			published.set(i, -1);
+		}
+		this.mask = l_size - 1;
+		this.policy = policy;
+		this.out = out;
+		this.writer = new Thread(new Runnable() {
+			public void run() {
+				writeLoop();
+			}
+		}, "gasstation-event-log");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * This method creates a console log configured by the system properties.
+	 * 
+	 * @return the console log.
+	 */
+	public static StationEventLog fromSystemProperties() {
+		return new StationEventLog(System.out, Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY),
+				OverflowPolicy.valueOf(System.getProperty(POLICY_PROPERTY, OverflowPolicy.BLOCK.name())));
+	}
+
+	/**
+	 * This method returns the console log shared by the stations, configured
+	 * by the system properties.
+	 * 
+	 * @return the shared console log.
+	 */
+	public static synchronized StationEventLog console() {
+		if (console == null) {
+			console = fromSystemProperties();
+		}
+		return console;
+	}
+
+	/**
+	 * This method publishes an event.
+	 * 
+	 * @param code
+	 *            the kind of the event.
+	 * @param type
+	 *            the gas type concerned by the event.
+	 * @param customerIndex
+	 *            the customer concerned by the event.
+	 * @param amount
+	 *            the first numeric value of the event.
+	 * @param price
+	 *            the second numeric value of the event.
+	 * @param number
+	 *            the integral value of the event.
+	 */
+	void publish(int code, GasType type, int customerIndex, double amount, double price, long number) {
+		long l_sequence = claim();
+		if (l_sequence < 0) {
+			return;
+		}
+		StationEvent l_event = ring[(int) l_sequence & mask];
+		l_event.code = code;
+		l_event.type = type;
+		l_event.customerIndex = customerIndex;
+		l_event.amount = amount;
+		l_event.price = price;
+		l_event.number = number;
+		published.lazySet((int) l_sequence & mask, l_sequence);
+	}
+
+	/**
+	 * This method publishes a prices list update.
+	 * 
+	 * @param prices
+	 *            the new prices list.
+	 */
+	void publishPrices(GasPriceTable prices) {
+		long l_sequence = claim();
+		if (l_sequence < 0) {
+			return;
+		}
+		StationEvent l_event = ring[(int) l_sequence & mask];
+		l_event.code = StationEvent.PRICES_UPDATED;
+		l_event.number = prices.getVersion();
+		for (GasType type : GasType.values()) {
+			l_event.prices[type.ordinal()] = prices.getPriceOrNaN(type);
+		}
+		published.lazySet((int) l_sequence & mask, l_sequence);
+	}
+
+	/**
+	 * This method claims the next record of the ring.
+	 * 
+	 * @return the claimed sequence, -1 if the event is dropped.
+	 */
+	private long claim() {
+		if (writer == null || closed) {
+			return -1;
+		}
+		if (policy == OverflowPolicy.BLOCK) {
+			long l_sequence = claimed.getAndIncrement();
+			// Waiting for the writer to free the record.
+			while (l_sequence - consumed.get() >= ring.length && !closed) {
+				LockSupport.parkNanos(IDLE_PARK_NANOS);
+			}
+			return l_sequence;
+		}
+		long l_sequence;
+		do {
+			l_sequence = claimed.get();
+			if (l_sequence - consumed.get() >= ring.length) {
+				dropped.increment();
+				return -1;
+			}
+		} while (!claimed.compareAndSet(l_sequence, l_sequence + 1));
+		return l_sequence;
+	}
+
+	/**
+	 * This method waits until every event published before the call is
+	 * written.
+	 */
+	public void flush() {
+		if (writer == null) {
+			return;
+		}
+		long l_target = claimed.get();
+		while (consumed.get() < l_target && writer.isAlive()) {
+			LockSupport.parkNanos(IDLE_PARK_NANOS);
+		}
+	}
+
+	/**
+	 * This method writes the pending events and stops the writer.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void close() throws InterruptedException {
+		if (writer == null) {
+			return;
+		}
+		flush();
+		closed = true;
+		writer.join();
+	}
+
+	/**
+	 * @return the number of events dropped because the ring was full.
+	 */
+	public long getDroppedEvents() {
+		return dropped.sum();
+	}
+
+	/**
+	 * The loop of the background writer: formats the published records in
+	 * batches and flushes each batch at once.
+	 */
+	private void writeLoop() {
+		StringBuilder l_batch = new StringBuilder(1024);
+		Formatter l_formatter = new Formatter(l_batch);
+		long l_next = consumed.get();
+		while (!closed || l_next < claimed.get()) {
+			long l_first = l_next;
+			while (l_next - l_first < ring.length && published.get((int) l_next & mask) == l_next) {
+				format(ring[(int) l_next & mask], l_batch, l_formatter);
+				l_next++;
+			}
+			if (l_next == l_first) {
+				LockSupport.parkNanos(IDLE_PARK_NANOS);
+				continue;
+			}
+			out.print(l_batch);
+			out.flush();
+			l_batch.setLength(0);
+			// Freeing the written records for the publishers.
+			consumed.set(l_next);
+		}
+	}
+
+	/**
+	 * This method formats one event as it was printed on the console.
+	 * 
+	 * @param event
+	 *            the event to format.
+	 * @param batch
+	 *            the text of the current batch.
+	 * @param formatter
+	 *            the formatter appending to the batch.
+	 */
+	private static void format(StationEvent event, StringBuilder batch, Formatter formatter) {
+		String l_nl = System.lineSeparator();
+		switch (event.code) {
+		case StationEvent.CUSTOMER_ARRIVED:
+			batch.append(l_nl).append("Customer n°").append(event.customerIndex).append(" comes requesting ")
+					.append(event.amount).append("L of ").append(event.type).append(" gas for up to ")
+					.append(event.price).append(" €/L.").append(l_nl);
+			break;
+		case StationEvent.CUSTOMER_WAITING:
+			batch.append("Customer ").append(event.customerIndex).append(" in ").append(event.type)
+					.append(" pump is waiting the previous customer...").append(l_nl);
+			break;
+		case StationEvent.CUSTOMER_CHECKED:
+			batch.append("Cheaking operation for customer n°").append(event.customerIndex).append(" in ")
+					.append(event.type).append(" pump...").append(l_nl);
+			break;
+		case StationEvent.PUMPING:
+			batch.append(event.type).append(" pump: Pumping ").append(event.amount).append("L in progress...")
+					.append(l_nl);
+			break;
+		case StationEvent.CUSTOMER_SERVED:
+			batch.append(l_nl).append(event.type).append(" pump: Customer ").append(event.customerIndex)
+					.append(" is served at ").append(event.price).append(" €/L (prices list version ")
+					.append(event.number).append(").").append(l_nl);
+			break;
+		case StationEvent.GAS_REMAINING:
+			batch.append(event.type).append(" pump: After serving cutomer ").append(event.customerIndex)
+					.append(", The Remaining quantity of ").append(event.type).append(" gas is ");
+			formatter.format("%.2f", event.amount);
+			batch.append(" L").append(l_nl);
+			break;
+		case StationEvent.NOT_ENOUGH_GAS:
+			batch.append("The available ").append(event.type).append(" gas quantity does not cover the customer ")
+					.append(event.customerIndex).append(" request (Available:");
+			formatter.format("%.2f", event.amount);
+			batch.append("L - Expected:").append(event.price).append("L).").append(l_nl);
+			break;
+		case StationEvent.GAS_TOO_EXPENSIVE:
+			batch.append("The price of ").append(event.type).append(" is actually more than the customer ")
+					.append(event.customerIndex).append(" expected (Available:").append(event.amount)
+					.append("€/L - Expected:").append(event.price).append("€/L).").append(l_nl);
+			break;
+		case StationEvent.CUSTOMER_LEFT:
+			batch.append(event.type).append(" pump: Customer ").append(event.customerIndex)
+					.append(" left without being served.").append(l_nl);
+			break;
+		case StationEvent.CUSTOMER_BALKED:
+			batch.append(event.type).append(" pump: Customer ").append(event.customerIndex)
+					.append(" left because the waiting line is full (").append(event.number)
+					.append(" customers).").append(l_nl);
+			break;
+		case StationEvent.CUSTOMER_RENEGED:
+			batch.append(event.type).append(" pump: Customer ").append(event.customerIndex)
+					.append(" left the waiting line after ").append(event.number / 1000).append(" seconds.")
+					.append(l_nl);
+			break;
+		case StationEvent.MENU_REMINDER:
+			batch.append(
+					"[Options: 2 End Station service | 3 Operations Status | 4 Tanks Status | 5 Prices List Status]:")
+					.append(l_nl).append(l_nl);
+			break;
+		case StationEvent.PUMP_IN_SERVICE:
+			batch.append(l_nl).append(event.type).append(" pump is in service...").append(l_nl);
+			break;
+		case StationEvent.PUMP_END_OF_SERVICE:
+			batch.append("End of service in ").append(event.type).append(" pump.").append(l_nl);
+			break;
+		case StationEvent.PRICES_UPDATED:
+			batch.append(l_nl).append("The gas prices had new values (version ").append(event.number)
+					.append(") as follows:").append(l_nl);
+			batch.append(GasType.DIESEL).append(": ");
+			formatter.format("%.2f", event.prices[GasType.DIESEL.ordinal()]);
+			batch.append("€/L, ").append(GasType.REGULAR).append(": ");
+			formatter.format("%.2f", event.prices[GasType.REGULAR.ordinal()]);
+			batch.append("€/L and ").append(GasType.SUPER).append(": ");
+			formatter.format("%.2f", event.prices[GasType.SUPER.ordinal()]);
+			batch.append("€/L.").append(l_nl);
+			break;
+		default:
+			batch.append("Unknown event ").append(event.code).append(l_nl);
+			break;
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is the execution layer of the Fulda gas station simulation.
+ * 
+ * The periodic tasks (customers incoming and gas prices updates) run on a
+ * small shared scheduler, and the customer sessions run on a pluggable
+ * executor: either a bounded pool of platform threads or one virtual thread
+ * per customer. Either way, the number of platform threads does not depend on
+ * the customers arrival rate.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class StationExecutors {
+
+	/**
+	 * The system property selecting the customer sessions executor:
+	 * "platform" (default) or "virtual".
+	 */
+	public static final String CUSTOMER_EXECUTOR_PROPERTY = "gasstation.customers.executor";
+
+	/**
+	 * The system property giving the size of the platform customer sessions
+	 * pool.
+	 */
+	public static final String CUSTOMER_POOL_SIZE_PROPERTY = "gasstation.customers.poolSize";
+
+	/**
+	 * The default size of the platform customer sessions pool.
+	 */
+	public static final int DEFAULT_CUSTOMER_POOL_SIZE = 8;
+
+	/**
+	 * The number of threads of the shared scheduler.
+	 */
+	public static final int SCHEDULER_THREADS = 2;
+
+	/**
+	 * The shared scheduler of the periodic tasks.
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * The executor of the customer sessions.
+	 */
+	private final ExecutorService customerSessions;
+
+	/**
+	 * @param customerSessions
+	 *            the executor of the customer sessions.
+	 */
+	public StationExecutors(ExecutorService customerSessions) {
+		this.scheduler = Executors.newScheduledThreadPool(SCHEDULER_THREADS, new NamedThreadFactory("scheduler"));
+		this.customerSessions = customerSessions;
+	}
+
+	/**
+	 * This method creates the execution layer configured by the system
+	 * properties. When virtual threads are requested but the running JVM does
+	 * not support them, the platform pool is used instead.
+	 * 
+	 * @return the configured execution layer.
+	 */
+	public static StationExecutors fromSystemProperties() {
+		String l_mode = System.getProperty(CUSTOMER_EXECUTOR_PROPERTY, "platform");
+		if ("virtual".equalsIgnoreCase(l_mode)) {
+			try {
+				return new StationExecutors(newVirtualCustomerExecutor());
+			} catch (UnsupportedOperationException e) {
+				System.out.println(e.getMessage() + " Using the platform threads pool.");
+			}
+		}
+		return new StationExecutors(newPlatformCustomerPool(
+				Integer.getInteger(CUSTOMER_POOL_SIZE_PROPERTY, DEFAULT_CUSTOMER_POOL_SIZE)));
+	}
+
+	/**
+	 * This method creates a bounded pool of platform threads for the customer
+	 * sessions.
+	 * 
+	 * @param size
+	 *            the number of threads of the pool.
+	 * 
+	 * @return the customer sessions executor.
+	 */
+	public static ExecutorService newPlatformCustomerPool(int size) {
+		return Executors.newFixedThreadPool(size, new NamedThreadFactory("customer"));
+	}
+
+	/**
+	 * This method creates an executor starting one virtual thread per customer
+	 * session. It is looked up reflectively, so that the build keeps its Java 8
+	 * source level.
+	 * 
+	 * @return the customer sessions executor.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if the running JVM does not support virtual threads.
+	 */
+	public static ExecutorService newVirtualCustomerExecutor() {
+		try {
+			Method l_factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) l_factory.invoke(null);
+		} catch (NoSuchMethodException e) {
+			throw new UnsupportedOperationException("Virtual threads are not supported by this JVM.");
+		} catch (IllegalAccessException e) {
+			throw new UnsupportedOperationException("Virtual threads are not accessible: " + e.getMessage());
+		} catch (InvocationTargetException e) {
+			throw new UnsupportedOperationException(
+					"Virtual threads are not available: " + e.getTargetException().getMessage());
+		}
+	}
+
+	/**
+	 * @return the shared scheduler of the periodic tasks.
+	 */
+	public ScheduledExecutorService getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * @return the executor of the customer sessions.
+	 */
+	public ExecutorService getCustomerSessions() {
+		return customerSessions;
+	}
+
+	/**
+	 * This method stops the scheduler and waits for the running customer
+	 * sessions to end.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void shutdown() throws InterruptedException {
+		scheduler.shutdownNow();
+		customerSessions.shutdown();
+		customerSessions.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * This class names the threads of the execution layer.
+	 * 
+	 * @author Maher Abdelkhalek
+	 *
+	 */
+	static class NamedThreadFactory implements ThreadFactory {
+
+		/**
+		 * The number given to the next thread.
+		 */
+		private final AtomicInteger nextNumber = new AtomicInteger(1);
+
+		/**
+		 * The prefix of the thread names.
+		 */
+		private final String prefix;
+
+		/**
+		 * Whether the threads are daemon threads.
+		 */
+		private final boolean daemon;
+
+		/**
+		 * @param role
+		 *            the role of the threads.
+		 */
+		NamedThreadFactory(String role) {
+			this(role, false);
+		}
+
+		/**
+		 * @param role
+		 *            the role of the threads.
+		 * @param daemon
+		 *            whether the threads are daemon threads.
+		 */
+		NamedThreadFactory(String role, boolean daemon) {
+			this.prefix = "gasstation-" + role + "-";
+			this.daemon = daemon;
+		}
+
+		public Thread newThread(Runnable r) {
+			Thread l_thread = new Thread(r, prefix + nextNumber.getAndIncrement());
+			l_thread.setDaemon(daemon);
+			return l_thread;
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package com.task.gasstation.gasstation_fulda;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class holds the latency histograms of the phases of the purchases of a
+ * gas station, one histogram per gas type and phase.
+ * 
+ * The histograms have a fixed size, and recording into them never locks. The
+ * disabled metrics do not even read the clock, so that the sale path of a
+ * station without metrics pays one virtual call per phase, and share one
+ * empty histogram.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public final class StationMetrics {
+
+	/**
+	 * The system property enabling the metrics of the load generator.
+	 */
+	public static final String ENABLED_PROPERTY = "gasstation.metrics";
+
+	/**
+	 * The wait of a customer in the waiting line of a pump, or of an
+	 * asynchronous order in the mailbox of a pump.
+	 */
+	public static final int QUEUE_WAIT = 0;
+
+	/**
+	 * The wait for the nozzle lock of a pump.
+	 */
+	public static final int LOCK_WAIT = 1;
+
+	/**
+	 * The pumping of the gas.
+	 */
+	public static final int PUMPING = 2;
+
+	/**
+	 * The lookup of the price in the prices list.
+	 */
+	public static final int PRICE_LOOKUP = 3;
+
+	/**
+	 * The names of the phases, by phase.
+	 */
+	private static final String[] PHASE_NAMES = { "QUEUE_WAIT", "LOCK_WAIT", "PUMPING", "PRICE_LOOKUP" };
+
+	/**
+	 * The histogram of the disabled metrics, never recorded into.
+	 */
+	private static final LatencyHistogram EMPTY = new LatencyHistogram(1);
+
+	/**
+	 * The metrics that record nothing.
+	 */
+	public static final StationMetrics DISABLED = new StationMetrics(false);
+
+	/**
+	 * Whether the metrics record the phases.
+	 */
+	private final boolean enabled;
+
+	/**
+	 * The histograms by gas type and phase.
+	 */
+	private final LatencyHistogram[][] histograms;
+
+	/**
+	 * Constructor of the class, creating metrics that record the phases.
+	 */
+	public StationMetrics() {
+		this(true);
+	}
+
+	/**
+	 * @param enabled
+	 *            whether the metrics record the phases.
+	 */
+	private StationMetrics(boolean enabled) {
+		this.enabled = enabled;
+		this.histograms = new LatencyHistogram[GasType.values().length][PHASE_NAMES.length];
+		for (LatencyHistogram[] phases : histograms) {
+			for (int p = 0; p < phases.length; p++) {
+				phases[p] = enabled ? new LatencyHistogram() : EMPTY;
+			}
+		}
+	}
+
+	/**
+	 * This method starts the timing of a phase.
+	 * 
+	 * @return the start time of the phase in nanoseconds, 0 if the metrics are
+	 *         disabled.
+	 */
+	public long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * This method records the latency of a phase started by the start method.
+	 * 
+	 * @param type
+	 *            the gas type of the purchase.
+	 * @param phase
+	 *            the phase, QUEUE_WAIT, LOCK_WAIT, PUMPING or PRICE_LOOKUP.
+	 * @param start
+	 *            the start time returned by the start method.
+	 */
+	public void record(GasType type, int phase, long start) {
+		if (enabled) {
+			histograms[type.ordinal()][phase].record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * @return true if the metrics record the phases.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param type
+	 *            the gas type.
+	 * @param phase
+	 *            the phase.
+	 * 
+	 * @return the histogram of the phase of the purchases of the gas type.
+	 */
+	public LatencyHistogram getHistogram(GasType type, int phase) {
+		return histograms[type.ordinal()][phase];
+	}
+
+	/**
+	 * This method forgets all the recorded latencies.
+	 */
+	public void reset() {
+		for (LatencyHistogram[] phases : histograms) {
+			for (LatencyHistogram histogram : phases) {
+				histogram.reset();
+			}
+		}
+	}
+
+	/**
+	 * @param phase
+	 *            the phase.
+	 * 
+	 * @return the name of the phase.
+	 */
+	public static String getPhaseName(int phase) {
+		return PHASE_NAMES[phase];
+	}
+
+	/**
+	 * @param name
+	 *            the name of a phase.
+	 * 
+	 * @return the phase of the given name.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if no phase has the given name.
+	 */
+	public static int getPhase(String name) {
+		for (int p = 0; p < PHASE_NAMES.length; p++) {
+			if (PHASE_NAMES[p].equalsIgnoreCase(name)) {
+				return p;
+			}
+		}
+		throw new IllegalArgumentException("Unknown phase: " + name);
+	}
+
+	/**
+	 * @return the number of phases.
+	 */
+	public static int getPhaseCount() {
+		return PHASE_NAMES.length;
+	}
+
+	@Override
+	public String toString() {
+		return "StationMetrics [enabled=" + enabled + "]";
+	}
+}
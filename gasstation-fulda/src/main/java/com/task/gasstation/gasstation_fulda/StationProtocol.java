@@ -0,0 +1,304 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.nio.ByteBuffer;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is the binary wire protocol of the station server, shared by the
+ * server and StationClient.
+ * 
+ * A binary connection starts with the MAGIC byte, which the text requests never
+ * start with, then carries fixed-layout frames in network byte order. Every
+ * request takes 32 bytes: the operation, the gas type ordinal, 6 reserved
+ * bytes, the correlation id chosen by the client, then two fixed-point values
+ * (the liters and the maximum price per Liter of a purchase, or the price of a
+ * price set). Every reply starts with 16 bytes: the operation, the status, 6
+ * reserved bytes and the correlation id of the request, followed by one
+ * fixed-point value, or four values for STATUS: the revenue, then the counters
+ * packed by two (sales and no gas, too expensive and balked, reneged).
+ * 
+ * The liters and the Euro amounts are fixed-point longs counting millionths.
+ * Since every reply carries its correlation id, a client may pipeline many
+ * requests on one connection and the server replies as the requests complete,
+ * in any order. The frames are encoded and decoded in place in the buffers of
+ * the connections, without any allocation.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public final class StationProtocol {
+
+	/**
+	 * The first byte sent on a binary connection.
+	 */
+	public static final byte MAGIC = (byte) 0xB1;
+
+	/**
+	 * The operation buying gas.
+	 */
+	public static final int BUY = 1;
+
+	/**
+	 * The operation getting the price of a gas type.
+	 */
+	public static final int PRICE = 2;
+
+	/**
+	 * The operation setting the price of a gas type.
+	 */
+	public static final int SET_PRICE = 3;
+
+	/**
+	 * The operation getting the revenue and the sales counters.
+	 */
+	public static final int STATUS = 4;
+
+	/**
+	 * The status of a completed request.
+	 */
+	public static final int OK = 0;
+
+	/**
+	 * The status of a purchase cancelled for lack of gas.
+	 */
+	public static final int NOT_ENOUGH_GAS = 1;
+
+	/**
+	 * The status of a purchase cancelled because the gas is too expensive.
+	 */
+	public static final int TOO_EXPENSIVE = 2;
+
+	/**
+	 * The status of a purchase cancelled because the waiting line is full.
+	 */
+	public static final int BALKED = 3;
+
+	/**
+	 * The status of a malformed request.
+	 */
+	public static final int ERROR = 4;
+
+	/**
+	 * The gas type byte of the requests without gas type.
+	 */
+	public static final int NO_GAS_TYPE = 0xFF;
+
+	/**
+	 * The size of a request in bytes.
+	 */
+	public static final int REQUEST_SIZE = 32;
+
+	/**
+	 * The size of the header of a reply in bytes.
+	 */
+	public static final int REPLY_HEADER_SIZE = 16;
+
+	/**
+	 * The size of a STATUS reply in bytes.
+	 */
+	public static final int STATUS_REPLY_SIZE = REPLY_HEADER_SIZE + 32;
+
+	/**
+	 * The size of the other replies in bytes.
+	 */
+	public static final int VALUE_REPLY_SIZE = REPLY_HEADER_SIZE + 8;
+
+	/**
+	 * The number of fixed-point units in one Liter or one Euro.
+	 */
+	public static final long FIXED_POINT_SCALE = 1000000;
+
+	/**
+	 * The gas types, indexed by ordinal.
+	 */
+	private static final GasType[] TYPES = GasType.values();
+
+	private StationProtocol() {
+	}
+
+	/**
+	 * @param value
+	 *            the Liters or the Euros.
+	 * 
+	 * @return the value in fixed-point millionths, rounded.
+	 */
+	public static long toFixedPoint(double value) {
+		return Math.round(value * FIXED_POINT_SCALE);
+	}
+
+	/**
+	 * @param fixedPoint
+	 *            the value in fixed-point millionths.
+	 * 
+	 * @return the Liters or the Euros.
+	 */
+	public static double fromFixedPoint(long fixedPoint) {
+		return fixedPoint / (double) FIXED_POINT_SCALE;
+	}
+
+	/**
+	 * @param type
+	 *            the gas type, null for none.
+	 * 
+	 * @return the gas type byte.
+	 */
+	public static int encodeType(GasType type) {
+		return type == null ? NO_GAS_TYPE : type.ordinal();
+	}
+
+	/**
+	 * @param type
+	 *            the gas type byte.
+	 * 
+	 * @return the gas type, or null if the byte is no gas type.
+	 */
+	public static GasType decodeType(int type) {
+		return type < TYPES.length ? TYPES[type] : null;
+	}
+
+	/**
+	 * @param operation
+	 *            the operation of the reply.
+	 * 
+	 * @return the size of the reply in bytes.
+	 */
+	public static int replySize(int operation) {
+		return operation == STATUS ? STATUS_REPLY_SIZE : VALUE_REPLY_SIZE;
+	}
+
+	/**
+	 * This method writes a request at the position of the buffer, and moves
+	 * the position past it.
+	 * 
+	 * @param buffer
+	 *            the buffer, with at least REQUEST_SIZE bytes remaining.
+	 * @param operation
+	 *            the operation.
+	 * @param type
+	 *            the gas type, null for none.
+	 * @param correlationId
+	 *            the id echoed by the reply.
+	 * @param first
+	 *            the liters of a purchase or the price of a price set, in
+	 *            fixed-point.
+	 * @param second
+	 *            the maximum price per Liter of a purchase, in fixed-point.
+	 */
+	public static void encodeRequest(ByteBuffer buffer, int operation, GasType type, long correlationId, long first,
+			long second) {
+		int l_at = buffer.position();
+		buffer.putLong(l_at, 0);
+		buffer.put(l_at, (byte) operation);
+		buffer.put(l_at + 1, (byte) encodeType(type));
+		buffer.putLong(l_at + 8, correlationId);
+		buffer.putLong(l_at + 16, first);
+		buffer.putLong(l_at + 24, second);
+		buffer.position(l_at + REQUEST_SIZE);
+	}
+
+	/**
+	 * This method writes a reply at the position of the buffer, and moves the
+	 * position past it.
+	 * 
+	 * @param buffer
+	 *            the buffer, with at least the size of the reply remaining.
+	 * @param operation
+	 *            the operation of the request.
+	 * @param status
+	 *            the status of the request.
+	 * @param correlationId
+	 *            the id of the request.
+	 * @param values
+	 *            the fixed-point values of the reply, one or four for STATUS.
+	 */
+	public static void encodeReply(ByteBuffer buffer, int operation, int status, long correlationId, long[] values) {
+		int l_at = buffer.position();
+		buffer.putLong(l_at, 0);
+		buffer.put(l_at, (byte) operation);
+		buffer.put(l_at + 1, (byte) status);
+		buffer.putLong(l_at + 8, correlationId);
+		int l_values = operation == STATUS ? 4 : 1;
+		for (int i = 0; i < l_values; i++) {
+			buffer.putLong(l_at + REPLY_HEADER_SIZE + 8 * i, values[i]);
+		}
+		buffer.position(l_at + replySize(operation));
+	}
+
+	/**
+	 * @return the operation of the frame starting at the given index.
+	 */
+	public static int getOperation(ByteBuffer buffer, int at) {
+		return buffer.get(at) & 0xFF;
+	}
+
+	/**
+	 * @return the gas type byte of the request starting at the given index.
+	 */
+	public static int getType(ByteBuffer buffer, int at) {
+		return buffer.get(at + 1) & 0xFF;
+	}
+
+	/**
+	 * @return the status of the reply starting at the given index.
+	 */
+	public static int getStatus(ByteBuffer buffer, int at) {
+		return buffer.get(at + 1) & 0xFF;
+	}
+
+	/**
+	 * @return the correlation id of the frame starting at the given index.
+	 */
+	public static long getCorrelationId(ByteBuffer buffer, int at) {
+		return buffer.getLong(at + 8);
+	}
+
+	/**
+	 * @return the first fixed-point value of the request starting at the
+	 *         given index.
+	 */
+	public static long getFirst(ByteBuffer buffer, int at) {
+		return buffer.getLong(at + 16);
+	}
+
+	/**
+	 * @return the second fixed-point value of the request starting at the
+	 *         given index.
+	 */
+	public static long getSecond(ByteBuffer buffer, int at) {
+		return buffer.getLong(at + 24);
+	}
+
+	/**
+	 * @param index
+	 *            the index of the value, 0 to 3 for STATUS, 0 otherwise.
+	 * 
+	 * @return the fixed-point value of the reply starting at the given index.
+	 */
+	public static long getValue(ByteBuffer buffer, int at, int index) {
+		return buffer.getLong(at + REPLY_HEADER_SIZE + 8 * index);
+	}
+
+	/**
+	 * This method packs the two counters of a STATUS reply value.
+	 * 
+	 * @return the value holding the high and the low counters.
+	 */
+	public static long pack(int high, int low) {
+		return ((long) high << 32) | (low & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @return the high counter of a packed STATUS reply value.
+	 */
+	public static int high(long packed) {
+		return (int) (packed >>> 32);
+	}
+
+	/**
+	 * @return the low counter of a packed STATUS reply value.
+	 */
+	public static int low(long packed) {
+		return (int) packed;
+	}
+}
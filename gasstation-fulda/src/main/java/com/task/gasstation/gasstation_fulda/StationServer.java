@@ -0,0 +1,1005 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+
+/**
+ * This class is the network front end of a gas station: a TCP server speaking
+ * a text line protocol, so that the pump terminals call the station directly.
+ * 
+ * The connections are shared among a small fixed set of selector threads that
+ * never block on a connection, so that thousands of terminals need no thread
+ * each. A purchase is posted with buyGasAsync and its reply is written when the
+ * pump completes it, while the connection keeps reading the next requests; the
+ * replies of a connection are written in the order of its requests. A terminal
+ * with too many unanswered requests is not read until the replies catch up.
+ * 
+ * The requests and their replies, one per line in ASCII:
+ * 
+ * BUY type liters maxPricePerLiter: SOLD price, NOT_ENOUGH_GAS, TOO_EXPENSIVE
+ * or BALKED (the waiting line of the pumps is full).
+ * 
+ * PRICE type: PRICE price.
+ * 
+ * SETPRICE type price: OK.
+ * 
+ * STATUS: STATUS revenue=r sales=n noGas=n tooExpensive=n balked=n reneged=n.
+ * 
+ * QUIT: BYE, then the server closes the connection. A terminal shutting its
+ * output down gets the replies of its pending requests before the server
+ * closes the connection.
+ * 
+ * The gas types are DIESEL, REGULAR and SUPER, and a malformed request gets
+ * ERROR followed by the reason.
+ * 
+ * A connection starting with the magic byte of StationProtocol speaks the
+ * binary protocol instead: fixed-layout frames decoded and encoded in place in
+ * buffers pooled by the selector threads, and replies written in the order of
+ * completion, each carrying the correlation id of its request.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class StationServer implements Closeable {
+
+	/**
+	 * The system property giving the port of the server, 0 for any free port.
+	 */
+	public static final String PORT_PROPERTY = "gasstation.server.port";
+
+	/**
+	 * The system property giving the number of selector threads.
+	 */
+	public static final String SELECTORS_PROPERTY = "gasstation.server.selectors";
+
+	/**
+	 * The default number of selector threads.
+	 */
+	public static final int DEFAULT_SELECTORS = 2;
+
+	/**
+	 * The maximum length of a request line in bytes.
+	 */
+	static final int MAX_LINE = 256;
+
+	/**
+	 * The number of unanswered requests of a connection above which the
+	 * connection is not read anymore.
+	 */
+	static final int MAX_PENDING_REPLIES = 256;
+
+	/**
+	 * The size of the input and the output buffers of a connection.
+	 */
+	private static final int BUFFER_SIZE = 4096;
+
+	/**
+	 * The maximum number of free buffers kept by a selector thread.
+	 */
+	private static final int MAX_POOLED_BUFFERS = 512;
+
+	/**
+	 * The protocol of a connection that sent nothing yet.
+	 */
+	private static final int UNDECIDED = 0;
+
+	/**
+	 * The protocol of a connection sending request lines.
+	 */
+	private static final int TEXT = 1;
+
+	/**
+	 * The protocol of a connection sending binary frames (see
+	 * StationProtocol).
+	 */
+	private static final int BINARY = 2;
+
+	/**
+	 * The gas station served.
+	 */
+	private final FuldaGasStation fGasStation;
+
+	/**
+	 * The listening channel, accepted by the first selector thread.
+	 */
+	private final ServerSocketChannel serverChannel;
+
+	/**
+	 * The address the server listens to.
+	 */
+	private final InetSocketAddress address;
+
+	/**
+	 * The selector threads loops.
+	 */
+	private final EventLoop[] loops;
+
+	/**
+	 * The number of accepted connections, spreading them over the loops.
+	 */
+	private int acceptedConnections;
+
+	/**
+	 * Whether the server still runs.
+	 */
+	private volatile boolean running = true;
+
+	/**
+	 * This constructor binds the server and starts its selector threads.
+	 * 
+	 * @param fGasStation
+	 *            the gas station served.
+	 * @param address
+	 *            the address to listen to, with port 0 for any free port.
+	 * @param selectors
+	 *            the number of selector threads.
+	 * 
+	 * @throws IOException
+	 *             if the server cannot listen to the address.
+	 */
+	public StationServer(FuldaGasStation fGasStation, InetSocketAddress address, int selectors) throws IOException {
+		this.fGasStation = fGasStation;
+		this.serverChannel = ServerSocketChannel.open();
+		this.loops = new EventLoop[Math.max(1, selectors)];
+		try {
+			serverChannel.bind(address, 1024);
+			serverChannel.configureBlocking(false);
+			this.address = (InetSocketAddress) serverChannel.getLocalAddress();
+			for (int i = 0; i < loops.length; i++) {
+				loops[i] = new EventLoop(Selector.open());
+			}
+			serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			close();
+			for (EventLoop loop : loops) {
+				if (loop != null) {
+					closeQuietly(loop.selector);
+				}
+			}
+			throw e;
+		}
+		StationExecutors.NamedThreadFactory l_threads = new StationExecutors.NamedThreadFactory("server", true);
+		for (EventLoop loop : loops) {
+			l_threads.newThread(loop).start();
+		}
+	}
+
+	/**
+	 * This method starts a server on the loopback address, with the port and
+	 * the number of selector threads given by the system properties.
+	 * 
+	 * @param fGasStation
+	 *            the gas station served.
+	 * 
+	 * @return the started server.
+	 * 
+	 * @throws IOException
+	 *             if the server cannot listen to the port.
+	 */
+	public static StationServer fromSystemProperties(FuldaGasStation fGasStation) throws IOException {
+		return new StationServer(fGasStation,
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.getInteger(PORT_PROPERTY, 0)),
+				Integer.getInteger(SELECTORS_PROPERTY, DEFAULT_SELECTORS));
+	}
+
+	/**
+	 * @return the address the server listens to.
+	 */
+	public InetSocketAddress getAddress() {
+		return address;
+	}
+
+	/**
+	 * @return the port the server listens to.
+	 */
+	public int getPort() {
+		return address.getPort();
+	}
+
+	/**
+	 * This method stops the server: it stops listening, and the selector
+	 * threads close the connections then end.
+	 */
+	public void close() throws IOException {
+		running = false;
+		for (EventLoop loop : loops) {
+			if (loop != null) {
+				loop.selector.wakeup();
+			}
+		}
+		serverChannel.close();
+	}
+
+	/**
+	 * This method accepts the pending connections, spreading them over the
+	 * selector threads. It runs on the first selector thread.
+	 */
+	private void accept() throws IOException {
+		SocketChannel l_channel;
+		while ((l_channel = serverChannel.accept()) != null) {
+			l_channel.configureBlocking(false);
+			l_channel.socket().setTcpNoDelay(true);
+			EventLoop l_loop = loops[acceptedConnections++ % loops.length];
+			l_loop.accepted.add(l_channel);
+			if (l_loop != loops[0]) {
+				l_loop.selector.wakeup();
+			}
+		}
+	}
+
+	/**
+	 * This class is the loop of one selector thread.
+	 * 
+	 * @author Maher Abdelkhalek
+	 *
+	 */
+	private final class EventLoop implements Runnable {
+
+		/**
+		 * The selector of the connections of the loop.
+		 */
+		final Selector selector;
+
+		/**
+		 * The connections accepted for the loop, not registered yet.
+		 */
+		final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<SocketChannel>();
+
+		/**
+		 * The connections having replies completed by the pumps.
+		 */
+		final Queue<Connection> completed = new ConcurrentLinkedQueue<Connection>();
+
+		/**
+		 * The free connection buffers.
+		 */
+		private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<ByteBuffer>();
+
+		/**
+		 * The bytes of the request line being parsed.
+		 */
+		final byte[] line = new byte[MAX_LINE];
+
+		/**
+		 * @param selector
+		 *            the selector of the connections of the loop.
+		 */
+		EventLoop(Selector selector) {
+			this.selector = selector;
+		}
+
+		public void run() {
+			try {
+				while (running) {
+					selector.select();
+					register();
+					flushCompleted();
+					Iterator<SelectionKey> l_keys = selector.selectedKeys().iterator();
+					while (l_keys.hasNext()) {
+						SelectionKey l_key = l_keys.next();
+						l_keys.remove();
+						if (!l_key.isValid()) {
+							continue;
+						}
+						if (l_key.isAcceptable()) {
+							accept();
+							register();
+							continue;
+						}
+						Connection l_connection = (Connection) l_key.attachment();
+						try {
+							if (l_key.isReadable()) {
+								l_connection.read();
+							}
+							if (l_key.isValid() && l_key.isWritable()) {
+								l_connection.flush();
+							}
+						} catch (IOException e) {
+							l_connection.close();
+						} catch (RuntimeException e) {
+							// A failed request closes its own connection only.
+							l_connection.close();
+						}
+					}
+				}
+			} catch (IOException e) {
+				// The selector failed: closing the connections of the loop.
+			} finally {
+				for (SelectionKey key : selector.keys()) {
+					closeQuietly(key.channel());
+				}
+				closeQuietly(selector);
+			}
+		}
+
+		/**
+		 * This method registers the connections accepted for the loop.
+		 */
+		private void register() throws IOException {
+			SocketChannel l_channel;
+			while ((l_channel = accepted.poll()) != null) {
+				Connection l_connection = new Connection(l_channel, this);
+				l_connection.key = l_channel.register(selector, SelectionKey.OP_READ, l_connection);
+			}
+		}
+
+		/**
+		 * @return a free connection buffer, cleared.
+		 */
+		ByteBuffer takeBuffer() {
+			ByteBuffer l_buffer = buffers.poll();
+			return l_buffer != null ? l_buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+
+		/**
+		 * This method gives a buffer of a closed connection back to the pool.
+		 * 
+		 * @param buffer
+		 *            the buffer.
+		 */
+		void recycle(ByteBuffer buffer) {
+			if (buffers.size() < MAX_POOLED_BUFFERS) {
+				buffer.clear();
+				buffers.add(buffer);
+			}
+		}
+
+		/**
+		 * This method writes the replies completed by the pumps.
+		 */
+		private void flushCompleted() {
+			Connection l_connection;
+			while ((l_connection = completed.poll()) != null) {
+				// Letting the next completions schedule a new flush.
+				l_connection.flushScheduled.set(false);
+				if (!l_connection.key.isValid()) {
+					continue;
+				}
+				try {
+					l_connection.flush();
+				} catch (IOException e) {
+					l_connection.close();
+				} catch (RuntimeException e) {
+					l_connection.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * This class is the reply to one text request, completed on the selector
+	 * thread or by a pump.
+	 * 
+	 * @author Maher Abdelkhalek
+	 *
+	 */
+	private static final class Reply {
+
+		/**
+		 * The reply line, null until the request completes.
+		 */
+		volatile String line;
+	}
+
+	/**
+	 * This class is the reply to one binary request, reused by its connection
+	 * for the next requests once written.
+	 * 
+	 * @author Maher Abdelkhalek
+	 *
+	 */
+	private static final class BinaryReply implements BiConsumer<Double, Throwable> {
+
+		/**
+		 * The connection of the request.
+		 */
+		final Connection connection;
+
+		/**
+		 * The fixed-point values of the reply.
+		 */
+		final long[] values = new long[4];
+
+		/**
+		 * The operation of the request.
+		 */
+		int operation;
+
+		/**
+		 * The status of the request.
+		 */
+		int status;
+
+		/**
+		 * The correlation id of the request.
+		 */
+		long correlationId;
+
+		/**
+		 * The next reply completed by the pumps, not written yet.
+		 */
+		BinaryReply next;
+
+		/**
+		 * @param connection
+		 *            the connection of the requests.
+		 */
+		BinaryReply(Connection connection) {
+			this.connection = connection;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.function.BiConsumer#accept(java.lang.Object,
+		 * java.lang.Object)
+		 */
+		public void accept(Double price, Throwable failure) {
+			status = failure == null ? StationProtocol.OK : refusalStatus(failure);
+			values[0] = failure == null ? StationProtocol.toFixedPoint(price) : 0;
+			connection.complete(this);
+		}
+
+		@Override
+		public String toString() {
+			return "BinaryReply [operation=" + operation + ", status=" + status + ", correlationId=" + correlationId
+					+ "]";
+		}
+	}
+
+	/**
+	 * This class is one terminal connection, read and written by the thread
+	 * of its loop only.
+	 * 
+	 * @author Maher Abdelkhalek
+	 *
+	 */
+	private final class Connection {
+
+		/**
+		 * The channel of the connection.
+		 */
+		final SocketChannel channel;
+
+		/**
+		 * The loop of the connection.
+		 */
+		final EventLoop loop;
+
+		/**
+		 * The key of the channel in the selector of the loop.
+		 */
+		SelectionKey key;
+
+		/**
+		 * The bytes read and not parsed yet, taken from the pool of the loop.
+		 */
+		final ByteBuffer input;
+
+		/**
+		 * The bytes of the replies not written yet, taken from the pool of the
+		 * loop.
+		 */
+		final ByteBuffer output;
+
+		/**
+		 * The protocol of the connection, known from its first byte.
+		 */
+		int protocol = UNDECIDED;
+
+		/**
+		 * The text replies in the order of the requests.
+		 */
+		final ArrayDeque<Reply> replies = new ArrayDeque<Reply>();
+
+		/**
+		 * The binary replies completed by the pumps and not taken by the loop
+		 * yet, most recent first.
+		 */
+		final AtomicReference<BinaryReply> completedReplies = new AtomicReference<BinaryReply>();
+
+		/**
+		 * The binary replies completed and not written yet.
+		 */
+		final ArrayDeque<BinaryReply> readyReplies = new ArrayDeque<BinaryReply>();
+
+		/**
+		 * The binary replies written, reused by the next requests.
+		 */
+		final ArrayDeque<BinaryReply> freeReplies = new ArrayDeque<BinaryReply>();
+
+		/**
+		 * The number of binary requests not answered yet.
+		 */
+		int outstanding;
+
+		/**
+		 * Whether the connection is queued to the loop for a flush.
+		 */
+		final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+		/**
+		 * Whether the terminal quit, the connection closing once the replies
+		 * are written.
+		 */
+		boolean quitting;
+
+		/**
+		 * @param channel
+		 *            the channel of the connection.
+		 * @param loop
+		 *            the loop of the connection.
+		 */
+		Connection(SocketChannel channel, EventLoop loop) {
+			this.channel = channel;
+			this.loop = loop;
+			this.input = loop.takeBuffer();
+			this.output = loop.takeBuffer();
+		}
+
+		/**
+		 * This method reads the available bytes and handles the complete
+		 * requests.
+		 */
+		void read() throws IOException {
+			if (channel.read(input) < 0) {
+				// The terminal shut its output down: answering the pending
+				// requests before closing.
+				quitting = true;
+				flush();
+				return;
+			}
+			int l_start = 0;
+			int l_end = input.position();
+			if (protocol == UNDECIDED) {
+				if (l_end == 0) {
+					// Nothing read yet: the pooled buffer may hold a byte of
+					// its previous connection.
+					return;
+				}
+				if (input.get(0) == StationProtocol.MAGIC) {
+					protocol = BINARY;
+					l_start = 1;
+				} else {
+					protocol = TEXT;
+				}
+			}
+			l_start = protocol == BINARY ? readBinary(l_start, l_end) : readText(l_start, l_end);
+			// Keeping the incomplete request at the start of the buffer.
+			input.limit(l_end).position(l_start);
+			input.compact();
+			flush();
+		}
+
+		/**
+		 * This method handles the complete request lines.
+		 * 
+		 * @return the index of the first byte not handled.
+		 */
+		private int readText(int start, int end) {
+			byte[] l_line = loop.line;
+			int l_length = 0;
+			for (int i = start; i < end && !quitting; i++) {
+				byte l_byte = input.get(i);
+				if (l_byte == '\n') {
+					if (l_length > 0 && l_line[l_length - 1] == '\r') {
+						l_length--;
+					}
+					if (l_length > 0) {
+						handle(new String(l_line, 0, l_length, StandardCharsets.US_ASCII));
+					}
+					l_length = 0;
+					start = i + 1;
+				} else if (l_length == MAX_LINE) {
+					replies.add(reply("ERROR The request is longer than " + MAX_LINE + " bytes"));
+					quitting = true;
+				} else {
+					l_line[l_length++] = l_byte;
+				}
+			}
+			return quitting ? end : start;
+		}
+
+		/**
+		 * This method handles the complete binary requests.
+		 * 
+		 * @return the index of the first byte not handled.
+		 */
+		private int readBinary(int start, int end) {
+			while (end - start >= StationProtocol.REQUEST_SIZE) {
+				handleBinary(start);
+				start += StationProtocol.REQUEST_SIZE;
+			}
+			return start;
+		}
+
+		/**
+		 * This method handles one request line, queuing its reply.
+		 * 
+		 * @param line
+		 *            the request line.
+		 */
+		private void handle(String line) {
+			final Reply l_reply = new Reply();
+			replies.add(l_reply);
+			String[] l_words = line.trim().split(" +");
+			try {
+				switch (l_words[0]) {
+				case "BUY":
+					checkArguments(l_words, 3);
+					fGasStation.buyGasAsync(GasType.valueOf(l_words[1]), parseAmount(l_words[2]),
+							parseAmount(l_words[3])).whenComplete(new BiConsumer<Double, Throwable>() {
+								public void accept(Double price, Throwable failure) {
+									l_reply.line = failure == null ? "SOLD " + price : refusal(failure);
+									scheduleFlush();
+								}
+							});
+					break;
+				case "PRICE":
+					checkArguments(l_words, 1);
+					l_reply.line = "PRICE " + fGasStation.getPrice(GasType.valueOf(l_words[1]));
+					break;
+				case "SETPRICE":
+					checkArguments(l_words, 2);
+					fGasStation.setPrice(GasType.valueOf(l_words[1]), parseAmount(l_words[2]));
+					l_reply.line = "OK";
+					break;
+				case "STATUS":
+					checkArguments(l_words, 0);
+					StationStatus l_status = fGasStation.getStatusSnapshot();
+					l_reply.line = "STATUS revenue=" + l_status.getRevenue() + " sales=" + l_status.getNumberOfSales()
+							+ " noGas=" + l_status.getNumberOfCancellationsNoGas() + " tooExpensive="
+							+ l_status.getNumberOfCancellationsTooExpensive() + " balked="
+							+ l_status.getNumberOfCancellationsBalked() + " reneged="
+							+ l_status.getNumberOfCancellationsReneged();
+					break;
+				case "QUIT":
+					l_reply.line = "BYE";
+					quitting = true;
+					break;
+				default:
+					l_reply.line = "ERROR Unknown request: " + l_words[0];
+				}
+			} catch (IllegalArgumentException e) {
+				// Covering the unknown gas types and the malformed numbers.
+				l_reply.line = "ERROR " + e.getMessage();
+			} catch (IllegalStateException e) {
+				// No price is set for the gas type.
+				l_reply.line = "ERROR " + e.getMessage();
+			}
+		}
+
+		/**
+		 * This method handles one binary request, decoded in place.
+		 * 
+		 * @param at
+		 *            the index of the request in the input buffer.
+		 */
+		private void handleBinary(int at) {
+			BinaryReply l_reply = freeReplies.poll();
+			if (l_reply == null) {
+				l_reply = new BinaryReply(this);
+			}
+			l_reply.operation = StationProtocol.getOperation(input, at);
+			l_reply.correlationId = StationProtocol.getCorrelationId(input, at);
+			l_reply.status = StationProtocol.OK;
+			outstanding++;
+			GasType l_type = StationProtocol.decodeType(StationProtocol.getType(input, at));
+			try {
+				switch (l_reply.operation) {
+				case StationProtocol.BUY:
+					fGasStation.buyGasAsync(checkType(l_type),
+							checkAmount(StationProtocol.fromFixedPoint(StationProtocol.getFirst(input, at))),
+							checkAmount(StationProtocol.fromFixedPoint(StationProtocol.getSecond(input, at))))
+							.whenComplete(l_reply);
+					return;
+				case StationProtocol.PRICE:
+					l_reply.values[0] = StationProtocol.toFixedPoint(fGasStation.getPrice(checkType(l_type)));
+					break;
+				case StationProtocol.SET_PRICE:
+					fGasStation.setPrice(checkType(l_type),
+							checkAmount(StationProtocol.fromFixedPoint(StationProtocol.getFirst(input, at))));
+					l_reply.values[0] = 0;
+					break;
+				case StationProtocol.STATUS:
+					StationStatus l_status = fGasStation.getStatusSnapshot();
+					l_reply.values[0] = StationProtocol.toFixedPoint(l_status.getRevenue());
+					l_reply.values[1] = StationProtocol.pack(l_status.getNumberOfSales(),
+							l_status.getNumberOfCancellationsNoGas());
+					l_reply.values[2] = StationProtocol.pack(l_status.getNumberOfCancellationsTooExpensive(),
+							l_status.getNumberOfCancellationsBalked());
+					l_reply.values[3] = StationProtocol.pack(l_status.getNumberOfCancellationsReneged(), 0);
+					break;
+				default:
+					// Answering with a value reply, whatever the operation.
+					l_reply.operation = StationProtocol.BUY;
+					l_reply.status = StationProtocol.ERROR;
+				}
+			} catch (IllegalArgumentException e) {
+				l_reply.status = StationProtocol.ERROR;
+			} catch (IllegalStateException e) {
+				l_reply.status = StationProtocol.ERROR;
+			}
+			if (l_reply.status == StationProtocol.ERROR) {
+				l_reply.values[0] = 0;
+			}
+			readyReplies.add(l_reply);
+		}
+
+		/**
+		 * This method hands a binary reply completed by a pump to the loop.
+		 * 
+		 * @param reply
+		 *            the completed reply.
+		 */
+		void complete(BinaryReply reply) {
+			BinaryReply l_head;
+			do {
+				l_head = completedReplies.get();
+				reply.next = l_head;
+			} while (!completedReplies.compareAndSet(l_head, reply));
+			scheduleFlush();
+		}
+
+		/**
+		 * This method queues this connection to its loop to write the replies
+		 * completed by a pump.
+		 */
+		void scheduleFlush() {
+			if (flushScheduled.compareAndSet(false, true)) {
+				loop.completed.add(this);
+				loop.selector.wakeup();
+			}
+		}
+
+		/**
+		 * @return true if a completed reply waits for the output buffer.
+		 */
+		private boolean hasCompletedReplies() {
+			if (protocol == BINARY) {
+				return !readyReplies.isEmpty() || completedReplies.get() != null;
+			}
+			Reply l_reply = replies.peek();
+			return l_reply != null && l_reply.line != null;
+		}
+
+		/**
+		 * This method encodes the completed text replies at the head of the
+		 * line, as long as they fit the output buffer.
+		 */
+		private void encodeText() {
+			Reply l_reply;
+			while ((l_reply = replies.peek()) != null && l_reply.line != null
+					&& output.remaining() > l_reply.line.length()) {
+				String l_line = l_reply.line;
+				for (int i = 0; i < l_line.length(); i++) {
+					output.put((byte) l_line.charAt(i));
+				}
+				output.put((byte) '\n');
+				replies.poll();
+			}
+		}
+
+		/**
+		 * This method encodes the completed binary replies, in the order of
+		 * their completion, as long as they fit the output buffer.
+		 */
+		private void encodeBinary() {
+			// Taking the replies completed by the pumps, oldest first.
+			BinaryReply l_completed = completedReplies.getAndSet(null);
+			BinaryReply l_oldest = null;
+			while (l_completed != null) {
+				BinaryReply l_next = l_completed.next;
+				l_completed.next = l_oldest;
+				l_oldest = l_completed;
+				l_completed = l_next;
+			}
+			for (; l_oldest != null; l_oldest = l_oldest.next) {
+				readyReplies.add(l_oldest);
+			}
+			BinaryReply l_reply;
+			while ((l_reply = readyReplies.peek()) != null
+					&& output.remaining() >= StationProtocol.replySize(l_reply.operation)) {
+				StationProtocol.encodeReply(output, l_reply.operation, l_reply.status, l_reply.correlationId,
+						l_reply.values);
+				readyReplies.poll();
+				l_reply.next = null;
+				freeReplies.add(l_reply);
+				outstanding--;
+			}
+		}
+
+		/**
+		 * This method writes the completed replies, and selects the events
+		 * the connection waits for.
+		 */
+		void flush() throws IOException {
+			boolean l_written;
+			do {
+				if (protocol == BINARY) {
+					encodeBinary();
+				} else {
+					encodeText();
+				}
+				output.flip();
+				l_written = channel.write(output) > 0;
+				output.compact();
+				// Filling the buffer again if the write freed some room.
+			} while (l_written && hasCompletedReplies());
+			int l_pending = protocol == BINARY ? outstanding : replies.size();
+			if (quitting && l_pending == 0 && output.position() == 0) {
+				close();
+				return;
+			}
+			int l_interest = 0;
+			if (output.position() > 0) {
+				l_interest |= SelectionKey.OP_WRITE;
+			}
+			if (!quitting && l_pending < MAX_PENDING_REPLIES) {
+				l_interest |= SelectionKey.OP_READ;
+			}
+			if (key.interestOps() != l_interest) {
+				key.interestOps(l_interest);
+			}
+		}
+
+		/**
+		 * This method closes the connection, and gives its buffers back to
+		 * the pool of the loop. The replies still completed by the pumps are
+		 * dropped.
+		 */
+		void close() {
+			if (!channel.isOpen()) {
+				return;
+			}
+			key.cancel();
+			closeQuietly(channel);
+			loop.recycle(input);
+			loop.recycle(output);
+		}
+
+		@Override
+		public String toString() {
+			return "Connection [channel=" + channel + ", protocol=" + protocol + ", replies=" + replies.size()
+					+ ", outstanding=" + outstanding + ", quitting=" + quitting + "]";
+		}
+	}
+
+	/**
+	 * This method creates a completed reply.
+	 * 
+	 * @param line
+	 *            the reply line.
+	 * 
+	 * @return the reply.
+	 */
+	private static Reply reply(String line) {
+		Reply l_reply = new Reply();
+		l_reply.line = line;
+		return l_reply;
+	}
+
+	/**
+	 * @param failure
+	 *            the failure of an asynchronous purchase.
+	 * 
+	 * @return the reply telling why the purchase failed.
+	 */
+	private static String refusal(Throwable failure) {
+		Throwable l_cause = failure instanceof CompletionException && failure.getCause() != null
+				? failure.getCause() : failure;
+		if (l_cause instanceof NotEnoughGasException) {
+			return "NOT_ENOUGH_GAS";
+		}
+		if (l_cause instanceof GasTooExpensiveException) {
+			return "TOO_EXPENSIVE";
+		}
+		if (l_cause instanceof RejectedExecutionException) {
+			return "BALKED";
+		}
+		return "ERROR " + l_cause;
+	}
+
+	/**
+	 * @param failure
+	 *            the failure of an asynchronous purchase.
+	 * 
+	 * @return the binary status telling why the purchase failed.
+	 */
+	private static int refusalStatus(Throwable failure) {
+		Throwable l_cause = failure instanceof CompletionException && failure.getCause() != null
+				? failure.getCause() : failure;
+		if (l_cause instanceof NotEnoughGasException) {
+			return StationProtocol.NOT_ENOUGH_GAS;
+		}
+		if (l_cause instanceof GasTooExpensiveException) {
+			return StationProtocol.TOO_EXPENSIVE;
+		}
+		if (l_cause instanceof RejectedExecutionException) {
+			return StationProtocol.BALKED;
+		}
+		return StationProtocol.ERROR;
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the request does not have the expected number of
+	 *             arguments.
+	 */
+	private static void checkArguments(String[] words, int arguments) {
+		if (words.length != arguments + 1) {
+			throw new IllegalArgumentException(words[0] + " expects " + arguments + " argument(s)");
+		}
+	}
+
+	/**
+	 * @throws NumberFormatException
+	 *             if the word is not a positive number.
+	 */
+	private static double parseAmount(String word) {
+		double l_amount = Double.parseDouble(word);
+		if (!(l_amount > 0) || Double.isInfinite(l_amount)) {
+			throw new NumberFormatException("Not a positive amount: " + word);
+		}
+		return l_amount;
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the amount is not positive.
+	 */
+	private static double checkAmount(double amount) {
+		if (!(amount > 0)) {
+			throw new IllegalArgumentException("Not a positive amount: " + amount);
+		}
+		return amount;
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the request has no gas type.
+	 */
+	private static GasType checkType(GasType type) {
+		if (type == null) {
+			throw new IllegalArgumentException("No gas type");
+		}
+		return type;
+	}
+
+	/**
+	 * This method closes a resource, ignoring its failure.
+	 */
+	private static void closeQuietly(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			// Nothing more to release.
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "StationServer [address=" + address + ", selectors=" + loops.length + ", running=" + running + "]";
+	}
+}
@@ -0,0 +1,221 @@
+package com.task.gasstation.gasstation_fulda;
+
+import java.util.Collections;
+import java.util.List;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class is an immutable view of the revenue and the sales counters of a
+ * gas station, as answered to a STATUS request.
+ * 
+ * The snapshots taken by the station itself also hold the prices and the
+ * states of the pumps, read at the same instant as the sales and the revenue
+ * (see FuldaGasStation.getStatusSnapshot), while the STATUS replies of the
+ * server only carry the counters.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public final class StationStatus {
+
+	/**
+	 * The revenue in Euro.
+	 */
+	private final double revenue;
+
+	/**
+	 * The number of sales.
+	 */
+	private final int numberOfSales;
+
+	/**
+	 * The number of sales cancelled for lack of gas.
+	 */
+	private final int numberOfCancellationsNoGas;
+
+	/**
+	 * The number of sales cancelled because the gas was too expensive.
+	 */
+	private final int numberOfCancellationsTooExpensive;
+
+	/**
+	 * The number of customers who left because the waiting line was full.
+	 */
+	private final int numberOfCancellationsBalked;
+
+	/**
+	 * The number of customers who left the waiting line after waiting too
+	 * long.
+	 */
+	private final int numberOfCancellationsReneged;
+
+	/**
+	 * The prices of the station, null if unknown.
+	 */
+	private final GasPriceTable prices;
+
+	/**
+	 * The states of the pumps, ordered by gas type and position, empty if
+	 * unknown.
+	 */
+	private final List<PumpState> pumpStates;
+
+	/**
+	 * True if the snapshot is an earlier one, returned while the sales kept
+	 * overlapping the reads of the pumps.
+	 */
+	private final boolean stale;
+
+	/**
+	 * @param revenue
+	 *            the revenue in Euro.
+	 * @param numberOfSales
+	 *            the number of sales.
+	 * @param numberOfCancellationsNoGas
+	 *            the number of sales cancelled for lack of gas.
+	 * @param numberOfCancellationsTooExpensive
+	 *            the number of sales cancelled because the gas was too
+	 *            expensive.
+	 * @param numberOfCancellationsBalked
+	 *            the number of customers who left because the waiting line was
+	 *            full.
+	 * @param numberOfCancellationsReneged
+	 *            the number of customers who left the waiting line after
+	 *            waiting too long.
+	 */
+	public StationStatus(double revenue, int numberOfSales, int numberOfCancellationsNoGas,
+			int numberOfCancellationsTooExpensive, int numberOfCancellationsBalked, int numberOfCancellationsReneged) {
+		this(revenue, numberOfSales, numberOfCancellationsNoGas, numberOfCancellationsTooExpensive,
+				numberOfCancellationsBalked, numberOfCancellationsReneged, null, Collections.<PumpState> emptyList(),
+				false);
+	}
+
+	/**
+	 * @param prices
+	 *            the prices of the station.
+	 * @param pumpStates
+	 *            the states of the pumps, ordered by gas type and position.
+	 * @param stale
+	 *            true if the snapshot is an earlier one.
+	 */
+	StationStatus(double revenue, int numberOfSales, int numberOfCancellationsNoGas,
+			int numberOfCancellationsTooExpensive, int numberOfCancellationsBalked, int numberOfCancellationsReneged,
+			GasPriceTable prices, List<PumpState> pumpStates, boolean stale) {
+		this.revenue = revenue;
+		this.numberOfSales = numberOfSales;
+		this.numberOfCancellationsNoGas = numberOfCancellationsNoGas;
+		this.numberOfCancellationsTooExpensive = numberOfCancellationsTooExpensive;
+		this.numberOfCancellationsBalked = numberOfCancellationsBalked;
+		this.numberOfCancellationsReneged = numberOfCancellationsReneged;
+		this.prices = prices;
+		this.pumpStates = pumpStates;
+		this.stale = stale;
+	}
+
+	/**
+	 * @return the same snapshot, marked as stale.
+	 */
+	StationStatus asStale() {
+		if (stale) {
+			return this;
+		}
+		return new StationStatus(revenue, numberOfSales, numberOfCancellationsNoGas, numberOfCancellationsTooExpensive,
+				numberOfCancellationsBalked, numberOfCancellationsReneged, prices, pumpStates, true);
+	}
+
+	/**
+	 * @return the revenue in Euro.
+	 */
+	public double getRevenue() {
+		return revenue;
+	}
+
+	/**
+	 * @return the number of sales.
+	 */
+	public int getNumberOfSales() {
+		return numberOfSales;
+	}
+
+	/**
+	 * @return the number of sales cancelled for lack of gas.
+	 */
+	public int getNumberOfCancellationsNoGas() {
+		return numberOfCancellationsNoGas;
+	}
+
+	/**
+	 * @return the number of sales cancelled because the gas was too
+	 *         expensive.
+	 */
+	public int getNumberOfCancellationsTooExpensive() {
+		return numberOfCancellationsTooExpensive;
+	}
+
+	/**
+	 * @return the number of customers who left because the waiting line was
+	 *         full.
+	 */
+	public int getNumberOfCancellationsBalked() {
+		return numberOfCancellationsBalked;
+	}
+
+	/**
+	 * @return the number of customers who left the waiting line after
+	 *         waiting too long.
+	 */
+	public int getNumberOfCancellationsReneged() {
+		return numberOfCancellationsReneged;
+	}
+
+	/**
+	 * @return the prices of the station, null if unknown.
+	 */
+	public GasPriceTable getPrices() {
+		return prices;
+	}
+
+	/**
+	 * @return the states of the pumps, ordered by gas type and position, empty
+	 *         if unknown.
+	 */
+	public List<PumpState> getPumpStates() {
+		return pumpStates;
+	}
+
+	/**
+	 * @return true if the snapshot is an earlier one, returned while the sales
+	 *         kept overlapping the reads of the pumps.
+	 */
+	public boolean isStale() {
+		return stale;
+	}
+
+	/**
+	 * This method sums the remaining amounts of the pumps of a given gas type.
+	 * 
+	 * @param type
+	 *            the gas type.
+	 * 
+	 * @return the remaining amount of gas in Liters.
+	 */
+	public double getRemainingAmount(GasType type) {
+		long l_remainingAmount = 0;
+		for (PumpState state : pumpStates) {
+			if (state.getType() == type) {
+				l_remainingAmount += FixedPoint.toMilliliters(state.getRemainingAmount());
+			}
+		}
+		return FixedPoint.toLiters(l_remainingAmount);
+	}
+
+	@Override
+	public String toString() {
+		return "StationStatus [revenue=" + revenue + ", numberOfSales=" + numberOfSales
+				+ ", numberOfCancellationsNoGas=" + numberOfCancellationsNoGas + ", numberOfCancellationsTooExpensive="
+				+ numberOfCancellationsTooExpensive + ", numberOfCancellationsBalked=" + numberOfCancellationsBalked
+				+ ", numberOfCancellationsReneged=" + numberOfCancellationsReneged + ", prices=" + prices
+				+ ", pumpStates=" + pumpStates + ", stale=" + stale + "]";
+	}
+}
@@ -0,0 +1,93 @@
+package com.task.gasstation.utils;
+
+import java.util.SplittableRandom;
+
+/**
+ * This class is a stream of random numbers owned by one task of the
+ * simulation, a pump customers incoming for instance.
+ * 
+ * The numbers of a stream only depend on its seed, whatever the thread running
+ * the task, so that a run can be reproduced from the master seed (see
+ * RandomUtils.newStream). Generating a number does not allocate any object.
+ * 
+ * A stream is not thread safe: it must be used by one task at a time.
+ * 
+ * @author Maher Abdelkhalek
+ */
+public final class RandomStream {
+
+	/**
+	 * The random generator of the stream.
+	 */
+	private final SplittableRandom random;
+
+	/**
+	 * @param seed
+	 *            the seed of the stream.
+	 */
+	public RandomStream(long seed) {
+		this.random = new SplittableRandom(seed);
+	}
+
+	/**
+	 * This method generates a random double number around a given value.
+	 * 
+	 * @param average
+	 *            the given average value.
+	 * @param standardDeviation
+	 *            the max deviation of the generated number around the average.
+	 * 
+	 * @return A random number greater or less than the average with max
+	 *         difference the deviation value, rounded down to the cent.
+	 */
+	public double generateAroundAverage(double average, double standardDeviation) {
+		double l_difference = random.nextDouble() * standardDeviation;
+		if (random.nextBoolean()) {
+			l_difference = -l_difference;
+		}
+		return Math.floor((average + l_difference) * 100) / 100;
+	}
+
+	/**
+	 * This method generates a random double number between too given values.
+	 * 
+	 * @param minValue
+	 *            the given min value.
+	 * @param maxValue
+	 *            the given max value.
+	 * 
+	 * @return a double value between minValue and maxValue, rounded down to the
+	 *         cent.
+	 */
+	public double generateFromRange(double minValue, double maxValue) {
+		return Math.floor((random.nextDouble() * (maxValue - minValue) + minValue) * 100) / 100;
+	}
+
+	/**
+	 * This method generates a random int number between too given values.
+	 * 
+	 * @param minValue
+	 *            the given min value.
+	 * @param maxValue
+	 *            the given max value, excluded.
+	 * 
+	 * @return an int value between minValue and maxValue.
+	 */
+	public int generateFromRange(int minValue, int maxValue) {
+		return random.nextInt(minValue, maxValue);
+	}
+
+	/**
+	 * This method generates a random long number between too given values.
+	 * 
+	 * @param minValue
+	 *            the given min value.
+	 * @param maxValue
+	 *            the given max value, excluded.
+	 * 
+	 * @return a long value between minValue and maxValue.
+	 */
+	public long generateFromRange(long minValue, long maxValue) {
+		return random.nextLong(minValue, maxValue);
+	}
+}
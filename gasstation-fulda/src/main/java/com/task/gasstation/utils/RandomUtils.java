@@ -1,10 +1,15 @@
 package com.task.gasstation.utils;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * This class contains all the constants of the application as well as custom
  * random number generator methods.
+ * 
+ * The static generator methods use the random generator of the calling thread:
+ * they do not allocate, but their numbers cannot be reproduced. The tasks of
+ * the simulation use their own random streams instead, derived from the
+ * master seed (see newStream).
  *
  * @author Maher Abdelkhalek
  */
@@ -96,6 +101,84 @@ public class RandomUtils {
 	 */
 	public static final int UPDATE_GAS_PRICE_MAX_TIME_PERIOD = 20000;
 
+	/**
+	 * The system property fixing the master seed of the random streams, so
+	 * that a run can be reproduced.
+	 */
+	public static final String MASTER_SEED_PROPERTY = "gasstation.random.seed";
+
+	/**
+	 * The random stream of the gas prices updates.
+	 */
+	public static final long PRICES_UPDATES_STREAM = 0;
+
+	/**
+	 * The first random stream of the customers incoming, followed by one
+	 * stream per gas type.
+	 */
+	public static final long CUSTOMERS_INCOMING_STREAM = 1;
+
+	/**
+	 * The first random stream of the stations of a fleet, followed by one
+	 * stream per station.
+	 */
+	public static final long FLEET_STATIONS_STREAM = 1L << 32;
+
+	/**
+	 * The golden ratio increment separating the seeds of two streams.
+	 */
+	private static final long SEED_INCREMENT = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * The master seed from which all the random streams are derived.
+	 */
+	private static volatile long masterSeed = Long.getLong(MASTER_SEED_PROPERTY,
+			ThreadLocalRandom.current().nextLong());
+
+	/**
+	 * @return the master seed from which all the random streams are derived.
+	 */
+	public static long getMasterSeed() {
+		return masterSeed;
+	}
+
+	/**
+	 * This method sets the master seed. It affects the streams created
+	 * afterwards only.
+	 * 
+	 * @param seed
+	 *            the master seed from which all the random streams are
+	 *            derived.
+	 */
+	public static void setMasterSeed(long seed) {
+		masterSeed = seed;
+	}
+
+	/**
+	 * This method creates the random stream of a task of the simulation. The
+	 * same master seed and stream id always give the same numbers.
+	 * 
+	 * @param streamId
+	 *            the id of the stream, unique among the tasks of the
+	 *            simulation.
+	 * 
+	 * @return a new random stream.
+	 */
+	public static RandomStream newStream(long streamId) {
+		return new RandomStream(mix(masterSeed + (streamId + 1) * SEED_INCREMENT));
+	}
+
+	/**
+	 * This method scrambles the bits of a seed (the finalizer of the
+	 * SplitMix64 generator), so that close stream ids give unrelated streams.
+	 */
+	private static long mix(long seed) {
+		long l_z = seed;
+		l_z = (l_z ^ (l_z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		l_z = (l_z ^ (l_z >>> 27)) * 0x94D049BB133111EBL;
+		return l_z ^ (l_z >>> 31);
+	}
+
 	/**
 	 * This method generates a random double number around a given value.
 	 * 
@@ -108,7 +191,7 @@ public class RandomUtils {
 	 *         difference the deviation value.
 	 */
 	public static double generateAroundAverage(double average, double standardDeviation) {
-		Random l_r = new Random();
+		ThreadLocalRandom l_r = ThreadLocalRandom.current();
 		// Randomize difference
 		double l_difference = l_r.nextDouble() * standardDeviation;
 		// randomize sign
@@ -130,8 +213,7 @@ public class RandomUtils {
 	 * @return a double value between minValue and maxValue.
 	 */
 	public static double generateFromRange(double minValue, double maxValue) {
-		Random l_r = new Random();
-		Double l_val = l_r.nextDouble() * (maxValue - minValue) + minValue;
+		double l_val = ThreadLocalRandom.current().nextDouble() * (maxValue - minValue) + minValue;
 		return Math.floor(l_val * 100) / 100;
 	}
 
@@ -146,7 +228,6 @@ public class RandomUtils {
 	 * @return an int value between minValue and maxValue.
 	 */
 	public static int generateFromRange(int minValue, int maxValue) {
-		Random l_r = new Random();
-		return l_r.nextInt(maxValue - minValue) + minValue;
+		return ThreadLocalRandom.current().nextInt(minValue, maxValue);
 	}
 }
\ No newline at end of file
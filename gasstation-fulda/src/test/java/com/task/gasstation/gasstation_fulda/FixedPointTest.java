@@ -0,0 +1,49 @@
+package com.task.gasstation.gasstation_fulda;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * This class tests the rounding of the fixed-point amounts and prices of the
+ * Fulda gas station.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class FixedPointTest {
+
+	@Test
+	public void chargeRoundsHalfUpToTheCent() {
+		// 1.234 L at 1.50 EUR is 1.851 EUR.
+		assertEquals(185, FixedPoint.charge(1234, 150));
+		// 1.003 L at 1.50 EUR is 1.5045 EUR.
+		assertEquals(150, FixedPoint.charge(1003, 150));
+		// 1.005 L at 1.50 EUR is 1.5075 EUR.
+		assertEquals(151, FixedPoint.charge(1005, 150));
+		// 0.001 L at 5.00 EUR is exactly half a cent.
+		assertEquals(1, FixedPoint.charge(1, 500));
+		assertEquals(0, FixedPoint.charge(1, 499));
+		assertEquals(300, FixedPoint.charge(2000, 150));
+	}
+
+	@Test
+	public void toOrderMillilitersRounds() {
+		assertEquals(1234, FixedPoint.toOrderMilliliters(1.234));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void toOrderMillilitersRejectsAmountRoundingToZero() {
+		FixedPoint.toOrderMilliliters(0.0004);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void toOrderMillilitersRejectsNegativeAmount() {
+		FixedPoint.toOrderMilliliters(-1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void toOrderMillilitersRejectsNaN() {
+		FixedPoint.toOrderMilliliters(Double.NaN);
+	}
+}
@@ -0,0 +1,70 @@
+package com.task.gasstation.gasstation_fulda;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+
+/**
+ * This class tests the checks of the orders of the Fulda gas station.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class FuldaGasStationTest {
+
+	/**
+	 * The gas station.
+	 */
+	private FuldaGasStation fGasStation;
+
+	@Before
+	public void setUp() {
+		fGasStation = new FuldaGasStation();
+		fGasStation.setEventLog(StationEventLog.DISABLED);
+		fGasStation.addGasPump(new GasPump(GasType.DIESEL, 10));
+		fGasStation.setPrice(GasType.DIESEL, 1.5);
+	}
+
+	@Test
+	public void saleReportsChargedPrice() throws Exception {
+		GasSale l_sale = fGasStation.sellGas(GasType.DIESEL, 1.234, 2);
+		assertEquals(1.85, l_sale.getPrice(), 0);
+		assertEquals(fGasStation.getRevenue(), l_sale.getPrice(), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void amountRoundingToNoGasIsRejected() throws Exception {
+		try {
+			fGasStation.buyGas(GasType.DIESEL, 0.0004, 2);
+		} finally {
+			assertEquals(0, fGasStation.getNumberOfSales());
+			assertEquals(0, fGasStation.getNumberOfCancellationsNoGas());
+		}
+	}
+
+	@Test(expected = GasTooExpensiveException.class)
+	public void nanMaximumPriceIsTooExpensive() throws Exception {
+		try {
+			fGasStation.buyGas(GasType.DIESEL, 1, Double.NaN);
+		} finally {
+			assertEquals(0, fGasStation.getNumberOfSales());
+			assertEquals(1, fGasStation.getNumberOfCancellationsTooExpensive());
+			assertEquals(10, fGasStation.getRemainingAmount(GasType.DIESEL), 0);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void nanMaximumPriceIsNotParked() {
+		try {
+			fGasStation.placeStandingOrder(GasType.DIESEL, 1, Double.NaN);
+		} finally {
+			assertEquals(0, fGasStation.getNumberOfStandingOrders(GasType.DIESEL));
+			assertEquals(0, fGasStation.getNumberOfSales());
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.task.gasstation.gasstation_fulda;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class tests the recovery of the Fulda gas station from a journal with
+ * a hole left by a crash.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class SalesJournalTest {
+
+	/**
+	 * The directory of the journal file.
+	 */
+	private Path directory;
+
+	/**
+	 * The journal file.
+	 */
+	private Path journalFile;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("gasstation");
+		journalFile = directory.resolve("station.journal");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(journalFile);
+		Files.deleteIfExists(directory);
+	}
+
+	@Test
+	public void recoverKeepsRecordsAfterHole() throws Exception {
+		SalesJournal l_journal = SalesJournal.open(journalFile);
+		FuldaGasStation l_station = new FuldaGasStation();
+		l_station.setEventLog(StationEventLog.DISABLED);
+		l_station.setJournal(l_journal);
+		l_station.addGasPump(new GasPump(GasType.DIESEL, 10));
+		l_station.setPrice(GasType.DIESEL, 1.5);
+		l_station.buyGas(GasType.DIESEL, 1, 2);
+		long l_hole = l_journal.getRecords();
+		l_station.buyGas(GasType.DIESEL, 2, 2);
+		l_station.buyGas(GasType.DIESEL, 3, 2);
+		long l_records = l_journal.getRecords();
+		l_journal.close();
+
+		// The record of the second sale was claimed but never written.
+		try (FileChannel l_channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+			l_channel.write(ByteBuffer.allocate(SalesJournal.RECORD_SIZE), l_hole * SalesJournal.RECORD_SIZE);
+		}
+
+		SalesJournal l_reopened = SalesJournal.open(journalFile);
+		assertEquals(l_records, l_reopened.getRecords());
+		FuldaGasStation l_recovered = l_reopened.recover();
+		assertEquals(2, l_recovered.getNumberOfSales());
+		assertEquals(6, l_recovered.getRevenue(), 0);
+		assertEquals(6, l_recovered.getRemainingAmount(GasType.DIESEL), 1e-9);
+
+		// The new records are appended after the last valid record.
+		l_recovered.buyGas(GasType.DIESEL, 1, 2);
+		assertEquals(l_records + 1, l_reopened.getRecords());
+		l_reopened.close();
+	}
+}
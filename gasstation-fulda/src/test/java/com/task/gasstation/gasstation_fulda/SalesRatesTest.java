@@ -0,0 +1,89 @@
+package com.task.gasstation.gasstation_fulda;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.function.LongSupplier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class tests the live rates of the Fulda gas station, timed by a
+ * virtual clock.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class SalesRatesTest {
+
+	/**
+	 * The virtual clock in milliseconds.
+	 */
+	private long clock;
+
+	/**
+	 * The rates timed by the virtual clock.
+	 */
+	private SalesRates rates;
+
+	/**
+	 * The outcome of the recorded sales.
+	 */
+	private SaleResult sale;
+
+	@Before
+	public void setUp() {
+		clock = 0;
+		rates = new SalesRates(new LongSupplier() {
+			public long getAsLong() {
+				return clock;
+			}
+		});
+		sale = new SaleResult();
+		sale.set(SaleResult.SOLD, 150, 150, 0);
+	}
+
+	@Test
+	public void firstMinuteIsNotExtrapolated() {
+		clock = 30000;
+		sell(10);
+		assertEquals(10, rates.getSalesPerMinute(5), 0);
+		assertEquals(15, rates.getRevenuePerMinute(5), 1e-9);
+	}
+
+	@Test
+	public void youngWindowDividesByElapsedTime() {
+		for (int m = 0; m < 3; m++) {
+			clock = m * SalesRates.MINUTE + 30000;
+			sell(10);
+		}
+		clock = 3 * SalesRates.MINUTE;
+		assertEquals(10, rates.getSalesPerMinute(5), 1e-9);
+		assertEquals(10, rates.getSalesPerMinute(60), 1e-9);
+	}
+
+	@Test
+	public void fullWindowIgnoresOlderSales() {
+		for (int m = 0; m < 10; m++) {
+			clock = m * SalesRates.MINUTE + 30000;
+			sell(m < 5 ? 100 : 10);
+			rates.recordCancellation(GasType.SUPER);
+		}
+		clock = 10 * SalesRates.MINUTE;
+		assertEquals(10, rates.getSalesPerMinute(5), 1e-9);
+		assertEquals(55, rates.getSalesPerMinute(60), 1e-9);
+		assertEquals(1, rates.getCancellationsPerMinute(5), 1e-9);
+		assertEquals(4 / 44.0, rates.getCancellationRatio(null, 5), 1e-9);
+	}
+
+	/**
+	 * This method records sales of DIESEL at the current time of the clock.
+	 */
+	private void sell(int sales) {
+		for (int i = 0; i < sales; i++) {
+			rates.recordOutcome(GasType.DIESEL, sale);
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package com.task.gasstation.gasstation_fulda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+
+/**
+ * This class tests the restart of the Fulda gas station from its checkpoint
+ * and the records of its journal appended after the checkpoint.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class StationCheckpointTest {
+
+	/**
+	 * The directory of the checkpoint and journal files.
+	 */
+	private Path directory;
+
+	/**
+	 * The checkpoint file.
+	 */
+	private Path checkpointFile;
+
+	/**
+	 * The journal file.
+	 */
+	private Path journalFile;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("gasstation");
+		checkpointFile = directory.resolve("station.ckpt");
+		journalFile = directory.resolve("station.journal");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(checkpointFile);
+		Files.deleteIfExists(journalFile);
+		Files.deleteIfExists(directory);
+	}
+
+	@Test
+	public void restoreReplaysJournalAfterCheckpoint() throws Exception {
+		SalesJournal l_journal = SalesJournal.open(journalFile);
+		FuldaGasStation l_station = newStation(l_journal);
+		buy(l_station, GasType.DIESEL, 0.5, 2);
+		buy(l_station, GasType.SUPER, 0.2, 2);
+		StationCheckpoint l_checkpoint = StationCheckpoint.capture(l_station);
+		l_checkpoint.writeTo(checkpointFile);
+		assertEquals(l_journal.getRecords(), l_checkpoint.getJournalRecords());
+
+		// The purchases and the prices after the checkpoint are only in the
+		// journal.
+		buy(l_station, GasType.DIESEL, 0.3, 2);
+		l_station.setPrice(GasType.REGULAR, 1.75);
+		buy(l_station, GasType.REGULAR, 0.4, 2);
+		buy(l_station, GasType.SUPER, 0.1, 1);
+		buy(l_station, GasType.DIESEL, 50, 2);
+		l_journal.close();
+
+		SalesJournal l_reopened = SalesJournal.open(journalFile);
+		FuldaGasStation l_restored = StationCheckpoint.readFrom(checkpointFile).restore(l_reopened);
+		assertSame(l_reopened, l_restored.getJournal());
+		assertEquals(l_station.getRevenue(), l_restored.getRevenue(), 0);
+		assertEquals(l_station.getNumberOfSales(), l_restored.getNumberOfSales());
+		assertEquals(l_station.getNumberOfCancellationsNoGas(), l_restored.getNumberOfCancellationsNoGas());
+		assertEquals(l_station.getNumberOfCancellationsTooExpensive(),
+				l_restored.getNumberOfCancellationsTooExpensive());
+		for (GasType type : GasType.values()) {
+			assertEquals(l_station.getPrice(type), l_restored.getPrice(type), 0);
+			assertEquals(l_station.getRemainingAmount(type), l_restored.getRemainingAmount(type), 1e-9);
+		}
+		assertEquals(l_station.getPumpStates().toString(), l_restored.getPumpStates().toString());
+
+		// The restored station keeps journaling its purchases.
+		long l_records = l_reopened.getRecords();
+		buy(l_restored, GasType.REGULAR, 0.1, 2);
+		assertEquals(l_records + 1, l_reopened.getRecords());
+		l_reopened.close();
+	}
+
+	@Test
+	public void restoreAfterCheckpointDuringSaleCountsSaleOnce() throws Exception {
+		SalesJournal l_journal = SalesJournal.open(journalFile);
+		FuldaGasStation l_station = newStation(l_journal);
+		buy(l_station, GasType.DIESEL, 0.5, 2);
+
+		// The outcomes counted by the pumps and the station while the
+		// checkpoint is captured, but journaled after its number of records.
+		long l_records = l_journal.getRecords();
+		buy(l_station, GasType.DIESEL, 0.3, 2);
+		buy(l_station, GasType.SUPER, 0.2, 1);
+		buy(l_station, GasType.REGULAR, 50, 2);
+		l_station.recordBalking(GasType.REGULAR, 1);
+		StationCheckpoint.capture(l_station, l_records).writeTo(checkpointFile);
+		buy(l_station, GasType.DIESEL, 0.4, 2);
+		l_journal.close();
+
+		SalesJournal l_reopened = SalesJournal.open(journalFile);
+		FuldaGasStation l_restored = StationCheckpoint.readFrom(checkpointFile).restore(l_reopened);
+		assertEquals(l_station.getRevenue(), l_restored.getRevenue(), 0);
+		assertEquals(l_station.getNumberOfSales(), l_restored.getNumberOfSales());
+		assertEquals(l_station.getNumberOfCancellationsNoGas(), l_restored.getNumberOfCancellationsNoGas());
+		assertEquals(l_station.getNumberOfCancellationsTooExpensive(),
+				l_restored.getNumberOfCancellationsTooExpensive());
+		assertEquals(l_station.getNumberOfCancellationsBalked(), l_restored.getNumberOfCancellationsBalked());
+		for (GasType type : GasType.values()) {
+			assertEquals(l_station.getRemainingAmount(type), l_restored.getRemainingAmount(type), 1e-9);
+		}
+		assertEquals(l_station.getPumpStates().toString(), l_restored.getPumpStates().toString());
+		l_reopened.close();
+	}
+
+	@Test
+	public void restoreWithoutJournalRecordsKeepsCheckpoint() throws Exception {
+		FuldaGasStation l_station = newStation(SalesJournal.DISABLED);
+		buy(l_station, GasType.DIESEL, 0.5, 2);
+		StationCheckpoint.capture(l_station).writeTo(checkpointFile);
+
+		// A checkpoint captured without journal replays nothing of a later
+		// journal.
+		SalesJournal l_journal = SalesJournal.open(journalFile);
+		newStation(l_journal);
+		StationCheckpoint l_checkpoint = StationCheckpoint.readFrom(checkpointFile);
+		assertEquals(-1, l_checkpoint.getJournalRecords());
+		FuldaGasStation l_restored = l_checkpoint.restore(l_journal);
+		assertEquals(l_station.getRevenue(), l_restored.getRevenue(), 0);
+		assertEquals(l_station.getNumberOfSales(), l_restored.getNumberOfSales());
+		assertEquals(l_station.getRemainingAmount(GasType.REGULAR), l_restored.getRemainingAmount(GasType.REGULAR),
+				1e-9);
+		l_journal.close();
+	}
+
+	/**
+	 * This method creates a station with one pump and a price of each gas
+	 * type.
+	 */
+	private static FuldaGasStation newStation(SalesJournal journal) {
+		FuldaGasStation l_station = new FuldaGasStation();
+		l_station.setEventLog(StationEventLog.DISABLED);
+		l_station.setJournal(journal);
+		for (GasType type : GasType.values()) {
+			l_station.addGasPump(new GasPump(type, 10));
+			l_station.setPrice(type, 1.5);
+		}
+		return l_station;
+	}
+
+	/**
+	 * This method buys gas, ignoring the cancellations.
+	 */
+	private static void buy(FuldaGasStation station, GasType type, double amountInLiters, double maxPricePerLiter) {
+		try {
+			station.buyGas(type, amountInLiters, maxPricePerLiter);
+		} catch (NotEnoughGasException e) {
+			// Counted by the station.
+		} catch (GasTooExpensiveException e) {
+			// Counted by the station.
+		}
+	}
+}
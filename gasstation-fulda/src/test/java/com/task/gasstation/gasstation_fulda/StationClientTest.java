@@ -0,0 +1,123 @@
+package com.task.gasstation.gasstation_fulda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+
+/**
+ * This class tests the binary protocol of the station server through the
+ * station client, with pipelined requests.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class StationClientTest {
+
+	/**
+	 * The number of purchases pipelined before reading their replies.
+	 */
+	private static final int PIPELINED = 1000;
+
+	/**
+	 * The gas station served.
+	 */
+	private FuldaGasStation fGasStation;
+
+	/**
+	 * The server of the station.
+	 */
+	private StationServer server;
+
+	/**
+	 * The client under test.
+	 */
+	private StationClient client;
+
+	@Before
+	public void setUp() throws IOException {
+		fGasStation = new FuldaGasStation();
+		fGasStation.setEventLog(StationEventLog.DISABLED);
+		fGasStation.addGasPump(new InstantGasPump(GasType.DIESEL, 1000));
+		fGasStation.addGasPump(new InstantGasPump(GasType.DIESEL, 1000));
+		fGasStation.addGasPump(new InstantGasPump(GasType.SUPER, 5));
+		server = new StationServer(fGasStation, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1);
+		client = new StationClient(server.getAddress());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void pipelinedRoundTrip() throws Exception {
+		assertNull(client.setPrice(GasType.DIESEL, 1.25).get());
+		assertNull(client.setPrice(GasType.SUPER, 2).get());
+		assertEquals(1.25, client.getPrice(GasType.DIESEL).get(), 0);
+
+		List<CompletableFuture<Double>> l_futures = new ArrayList<CompletableFuture<Double>>(PIPELINED);
+		for (int i = 0; i < PIPELINED; i++) {
+			l_futures.add(client.buyGas(GasType.DIESEL, 1 + i % 3, i % 2 == 0 ? 2 : 1));
+		}
+		for (int i = 0; i < PIPELINED; i++) {
+			if (i % 2 == 0) {
+				assertEquals(1.25 * (1 + i % 3), l_futures.get(i).get(), 1e-9);
+			} else {
+				expectCancellation(l_futures.get(i), GasTooExpensiveException.class);
+			}
+		}
+
+		StationStatus l_status = client.getStatus().get();
+		assertEquals(PIPELINED / 2, l_status.getNumberOfSales());
+		assertEquals(PIPELINED / 2, l_status.getNumberOfCancellationsTooExpensive());
+		assertEquals(fGasStation.getRevenue(), l_status.getRevenue(), 1e-9);
+		assertEquals(0, client.getInFlight());
+	}
+
+	@Test
+	public void batchAndRefusals() throws Exception {
+		client.setPrice(GasType.SUPER, 2).get();
+		List<CompletableFuture<Double>> l_futures = client.buyGasBatch(Arrays.asList(new GasOrder(GasType.SUPER, 2,
+				3), new GasOrder(GasType.SUPER, 2, 3), new GasOrder(GasType.SUPER, 2, 3)));
+		assertEquals(4, l_futures.get(0).get(), 0);
+		assertEquals(4, l_futures.get(1).get(), 0);
+		expectCancellation(l_futures.get(2), NotEnoughGasException.class);
+		expectCancellation(client.buyGas(GasType.REGULAR, 1, 3), NotEnoughGasException.class);
+		expectCancellation(client.getPrice(GasType.DIESEL), IllegalArgumentException.class);
+		expectCancellation(client.buyGas(GasType.SUPER, -1, 3), IllegalArgumentException.class);
+		// The connection still serves the next requests.
+		assertEquals(2, client.getPrice(GasType.SUPER).get(), 0);
+	}
+
+	/**
+	 * This method checks that a request failed with the given cause.
+	 */
+	private static void expectCancellation(CompletableFuture<?> future, Class<? extends Throwable> cause)
+			throws InterruptedException {
+		try {
+			future.get();
+			fail("Expected " + cause.getSimpleName());
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause().toString(), cause.isInstance(e.getCause()));
+		}
+	}
+}
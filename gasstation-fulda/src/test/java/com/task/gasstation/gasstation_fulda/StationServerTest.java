@@ -0,0 +1,130 @@
+package com.task.gasstation.gasstation_fulda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * This class tests the text protocol of the station server, started on an
+ * ephemeral port of the loopback address.
+ * 
+ * @author Maher Abdelkhalek
+ *
+ */
+public class StationServerTest {
+
+	/**
+	 * The gas station served.
+	 */
+	private FuldaGasStation fGasStation;
+
+	/**
+	 * The server under test.
+	 */
+	private StationServer server;
+
+	/**
+	 * The terminal connection.
+	 */
+	private Socket socket;
+
+	/**
+	 * The replies of the server.
+	 */
+	private BufferedReader in;
+
+	/**
+	 * The requests to the server.
+	 */
+	private OutputStream out;
+
+	@Before
+	public void setUp() throws IOException {
+		fGasStation = new FuldaGasStation();
+		fGasStation.setEventLog(StationEventLog.DISABLED);
+		fGasStation.addGasPump(new InstantGasPump(GasType.DIESEL, 10));
+		fGasStation.addGasPump(new InstantGasPump(GasType.SUPER, 10));
+		server = new StationServer(fGasStation, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1);
+		socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+		socket.setSoTimeout(10000);
+		in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+		out = socket.getOutputStream();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		socket.close();
+		server.close();
+	}
+
+	@Test
+	public void textProtocol() throws IOException {
+		assertEquals("OK", request("SETPRICE DIESEL 1.5"));
+		assertEquals("PRICE 1.5", request("PRICE DIESEL"));
+		assertEquals("SOLD 3.0", request("BUY DIESEL 2 1.6"));
+		// The reply is the amount charged, rounded to the cent.
+		assertEquals("SOLD 1.85", request("BUY DIESEL 1.234 1.6"));
+		assertEquals("TOO_EXPENSIVE", request("BUY DIESEL 2 1.4"));
+		assertEquals("NOT_ENOUGH_GAS", request("BUY DIESEL 20 1.6"));
+		assertEquals("NOT_ENOUGH_GAS", request("BUY REGULAR 1 1.6"));
+		assertEquals("STATUS revenue=4.85 sales=2 noGas=2 tooExpensive=1 balked=0 reneged=0", request("STATUS"));
+		assertEquals("BYE", request("QUIT"));
+		assertNull(in.readLine());
+	}
+
+	@Test
+	public void malformedRequests() throws IOException {
+		assertTrue(request("PRICE SUPER").startsWith("ERROR "));
+		assertTrue(request("PRICE WATER").startsWith("ERROR "));
+		assertTrue(request("BUY DIESEL -1 1.6").startsWith("ERROR "));
+		assertTrue(request("BUY DIESEL 0.0004 1.6").startsWith("ERROR "));
+		assertTrue(request("SETPRICE DIESEL").startsWith("ERROR "));
+		assertEquals("ERROR Unknown request: FILL", request("FILL DIESEL"));
+		// The connection still serves the next requests.
+		assertEquals("OK", request("SETPRICE SUPER 2"));
+		assertEquals("PRICE 2.0", request("PRICE SUPER"));
+	}
+
+	@Test
+	public void pipelinedRequestsAnsweredAfterShutdown() throws IOException {
+		send("SETPRICE SUPER 2\nBUY SUPER 1 2\nBUY SUPER 1 2\nPRICE SUPER\n");
+		socket.shutdownOutput();
+		assertEquals("OK", in.readLine());
+		assertEquals("SOLD 2.0", in.readLine());
+		assertEquals("SOLD 2.0", in.readLine());
+		assertEquals("PRICE 2.0", in.readLine());
+		assertNull(in.readLine());
+		assertEquals(8, fGasStation.getRemainingAmount(GasType.SUPER), 1e-9);
+	}
+
+	/**
+	 * This method sends one request line and reads its reply.
+	 */
+	private String request(String line) throws IOException {
+		send(line + "\n");
+		return in.readLine();
+	}
+
+	/**
+	 * This method sends request bytes.
+	 */
+	private void send(String requests) throws IOException {
+		out.write(requests.getBytes(StandardCharsets.US_ASCII));
+		out.flush();
+	}
+}